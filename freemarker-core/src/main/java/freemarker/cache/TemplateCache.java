@@ -26,14 +26,18 @@ import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
 
 import freemarker.cache.MultiTemplateLoader.MultiSource;
 import freemarker.core.BugException;
 import freemarker.core.Environment;
 import freemarker.core.TemplateConfiguration;
+import freemarker.core._CoreAPI;
 import freemarker.log.Logger;
 import freemarker.template.Configuration;
 import freemarker.template.MalformedTemplateNameException;
@@ -85,6 +89,15 @@ public class TemplateCache {
     private long updateDelay = DEFAULT_TEMPLATE_UPDATE_DELAY_MILLIS;
     /** {@link Configuration#setLocalizedLookup(boolean)} */
     private boolean localizedLookup = true;
+    /** See {@link #getGeneration()} */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * The keys of the templates whose inlined included templates are being resolved or checked on the current thread;
+     * used to avoid infinite recursion on circular inclusion.
+     */
+    private final ThreadLocal<Set<TemplateKey>> keysWithDependenciesInProgress = new ThreadLocal<>();
+    /** Collects the dependencies of the template whose includes are being inlined on the current thread. */
+    private final ThreadLocal<List<Dependency>> collectedDependencies = new ThreadLocal<>();
 
     private Configuration config;
 
@@ -389,11 +402,17 @@ public class TemplateCache {
                 boolean lastModifiedNotChanged = lastModified == cachedTemplate.lastModified;
                 boolean sourceEquals = newLookupResultSource.equals(cachedTemplate.source);
                 if (lastModifiedNotChanged && sourceEquals) {
-                    if (debug) {
-                        LOG.debug(debugName + ": using cached since " + newLookupResultSource + " hasn't changed.");
+                    if (cachedTemplate.dependencies == null
+                            || areDependenciesUpToDate(tk, cachedTemplate.dependencies)) {
+                        if (debug) {
+                            LOG.debug(debugName + ": using cached since " + newLookupResultSource
+                                    + " hasn't changed.");
+                        }
+                        storeCached(tk, cachedTemplate);
+                        return (Template) cachedTemplate.templateOrException;
+                    } else if (debug) {
+                        LOG.debug("Updating source because an inlined included template has changed.");
                     }
-                    storeCached(tk, cachedTemplate);
-                    return (Template) cachedTemplate.templateOrException;
                 } else if (debug) {
                     if (!sourceEquals) {
                         LOG.debug("Updating source because: " + 
@@ -441,9 +460,12 @@ public class TemplateCache {
                     templateLoader, source,
                     name, newLookupResult.getTemplateSourceName(), locale, customLookupCondition,
                     encoding, parseAsFTL);
+            cachedTemplate.dependencies = parseAsFTL && config != null && config.getInlineLiteralIncludes()
+                    ? inlineLiteralIncludes(tk, template) : null;
             cachedTemplate.templateOrException = template;
             cachedTemplate.lastModified = lastModified;
             storeCached(tk, cachedTemplate);
+            generation.incrementAndGet();
             return template;
         } catch (RuntimeException e) {
             if (cachedTemplate != null) {
@@ -462,6 +484,110 @@ public class TemplateCache {
         }
     }
 
+    /**
+     * Resolves the literal {@code #include}-s of the template to templates at load time; see
+     * {@link Configuration#setInlineLiteralIncludes(boolean)}.
+     * 
+     * @return The templates that were inlined, or {@code null} if there were none.
+     */
+    private Dependency[] inlineLiteralIncludes(TemplateKey tk, Template template) {
+        Set<TemplateKey> keysWithDependenciesInProgress = enterDependencyProcessing(tk);
+        List<Dependency> prevCollectedDependencies = collectedDependencies.get();
+        List<Dependency> dependencies = new ArrayList<>();
+        collectedDependencies.set(dependencies);
+        try {
+            _CoreAPI.inlineLiteralIncludes(template, this);
+        } finally {
+            collectedDependencies.set(prevCollectedDependencies);
+            exitDependencyProcessing(tk, keysWithDependenciesInProgress);
+        }
+        return dependencies.isEmpty() ? null : dependencies.toArray(new Dependency[0]);
+    }
+
+    /**
+     * Gets a template to be inlined into the template whose includes are being inlined (by
+     * {@link #inlineLiteralIncludes(TemplateKey, Template)}) on the current thread, and records it as a dependency of
+     * that. Returns {@code null} if the template can't be inlined (because it's missing, or loading it fails, or it
+     * would be a circular inclusion), in which case it should be included the usual way on runtime.
+     */
+    Template getTemplateForInlining(String name, Locale locale, Object customLookupCondition, String encoding) {
+        List<Dependency> dependencies = collectedDependencies.get();
+        if (dependencies == null) {
+            throw new IllegalStateException("No template inlining is in progress");
+        }
+        
+        final TemplateKey tk;
+        try {
+            tk = new TemplateKey(
+                    templateNameFormat.normalizeRootBasedName(name), locale, customLookupCondition, encoding, true);
+        } catch (MalformedTemplateNameException e) {
+            return null;
+        }
+        Set<TemplateKey> keysWithDependenciesInProgress = this.keysWithDependenciesInProgress.get();
+        if (keysWithDependenciesInProgress != null && keysWithDependenciesInProgress.contains(tk)
+                || templateLoader == null) {
+            return null;
+        }
+        
+        final Template template;
+        try {
+            template = getTemplateInternal(tk.name, tk.locale, tk.customLookupCondition, tk.encoding, tk.parse);
+        } catch (IOException | RuntimeException e) {
+            // The error will be reported when the #include is executed.
+            return null;
+        }
+        if (template != null) {
+            dependencies.add(new Dependency(tk, template));
+        }
+        return template;
+    }
+
+    /**
+     * Checks if the inlined templates are still what we would get from the cache. 
+     */
+    private boolean areDependenciesUpToDate(TemplateKey tk, Dependency[] dependencies) {
+        Set<TemplateKey> keysWithDependenciesInProgress = enterDependencyProcessing(tk);
+        try {
+            for (Dependency dependency : dependencies) {
+                TemplateKey depTk = dependency.templateKey;
+                if (keysWithDependenciesInProgress.contains(depTk)) {
+                    // Circular inclusion; it's being checked already.
+                    continue;
+                }
+                final Template template;
+                try {
+                    template = getTemplateInternal(
+                            depTk.name, depTk.locale, depTk.customLookupCondition, depTk.encoding, depTk.parse);
+                } catch (IOException | RuntimeException e) {
+                    return false;
+                }
+                if (template != dependency.template) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            exitDependencyProcessing(tk, keysWithDependenciesInProgress);
+        }
+    }
+
+    private Set<TemplateKey> enterDependencyProcessing(TemplateKey tk) {
+        Set<TemplateKey> keysWithDependenciesInProgress = this.keysWithDependenciesInProgress.get();
+        if (keysWithDependenciesInProgress == null) {
+            keysWithDependenciesInProgress = new HashSet<>();
+            this.keysWithDependenciesInProgress.set(keysWithDependenciesInProgress);
+        }
+        keysWithDependenciesInProgress.add(tk);
+        return keysWithDependenciesInProgress;
+    }
+
+    private void exitDependencyProcessing(TemplateKey tk, Set<TemplateKey> keysWithDependenciesInProgress) {
+        keysWithDependenciesInProgress.remove(tk);
+        if (keysWithDependenciesInProgress.isEmpty()) {
+            this.keysWithDependenciesInProgress.remove();
+        }
+    }
+
     private static final Method INIT_CAUSE = getInitCauseMethod();
     
     private static final Method getInitCauseMethod() {
@@ -505,10 +631,14 @@ public class TemplateCache {
 
     private void storeNegativeLookup(TemplateKey tk, 
             CachedTemplate cachedTemplate, Exception e) {
+        boolean wasNegativeLookup = cachedTemplate.templateOrException == null && cachedTemplate.source == null;
         cachedTemplate.templateOrException = e;
         cachedTemplate.source = null;
         cachedTemplate.lastModified = 0L;
         storeCached(tk, cachedTemplate);
+        if (!wasNegativeLookup || e != null) {
+            generation.incrementAndGet();
+        }
     }
 
     private void storeCached(TemplateKey tk, CachedTemplate cachedTemplate) {
@@ -610,6 +740,49 @@ public class TemplateCache {
         synchronized (this) {
             this.updateDelay = delay;
         }
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Changes whenever a template in the cache might have been replaced or removed, or a setting that influences the
+     * lookup result was changed. This allows validating references to templates that were kept outside the cache
+     * cheaply.
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * The maximum time for which a template returned by {@link #getTemplate(String, Locale, Object, String, boolean)}
+     * can be reused without asking this cache again (as long as {@link #getGeneration()} doesn't change). It's 0 if the
+     * {@link CacheStorage} is a {@link NullCacheStorage}, as then the templates must be always reloaded.
+     */
+    long getTemplateReuseDelay() {
+        return storage instanceof NullCacheStorage ? 0 : getDelay();
+    }
+
+    /**
+     * Returns when this cache has last checked if the given template was modified, or {@link Long#MIN_VALUE} if the
+     * template isn't in the cache (anymore). Reusing the template is only valid until {@link #getTemplateReuseDelay()}
+     * has elapsed since then, as that's when this cache would check it again.
+     *
+     * @param template
+     *            A template returned by {@link #getTemplate(String, Locale, Object, String, boolean)}, called with
+     *            the same other parameters as this method
+     */
+    long getLastChecked(Template template, Locale locale, Object customLookupCondition, String encoding,
+            boolean parse) {
+        TemplateKey tk = new TemplateKey(template.getName(), locale, customLookupCondition, encoding, parse);
+        CachedTemplate cachedTemplate;
+        if (isStorageConcurrent) {
+            cachedTemplate = (CachedTemplate) storage.get(tk);
+        } else {
+            synchronized (storage) {
+                cachedTemplate = (CachedTemplate) storage.get(tk);
+            }
+        }
+        return cachedTemplate != null && cachedTemplate.templateOrException == template
+                ? cachedTemplate.lastChecked : Long.MIN_VALUE;
     }
 
     /**
@@ -649,6 +822,7 @@ public class TemplateCache {
                 ((StatefulTemplateLoader) templateLoader).resetState();
             }
         }
+        generation.incrementAndGet();
     }
 
     /**
@@ -695,6 +869,7 @@ public class TemplateCache {
                     storage.remove(tk);
                 }
             }
+            generation.incrementAndGet();
             if (debug) {
                 LOG.debug(debugName + " was removed from the cache, if it was there");
             }
@@ -884,6 +1059,11 @@ public class TemplateCache {
         Object source;
         long lastChecked;
         long lastModified;
+        /**
+         * The templates inlined into the template, or {@code null}. Not serialized, so the includer won't be reloaded
+         * when an included template changes if it comes from a cache storage that serializes entries.
+         */
+        transient Dependency[] dependencies;
         
         public CachedTemplate cloneCachedTemplate() {
             try {
@@ -894,6 +1074,19 @@ public class TemplateCache {
         }
     }
     
+    /**
+     * A template that was inlined into another template, and the key with which it was looked up.
+     */
+    private static final class Dependency {
+        private final TemplateKey templateKey;
+        private final Template template;
+
+        Dependency(TemplateKey templateKey, Template template) {
+            this.templateKey = templateKey;
+            this.template = template;
+        }
+    }
+    
     private class TemplateCacheTemplateLookupContext extends TemplateLookupContext {
 
         TemplateCacheTemplateLookupContext(String templateName, Locale templateLocale, Object customLookupCondition) {
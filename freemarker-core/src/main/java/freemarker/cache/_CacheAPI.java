@@ -19,7 +19,10 @@
 
 package freemarker.cache;
 
+import java.util.Locale;
+
 import freemarker.template.MalformedTemplateNameException;
+import freemarker.template.Template;
 
 /**
  * For internal use only; don't depend on this, there's no backward compatibility guarantee at all!
@@ -46,5 +49,23 @@ public final class _CacheAPI {
             throws MalformedTemplateNameException {
         return templateNameFormat.rootBasedNameToAbsoluteName(rootBasedName);
     }
+
+    public static long getGeneration(TemplateCache templateCache) {
+        return templateCache.getGeneration();
+    }
+
+    public static long getTemplateReuseDelay(TemplateCache templateCache) {
+        return templateCache.getTemplateReuseDelay();
+    }
+
+    public static long getLastChecked(TemplateCache templateCache, Template template,
+            Locale locale, Object customLookupCondition, String encoding, boolean parse) {
+        return templateCache.getLastChecked(template, locale, customLookupCondition, encoding, parse);
+    }
+
+    public static Template getTemplateForInlining(TemplateCache templateCache,
+            String name, Locale locale, Object customLookupCondition, String encoding) {
+        return templateCache.getTemplateForInlining(name, locale, customLookupCondition, encoding);
+    }
     
 }
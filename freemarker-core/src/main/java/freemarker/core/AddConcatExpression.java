@@ -21,8 +21,10 @@ package freemarker.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import freemarker.template.SimpleNumber;
@@ -48,6 +50,20 @@ import freemarker.template._ObjectWrappers;
  */
 final class AddConcatExpression extends Expression {
 
+    /**
+     * When concatenating sequences or hashes results in a {@link ConcatenatedSequence} or {@link ConcatenatedHashEx}
+     * that's nested deeper than this (typically because of something like {@code <#assign xs = xs + [x]>} in a
+     * loop), it's replaced with a {@link FlattenedSequence} or {@link FlattenedHashEx}, as otherwise reading an item
+     * would need to walk the whole chain.
+     */
+    static final int MAX_UNFLATTENED_DEPTH = 8;
+
+    /**
+     * When the left hand operand is already a {@link FlattenedSequence} or {@link FlattenedHashEx}, a right hand
+     * operand with at most this many items is copied into it, instead of creating a new level of nesting.
+     */
+    static final int MAX_COPIED_OPERAND_SIZE = 64;
+
     private final Expression left;
     private final Expression right;
 
@@ -77,7 +93,7 @@ final class AddConcatExpression extends Expression {
             Number second = EvalUtil.modelToNumber((TemplateNumberModel) rightModel, rightExp);
             return _evalOnNumbers(env, parent, first, second);
         } else if (leftModel instanceof TemplateSequenceModel && rightModel instanceof TemplateSequenceModel) {
-            return new ConcatenatedSequence((TemplateSequenceModel) leftModel, (TemplateSequenceModel) rightModel);
+            return concatenateSequences((TemplateSequenceModel) leftModel, (TemplateSequenceModel) rightModel);
         } else {
             boolean hashConcatPossible
                     = leftModel instanceof TemplateHashModel && rightModel instanceof TemplateHashModel;
@@ -85,9 +101,12 @@ final class AddConcatExpression extends Expression {
                 // We try string addition first. If hash addition is possible, then instead of throwing exception
                 // we return null and do hash addition instead. (We can't simply give hash addition a priority, like
                 // with sequence addition above, as FTL strings are often also FTL hashes.)
-                Object leftOMOrStr = EvalUtil.coerceModelToStringOrMarkup(
-                        leftModel, leftExp, /* returnNullOnNonCoercableType = */ hashConcatPossible, null,
-                        env);
+                Object leftOMOrStr = leftModel instanceof ConcatenatedString
+                        // Avoid converting to String, as then we couldn't append to it in place:
+                        ? ((ConcatenatedString) leftModel).value
+                        : EvalUtil.coerceModelToStringOrMarkup(
+                                leftModel, leftExp, /* returnNullOnNonCoercableType = */ hashConcatPossible, null,
+                                env);
                 if (leftOMOrStr == null) {
                     return _eval_concatenateHashes(leftModel, rightModel);
                 }
@@ -100,13 +119,17 @@ final class AddConcatExpression extends Expression {
                     return _eval_concatenateHashes(leftModel, rightModel);
                 }
 
-                if (leftOMOrStr instanceof String) {
+                if (leftOMOrStr instanceof String || leftOMOrStr instanceof GrowableString) {
                     if (rightOMOrStr instanceof String) {
-                        return new SimpleScalar(((String) leftOMOrStr).concat((String) rightOMOrStr));
+                        Object result = GrowableString.concat(leftOMOrStr, (String) rightOMOrStr);
+                        return result instanceof GrowableString
+                                ? new ConcatenatedString((GrowableString) result)
+                                : new SimpleScalar((String) result);
                     } else { // rightOMOrStr instanceof TemplateMarkupOutputModel
                         TemplateMarkupOutputModel<?> rightMO = (TemplateMarkupOutputModel<?>) rightOMOrStr; 
                         return EvalUtil.concatMarkupOutputs(parent,
-                                rightMO.getOutputFormat().fromPlainTextByEscaping((String) leftOMOrStr),
+                                rightMO.getOutputFormat().fromPlainTextByEscaping(
+                                        GrowableString.asString(leftOMOrStr)),
                                 rightMO);
                     }                    
                 } else { // leftOMOrStr instanceof TemplateMarkupOutputModel 
@@ -142,8 +165,12 @@ final class AddConcatExpression extends Expression {
                 return rightModelEx;
             } else if (rightModelEx.size() == 0) {
                 return leftModelEx;
+            } else if (leftModelEx instanceof FlattenedHashEx
+                    && rightModelEx.size() <= MAX_COPIED_OPERAND_SIZE) {
+                return ((FlattenedHashEx) leftModelEx).append(rightModelEx);
             } else {
-                return new ConcatenatedHashEx(leftModelEx, rightModelEx);
+                ConcatenatedHashEx result = new ConcatenatedHashEx(leftModelEx, rightModelEx);
+                return result.depth > MAX_UNFLATTENED_DEPTH ? FlattenedHashEx.from(result) : result;
             }
         } else {
             return new ConcatenatedHash((TemplateHashModel) leftModel,
@@ -151,6 +178,18 @@ final class AddConcatExpression extends Expression {
         }
     }
 
+    private static TemplateSequenceModel concatenateSequences(TemplateSequenceModel left, TemplateSequenceModel right)
+            throws TemplateModelException {
+        if (left instanceof FlattenedSequence) {
+            int rightSize = right.size();
+            if (rightSize <= MAX_COPIED_OPERAND_SIZE) {
+                return ((FlattenedSequence) left).append(right);
+            }
+        }
+        ConcatenatedSequence result = new ConcatenatedSequence(left, right);
+        return result.depth > MAX_UNFLATTENED_DEPTH ? FlattenedSequence.from(result) : result;
+    }
+
     static TemplateModel _evalOnNumbers(Environment env, TemplateObject parent, Number first, Number second)
             throws TemplateException {
         ArithmeticEngine ae = EvalUtil.getArithmeticEngine(env, parent);
@@ -195,16 +234,44 @@ final class AddConcatExpression extends Expression {
         return ParameterRole.forBinaryOperatorOperand(idx);
     }
 
+    /**
+     * The result of string concatenation, when it's long enough to worth avoiding copying the whole string when
+     * concatenating it further; see {@link GrowableString}.
+     */
+    // Non-private for unit testing
+    static final class ConcatenatedString implements TemplateScalarModel {
+        private final GrowableString value;
+
+        ConcatenatedString(GrowableString value) {
+            this.value = value;
+        }
+
+        @Override
+        public String getAsString() {
+            return value.toString();
+        }
+
+        @Override
+        public String toString() {
+            return value.toString();
+        }
+    }
+
     // Non-private for unit testing
     static final class ConcatenatedSequence
     implements
         TemplateSequenceModel, TemplateCollectionModelEx {
         private final TemplateSequenceModel left;
         private final TemplateSequenceModel right;
+        /** The number of {@link ConcatenatedSequence}-s on the longest path down to a non-concatenated sequence. */
+        final int depth;
 
         ConcatenatedSequence(TemplateSequenceModel left, TemplateSequenceModel right) {
             this.left = left;
             this.right = right;
+            this.depth = 1 + Math.max(
+                    left instanceof ConcatenatedSequence ? ((ConcatenatedSequence) left).depth : 0,
+                    right instanceof ConcatenatedSequence ? ((ConcatenatedSequence) right).depth : 0);
         }
 
         @Override
@@ -463,10 +530,15 @@ final class AddConcatExpression extends Expression {
     implements TemplateHashModel {
         protected final TemplateHashModel left;
         protected final TemplateHashModel right;
+        /** The number of {@link ConcatenatedHash}-s on the longest path down to a non-concatenated hash. */
+        final int depth;
 
         ConcatenatedHash(TemplateHashModel left, TemplateHashModel right) {
             this.left = left;
             this.right = right;
+            this.depth = 1 + Math.max(
+                    left instanceof ConcatenatedHash ? ((ConcatenatedHash) left).depth : 0,
+                    right instanceof ConcatenatedHash ? ((ConcatenatedHash) right).depth : 0);
         }
         
         @Override
@@ -551,5 +623,292 @@ final class AddConcatExpression extends Expression {
             }
         }
     }
-    
+
+    /**
+     * Replaces deeply nested {@link ConcatenatedSequence}-s; holds the items in an array, so reading an item is
+     * O(1). The items are read from the concatenated sequences when this object is created, so unlike
+     * {@link ConcatenatedSequence}, this won't reflect later changes in them. Instances created by appending to each
+     * other share the same {@link ItemsBuffer}; appending to the instance that ends where the buffer currently ends
+     * just adds the items to the buffer, so repeatedly appending small sequences is amortized O(1). Otherwise (like
+     * when appending twice to the same instance) the items are copied into a new buffer.
+     */
+    // Non-private for unit testing
+    static final class FlattenedSequence implements TemplateSequenceModel, TemplateCollectionModelEx {
+        private final ItemsBuffer buffer;
+        /** The items at index less than {@link #size} never change in this array. */
+        private final TemplateModel[] items;
+        private final int size;
+
+        private FlattenedSequence(ItemsBuffer buffer, TemplateModel[] items, int size) {
+            this.buffer = buffer;
+            this.items = items;
+            this.size = size;
+        }
+
+        static FlattenedSequence from(TemplateSequenceModel seq) throws TemplateModelException {
+            TemplateModel[] items = readItems(seq);
+            TemplateModel[] bufferItems = Arrays.copyOf(items, Math.max(items.length * 2, 8));
+            return new FlattenedSequence(new ItemsBuffer(bufferItems, items.length), bufferItems, items.length);
+        }
+
+        FlattenedSequence append(TemplateSequenceModel right) throws TemplateModelException {
+            // Must not call other models while holding the lock, so we read the items first.
+            TemplateModel[] rightItems = readItems(right);
+            if (rightItems.length == 0) {
+                return this;
+            }
+            int newSize = size + rightItems.length;
+            synchronized (buffer) {
+                if (buffer.size == size) { // Nothing was appended to this yet
+                    TemplateModel[] bufferItems = buffer.items; // Same as this.items
+                    if (bufferItems.length < newSize) {
+                        bufferItems = Arrays.copyOf(bufferItems, Math.max(bufferItems.length * 2, newSize));
+                        buffer.items = bufferItems;
+                    }
+                    System.arraycopy(rightItems, 0, bufferItems, size, rightItems.length);
+                    buffer.size = newSize;
+                    return new FlattenedSequence(buffer, bufferItems, newSize);
+                }
+            }
+            // Not simply Arrays.copyOf(items, ...), as after the first size items there are the items of other
+            // instances.
+            TemplateModel[] bufferItems = new TemplateModel[newSize * 2];
+            System.arraycopy(items, 0, bufferItems, 0, size);
+            System.arraycopy(rightItems, 0, bufferItems, size, rightItems.length);
+            return new FlattenedSequence(new ItemsBuffer(bufferItems, newSize), bufferItems, newSize);
+        }
+
+        /** Reads the items the same way as {@link ConcatenatedSequenceIterator} would. */
+        private static TemplateModel[] readItems(TemplateSequenceModel seq) throws TemplateModelException {
+            if (seq instanceof FlattenedSequence) {
+                FlattenedSequence flatSeq = (FlattenedSequence) seq;
+                return Arrays.copyOf(flatSeq.items, flatSeq.size);
+            }
+            if (seq instanceof TemplateCollectionModel) {
+                List<TemplateModel> items = new ArrayList<>();
+                for (TemplateModelIterator it = ((TemplateCollectionModel) seq).iterator(); it.hasNext(); ) {
+                    items.add(it.next());
+                }
+                return items.toArray(new TemplateModel[0]);
+            }
+            int size = seq.size();
+            TemplateModel[] items = new TemplateModel[size];
+            for (int i = 0; i < size; i++) {
+                items[i] = seq.get(i);
+            }
+            return items;
+        }
+
+        @Override
+        public TemplateModel get(int index) {
+            return index >= 0 && index < size ? items[index] : null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public TemplateModelIterator iterator() {
+            return new TemplateModelIterator() {
+                private int nextIndex;
+
+                @Override
+                public TemplateModel next() throws TemplateModelException {
+                    if (nextIndex >= size) {
+                        throw new TemplateModelException("The collection has no more elements.");
+                    }
+                    return items[nextIndex++];
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return nextIndex < size;
+                }
+            };
+        }
+
+        /** The storage shared by {@link FlattenedSequence}-s; guarded by itself. */
+        private static final class ItemsBuffer {
+            private TemplateModel[] items;
+            /** The size of the {@link FlattenedSequence} that was created last with this buffer. */
+            private int size;
+
+            ItemsBuffer(TemplateModel[] items, int size) {
+                this.items = items;
+                this.size = size;
+            }
+        }
+    }
+
+    /**
+     * Replaces deeply nested {@link ConcatenatedHashEx}-s, so that {@link #get(String)} doesn't have to walk the
+     * whole chain. Like with {@link FlattenedSequence}, the content is read from the concatenated hashes when this
+     * object is created, and instances created by appending to each other share the same {@link Entries}. As
+     * appending can replace the value of existing keys, while earlier instances must still see the old value, the
+     * shared storage records the values with the "version" (the number of appends) where they were added, and each
+     * instance only sees the values up to its own version.
+     */
+    private static final class FlattenedHashEx implements TemplateHashModelEx {
+        private final Entries entries;
+        private final int version;
+        /** The number of keys visible for this instance; the prefix of {@link Entries#keys}. */
+        private final int keyCount;
+        private CollectionAndSequence keys;
+        private CollectionAndSequence values;
+
+        private FlattenedHashEx(Entries entries, int version, int keyCount) {
+            this.entries = entries;
+            this.version = version;
+            this.keyCount = keyCount;
+        }
+
+        static FlattenedHashEx from(TemplateHashModelEx hash) throws TemplateModelException {
+            Entries entries = new Entries();
+            entries.add(readEntries(hash), 0);
+            return new FlattenedHashEx(entries, 0, entries.keys.size());
+        }
+
+        FlattenedHashEx append(TemplateHashModelEx right) throws TemplateModelException {
+            // Must not call other models while holding the lock, so we read the entries first.
+            List<Object> rightEntries = readEntries(right);
+            synchronized (entries) {
+                if (entries.version == version) { // Nothing was appended to this yet
+                    int newVersion = version + 1;
+                    entries.add(rightEntries, newVersion);
+                    return new FlattenedHashEx(entries, newVersion, entries.keys.size());
+                }
+            }
+            Entries newEntries = new Entries();
+            newEntries.add(readEntries(this), 0);
+            newEntries.add(rightEntries, 1);
+            return new FlattenedHashEx(newEntries, 1, newEntries.keys.size());
+        }
+
+        /**
+         * @return Key ({@link TemplateScalarModel}) and value ({@link TemplateModel}, maybe {@code null}) pairs, in
+         *         key iteration order.
+         */
+        private static List<Object> readEntries(TemplateHashModelEx hash) throws TemplateModelException {
+            List<Object> result = new ArrayList<>();
+            for (TemplateModelIterator it = hash.keys().iterator(); it.hasNext(); ) {
+                TemplateScalarModel key = (TemplateScalarModel) it.next();
+                result.add(key);
+                result.add(hash.get(key.getAsString()));
+            }
+            return result;
+        }
+
+        @Override
+        public TemplateModel get(String key) {
+            synchronized (entries) {
+                ValueHistory valueHistory = entries.valueHistories.get(key);
+                return valueHistory != null ? valueHistory.get(version) : null;
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return keyCount == 0;
+        }
+
+        @Override
+        public int size() {
+            return keyCount;
+        }
+
+        @Override
+        public TemplateCollectionModel keys() {
+            if (keys == null) {
+                SimpleSequence keySeq = new SimpleSequence(keyCount, _ObjectWrappers.SAFE_OBJECT_WRAPPER);
+                synchronized (entries) {
+                    for (int i = 0; i < keyCount; i++) {
+                        keySeq.add(entries.keys.get(i));
+                    }
+                }
+                keys = new CollectionAndSequence(keySeq);
+            }
+            return keys;
+        }
+
+        @Override
+        public TemplateCollectionModel values() throws TemplateModelException {
+            if (values == null) {
+                CollectionAndSequence keys = (CollectionAndSequence) keys();
+                SimpleSequence valueSeq = new SimpleSequence(keyCount, _ObjectWrappers.SAFE_OBJECT_WRAPPER);
+                for (int i = 0; i < keyCount; i++) {
+                    valueSeq.add(get(((TemplateScalarModel) keys.get(i)).getAsString()));
+                }
+                values = new CollectionAndSequence(valueSeq);
+            }
+            return values;
+        }
+
+        /** The storage shared by {@link FlattenedHashEx}-s; guarded by itself. */
+        private static final class Entries {
+            /** The keys in the order of first occurrence; consistent with {@link ConcatenatedHashEx#keys()}. */
+            private final List<TemplateScalarModel> keys = new ArrayList<>();
+            private final Map<String, ValueHistory> valueHistories = new HashMap<>();
+            /** The version of the {@link FlattenedHashEx} that was created last with this storage. */
+            private int version;
+
+            void add(List<Object> keyValuePairs, int version) throws TemplateModelException {
+                for (int i = 0; i < keyValuePairs.size(); i += 2) {
+                    TemplateScalarModel key = (TemplateScalarModel) keyValuePairs.get(i);
+                    String keyStr = key.getAsString();
+                    ValueHistory valueHistory = valueHistories.get(keyStr);
+                    if (valueHistory == null) {
+                        valueHistory = new ValueHistory();
+                        valueHistories.put(keyStr, valueHistory);
+                        keys.add(key);
+                    }
+                    TemplateModel value = (TemplateModel) keyValuePairs.get(i + 1);
+                    // Like with ConcatenatedHash, if the right side has no value, the left side value remains visible.
+                    if (value != null) {
+                        valueHistory.add(version, value);
+                    }
+                }
+                this.version = version;
+            }
+        }
+
+        /** The values of a key, ordered by the version where they were added. */
+        private static final class ValueHistory {
+            private int[] versions = new int[1];
+            private TemplateModel[] values = new TemplateModel[1];
+            private int size;
+
+            void add(int version, TemplateModel value) {
+                if (size != 0 && versions[size - 1] == version) { // Same key for multiple times
+                    values[size - 1] = value;
+                    return;
+                }
+                if (size == versions.length) {
+                    versions = Arrays.copyOf(versions, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                versions[size] = version;
+                values[size] = value;
+                size++;
+            }
+
+            /** Returns the latest value added at or before the given version. */
+            TemplateModel get(int version) {
+                if (size != 0 && versions[size - 1] <= version) { // Typical case
+                    return values[size - 1];
+                }
+                int idx = Arrays.binarySearch(versions, 0, size, version);
+                if (idx < 0) {
+                    idx = -idx - 2; // The index of the last version that's less than the searched one
+                }
+                return idx >= 0 ? values[idx] : null;
+            }
+        }
+    }
 }
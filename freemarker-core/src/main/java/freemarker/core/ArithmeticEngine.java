@@ -153,6 +153,14 @@ public abstract class ArithmeticEngine {
                         return ((Short) first).compareTo((Short) second);
                     }
                 }
+                // Integers of different types (including BigDecimal-s that store an integer, which is typical for
+                // numerical literals) can be compared as long-s without changing the result:
+                if (isLongCompatible(first) && isLongCompatible(second)) {
+                    long firstL = first.longValue();
+                    long secondL = second.longValue();
+                    return firstL < secondL ? -1 : (firstL == secondL ? 0 : 1);
+                }
+                
                 // We are going to compare values of two different types.
                 
                 // Handle infinity before we try conversion to BigDecimal, as that BigDecimal can't represent that:
@@ -207,6 +215,14 @@ public abstract class ArithmeticEngine {
     
         @Override
         public Number add(Number first, Number second) {
+            if (isLongCompatible(first) && isLongCompatible(second)) {
+                long n1 = first.longValue();
+                long n2 = second.longValue();
+                long n = n1 + n2;
+                if (!((n ^ n1) < 0 && (n ^ n2) < 0)) { // overflow check
+                    return BigDecimal.valueOf(n);
+                }
+            }
             BigDecimal left = toBigDecimal(first);
             BigDecimal right = toBigDecimal(second);
             return left.add(right);
@@ -214,6 +230,14 @@ public abstract class ArithmeticEngine {
     
         @Override
         public Number subtract(Number first, Number second) {
+            if (isLongCompatible(first) && isLongCompatible(second)) {
+                long n1 = first.longValue();
+                long n2 = second.longValue();
+                long n = n1 - n2;
+                if (!((n ^ n1) < 0 && (n ^ ~n2) < 0)) { // overflow check
+                    return BigDecimal.valueOf(n);
+                }
+            }
             BigDecimal left = toBigDecimal(first);
             BigDecimal right = toBigDecimal(second);
             return left.subtract(right);
@@ -221,6 +245,14 @@ public abstract class ArithmeticEngine {
     
         @Override
         public Number multiply(Number first, Number second) {
+            if (isLongCompatible(first) && isLongCompatible(second)) {
+                long n1 = first.longValue();
+                long n2 = second.longValue();
+                // The product of two values in the int range always fits into a long
+                if (n1 == (int) n1 && n2 == (int) n2) {
+                    return BigDecimal.valueOf(n1 * n2);
+                }
+            }
             BigDecimal left = toBigDecimal(first);
             BigDecimal right = toBigDecimal(second);
             BigDecimal result = left.multiply(right);
@@ -256,6 +288,26 @@ public abstract class ArithmeticEngine {
             scale = Math.max(minScale, scale);
             return left.divide(right, scale, roundingPolicy);
         }
+
+        /**
+         * Tells if the number is an integer whose {@link Number#longValue()} is exact, and for which converting to
+         * {@link BigDecimal} would give a {@link BigDecimal} with 0 scale. For such numbers the result of
+         * {@link #add(Number, Number)}, {@link #subtract(Number, Number)}, {@link #multiply(Number, Number)}, and
+         * {@link #compareNumbers(Number, Number)} can be calculated with {@code long} arithmetic (as far as it doesn't
+         * overflow), and still be equal to what the {@link BigDecimal} arithmetic would give, including the scale of
+         * the result.
+         */
+        private static boolean isLongCompatible(Number num) {
+            if (num instanceof Integer || num instanceof Long || num instanceof Short || num instanceof Byte) {
+                return true;
+            }
+            if (num != null && num.getClass() == BigDecimal.class) {
+                BigDecimal bd = (BigDecimal) num;
+                // precision() is cheap if the unscaled value fits into a long, and is cached otherwise.
+                return bd.scale() == 0 && bd.precision() < 19;
+            }
+            return false;
+        }
     }
 
     /**
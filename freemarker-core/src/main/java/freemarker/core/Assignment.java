@@ -100,6 +100,33 @@ final class Assignment extends TemplateElement {
         this.namespaceExp =  namespaceExp;
     }
 
+    /**
+     * If this is a plain {@code #assign} of a string, number, or boolean literal, hence it has no effect other than
+     * setting a variable of the current namespace to a value that doesn't depend on the runtime environment, returns
+     * that value, otherwise {@code null}.
+     */
+    TemplateModel getConstantNamespaceVariableValue() throws TemplateException {
+        if (scope != NAMESPACE || namespaceExp != null || operatorType != OPERATOR_TYPE_EQUALS
+                || !(valueExp instanceof StringLiteral && valueExp.isLiteral()
+                        || valueExp instanceof NumberLiteral || valueExp instanceof BooleanLiteral)) {
+            return null;
+        }
+        // Evaluation of literals must not need the Environment:
+        return valueExp.eval(null);
+    }
+
+    String getVariableName() {
+        return variableName;
+    }
+
+    int getScope() {
+        return scope;
+    }
+
+    Expression getNamespaceExp() {
+        return namespaceExp;
+    }
+
     @Override
     TemplateElement[] accept(Environment env) throws TemplateException {
         final Environment.Namespace namespace;
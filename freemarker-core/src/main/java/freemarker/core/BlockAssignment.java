@@ -87,6 +87,18 @@ final class BlockAssignment extends TemplateElement {
         return markupOutputFormat == null ? new SimpleScalar(s) : markupOutputFormat.fromMarkup(s);
     }
 
+    String getVariableName() {
+        return varName;
+    }
+
+    int getScope() {
+        return scope;
+    }
+
+    Expression getNamespaceExp() {
+        return namespaceExp;
+    }
+
     @Override
     protected String dump(boolean canonical) {
         StringBuilder sb = new StringBuilder();
@@ -19,6 +19,8 @@
 
 package freemarker.core;
 
+import java.util.List;
+
 abstract class BuiltInWithDirectCallOptimization extends SpecialBuiltIn {
 
     /**
@@ -26,6 +28,17 @@ abstract class BuiltInWithDirectCallOptimization extends SpecialBuiltIn {
      * for optimizations that only work correctly if the method returned by the built-in is a called immediately (as
      * opposed to being stored in a variable and then called at an arbitrary later point in time).
      */
-    protected abstract void setDirectlyCalled();
+    protected void setDirectlyCalled() {
+        // Does nothing by default
+    }
+
+    /**
+     * Called after {@link #setDirectlyCalled()}, with the argument expressions of the call. This can be utilized for
+     * processing the arguments that are literals on parsing time, since the method returned by the built-in will be
+     * only called with these arguments.
+     */
+    protected void bindToDirectCallArguments(List<Expression> arguments) {
+        // Does nothing by default
+    }
 
 }
@@ -36,7 +36,7 @@ class BuiltInsForLoopVariables {
 
         @Override
         TemplateModel calculateResult(IterationContext iterCtx, Environment env) throws TemplateException {
-            return new SimpleNumber(iterCtx.getIndex());
+            return SimpleNumber.valueOf(iterCtx.getIndex());
         }
         
     }
@@ -45,7 +45,7 @@ class BuiltInsForLoopVariables {
 
         @Override
         TemplateModel calculateResult(IterationContext iterCtx, Environment env) throws TemplateException {
-            return new SimpleNumber(iterCtx.getIndex() + 1);
+            return SimpleNumber.valueOf(iterCtx.getIndex() + 1);
         }
         
     }
@@ -497,6 +497,10 @@ class BuiltInsForMultipleTypes {
                     iterator.next();
                 }
                 size = counter;
+            } else if (countingLimit == 1 && model instanceof TemplateCollectionModel) {
+                // Only checks if there's a first element, but doesn't fetch it, so this works even if the collection
+                // can only be listed once (like if it wraps an Iterator). 
+                size = ((TemplateCollectionModel) model).iterator().hasNext() ? 1 : 0;
             } else {
                 throw new UnexpectedTypeException(
                         target, model,
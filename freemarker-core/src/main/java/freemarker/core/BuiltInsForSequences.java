@@ -20,14 +20,18 @@
 package freemarker.core;
 
 import java.io.Serializable;
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import freemarker.ext.beans.CollectionModel;
+import freemarker.ext.util.WrapperTemplateModel;
 import freemarker.template.SimpleNumber;
 import freemarker.template.SimpleScalar;
 import freemarker.template.SimpleSequence;
@@ -36,6 +40,7 @@ import freemarker.template.TemplateCollectionModel;
 import freemarker.template.TemplateCollectionModelEx;
 import freemarker.template.TemplateDateModel;
 import freemarker.template.TemplateException;
+import freemarker.template.ObjectWrapper;
 import freemarker.template.TemplateHashModel;
 import freemarker.template.TemplateMethodModelEx;
 import freemarker.template.TemplateModel;
@@ -45,6 +50,7 @@ import freemarker.template.TemplateModelListSequence;
 import freemarker.template.TemplateNumberModel;
 import freemarker.template.TemplateScalarModel;
 import freemarker.template.TemplateSequenceModel;
+import freemarker.template.WrappingTemplateModel;
 import freemarker.template._ObjectWrappers;
 import freemarker.template.utility.Constants;
 import freemarker.template.utility.StringUtil;
@@ -54,14 +60,17 @@ import freemarker.template.utility.StringUtil;
  */
 class BuiltInsForSequences {
     
-    static class chunkBI extends BuiltInForSequence {
+    static class chunkBI extends BuiltIn {
 
         private class BIMethod implements TemplateMethodModelEx {
             
+            /** Exactly one of {@link #tsm} and {@link #tcm} is non-{@code null}. */
             private final TemplateSequenceModel tsm;
+            private final TemplateCollectionModel tcm;
 
-            private BIMethod(TemplateSequenceModel tsm) {
+            private BIMethod(TemplateSequenceModel tsm, TemplateCollectionModel tcm) {
                 this.tsm = tsm;
+                this.tcm = tcm;
             }
 
             @Override
@@ -72,10 +81,10 @@ class BuiltInsForSequences {
                     throw new _TemplateModelException("The 1st argument to ?", key, " (...) must be at least 1.");
                 }
                 
-                return new ChunkedSequence(
-                        tsm,
-                        chunkSize,
-                        args.size() > 1 ? (TemplateModel) args.get(1) : null);
+                TemplateModel fillerItem = args.size() > 1 ? (TemplateModel) args.get(1) : null;
+                return tsm != null
+                        ? new ChunkedSequence(tsm, chunkSize, fillerItem)
+                        : new ChunkedCollection(tcm, chunkSize, fillerItem);
             }
         }
 
@@ -138,10 +147,71 @@ class BuiltInsForSequences {
             }
             
         }
-        
+
+        /**
+         * Chunks a {@link TemplateCollectionModel} in a single pass, without knowing its size in advance, so it works
+         * with collections that can only be listed once (like one that wraps an {@link java.util.Iterator}). Only the
+         * current chunk is held in memory.
+         */
+        private static class ChunkedCollection implements TemplateCollectionModel {
+
+            private final TemplateCollectionModel wrappedCollection;
+
+            private final int chunkSize;
+
+            private final TemplateModel fillerItem;
+
+            private ChunkedCollection(
+                    TemplateCollectionModel wrappedCollection, int chunkSize, TemplateModel fillerItem) {
+                this.wrappedCollection = wrappedCollection;
+                this.chunkSize = chunkSize;
+                this.fillerItem = fillerItem;
+            }
+
+            @Override
+            public TemplateModelIterator iterator() throws TemplateModelException {
+                final TemplateModelIterator wrappedIterator = wrappedCollection.iterator();
+                return new TemplateModelIterator() {
+
+                    @Override
+                    public TemplateModel next() throws TemplateModelException {
+                        if (!wrappedIterator.hasNext()) {
+                            throw new TemplateModelException("The collection has no more items.");
+                        }
+                        
+                        List<TemplateModel> chunk = new ArrayList<>(chunkSize);
+                        do {
+                            chunk.add(wrappedIterator.next());
+                        } while (chunk.size() < chunkSize && wrappedIterator.hasNext());
+                        if (fillerItem != null) {
+                            while (chunk.size() < chunkSize) {
+                                chunk.add(fillerItem);
+                            }
+                        }
+                        return new TemplateModelListSequence(chunk);
+                    }
+
+                    @Override
+                    public boolean hasNext() throws TemplateModelException {
+                        return wrappedIterator.hasNext();
+                    }
+
+                };
+            }
+
+        }
+
         @Override
-        TemplateModel calculateResult(TemplateSequenceModel tsm) throws TemplateModelException {
-            return new BIMethod(tsm);
+        TemplateModel _eval(Environment env) throws TemplateException {
+            TemplateModel model = target.eval(env);
+            // Like for ?first, we prefer TemplateSequenceModel for backward compatibility.
+            if (model instanceof TemplateSequenceModel && !isBuggySeqButGoodCollection(model)) {
+                return new BIMethod((TemplateSequenceModel) model, null);
+            } else if (model instanceof TemplateCollectionModel) {
+                return new BIMethod(null, (TemplateCollectionModel) model);
+            } else {
+                throw new NonSequenceOrCollectionException(target, model, env);
+            }
         }
         
     }
@@ -353,6 +423,13 @@ class BuiltInsForSequences {
                 checkMethodArgCount(args, 1);
                 TemplateModel arg = (TemplateModel) args.get(0);
                 int size = m_seq.size();
+                SequenceIndex index = SequenceIndex.get(m_seq, size, m_env);
+                if (index != null) {
+                    int foundAtIdx = index.indexOf(arg, 0);
+                    if (foundAtIdx != SequenceIndex.UNKNOWN) {
+                        return foundAtIdx != -1 ? TemplateBooleanModel.TRUE : TemplateBooleanModel.FALSE;
+                    }
+                }
                 for (int i = 0; i < size; i++) {
                     if (modelsEqual(i, m_seq.get(i), arg, m_env))
                         return TemplateBooleanModel.TRUE;
@@ -518,6 +595,15 @@ class BuiltInsForSequences {
             private int findInSeq(
                     TemplateModel target, int scanStartIndex, int seqSize)
                     throws TemplateModelException {
+                SequenceIndex index = SequenceIndex.get(m_seq, seqSize, m_env);
+                if (index != null) {
+                    int foundAtIdx = findFirst
+                            ? index.indexOf(target, scanStartIndex)
+                            : index.lastIndexOf(target, scanStartIndex);
+                    if (foundAtIdx != SequenceIndex.UNKNOWN) {
+                        return foundAtIdx;
+                    }
+                }
                 if (findFirst) {
                     for (int i = scanStartIndex; i < seqSize; i++) {
                         if (modelsEqual(i, m_seq.get(i), target, m_env)) return i;
@@ -614,6 +700,13 @@ class BuiltInsForSequences {
                 }
             }
         }
+        private static class CollationKeyKVPComparator implements Comparator<KVP>, Serializable {
+
+            @Override
+            public int compare(KVP arg0, KVP arg1) {
+                return ((CollationKey) arg0.key).compareTo((CollationKey) arg1.key);
+            }
+        }
         private static class DateKVPComparator implements Comparator, Serializable {
 
             @Override
@@ -704,7 +797,30 @@ class BuiltInsForSequences {
                 throws TemplateModelException {
             int ln = seq.size();
             if (ln == 0) return seq;
-            
+
+            Environment env = Environment.getCurrentEnvironment();
+            if (ln < MEMOIZATION_MIN_SIZE || env == null) {
+                return sort(seq, ln, keyNames);
+            }
+
+            SortResultCacheKey cacheKey = new SortResultCacheKey(seq, ln, keyNames, env);
+            SortResultCache cache = (SortResultCache) env.getCustomState(SORT_RESULT_CACHE_CUSTOM_STATE_KEY);
+            if (cache == null) {
+                cache = new SortResultCache();
+                env.setCustomState(SORT_RESULT_CACHE_CUSTOM_STATE_KEY, cache);
+            } else {
+                TemplateSequenceModel result = cache.get(cacheKey);
+                if (result != null) {
+                    return result;
+                }
+            }
+            TemplateSequenceModel result = sort(seq, ln, keyNames);
+            cache.put(cacheKey, result);
+            return result;
+        }
+
+        private static TemplateSequenceModel sort(TemplateSequenceModel seq, int ln, String[] keyNames)
+                throws TemplateModelException {
             ArrayList res = new ArrayList(ln);
 
             int keyNamesLn = keyNames == null ? 0 : keyNames.length;
@@ -823,8 +939,25 @@ class BuiltInsForSequences {
             }
 
             // Sort the List[KVP]:
+            Object[] kvps = res.toArray();
             try {
-                Collections.sort(res, keyComparator);
+                // Number keys aren't sorted in parallel, as the comparator calls ArithmeticEngine.compareNumbers,
+                // which can be a custom implementation that relies on Environment.getCurrentEnvironment(), and that's
+                // null in the ForkJoinPool threads.
+                if (ln < PARALLEL_SORT_MIN_SIZE || keyType != KEY_TYPE_STRING && keyType != KEY_TYPE_DATE) {
+                    Arrays.sort(kvps, keyComparator);
+                } else {
+                    if (keyType == KEY_TYPE_STRING) {
+                        // Collator.compare is synchronized, so we compare pre-calculated collation keys instead.
+                        Collator collator = ((LexicalKVPComparator) keyComparator).collator;
+                        for (Object kvp : kvps) {
+                            ((KVP) kvp).key = collator.getCollationKey((String) ((KVP) kvp).key);
+                        }
+                        keyComparator = new CollationKeyKVPComparator();
+                    }
+                    // Like Arrays.sort, this is a stable sort, so the result will be the same.
+                    Arrays.parallelSort(kvps, keyComparator);
+                }
             } catch (Exception exc) {
                 throw new _TemplateModelException(exc,
                         startErrorMessage(keyNamesLn), "Unexpected error while sorting:" + exc);
@@ -832,12 +965,78 @@ class BuiltInsForSequences {
 
             // Convert the List[KVP] to List[V]:
             for (int i = 0; i < ln; i++) {
-                res.set(i, ((KVP) res.get(i)).value);
+                res.set(i, ((KVP) kvps[i]).value);
             }
 
             return new TemplateModelListSequence(res);
         }
 
+        /**
+         * Identifies a sorting, for the memoization of the result in the {@link Environment}. As the
+         * {@link TemplateSequenceModel} that wraps the same Java object can be a different instance each time the
+         * variable is read, the source is the wrapped object if there's one, otherwise the
+         * {@link TemplateSequenceModel} itself; in both cases compared by identity. Other than the source, the result
+         * depends on the key path, and on the {@link Collator} and {@link ArithmeticEngine} used for comparing the
+         * keys, which can change during template processing. The size is included, so that the result isn't reused
+         * if items were added or removed since. (Replacing items without changing the size can't be detected, but the
+         * data-model shouldn't be modified during template processing anyway.)
+         */
+        private static final class SortResultCacheKey {
+            private final Object source;
+            private final Class<?> seqClass;
+            private final ObjectWrapper objectWrapper;
+            private final int size;
+            private final String[] keyNames;
+            private final Collator collator;
+            private final ArithmeticEngine arithmeticEngine;
+
+            SortResultCacheKey(TemplateSequenceModel seq, int size, String[] keyNames, Environment env) {
+                this.source = seq instanceof WrapperTemplateModel ? ((WrapperTemplateModel) seq).getWrappedObject()
+                        : seq;
+                this.seqClass = seq.getClass();
+                this.objectWrapper = seq instanceof WrappingTemplateModel
+                        ? ((WrappingTemplateModel) seq).getObjectWrapper() : null;
+                this.size = size;
+                this.keyNames = keyNames;
+                this.collator = env.getCollator();
+                this.arithmeticEngine = env.getArithmeticEngine();
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (!(o instanceof SortResultCacheKey)) return false;
+                SortResultCacheKey that = (SortResultCacheKey) o;
+                return source == that.source
+                        && seqClass == that.seqClass
+                        && objectWrapper == that.objectWrapper
+                        && size == that.size
+                        && Arrays.equals(keyNames, that.keyNames)
+                        && collator == that.collator
+                        && arithmeticEngine == that.arithmeticEngine;
+            }
+
+            @Override
+            public int hashCode() {
+                return System.identityHashCode(source) * 31 + Arrays.hashCode(keyNames);
+            }
+        }
+
+        /**
+         * The most recently used sorting results of an {@link Environment}.
+         */
+        private static final class SortResultCache extends LinkedHashMap<SortResultCacheKey, TemplateSequenceModel> {
+
+            SortResultCache() {
+                super(16, 0.75f, true);
+            }
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SortResultCacheKey, TemplateSequenceModel> eldest) {
+                return size() > MEMOIZATION_MAX_ENTRIES;
+            }
+        }
+
         static Object[] startErrorMessage(int keyNamesLn) {
             return new Object[] { (keyNamesLn == 0 ? "?sort" : "?sort_by(...)"), " failed: " };
         }
@@ -858,6 +1057,18 @@ class BuiltInsForSequences {
         static final int KEY_TYPE_DATE = 3;
         
         static final int KEY_TYPE_BOOLEAN = 4;
+
+        /** Sequences shorter than this are cheap enough to sort again, so the result is not memoized. */
+        private static final int MEMOIZATION_MIN_SIZE = 16;
+        /** The maximum number of sorting results memoized per {@link Environment}. */
+        private static final int MEMOIZATION_MAX_ENTRIES = 32;
+        /**
+         * Sequences at least this long, with string or date keys, are sorted with
+         * {@link Arrays#parallelSort(Object[], Comparator)}.
+         */
+        private static final int PARALLEL_SORT_MIN_SIZE = 10000;
+
+        private static final Object SORT_RESULT_CACHE_CUSTOM_STATE_KEY = new Object();
         
         @Override
         TemplateModel calculateResult(TemplateSequenceModel seq)
@@ -1028,27 +1239,12 @@ class BuiltInsForSequences {
         
     }
 
-    private static abstract class FilterLikeBI extends IntermediateStreamOperationLikeBuiltIn {
-        protected final boolean elementMatches(TemplateModel element, ElementTransformer elementTransformer,
-                Environment env)
-                throws TemplateException {
-            TemplateModel transformedElement = elementTransformer.transformElement(element, env);
-            if (!(transformedElement instanceof TemplateBooleanModel)) {
-                if (transformedElement == null) {
-                    throw new _TemplateModelException(getElementTransformerExp(), env,
-                            "The filter expression has returned no value (has returned null), " +
-                                    "rather than a boolean.");
-                }
-                throw new _TemplateModelException(getElementTransformerExp(), env,
-                        "The filter expression had to return a boolean value, but it returned ",
-                        new _DelayedAOrAn(new _DelayedFTLTypeDescription(transformedElement)),
-                        " instead.");
-            }
-            return ((TemplateBooleanModel) transformedElement).getAsBoolean();
-        }
-    }
+    static class filterBI extends IntermediateStreamOperationLikeBuiltIn {
 
-    static class filterBI extends FilterLikeBI {
+        @Override
+        int getStageKind() {
+            return STAGE_KIND_FILTER;
+        }
 
         @Override
         protected TemplateModel calculateResult(
@@ -1126,7 +1322,12 @@ class BuiltInsForSequences {
 
     }
 
-    static class take_whileBI extends FilterLikeBI {
+    static class take_whileBI extends IntermediateStreamOperationLikeBuiltIn {
+
+        @Override
+        int getStageKind() {
+            return STAGE_KIND_TAKE_WHILE;
+        }
 
         @Override
         protected TemplateModel calculateResult(
@@ -1206,6 +1407,11 @@ class BuiltInsForSequences {
 
     static class mapBI extends IntermediateStreamOperationLikeBuiltIn {
 
+        @Override
+        int getStageKind() {
+            return STAGE_KIND_MAP;
+        }
+
         @Override
         protected TemplateModel calculateResult(
                 final TemplateModelIterator lhoIterator, TemplateModel lho, boolean lhoIsSequence, final ElementTransformer elementTransformer,
@@ -1217,7 +1423,7 @@ class BuiltInsForSequences {
 
                 List<TemplateModel> resultList = new ArrayList<>();
                 while (lhoIterator.hasNext()) {
-                    resultList.add(fetchAndMapNextElement(lhoIterator, elementTransformer, env));
+                    resultList.add(mapElement(lhoIterator.next(), elementTransformer, env));
                 }
                 return new TemplateModelListSequence(resultList);
             } else {
@@ -1225,7 +1431,7 @@ class BuiltInsForSequences {
                     @Override
                     public TemplateModel next() throws TemplateModelException {
                         try {
-                            return fetchAndMapNextElement(lhoIterator, elementTransformer, env);
+                            return mapElement(lhoIterator.next(), elementTransformer, env);
                         } catch (TemplateException e) {
                             throw new _TemplateModelException(e, env, "Failed to transform element");
                         }
@@ -1236,33 +1442,18 @@ class BuiltInsForSequences {
                         return lhoIterator.hasNext();
                     }
                 };
-                if (lho instanceof TemplateCollectionModelEx) { // Preferred branch, as TempCollModEx has isEmpty() too
-                    return new LazilyGeneratedCollectionModelWithSameSizeCollEx(
-                            mappedLhoIterator, (TemplateCollectionModelEx) lho, lhoIsSequence);
-                } else if (lho instanceof TemplateSequenceModel) {
-                    return new LazilyGeneratedCollectionModelWithSameSizeSeq(
-                            mappedLhoIterator, (TemplateSequenceModel) lho);
-                } else {
-                    return new LazilyGeneratedCollectionModelWithUnknownSize(
-                            mappedLhoIterator, lhoIsSequence);
-                }
+                return newSameSizeLazilyGeneratedResult(mappedLhoIterator, lho, lhoIsSequence);
             }
         }
 
-        private TemplateModel fetchAndMapNextElement(
-                TemplateModelIterator lhoIterator, ElementTransformer elementTransformer, Environment env)
-                throws TemplateException {
-            TemplateModel transformedElement = elementTransformer.transformElement(lhoIterator.next(), env);
-            if (transformedElement == null) {
-                throw new _TemplateModelException(getElementTransformerExp(), env,
-                        "The element mapper function has returned no return value (has returned null).");
-            }
-            return transformedElement;
-        }
-
     }
 
-    static class drop_whileBI extends FilterLikeBI {
+    static class drop_whileBI extends IntermediateStreamOperationLikeBuiltIn {
+
+        @Override
+        int getStageKind() {
+            return STAGE_KIND_DROP_WHILE;
+        }
 
         @Override
         protected TemplateModel calculateResult(
@@ -542,7 +542,10 @@ class BuiltInsForStringsBasic {
         }
     }
     
-    static class split_BI extends BuiltInForString {
+    static class split_BI extends BuiltInWithDirectCallOptimization {
+        /** Non-{@code null} if the arguments of the direct call were literals. */
+        private RegexpHelper.ParseTimeRegexpArguments parseTimeRegexpArgs;
+        
         class SplitMethod implements TemplateMethodModel {
             private String s;
 
@@ -555,14 +558,26 @@ class BuiltInsForStringsBasic {
                 int argCnt = args.size();
                 checkMethodArgCount(argCnt, 1, 2);
                 String splitString = (String) args.get(0);
-                long flags = argCnt > 1 ? RegexpHelper.parseFlagString((String) args.get(1)) : 0;
+                long flags;
+                Pattern pattern;
+                if (parseTimeRegexpArgs != null) {
+                    flags = parseTimeRegexpArgs.flags;
+                    pattern = parseTimeRegexpArgs.pattern;
+                } else {
+                    flags = argCnt > 1 ? RegexpHelper.parseFlagString((String) args.get(1)) : 0;
+                    pattern = null;
+                }
                 String[] result = null;
                 if ((flags & RegexpHelper.RE_FLAG_REGEXP) == 0) {
                     RegexpHelper.checkNonRegexpFlags(key, flags);
-                    result = StringUtil.split(s, splitString,
-                            (flags & RegexpHelper.RE_FLAG_CASE_INSENSITIVE) != 0);
+                    boolean caseInsensitive = (flags & RegexpHelper.RE_FLAG_CASE_INSENSITIVE) != 0;
+                    result = !caseInsensitive && splitString.length() == 1
+                            ? StringUtil.split(s, splitString.charAt(0))
+                            : StringUtil.split(s, splitString, caseInsensitive);
                 } else {
-                    Pattern pattern = RegexpHelper.getPattern(splitString, (int) flags);
+                    if (pattern == null) {
+                        pattern = RegexpHelper.getPattern(splitString, (int) flags);
+                    }
                     result = pattern.split(s);
                 } 
                 return ObjectWrapper.DEFAULT_WRAPPER.wrap(result);
@@ -570,8 +585,17 @@ class BuiltInsForStringsBasic {
         }
         
         @Override
-        TemplateModel calculateResult(String s, Environment env) throws TemplateModelException {
-            return new SplitMethod(s);
+        protected void bindToDirectCallArguments(List<Expression> arguments) {
+            int argCnt = arguments.size();
+            if (argCnt >= 1 && argCnt <= 2) {
+                parseTimeRegexpArgs = RegexpHelper.getParseTimeRegexpArgumentsOrNull(
+                        arguments.get(0), argCnt > 1 ? arguments.get(1) : null, false);
+            }
+        }
+        
+        @Override
+        TemplateModel _eval(Environment env) throws TemplateException {
+            return new SplitMethod(BuiltInForString.getTargetString(target, env));
         }
         
     }
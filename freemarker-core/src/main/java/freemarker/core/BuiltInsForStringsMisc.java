@@ -68,26 +68,39 @@ class BuiltInsForStringsMisc {
             try {
                 try {
                     ParserConfiguration pCfg = parentTemplate.getParserConfiguration();
-                    
-                    SimpleCharStream simpleCharStream = new SimpleCharStream(
-                            new StringReader("(" + s + ")"),
-                            RUNTIME_EVAL_LINE_DISPLACEMENT, 1,
-                            s.length() + 2);
-                    simpleCharStream.setTabSize(pCfg.getTabSize());
-                    FMParserTokenManager tkMan = new FMParserTokenManager(
-                            simpleCharStream);
-                    tkMan.SwitchTo(FMParserConstants.FM_EXPRESSION);
+                    int tabSize = pCfg.getTabSize();
 
                     // pCfg.outputFormat is exceptional: it's inherited from the lexical context
                     if (pCfg.getOutputFormat() != outputFormat) {
                         pCfg = new _ParserConfigurationWithInheritedFormat(
                                 pCfg, outputFormat, Integer.valueOf(autoEscapingPolicy));
                     }
-                    
-                    FMParser parser = new FMParser(
-                            parentTemplate, false, tkMan, pCfg);
-                    
-                    exp = parser.Expression();
+
+                    ParsedStringCache parsedStringCache = env.getConfiguration().getParsedStringCache();
+                    Object cacheKey = null;
+                    if (parsedStringCache != null) {
+                        cacheKey = ParsedStringCache.createEvalKey(s, parentTemplate, pCfg);
+                        exp = (Expression) parsedStringCache.get(cacheKey);
+                    }
+
+                    if (exp == null) {
+                        SimpleCharStream simpleCharStream = new SimpleCharStream(
+                                new StringReader("(" + s + ")"),
+                                RUNTIME_EVAL_LINE_DISPLACEMENT, 1,
+                                s.length() + 2);
+                        simpleCharStream.setTabSize(tabSize);
+                        FMParserTokenManager tkMan = new FMParserTokenManager(
+                                simpleCharStream);
+                        tkMan.SwitchTo(FMParserConstants.FM_EXPRESSION);
+
+                        FMParser parser = new FMParser(
+                                parentTemplate, false, tkMan, pCfg);
+
+                        exp = parser.Expression();
+                        if (parsedStringCache != null) {
+                            parsedStringCache.put(cacheKey, exp);
+                        }
+                    }
                 } catch (TokenMgrError e) {
                     throw e.toParseException(parentTemplate);
                 }
@@ -117,7 +130,17 @@ class BuiltInsForStringsMisc {
         @Override
         TemplateModel calculateResult(String s, Environment env) throws TemplateException {
             try {
-                return JSONParser.parse(s);
+                ParsedStringCache parsedStringCache = env.getConfiguration().getParsedStringCache();
+                if (parsedStringCache == null) {
+                    return JSONParser.parse(s);
+                }
+                Object cacheKey = ParsedStringCache.createEvalJsonKey(s);
+                TemplateModel result = (TemplateModel) parsedStringCache.get(cacheKey);
+                if (result == null) {
+                    result = JSONParser.parse(s);
+                    parsedStringCache.put(cacheKey, result);
+                }
+                return result;
             } catch (JSONParser.JSONParseException e) {
                 throw new _MiscTemplateException(this, env,
                         "Failed to \"?", key, "\" string with this error:\n\n",
@@ -62,7 +62,10 @@ class BuiltInsForStringsRegexp {
         }
     }
     
-    static class matchesBI extends BuiltInForString {
+    static class matchesBI extends BuiltInWithDirectCallOptimization {
+        /** Non-{@code null} if the arguments of the direct call were literals. */
+        private RegexpHelper.ParseTimeRegexpArguments parseTimeRegexpArgs;
+        
         class MatcherBuilder implements TemplateMethodModel {
             
             String matchString;
@@ -76,24 +79,40 @@ class BuiltInsForStringsRegexp {
                 int argCnt = args.size();
                 checkMethodArgCount(argCnt, 1, 2);
                 
-                String patternString = (String) args.get(0);
-                long flags = argCnt > 1 ? RegexpHelper.parseFlagString((String) args.get(1)) : 0;
-                if ((flags & RegexpHelper.RE_FLAG_FIRST_ONLY) != 0) {
-                    RegexpHelper.logFlagWarning("?" + key + " doesn't support the \"f\" flag.");
+                Pattern pattern;
+                if (parseTimeRegexpArgs != null) {
+                    pattern = parseTimeRegexpArgs.pattern;
+                } else {
+                    String patternString = (String) args.get(0);
+                    long flags = argCnt > 1 ? RegexpHelper.parseFlagString((String) args.get(1)) : 0;
+                    if ((flags & RegexpHelper.RE_FLAG_FIRST_ONLY) != 0) {
+                        RegexpHelper.logFlagWarning("?" + key + " doesn't support the \"f\" flag.");
+                    }
+                    pattern = RegexpHelper.getPattern(patternString, (int) flags);
                 }
-                Pattern pattern = RegexpHelper.getPattern(patternString, (int) flags);
                 return new RegexMatchModel(pattern, matchString);
             }
         }
         
         @Override
-        TemplateModel calculateResult(String s, Environment env) throws TemplateModelException {
-            return new MatcherBuilder(s);
+        protected void bindToDirectCallArguments(List<Expression> arguments) {
+            int argCnt = arguments.size();
+            if (argCnt >= 1 && argCnt <= 2) {
+                parseTimeRegexpArgs = RegexpHelper.getParseTimeRegexpArgumentsOrNull(
+                        arguments.get(0), argCnt > 1 ? arguments.get(1) : null, true);
+            }
+        }
+        
+        @Override
+        TemplateModel _eval(Environment env) throws TemplateException {
+            return new MatcherBuilder(BuiltInForString.getTargetString(target, env));
         }
         
     }
     
-    static class replace_reBI extends BuiltInForString {
+    static class replace_reBI extends BuiltInWithDirectCallOptimization {
+        /** Non-{@code null} if the arguments of the direct call were literals. */
+        private RegexpHelper.ParseTimeRegexpArguments parseTimeRegexpArgs;
         
         class ReplaceMethod implements TemplateMethodModel {
             private String s;
@@ -108,7 +127,15 @@ class BuiltInsForStringsRegexp {
                 checkMethodArgCount(argCnt, 2, 3);
                 String arg1 = (String) args.get(0);
                 String arg2 = (String) args.get(1);
-                long flags = argCnt > 2 ? RegexpHelper.parseFlagString((String) args.get(2)) : 0;
+                long flags;
+                Pattern pattern;
+                if (parseTimeRegexpArgs != null) {
+                    flags = parseTimeRegexpArgs.flags;
+                    pattern = parseTimeRegexpArgs.pattern;
+                } else {
+                    flags = argCnt > 2 ? RegexpHelper.parseFlagString((String) args.get(2)) : 0;
+                    pattern = null;
+                }
                 String result;
                 if ((flags & RegexpHelper.RE_FLAG_REGEXP) == 0) {
                     RegexpHelper.checkNonRegexpFlags("replace", flags);
@@ -116,7 +143,9 @@ class BuiltInsForStringsRegexp {
                             (flags & RegexpHelper.RE_FLAG_CASE_INSENSITIVE) != 0,
                             (flags & RegexpHelper.RE_FLAG_FIRST_ONLY) != 0);
                 } else {
-                    Pattern pattern = RegexpHelper.getPattern(arg1, (int) flags);
+                    if (pattern == null) {
+                        pattern = RegexpHelper.getPattern(arg1, (int) flags);
+                    }
                     Matcher matcher = pattern.matcher(s);
                     result = (flags & RegexpHelper.RE_FLAG_FIRST_ONLY) != 0
                             ? matcher.replaceFirst(arg2)
@@ -128,8 +157,17 @@ class BuiltInsForStringsRegexp {
         }
         
         @Override
-        TemplateModel calculateResult(String s, Environment env) throws TemplateModelException {
-            return new ReplaceMethod(s);
+        protected void bindToDirectCallArguments(List<Expression> arguments) {
+            int argCnt = arguments.size();
+            if (argCnt >= 2 && argCnt <= 3) {
+                parseTimeRegexpArgs = RegexpHelper.getParseTimeRegexpArgumentsOrNull(
+                        arguments.get(0), argCnt > 2 ? arguments.get(2) : null, false);
+            }
+        }
+        
+        @Override
+        TemplateModel _eval(Environment env) throws TemplateException {
+            return new ReplaceMethod(BuiltInForString.getTargetString(target, env));
         }
         
     }
@@ -182,6 +182,10 @@ final class BuiltinVariable extends Expression {
         this.name = name.intern();
     }
 
+    String getName() {
+        return name;
+    }
+
     @Override
     TemplateModel _eval(Environment env) throws TemplateException {
         if (parseTimeValue != null) {
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.util.Locale;
+import java.util.Objects;
+
+import freemarker.cache.TemplateCache;
+import freemarker.cache._CacheAPI;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template._TemplateAPI;
+
+/**
+ * Remembers the {@link Template} that a {@code #include} or {@code #import} with a literal template name has resolved
+ * to last time, so that later executions can skip resolving the template name, and looking up the template in the
+ * {@link TemplateCache}. The remembered template is only reused if the {@link TemplateCache} and its generation, and
+ * the lookup parameters (locale, custom lookup condition, encoding, parsing) are still the same, and the template
+ * update delay hasn't elapsed since the {@link TemplateCache} has last checked if the template was modified (as it
+ * would check that again when it's asked after that). So a template change is noticed at the same time as without
+ * this class.
+ * 
+ * <p>This is thread-safe, as the nodes of a {@link Template} are shared by concurrent template executions.
+ */
+final class CallSiteTemplateCache {
+
+    private volatile Entry entry;
+
+    /**
+     * Returns the remembered template if it's still valid, otherwise does the lookup, and remembers its result.
+     * 
+     * @param encoding
+     *            The explicitly specified encoding, or {@code null}
+     */
+    Template getTemplate(Environment env, String encoding, boolean parse, TemplateLookup lookup)
+            throws TemplateException {
+        TemplateCache templateCache = _TemplateAPI.getTemplateCache(env.getConfiguration());
+        Locale locale = env.getLocale();
+        Object customLookupCondition = env.getIncludedTemplateCustomLookupCondition();
+        if (encoding == null) {
+            encoding = env.getIncludedTemplateEncoding();
+        }
+        
+        Entry entry = this.entry;
+        if (entry != null
+                && entry.templateCache == templateCache
+                && entry.generation == _CacheAPI.getGeneration(templateCache)
+                && System.currentTimeMillis() - entry.lastChecked < entry.reuseDelay
+                && entry.parse == parse
+                && entry.locale.equals(locale)
+                && Objects.equals(entry.encoding, encoding)
+                && Objects.equals(entry.customLookupCondition, customLookupCondition)) {
+            return entry.template;
+        }
+        
+        // Must be queried before the lookup, or else we could remember a template that was replaced meanwhile.
+        long generation = _CacheAPI.getGeneration(templateCache);
+        Template template = lookup.lookUp();
+        if (template != null) {
+            long reuseDelay = _CacheAPI.getTemplateReuseDelay(templateCache);
+            long lastChecked = reuseDelay > 0
+                    ? _CacheAPI.getLastChecked(templateCache, template, locale, customLookupCondition, encoding, parse)
+                    : Long.MIN_VALUE;
+            this.entry = lastChecked != Long.MIN_VALUE
+                    ? new Entry(templateCache, generation, lastChecked, reuseDelay,
+                            locale, customLookupCondition, encoding, parse, template)
+                    : null;
+        }
+        return template;
+    }
+
+    /**
+     * Looks up the template the usual way.
+     */
+    interface TemplateLookup {
+        /**
+         * @return {@code null} if the template is missing, and that's allowed.
+         */
+        Template lookUp() throws TemplateException;
+    }
+
+    private static final class Entry {
+        private final TemplateCache templateCache;
+        private final long generation;
+        private final long lastChecked;
+        private final long reuseDelay;
+        private final Locale locale;
+        private final Object customLookupCondition;
+        private final String encoding;
+        private final boolean parse;
+        private final Template template;
+
+        Entry(TemplateCache templateCache, long generation, long lastChecked, long reuseDelay,
+                Locale locale, Object customLookupCondition, String encoding, boolean parse,
+                Template template) {
+            this.templateCache = templateCache;
+            this.generation = generation;
+            this.lastChecked = lastChecked;
+            this.reuseDelay = reuseDelay;
+            this.locale = locale;
+            this.customLookupCondition = customLookupCondition;
+            this.encoding = encoding;
+            this.parse = parse;
+            this.template = template;
+        }
+    }
+
+}
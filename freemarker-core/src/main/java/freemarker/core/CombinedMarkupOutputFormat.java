@@ -107,5 +107,16 @@ public final class CombinedMarkupOutputFormat extends CommonMarkupOutputFormat<T
             String plainTextContent, String markupContent) {
         return new TemplateCombinedMarkupOutputModel(plainTextContent, markupContent, this);
     }
+
+    @Override
+    boolean isGrowableContentSupported() {
+        return true;
+    }
+
+    @Override
+    TemplateCombinedMarkupOutputModel newTemplateMarkupOutputModelWithGrowableContent(
+            Object plainTextContent, Object markupContent) {
+        return new TemplateCombinedMarkupOutputModel(plainTextContent, markupContent, this);
+    }
     
 }
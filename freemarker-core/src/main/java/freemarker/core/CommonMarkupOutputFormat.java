@@ -78,31 +78,85 @@ public abstract class CommonMarkupOutputFormat<MO extends CommonTemplateMarkupOu
     
     @Override
     public final MO concat(MO mo1, MO mo2) throws TemplateModelException {
-        String pc1 = mo1.getPlainTextContent();
-        String mc1 = mo1.getMarkupContent();
+        if (!isGrowableContentSupported()) {
+            String pc1 = mo1.getPlainTextContent();
+            String mc1 = mo1.getMarkupContent();
+            String pc2 = mo2.getPlainTextContent();
+            String mc2 = mo2.getMarkupContent();
+
+            String pc3 = pc1 != null && pc2 != null ? pc1 + pc2 : null;
+            String mc3 = mc1 != null && mc2 != null ? mc1 + mc2 : null;
+            if (pc3 != null || mc3 != null) {
+                return newTemplateMarkupOutputModel(pc3, mc3);
+            }
+
+            if (pc1 != null) {
+                return newTemplateMarkupOutputModel(null, getMarkupString(mo1) + mc2);
+            } else {
+                return newTemplateMarkupOutputModel(null, mc1 + getMarkupString(mo2));
+            }
+        }
+
+        // The content of mo1 is possibly a GrowableString (if it was the result of a concatenation), in which case we
+        // can append to it without copying it.
+        Object pc1 = mo1.getPlainTextContentForConcat();
+        Object mc1 = mo1.getMarkupContentForConcat();
         String pc2 = mo2.getPlainTextContent();
         String mc2 = mo2.getMarkupContent();
         
-        String pc3 = pc1 != null && pc2 != null ? pc1 + pc2 : null;
-        String mc3 = mc1 != null && mc2 != null ? mc1 + mc2 : null;
+        Object pc3 = pc1 != null && pc2 != null ? GrowableString.concat(pc1, pc2) : null;
+        Object mc3 = mc1 != null && mc2 != null ? GrowableString.concat(mc1, mc2) : null;
         if (pc3 != null || mc3 != null) {
-            return newTemplateMarkupOutputModel(pc3, mc3);
+            return newTemplateMarkupOutputModelForConcat(pc3, mc3);
         }
         
         if (pc1 != null) {
-            return newTemplateMarkupOutputModel(null, getMarkupString(mo1) + mc2);
+            return newTemplateMarkupOutputModelForConcat(null, GrowableString.concat(getMarkupString(mo1), mc2));
         } else {
-            return newTemplateMarkupOutputModel(null, mc1 + getMarkupString(mo2));
+            return newTemplateMarkupOutputModelForConcat(null, GrowableString.concat(mc1, getMarkupString(mo2)));
+        }
+    }
+
+    /**
+     * @param plainTextContent A {@link String}, a {@link GrowableString}, or {@code null}
+     * @param markupContent A {@link String}, a {@link GrowableString}, or {@code null}
+     */
+    private MO newTemplateMarkupOutputModelForConcat(Object plainTextContent, Object markupContent)
+            throws TemplateModelException {
+        if (!(plainTextContent instanceof GrowableString) && !(markupContent instanceof GrowableString)) {
+            return newTemplateMarkupOutputModel((String) plainTextContent, (String) markupContent);
         }
+        return newTemplateMarkupOutputModelWithGrowableContent(plainTextContent, markupContent);
+    }
+
+    /**
+     * Tells if {@link #newTemplateMarkupOutputModelWithGrowableContent(Object, Object)} is implemented, in which case
+     * {@link #concat(CommonTemplateMarkupOutputModel, CommonTemplateMarkupOutputModel)} can avoid copying the content
+     * of the left side operand. Only the built-in formats support this (and not their subclasses, as those might
+     * override {@link #newTemplateMarkupOutputModel(String, String)}); for other formats {@code concat} just
+     * concatenates the {@link String}-s, as the content passed to {@link #newTemplateMarkupOutputModel(String, String)}
+     * must be final.
+     */
+    boolean isGrowableContentSupported() {
+        return false;
+    }
+
+    /**
+     * Same as {@link #newTemplateMarkupOutputModel(String, String)}, but the content can be a {@link GrowableString}
+     * too; see {@link #isGrowableContentSupported()}.
+     */
+    MO newTemplateMarkupOutputModelWithGrowableContent(Object plainTextContent, Object markupContent)
+            throws TemplateModelException {
+        throw new BugException();
     }
     
     @Override
     public boolean isEmpty(MO mo) throws TemplateModelException {
-        String s = mo.getPlainTextContent();
+        Object s = mo.getPlainTextContentForConcat();
         if (s != null) {
-            return s.length() == 0;
+            return GrowableString.lengthOf(s) == 0;
         }
-        return mo.getMarkupContent().length() == 0;
+        return GrowableString.lengthOf(mo.getMarkupContentForConcat()) == 0;
     }
     
     @Override
@@ -34,6 +34,10 @@ public abstract class CommonTemplateMarkupOutputModel<MO extends CommonTemplateM
 
     private final String plainTextContent;
     private String markupContent;
+    /** If not {@code null}, then it's the plain text content, and {@link #plainTextContent} is {@code null}. */
+    private final GrowableString growablePlainTextContent;
+    /** If not {@code null}, then it's the markup content, and {@link #markupContent} is {@code null}. */
+    private final GrowableString growableMarkupContent;
 
     /**
      * A least one of the parameters must be non-{@code null}!
@@ -41,6 +45,32 @@ public abstract class CommonTemplateMarkupOutputModel<MO extends CommonTemplateM
     protected CommonTemplateMarkupOutputModel(String plainTextContent, String markupContent) {
         this.plainTextContent = plainTextContent;
         this.markupContent = markupContent;
+        this.growablePlainTextContent = null;
+        this.growableMarkupContent = null;
+    }
+
+    /**
+     * Used by the built-in formats for the result of
+     * {@link CommonMarkupOutputFormat#concat(CommonTemplateMarkupOutputModel, CommonTemplateMarkupOutputModel)}.
+     *
+     * @param plainTextContent A {@link String}, a {@link GrowableString}, or {@code null}
+     * @param markupContent A {@link String}, a {@link GrowableString}, or {@code null}
+     */
+    CommonTemplateMarkupOutputModel(Object plainTextContent, Object markupContent) {
+        if (plainTextContent instanceof GrowableString) {
+            this.growablePlainTextContent = (GrowableString) plainTextContent;
+            this.plainTextContent = null;
+        } else {
+            this.growablePlainTextContent = null;
+            this.plainTextContent = (String) plainTextContent;
+        }
+        if (markupContent instanceof GrowableString) {
+            this.growableMarkupContent = (GrowableString) markupContent;
+            this.markupContent = null;
+        } else {
+            this.growableMarkupContent = null;
+            this.markupContent = (String) markupContent;
+        }
     }
 
     @Override
@@ -48,12 +78,28 @@ public abstract class CommonTemplateMarkupOutputModel<MO extends CommonTemplateM
 
     /** Maybe {@code null}, but then {@link #getMarkupContent()} isn't {@code null}. */
     final String getPlainTextContent() {
-        return plainTextContent;
+        return growablePlainTextContent != null ? growablePlainTextContent.toString() : plainTextContent;
     }
 
     /** Maybe {@code null}, but then {@link #getPlainTextContent()} isn't {@code null}. */
     final String getMarkupContent() {
-        return markupContent;
+        return growableMarkupContent != null ? growableMarkupContent.toString() : markupContent;
+    }
+
+    /**
+     * Same as {@link #getPlainTextContent()}, but may return a {@link GrowableString} instead of a {@link String},
+     * which is cheaper if we will concatenate it further.
+     */
+    final Object getPlainTextContentForConcat() {
+        return growablePlainTextContent != null ? growablePlainTextContent : plainTextContent;
+    }
+
+    /**
+     * Same as {@link #getMarkupContent()}, but may return a {@link GrowableString} instead of a {@link String},
+     * which is cheaper if we will concatenate it further.
+     */
+    final Object getMarkupContentForConcat() {
+        return growableMarkupContent != null ? growableMarkupContent : markupContent;
     }
 
     /**
@@ -73,8 +119,9 @@ public abstract class CommonTemplateMarkupOutputModel<MO extends CommonTemplateM
      */
     @Override
     public String toString() {
+        String plainTextContent = getPlainTextContent();
         return "markupOutput(format=" + getOutputFormat().getName() + ", " + (plainTextContent != null ?
-            "plainText=" + plainTextContent : "markup=" + markupContent) + ")";
+            "plainText=" + plainTextContent : "markup=" + getMarkupContent()) + ")";
     }
 
 }
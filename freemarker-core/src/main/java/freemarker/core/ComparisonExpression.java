@@ -78,6 +78,21 @@ final class ComparisonExpression extends BooleanExpression {
         return EvalUtil.compare(left, operation, opString, right, this, env);
     }
 
+    Expression getLeft() {
+        return left;
+    }
+
+    Expression getRight() {
+        return right;
+    }
+
+    /**
+     * One of the {@code EvalUtil.CMP_OP_...} constants.
+     */
+    int getOperation() {
+        return operation;
+    }
+
     @Override
     public String getCanonicalForm() {
         return left.getCanonicalForm() + ' ' + opString + ' ' + right.getCanonicalForm();
@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable, thread-safe re-implementation of {@link DecimalFormat#format(Object)} for the commonly used subset of
+ * the {@link DecimalFormat} features, giving the same output. Integral values are formatted without creating any
+ * intermediate objects. Created with {@link #compile(NumberFormat)}.
+ */
+final class CompiledDecimalFormat {
+
+    /** Same as the private {@code DecimalFormat.DOUBLE_INTEGER_DIGITS}. */
+    private static final int DOUBLE_INTEGER_DIGITS = 309;
+    /** Same as the private {@code DecimalFormat.DOUBLE_FRACTION_DIGITS}. */
+    private static final int DOUBLE_FRACTION_DIGITS = 340;
+
+    /** Integral {@code double}-s below this are exactly represented by their {@code long} value. */
+    private static final double MAX_EXACT_INTEGRAL_DOUBLE = 9007199254740992.0; // 2^53
+
+    /**
+     * {@link DecimalFormat} formats {@code double}-s based on the same decimal digits that
+     * {@link Double#toString(double)} produces, but that's not guaranteed, and changed in Java 19. So we check that
+     * with a number where they differ in Java 19.
+     */
+    private static final boolean DOUBLE_TO_STRING_MATCHES_DECIMAL_FORMAT;
+    static {
+        DecimalFormat df = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ROOT));
+        DOUBLE_TO_STRING_MATCHES_DECIMAL_FORMAT = df.format(2e23).equals(
+                new BigDecimal(Double.toString(2e23)).toBigInteger().toString());
+    }
+
+    private static final long[] POWERS_OF_10 = new long[19];
+    static {
+        long p = 1;
+        for (int i = 0; i < POWERS_OF_10.length; i++) {
+            POWERS_OF_10[i] = p;
+            p *= 10;
+        }
+    }
+
+    private final String positivePrefix;
+    private final String positiveSuffix;
+    private final String negativePrefix;
+    private final String negativeSuffix;
+    private final char zeroDigit;
+    private final char groupingSeparator;
+    private final char decimalSeparator;
+    private final String infinity;
+    private final String nan;
+    /** 0 if grouping is not used. */
+    private final int groupingSize;
+    private final boolean decimalSeparatorAlwaysShown;
+    private final int minIntegerDigits;
+    private final int minFractionDigits;
+    private final int maxFractionDigits;
+    private final int multiplier;
+    private final BigDecimal bigDecimalMultiplier;
+    private final RoundingMode roundingMode;
+
+    private CompiledDecimalFormat(DecimalFormat df) {
+        DecimalFormatSymbols symbols = df.getDecimalFormatSymbols();
+        positivePrefix = df.getPositivePrefix();
+        positiveSuffix = df.getPositiveSuffix();
+        negativePrefix = df.getNegativePrefix();
+        negativeSuffix = df.getNegativeSuffix();
+        zeroDigit = symbols.getZeroDigit();
+        groupingSeparator = symbols.getGroupingSeparator();
+        decimalSeparator = symbols.getDecimalSeparator();
+        infinity = symbols.getInfinity();
+        nan = symbols.getNaN();
+        groupingSize = df.isGroupingUsed() ? df.getGroupingSize() : 0;
+        decimalSeparatorAlwaysShown = df.isDecimalSeparatorAlwaysShown();
+        minIntegerDigits = df.getMinimumIntegerDigits();
+        minFractionDigits = df.getMinimumFractionDigits();
+        maxFractionDigits = df.getMaximumFractionDigits();
+        multiplier = df.getMultiplier();
+        bigDecimalMultiplier = BigDecimal.valueOf(multiplier);
+        roundingMode = df.getRoundingMode();
+    }
+
+    /**
+     * Returns the {@link CompiledDecimalFormat} equivalent of the argument, or {@code null} if it uses features that
+     * aren't supported (like scientific notation, currency symbols, or rounding modes other than the "half" ones), or
+     * if it's not a {@link DecimalFormat} at all.
+     */
+    static CompiledDecimalFormat compile(NumberFormat nf) {
+        if (nf.getClass() != DecimalFormat.class) {
+            return null;
+        }
+        DecimalFormat df = (DecimalFormat) nf;
+
+        String pattern = df.toPattern();
+        if (pattern.indexOf('E') != -1 // Possibly scientific notation
+                || pattern.indexOf('\u00A4') != -1) { // Currency sign; uses monetary separators
+            return null;
+        }
+        RoundingMode roundingMode = df.getRoundingMode();
+        if (roundingMode != RoundingMode.HALF_EVEN && roundingMode != RoundingMode.HALF_UP
+                && roundingMode != RoundingMode.HALF_DOWN) {
+            return null;
+        }
+        if (df.getMultiplier() <= 0
+                || df.getMaximumIntegerDigits() != Integer.MAX_VALUE
+                || df.getMinimumIntegerDigits() > DOUBLE_INTEGER_DIGITS
+                || df.getMaximumFractionDigits() > DOUBLE_FRACTION_DIGITS) {
+            return null;
+        }
+        return new CompiledDecimalFormat(df);
+    }
+
+    /**
+     * Same as {@link DecimalFormat#format(Object)}, or returns {@code null} if this number has to be formatted by the
+     * {@link DecimalFormat} instead.
+     */
+    String format(Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short
+                || number instanceof Byte || number instanceof AtomicInteger || number instanceof AtomicLong) {
+            return format(number.longValue());
+        } else if (number instanceof BigDecimal) {
+            return format((BigDecimal) number);
+        } else if (number instanceof BigInteger) {
+            BigInteger bi = (BigInteger) number;
+            if (bi.bitLength() < 64) {
+                return format(bi.longValue());
+            }
+            return format(new BigDecimal(bi));
+        } else {
+            return format(number.doubleValue());
+        }
+    }
+
+    String format(long number) {
+        boolean negative = number < 0;
+        if (number == Long.MIN_VALUE) {
+            return format(BigDecimal.valueOf(number));
+        }
+        long absNumber = negative ? -number : number;
+        if (multiplier != 1) {
+            if (absNumber > Long.MAX_VALUE / multiplier) {
+                return format(BigDecimal.valueOf(number));
+            }
+            absNumber *= multiplier;
+        }
+        return formatIntegral(negative, absNumber);
+    }
+
+    String format(double number) {
+        if (Double.isNaN(number)) {
+            return nan;
+        }
+        boolean negative = number < 0.0 || number == 0.0 && 1 / number < 0.0;
+        if (multiplier != 1) {
+            number *= multiplier;
+        }
+        if (Double.isInfinite(number)) {
+            return (negative ? negativePrefix : positivePrefix) + infinity
+                    + (negative ? negativeSuffix : positiveSuffix);
+        }
+        double absNumber = Math.abs(number);
+        if (absNumber < MAX_EXACT_INTEGRAL_DOUBLE && absNumber == Math.rint(absNumber)) {
+            return formatIntegral(negative, (long) absNumber);
+        }
+        if (!DOUBLE_TO_STRING_MATCHES_DECIMAL_FORMAT) {
+            return null;
+        }
+        BigDecimal shortestDecimal = new BigDecimal(Double.toString(absNumber));
+        return formatNonNegativeDecimal(negative, roundDoubleDigits(absNumber, shortestDecimal));
+    }
+
+    String format(BigDecimal number) {
+        if (multiplier != 1) {
+            number = number.multiply(bigDecimalMultiplier);
+        }
+        boolean negative = number.signum() == -1;
+        return formatNonNegativeDecimal(negative, number.abs().setScale(maxFractionDigits, roundingMode));
+    }
+
+    /**
+     * Rounds like {@code java.text.DigitList} does: based on the shortest decimal representation of the
+     * {@code double}, except when that's exactly halfway between the two possible results, in which case the
+     * exact binary value decides.
+     */
+    private BigDecimal roundDoubleDigits(double absNumber, BigDecimal shortestDecimal) {
+        BigDecimal roundedDown = shortestDecimal.setScale(maxFractionDigits, RoundingMode.DOWN);
+        BigDecimal remainder = shortestDecimal.subtract(roundedDown);
+        if (remainder.signum() == 0) {
+            return roundedDown;
+        }
+        int cmp = remainder.compareTo(BigDecimal.valueOf(5, maxFractionDigits + 1));
+        if (cmp == 0 && roundedDown.signum() == 0 && absNumber < 1e-3) {
+            // Like 5E-4 with 3 fraction digits. DigitList gets the digits from the scientific notation that
+            // Double.toString uses below 1E-3 ("5.0E-4"), and the trailing 0 makes it ignore the exact binary value.
+            // It rounds to even against the implicit 0 digit before the 5 for HALF_EVEN, and up for the others.
+            return roundingMode == RoundingMode.HALF_EVEN
+                    ? roundedDown : shortestDecimal.setScale(maxFractionDigits, RoundingMode.UP);
+        }
+        if (cmp == 0) {
+            cmp = new BigDecimal(absNumber).compareTo(shortestDecimal);
+        }
+        if (cmp > 0) {
+            return shortestDecimal.setScale(maxFractionDigits, RoundingMode.UP);
+        } else if (cmp < 0) {
+            return roundedDown;
+        } else {
+            return shortestDecimal.setScale(maxFractionDigits, roundingMode);
+        }
+    }
+
+    /**
+     * Formats an integral value without creating intermediate objects.
+     */
+    private String formatIntegral(boolean negative, long absNumber) {
+        String prefix = negative ? negativePrefix : positivePrefix;
+        String suffix = negative ? negativeSuffix : positiveSuffix;
+
+        int digitCount = absNumber == 0 ? 0 : digitCount(absNumber);
+        int intDigitCount = Math.max(digitCount, minIntegerDigits);
+        if (intDigitCount == 0 && minFractionDigits == 0) {
+            // DecimalFormat never outputs no digits at all
+            intDigitCount = 1;
+        }
+        int groupCount = groupingSize > 0 && intDigitCount > 0 ? (intDigitCount - 1) / groupingSize : 0;
+        boolean decimalSeparatorShown = decimalSeparatorAlwaysShown || minFractionDigits > 0;
+
+        char[] buf = new char[prefix.length() + intDigitCount + groupCount
+                + (decimalSeparatorShown ? 1 : 0) + minFractionDigits + suffix.length()];
+        int pos = 0;
+        prefix.getChars(0, prefix.length(), buf, pos);
+        pos += prefix.length();
+
+        long remaining = absNumber;
+        for (int i = intDigitCount - 1; i >= 0; i--) {
+            long div = i < POWERS_OF_10.length ? POWERS_OF_10[i] : Long.MAX_VALUE;
+            int digit;
+            if (i >= digitCount) {
+                digit = 0;
+            } else {
+                digit = (int) (remaining / div);
+                remaining -= digit * div;
+            }
+            buf[pos++] = (char) (zeroDigit + digit);
+            if (groupingSize > 0 && i > 0 && i % groupingSize == 0) {
+                buf[pos++] = groupingSeparator;
+            }
+        }
+
+        if (decimalSeparatorShown) {
+            buf[pos++] = decimalSeparator;
+        }
+        for (int i = 0; i < minFractionDigits; i++) {
+            buf[pos++] = zeroDigit;
+        }
+
+        suffix.getChars(0, suffix.length(), buf, pos);
+        return new String(buf);
+    }
+
+    /**
+     * @param absNumber
+     *            Already rounded to {@link #maxFractionDigits}.
+     */
+    private String formatNonNegativeDecimal(boolean negative, BigDecimal absNumber) {
+        String plain = absNumber.toPlainString();
+        int dotIdx = plain.indexOf('.');
+        int intPartEnd = dotIdx != -1 ? dotIdx : plain.length();
+        int intPartStart = 0;
+        while (intPartStart < intPartEnd && plain.charAt(intPartStart) == '0') {
+            intPartStart++;
+        }
+        int fractionPartEnd = plain.length();
+        if (dotIdx != -1) {
+            while (fractionPartEnd > dotIdx + 1 && plain.charAt(fractionPartEnd - 1) == '0') {
+                fractionPartEnd--;
+            }
+        }
+        int fractionDigitCount = dotIdx != -1 ? fractionPartEnd - (dotIdx + 1) : 0;
+
+        StringBuilder sb = new StringBuilder(plain.length() + 16);
+        sb.append(negative ? negativePrefix : positivePrefix);
+
+        int digitCount = intPartEnd - intPartStart;
+        int intDigitCount = Math.max(digitCount, minIntegerDigits);
+        for (int i = intDigitCount - 1; i >= 0; i--) {
+            sb.append(i >= digitCount ? zeroDigit : (char) (zeroDigit + (plain.charAt(intPartEnd - 1 - i) - '0')));
+            if (groupingSize > 0 && i > 0 && i % groupingSize == 0) {
+                sb.append(groupingSeparator);
+            }
+        }
+
+        boolean fractionPresent = minFractionDigits > 0 || fractionDigitCount > 0;
+        if (!fractionPresent && intDigitCount == 0) {
+            sb.append(zeroDigit);
+        }
+        if (decimalSeparatorAlwaysShown || fractionPresent) {
+            sb.append(decimalSeparator);
+        }
+        int shownFractionDigitCount = Math.max(fractionDigitCount, minFractionDigits);
+        for (int i = 0; i < shownFractionDigitCount; i++) {
+            sb.append(i < fractionDigitCount
+                    ? (char) (zeroDigit + (plain.charAt(dotIdx + 1 + i) - '0'))
+                    : zeroDigit);
+        }
+
+        sb.append(negative ? negativeSuffix : positiveSuffix);
+        return sb.toString();
+    }
+
+    private static int digitCount(long n) {
+        int count = 1;
+        while (count < POWERS_OF_10.length && n >= POWERS_OF_10[count]) {
+            count++;
+        }
+        return count;
+    }
+
+}
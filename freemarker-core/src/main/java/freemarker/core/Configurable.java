@@ -22,6 +22,7 @@ package freemarker.core;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Writer;
+import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -111,6 +112,13 @@ public class Configurable {
     public static final String NUMBER_FORMAT_KEY_CAMEL_CASE = "numberFormat";
     /** Alias to the {@code ..._SNAKE_CASE} variation due to backward compatibility constraints. */
     public static final String NUMBER_FORMAT_KEY = NUMBER_FORMAT_KEY_SNAKE_CASE;
+
+    /** Legacy, snake case ({@code like_this}) variation of the setting name. @since 2.3.34 */
+    public static final String SHARED_NUMBER_FORMATS_KEY_SNAKE_CASE = "shared_number_formats";
+    /** Modern, camel case ({@code likeThis}) variation of the setting name. @since 2.3.34 */
+    public static final String SHARED_NUMBER_FORMATS_KEY_CAMEL_CASE = "sharedNumberFormats";
+    /** Alias to the {@code ..._SNAKE_CASE} variation due to backward compatibility constraints. @since 2.3.34 */
+    public static final String SHARED_NUMBER_FORMATS_KEY = SHARED_NUMBER_FORMATS_KEY_SNAKE_CASE;
     
     /** Legacy, snake case ({@code like_this}) variation of the setting name. @since 2.3.23 */
     public static final String CUSTOM_NUMBER_FORMATS_KEY_SNAKE_CASE = "custom_number_formats";
@@ -146,6 +154,13 @@ public class Configurable {
     public static final String DATETIME_FORMAT_KEY_CAMEL_CASE = "datetimeFormat";
     /** Alias to the {@code ..._SNAKE_CASE} variation due to backward compatibility constraints. */
     public static final String DATETIME_FORMAT_KEY = DATETIME_FORMAT_KEY_SNAKE_CASE;
+
+    /** Legacy, snake case ({@code like_this}) variation of the setting name. @since 2.3.34 */
+    public static final String JAVA_TIME_DATE_FORMATS_KEY_SNAKE_CASE = "java_time_date_formats";
+    /** Modern, camel case ({@code likeThis}) variation of the setting name. @since 2.3.34 */
+    public static final String JAVA_TIME_DATE_FORMATS_KEY_CAMEL_CASE = "javaTimeDateFormats";
+    /** Alias to the {@code ..._SNAKE_CASE} variation due to backward compatibility constraints. @since 2.3.34 */
+    public static final String JAVA_TIME_DATE_FORMATS_KEY = JAVA_TIME_DATE_FORMATS_KEY_SNAKE_CASE;
     
     /** Legacy, snake case ({@code like_this}) variation of the setting name. @since 2.3.23 */
     public static final String TIME_ZONE_KEY_SNAKE_CASE = "time_zone";
@@ -320,6 +335,7 @@ public class Configurable {
         CUSTOM_NUMBER_FORMATS_KEY_SNAKE_CASE,
         DATE_FORMAT_KEY_SNAKE_CASE,
         DATETIME_FORMAT_KEY_SNAKE_CASE,
+        JAVA_TIME_DATE_FORMATS_KEY_SNAKE_CASE,
         LAZY_AUTO_IMPORTS_KEY_SNAKE_CASE,
         LAZY_IMPORTS_KEY_SNAKE_CASE,
         LOCALE_KEY_SNAKE_CASE,
@@ -328,6 +344,7 @@ public class Configurable {
         NUMBER_FORMAT_KEY_SNAKE_CASE,
         OBJECT_WRAPPER_KEY_SNAKE_CASE,
         OUTPUT_ENCODING_KEY_SNAKE_CASE,
+        SHARED_NUMBER_FORMATS_KEY_SNAKE_CASE,
         SHOW_ERROR_TIPS_KEY_SNAKE_CASE,
         SQL_DATE_AND_TIME_TIME_ZONE_KEY_SNAKE_CASE,
         STRICT_BEAN_MODELS_KEY,
@@ -354,6 +371,7 @@ public class Configurable {
         CUSTOM_NUMBER_FORMATS_KEY_CAMEL_CASE,
         DATE_FORMAT_KEY_CAMEL_CASE,
         DATETIME_FORMAT_KEY_CAMEL_CASE,
+        JAVA_TIME_DATE_FORMATS_KEY_CAMEL_CASE,
         LAZY_AUTO_IMPORTS_KEY_CAMEL_CASE,
         LAZY_IMPORTS_KEY_CAMEL_CASE,
         LOCALE_KEY_CAMEL_CASE,
@@ -362,6 +380,7 @@ public class Configurable {
         NUMBER_FORMAT_KEY_CAMEL_CASE,
         OBJECT_WRAPPER_KEY_CAMEL_CASE,
         OUTPUT_ENCODING_KEY_CAMEL_CASE,
+        SHARED_NUMBER_FORMATS_KEY_CAMEL_CASE,
         SHOW_ERROR_TIPS_KEY_CAMEL_CASE,
         SQL_DATE_AND_TIME_TIME_ZONE_KEY_CAMEL_CASE,
         STRICT_BEAN_MODELS_KEY_CAMEL_CASE,
@@ -380,9 +399,11 @@ public class Configurable {
     private Locale locale;
     private CFormat cFormat;
     private String numberFormat;
+    private Boolean sharedNumberFormats;
     private String timeFormat;
     private String dateFormat;
     private String dateTimeFormat;
+    private Boolean javaTimeDateFormats;
     private TimeZone timeZone;
     private TimeZone sqlDataAndTimeTimeZone;
     private boolean sqlDataAndTimeTimeZoneSet;
@@ -443,6 +464,8 @@ public class Configurable {
         
         numberFormat = "number";
         properties.setProperty(NUMBER_FORMAT_KEY, numberFormat);
+
+        sharedNumberFormats = Boolean.FALSE;
         
         timeFormat = "";
         properties.setProperty(TIME_FORMAT_KEY, timeFormat);
@@ -453,6 +476,8 @@ public class Configurable {
         dateTimeFormat = "";
         properties.setProperty(DATETIME_FORMAT_KEY, dateTimeFormat);
 
+        javaTimeDateFormats = Boolean.FALSE;
+
         cFormat = _TemplateAPI.getDefaultCFormat(incompatibleImprovements);
 
         classicCompatible = Integer.valueOf(0);
@@ -564,7 +589,52 @@ public class Configurable {
     void setParent(Configurable parent) {
         this.parent = parent;
     }
-    
+
+    /**
+     * Unsets all settings (and removes the custom attributes), so that all values are inherited from the parent, like
+     * in a newly created non-root {@link Configurable}. This is used when an {@link Environment} is reset for reuse.
+     */
+    void unsetAllSettings() {
+        properties = new Properties(parent.properties);
+        customAttributes = new HashMap<>(0);
+
+        locale = null;
+        cFormat = null;
+        numberFormat = null;
+        sharedNumberFormats = null;
+        timeFormat = null;
+        dateFormat = null;
+        dateTimeFormat = null;
+        javaTimeDateFormats = null;
+        timeZone = null;
+        sqlDataAndTimeTimeZone = null;
+        sqlDataAndTimeTimeZoneSet = false;
+        booleanFormat = null;
+        classicCompatible = null;
+        templateExceptionHandler = null;
+        attemptExceptionReporter = null;
+        arithmeticEngine = null;
+        objectWrapper = null;
+        outputEncoding = null;
+        outputEncodingSet = false;
+        urlEscapingCharset = null;
+        urlEscapingCharsetSet = false;
+        autoFlush = null;
+        showErrorTips = null;
+        newBuiltinClassResolver = null;
+        apiBuiltinEnabled = null;
+        truncateBuiltinAlgorithm = null;
+        logTemplateExceptions = null;
+        wrapUncheckedExceptions = null;
+        customDateFormats = null;
+        customNumberFormats = null;
+        autoImports = null;
+        autoIncludes = null;
+        lazyImports = null;
+        lazyAutoImports = null;
+        lazyAutoImportsSet = false;
+    }
+
     /**
      * Toggles the "Classic Compatible" mode. For a comprehensive description
      * of this mode, see {@link #isClassicCompatible()}.
@@ -906,6 +976,48 @@ public class Configurable {
     public boolean isNumberFormatSet() {
         return numberFormat != null;
     }
+
+    /**
+     * Sets whether the {@link DecimalFormat} patterns, and the {@code "number"} and {@code "percent"} styles in the
+     * {@link #setNumberFormat(String) number_format} setting (and in {@code ?string(...)}) are executed with an
+     * immutable formatter that's shared by all threads. The output is the same as with {@link DecimalFormat}. The
+     * advantage is that the {@link DecimalFormat}-s don't have to be cloned for each {@link Environment} (each
+     * template processing) that uses them, and that formatting integers (which is the most common case) doesn't
+     * create temporary objects apart from the result {@link String}. This matters mostly if you process many small
+     * templates that format numbers.
+     *
+     * <p>
+     * Not all formats are executed with the shared formatter; those that it doesn't support (like currency formats,
+     * patterns with exponent, or with rounding modes other than {@code halfEven}, {@code halfUp}, and
+     * {@code halfDown}) are still executed with {@link DecimalFormat}. Also, some non-integer values may be formatted
+     * with a {@link DecimalFormat} internally, if that's needed to ensure the same output.
+     *
+     * <p>
+     * Defaults to {@code false}.
+     *
+     * @since 2.3.34
+     */
+    public void setSharedNumberFormats(boolean sharedNumberFormats) {
+        this.sharedNumberFormats = Boolean.valueOf(sharedNumberFormats);
+    }
+
+    /**
+     * The getter pair of {@link #setSharedNumberFormats(boolean)}.
+     *
+     * @since 2.3.34
+     */
+    public boolean getSharedNumberFormats() {
+        return sharedNumberFormats != null ? sharedNumberFormats.booleanValue() : parent.getSharedNumberFormats();
+    }
+
+    /**
+     * Tells if this setting is set directly in this object or its value is coming from the {@link #getParent() parent}.
+     *
+     * @since 2.3.34
+     */
+    public boolean isSharedNumberFormatsSet() {
+        return sharedNumberFormats != null;
+    }
     
     /**
      * Getter pair of {@link #setCustomNumberFormats(Map)}; do not modify the returned {@link Map}! To be consistent
@@ -1266,6 +1378,48 @@ public class Configurable {
     public boolean isDateTimeFormatSet() {
         return dateTimeFormat != null;
     }
+
+    /**
+     * Sets whether the {@link SimpleDateFormat} patterns, and the {@code "short"}, {@code "medium"}, {@code "long"},
+     * and {@code "full"} styles in the {@link #setDateFormat(String) date_format}, {@link #setTimeFormat(String)
+     * time_format}, and {@link #setDateTimeFormat(String) datetime_format} settings (and in {@code ?string(...)}) are
+     * executed with equivalent {@code java.time.format.DateTimeFormatter}-s. The output is the same as with
+     * {@link SimpleDateFormat}. The advantage is that {@code DateTimeFormatter} is immutable, so the formats can be
+     * shared by all threads, while {@link SimpleDateFormat}-s have to be cloned for each {@link Environment} (each
+     * template processing) that uses them. This matters mostly if you process many small templates that format dates.
+     *
+     * <p>
+     * Not all patterns are translated to {@code DateTimeFormatter}; those that can't be translated without a risk of
+     * changing the output (like those that contain week-based or time zone name fields, or where the locale uses a
+     * non-Gregorian calendar) are still executed with {@link SimpleDateFormat}. Parsing (like
+     * {@code someString?date}) always uses {@link SimpleDateFormat}, so it works exactly like before.
+     *
+     * <p>
+     * Defaults to {@code false}.
+     *
+     * @since 2.3.34
+     */
+    public void setJavaTimeDateFormats(boolean javaTimeDateFormats) {
+        this.javaTimeDateFormats = Boolean.valueOf(javaTimeDateFormats);
+    }
+
+    /**
+     * The getter pair of {@link #setJavaTimeDateFormats(boolean)}.
+     *
+     * @since 2.3.34
+     */
+    public boolean getJavaTimeDateFormats() {
+        return javaTimeDateFormats != null ? javaTimeDateFormats.booleanValue() : parent.getJavaTimeDateFormats();
+    }
+
+    /**
+     * Tells if this setting is set directly in this object or its value is coming from the {@link #getParent() parent}.
+     *
+     * @since 2.3.34
+     */
+    public boolean isJavaTimeDateFormatsSet() {
+        return javaTimeDateFormats != null;
+    }
     
     /**
      * Getter pair of {@link #setCustomDateFormats(Map)}; do not modify the returned {@link Map}! To be consistent with
@@ -2258,11 +2412,19 @@ public class Configurable {
      *       
      *   <li><p>{@code "number_format"}: See {@link #setNumberFormat(String)}.
      *   
+     *   <li><p>{@code "shared_number_formats"}:
+     *       See {@link #setSharedNumberFormats(boolean)}.
+     *       <br>String value: {@code "true"}, {@code "false"}, {@code "y"},  etc.
+     *       
      *   <li><p>{@code "boolean_format"}: See {@link #setBooleanFormat(String)} .
      *   
      *   <li><p>{@code "date_format", "time_format", "datetime_format"}:
      *       See {@link #setDateFormat(String)}, {@link #setTimeFormat(String)}, {@link #setDateTimeFormat(String)}. 
      *        
+     *   <li><p>{@code "java_time_date_formats"}:
+     *       See {@link #setJavaTimeDateFormats(boolean)}.
+     *       <br>String value: {@code "true"}, {@code "false"}, {@code "y"},  etc.
+     *       
      *   <li><p>{@code "time_zone"}:
      *       See {@link #setTimeZone(TimeZone)}.
      *       <br>String value: With the format as {@link TimeZone#getTimeZone(String)} defines it. Also, since 2.3.21
@@ -2538,6 +2700,18 @@ public class Configurable {
      *
      *   <li><p>{@code "tab_size"}:
      *       See {@link Configuration#setTabSize(int)}.
+     *
+     *   <li><p>{@code "parsed_string_cache_max_size"}:
+     *       See {@link Configuration#setParsedStringCacheMaxSize(int)}.
+     *       <br>String value: A non-negative integer, like {@code 1000}.
+     *
+     *   <li><p>{@code "inline_literal_includes"}:
+     *       See {@link Configuration#setInlineLiteralIncludes(boolean)}.
+     *       <br>String value: {@code "true"}, {@code "false"}, {@code "y"},  etc.
+     *
+     *   <li><p>{@code "lightweight_handled_template_exceptions"}:
+     *       See {@link Configuration#setLightweightHandledTemplateExceptions(boolean)}.
+     *       <br>String value: {@code "true"}, {@code "false"}, {@code "y"},  etc.
      * </ul>
      * 
      * <p id="fm_obe">Regarding <em>object builder expressions</em> (used by the setting values where it was
@@ -2653,6 +2827,9 @@ public class Configurable {
                 }
             } else if (NUMBER_FORMAT_KEY_SNAKE_CASE.equals(name) || NUMBER_FORMAT_KEY_CAMEL_CASE.equals(name)) {
                 setNumberFormat(value);
+            } else if (SHARED_NUMBER_FORMATS_KEY_SNAKE_CASE.equals(name)
+                    || SHARED_NUMBER_FORMATS_KEY_CAMEL_CASE.equals(name)) {
+                setSharedNumberFormats(StringUtil.getYesNo(value));
             } else if (CUSTOM_NUMBER_FORMATS_KEY_SNAKE_CASE.equals(name)
                     || CUSTOM_NUMBER_FORMATS_KEY_CAMEL_CASE.equals(name)) {
                 Map map = (Map) _ObjectBuilderSettingEvaluator.eval(
@@ -2666,6 +2843,9 @@ public class Configurable {
                 setDateFormat(value);
             } else if (DATETIME_FORMAT_KEY_SNAKE_CASE.equals(name) || DATETIME_FORMAT_KEY_CAMEL_CASE.equals(name)) {
                 setDateTimeFormat(value);
+            } else if (JAVA_TIME_DATE_FORMATS_KEY_SNAKE_CASE.equals(name)
+                    || JAVA_TIME_DATE_FORMATS_KEY_CAMEL_CASE.equals(name)) {
+                setJavaTimeDateFormats(StringUtil.getYesNo(value));
             } else if (CUSTOM_DATE_FORMATS_KEY_SNAKE_CASE.equals(name)
                     || CUSTOM_DATE_FORMATS_KEY_CAMEL_CASE.equals(name)) {
                 Map map = (Map) _ObjectBuilderSettingEvaluator.eval(
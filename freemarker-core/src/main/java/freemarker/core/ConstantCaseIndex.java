@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.List;
+
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template._VersionInts;
+
+/**
+ * Finds the first matching case among case values that are all string literals, or all number literals, with a hash
+ * lookup, instead of comparing the value with each of them in turn. Used by {@link SwitchBlock}, and {@link IfBlock}
+ * for {@code #if}-{@code #elseif} chains that compare the same expression with literals. The result is the same as if
+ * the value was compared with the case values in order, with the {@code ==} operator, as far as the value has a type
+ * (and the settings are) supported here; otherwise {@link #UNSUPPORTED_VALUE} is returned, and the caller has to do
+ * the comparisons as usual.
+ */
+final class ConstantCaseIndex {
+
+    static final int NO_MATCH = -1;
+    static final int UNSUPPORTED_VALUE = -2;
+
+    /** With fewer cases, comparing the value with each of them is about as fast. */
+    private static final int MIN_CASE_COUNT = 4;
+
+    private final HashMap<Object, Integer> caseIndexesByKey;
+    private final boolean stringCases;
+
+    private ConstantCaseIndex(HashMap<Object, Integer> caseIndexesByKey, boolean stringCases) {
+        this.caseIndexesByKey = caseIndexesByKey;
+        this.stringCases = stringCases;
+    }
+
+    /**
+     * @param caseValueExps
+     *            The expressions that the value is compared with, in the order of the cases; {@code null} elements
+     *            (like for {@code #default}) are skipped, but they still count when indexing the cases.
+     * 
+     * @return {@code null} if the cases aren't suitable for a {@link ConstantCaseIndex}.
+     */
+    static ConstantCaseIndex createOrNull(List<Expression> caseValueExps, Configuration cfg) {
+        Boolean stringCases = null;
+        HashMap<Object, Integer> caseIndexesByKey = new HashMap<>();
+        for (int caseIndex = 0; caseIndex < caseValueExps.size(); caseIndex++) {
+            Expression caseValueExp = caseValueExps.get(caseIndex);
+            if (caseValueExp == null) {
+                continue;
+            }
+            
+            caseValueExp = MiscUtil.peelParentheses(caseValueExp);
+            final Object key;
+            if (caseValueExp instanceof StringLiteral && caseValueExp.isLiteral()) {
+                if (stringCases == Boolean.FALSE) {
+                    return null;
+                }
+                stringCases = Boolean.TRUE;
+                try {
+                    key = toStringKey(caseValueExp.evalAndCoerceToPlainText(null));
+                } catch (TemplateException e) {
+                    throw new BugException(e);
+                }
+            } else if (caseValueExp instanceof NumberLiteral) {
+                if (stringCases == Boolean.TRUE) {
+                    return null;
+                }
+                stringCases = Boolean.FALSE;
+                key = toNumberKey(((NumberLiteral) caseValueExp).getAsNumber());
+                if (key == null) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+            
+            if (!caseIndexesByKey.containsKey(key)) { // The first matching case wins
+                caseIndexesByKey.put(key, caseIndex);
+            }
+        }
+        
+        if (stringCases == null || caseIndexesByKey.size() < MIN_CASE_COUNT
+                // Before this, strings were compared with a locale specific Collator, so there's no hash key for them
+                || stringCases && cfg.getIncompatibleImprovements().intValue() < _VersionInts.V_2_3_33) {
+            return null;
+        }
+        return new ConstantCaseIndex(caseIndexesByKey, stringCases);
+    }
+
+    /**
+     * Returns the index of the first case that's equal to the value, or {@link #NO_MATCH}, or
+     * {@link #UNSUPPORTED_VALUE}.
+     * 
+     * @param value
+     *            The already evaluated value; can be {@code null}
+     * @param valueExp
+     *            The expression whose value is {@code value}; used for error messages
+     */
+    int getCaseIndex(TemplateModel value, Expression valueExp, Environment env) throws TemplateException {
+        final Object key;
+        if (stringCases) {
+            if (!(value instanceof TemplateScalarModel)) {
+                return UNSUPPORTED_VALUE;
+            }
+            key = toStringKey(EvalUtil.modelToString((TemplateScalarModel) value, valueExp, env));
+        } else {
+            if (!(value instanceof TemplateNumberModel)
+                    || env.getArithmeticEngine().getClass() != ArithmeticEngine.BigDecimalEngine.class) {
+                return UNSUPPORTED_VALUE;
+            }
+            key = toNumberKey(EvalUtil.modelToNumber((TemplateNumberModel) value, valueExp));
+            if (key == null) {
+                return UNSUPPORTED_VALUE;
+            }
+        }
+        Integer caseIndex = caseIndexesByKey.get(key);
+        return caseIndex != null ? caseIndex : NO_MATCH;
+    }
+
+    /**
+     * Strings are equal according {@link EvalUtil#compare} exactly if these keys are equal. 
+     */
+    private static String toStringKey(String s) {
+        return Normalizer.normalize(s, Normalizer.Form.NFKC);
+    }
+
+    /**
+     * Numbers are equal according to {@link ArithmeticEngine.BigDecimalEngine#compareNumbers(Number, Number)} exactly
+     * if these keys are equal. As that converts the numbers to {@link BigDecimal} the same way, the key is that
+     * {@link BigDecimal} with trailing zeros removed.
+     * 
+     * @return {@code null} if the number has no key (like infinity, or an unknown {@link Number} subclass).
+     */
+    private static BigDecimal toNumberKey(Number num) {
+        final BigDecimal bd;
+        if (num instanceof BigDecimal) {
+            bd = (BigDecimal) num;
+        } else if (num instanceof Integer || num instanceof Long || num instanceof Short || num instanceof Byte) {
+            bd = BigDecimal.valueOf(num.longValue());
+        } else if (num instanceof BigInteger) {
+            bd = new BigDecimal((BigInteger) num);
+        } else if (num instanceof Double || num instanceof Float) {
+            double d = num.doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return null;
+            }
+            bd = new BigDecimal(num.toString());
+        } else {
+            return null;
+        }
+        return bd.signum() != 0 ? bd.stripTrailingZeros() : BigDecimal.ZERO;
+    }
+
+}
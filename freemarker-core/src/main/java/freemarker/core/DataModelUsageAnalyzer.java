@@ -0,0 +1,424 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import freemarker.cache._CacheAPI;
+import freemarker.template.Configuration;
+import freemarker.template.MalformedTemplateNameException;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+/**
+ * Implements {@link Template#getDataModelUsage()}; see {@link TemplateDataModelUsage} for what it calculates.
+ *
+ * <p>A name is considered to refer to a data-model variable, unless for sure it refers to something else when it's
+ * read: a loop variable, a lambda, macro or nested content parameter, a macro or function defined in the same
+ * template, an auto-imported namespace, or a variable that was set with {@code #assign}, {@code #global},
+ * {@code #local}, or {@code #import} earlier on the same level (not inside a conditional or repeated part, like an
+ * {@code #if} or {@code #list}). Included and imported templates are analyzed on their own, as if nothing was defined
+ * by the template that includes or imports them.
+ */
+final class DataModelUsageAnalyzer {
+
+    private final Configuration cfg;
+    private final Template mainTemplate;
+    private final Set<String> analyzedTemplateNames = new HashSet<>();
+    private final Set<List<String>> paths = new LinkedHashSet<>();
+    private boolean complete = true;
+
+    private DataModelUsageAnalyzer(Template mainTemplate) {
+        this.mainTemplate = mainTemplate;
+        this.cfg = mainTemplate.getConfiguration();
+    }
+
+    static TemplateDataModelUsage analyze(Template template) throws IOException {
+        DataModelUsageAnalyzer analyzer = new DataModelUsageAnalyzer(template);
+
+        // See Configuration.doAutoImportsAndIncludes; we just analyze all of them, even if some are overridden.
+        Set<String> autoImportedNamespaceNames = new HashSet<>();
+        analyzer.analyzeAutoImportsAndIncludes(
+                template.getConfiguration().getAutoImportsWithoutFallback(),
+                template.getConfiguration().getAutoIncludesWithoutFallback(),
+                autoImportedNamespaceNames);
+        analyzer.analyzeAutoImportsAndIncludes(
+                template.getAutoImportsWithoutFallback(), template.getAutoIncludesWithoutFallback(),
+                autoImportedNamespaceNames);
+        analyzer.analyze(template, autoImportedNamespaceNames);
+
+        Set<String> topLevelNames = new LinkedHashSet<>();
+        Set<List<String>> minimalPaths = new LinkedHashSet<>();
+        for (List<String> path : analyzer.paths) {
+            topLevelNames.add(path.get(0));
+            if (!hasProperPrefixIn(path, analyzer.paths)) {
+                minimalPaths.add(Collections.unmodifiableList(path));
+            }
+        }
+        return new TemplateDataModelUsage(topLevelNames, minimalPaths, analyzer.complete);
+    }
+
+    private void analyzeAutoImportsAndIncludes(
+            Map<String, String> autoImports, List<String> autoIncludes, Set<String> autoImportedNamespaceNames)
+            throws IOException {
+        if (autoImports != null) {
+            for (Map.Entry<String, String> autoImport : autoImports.entrySet()) {
+                analyze(getTemplate(null, autoImport.getValue(), null), null);
+                autoImportedNamespaceNames.add(autoImport.getKey());
+            }
+        }
+        if (autoIncludes != null) {
+            for (String autoInclude : autoIncludes) {
+                analyze(getTemplate(null, autoInclude, null), null);
+            }
+        }
+    }
+
+    private static boolean hasProperPrefixIn(List<String> path, Set<List<String>> paths) {
+        for (int prefixLength = 1; prefixLength < path.size(); prefixLength++) {
+            if (paths.contains(path.subList(0, prefixLength))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void analyze(Template template, Collection<String> predefinedNames) throws IOException {
+        if (template == null || template.getRootTreeNode() == null
+                || template.getName() != null && !analyzedTemplateNames.add(template.getName())) {
+            return;
+        }
+
+        Set<String> templateLevelNames = new HashSet<>(template.getMacros().keySet());
+        if (predefinedNames != null) {
+            templateLevelNames.addAll(predefinedNames);
+        }
+        new TemplateAnalyzer(template, templateLevelNames).analyze(template.getRootTreeNode(), null, true);
+    }
+
+    /**
+     * Loads the template the same way as {@code #include}/{@code #import} does, assuming that the locale wasn't
+     * changed during template processing; returns {@code null} if the template is missing.
+     */
+    private Template getTemplate(Template baseTemplate, String name, String encoding) throws IOException {
+        String fullName;
+        if (baseTemplate != null && baseTemplate.getName() != null && !cfg.isClassicCompatible()) {
+            try {
+                fullName = _CacheAPI.toRootBasedName(cfg.getTemplateNameFormat(), baseTemplate.getName(), name);
+            } catch (MalformedTemplateNameException e) {
+                // Will fail on runtime
+                return null;
+            }
+        } else {
+            fullName = name;
+        }
+
+        Locale locale = mainTemplate.getLocale();
+        if (encoding == null) {
+            encoding = mainTemplate.getEncoding();
+            if (encoding == null) {
+                encoding = cfg.getEncoding(locale);
+            }
+        }
+        return cfg.getTemplate(
+                fullName, locale, mainTemplate.getCustomLookupCondition(), encoding, true, true);
+    }
+
+    /**
+     * Analyzes a single template, that is, without following {@code #include}-s and {@code #import}-s.
+     */
+    private class TemplateAnalyzer {
+
+        private final Template template;
+        private final Set<String> templateLevelNames;
+        /**
+         * The names that are for sure defined at the currently analyzed point in the current macro, or on the top
+         * level of the template.
+         */
+        private Set<String> definedNames;
+
+        TemplateAnalyzer(Template template, Set<String> templateLevelNames) {
+            this.template = template;
+            this.templateLevelNames = templateLevelNames;
+            this.definedNames = new HashSet<>(templateLevelNames);
+        }
+
+        /**
+         * @param localNames
+         *            The loop variables, lambda parameters and such that are visible where the element is;
+         *            {@code null} if there's none.
+         * @param unconditional
+         *            Whether the element is executed exactly once whenever its macro (or the template top level) is,
+         *            and in the order the elements occur.
+         */
+        void analyze(TemplateElement element, LocalNames localNames, boolean unconditional) throws IOException {
+            if (element instanceof Macro) {
+                Set<String> savedDefinedNames = definedNames;
+                definedNames = new HashSet<>(templateLevelNames);
+                try {
+                    int paramCount = element.getParameterCount();
+                    for (int i = 1; i < paramCount; i++) {
+                        Object paramValue = element.getParameterValue(i);
+                        if (paramValue instanceof String) {
+                            definedNames.add((String) paramValue);
+                        }
+                    }
+                    analyzeExpressionParameters(element, null);
+                    analyzeChildren(element, null, true);
+                } finally {
+                    definedNames = savedDefinedNames;
+                }
+            } else if (element instanceof IteratorBlock || element instanceof Items) {
+                analyzeExpressionParameters(element, localNames);
+                LocalNames bodyLocalNames = localNames;
+                int paramCount = element.getParameterCount();
+                for (int i = 0; i < paramCount; i++) {
+                    Object paramValue = element.getParameterValue(i);
+                    if (paramValue instanceof String) {
+                        bodyLocalNames = new LocalNames((String) paramValue, bodyLocalNames);
+                    }
+                }
+                analyzeChildren(element, bodyLocalNames, false);
+            } else if (element instanceof UnifiedCall) {
+                analyzeExpressionParameters(element, localNames);
+                LocalNames bodyLocalNames = localNames;
+                List<String> bodyParameterNames = ((UnifiedCall) element).getBodyParameterNames();
+                if (bodyParameterNames != null) {
+                    for (String bodyParameterName : bodyParameterNames) {
+                        bodyLocalNames = new LocalNames(bodyParameterName, bodyLocalNames);
+                    }
+                }
+                analyzeChildren(element, bodyLocalNames, false);
+            } else if (element instanceof EscapeBlock) {
+                // The escaping expression is already applied on the ${}-s inside, but we must see the variables it
+                // refers to.
+                analyze((Expression) element.getParameterValue(1),
+                        new LocalNames((String) element.getParameterValue(0), localNames));
+                analyzeChildren(element, localNames, unconditional);
+            } else if (element instanceof Assignment) {
+                Assignment assignment = (Assignment) element;
+                analyzeExpressionParameters(element, localNames);
+                if (unconditional && assignment.getNamespaceExp() == null) {
+                    definedNames.add(assignment.getVariableName());
+                }
+            } else if (element instanceof BlockAssignment) {
+                BlockAssignment assignment = (BlockAssignment) element;
+                analyzeExpressionParameters(element, localNames);
+                analyzeChildren(element, localNames, false);
+                if (unconditional && assignment.getNamespaceExp() == null) {
+                    definedNames.add(assignment.getVariableName());
+                }
+            } else if (element instanceof LibraryLoad) {
+                LibraryLoad libraryLoad = (LibraryLoad) element;
+                analyzeExpressionParameters(element, localNames);
+                String importedTemplateName = libraryLoad.getLiteralImportedTemplateName();
+                if (importedTemplateName != null) {
+                    DataModelUsageAnalyzer.this.analyze(getTemplate(template, importedTemplateName, null), null);
+                } else {
+                    complete = false;
+                }
+                if (unconditional) {
+                    definedNames.add(libraryLoad.getTargetNsVarName());
+                }
+            } else if (element instanceof Include) {
+                Include include = (Include) element;
+                analyzeExpressionParameters(element, localNames);
+                if (include.getLiteralParse() != Boolean.FALSE) {
+                    String includedTemplateName = include.getLiteralIncludedTemplateName();
+                    if (includedTemplateName != null) {
+                        DataModelUsageAnalyzer.this.analyze(
+                                getTemplate(template, includedTemplateName, include.getLiteralEncoding()), null);
+                    } else {
+                        complete = false;
+                    }
+                }
+            } else {
+                analyzeExpressionParameters(element, localNames);
+                analyzeChildren(element, localNames, unconditional && isExecutedExactlyOnce(element));
+            }
+        }
+
+        private void analyzeChildren(TemplateElement element, LocalNames localNames, boolean unconditional)
+                throws IOException {
+            int childCount = element.getChildCount();
+            for (int i = 0; i < childCount; i++) {
+                analyze(element.getChild(i), localNames, unconditional);
+            }
+        }
+
+        private void analyzeExpressionParameters(TemplateObject templateObject, LocalNames localNames) {
+            int paramCount = templateObject.getParameterCount();
+            for (int i = 0; i < paramCount; i++) {
+                Object paramValue = templateObject.getParameterValue(i);
+                if (paramValue instanceof Expression) {
+                    analyze((Expression) paramValue, localNames);
+                } else if (paramValue instanceof Interpolation) {
+                    // Like the ${x} part of "Hello ${x}!"; the parameters of a StringLiteral.
+                    analyzeExpressionParameters((Interpolation) paramValue, localNames);
+                }
+            }
+        }
+
+        private void analyze(Expression exp, LocalNames localNames) {
+            List<String> nameChain = getNameChain(exp);
+            if (nameChain != null) {
+                String root = nameChain.get(0);
+                List<String> path;
+                if (root.startsWith(".")) {
+                    if (nameChain.size() == 1) {
+                        // Like .vars?keys, or .vars[name]
+                        complete = false;
+                        return;
+                    }
+                    if (root.equals("." + BuiltinVariable.VARS) && isDefined(nameChain.get(1), localNames)) {
+                        return;
+                    }
+                    path = nameChain.subList(1, nameChain.size());
+                } else {
+                    if (isDefined(root, localNames)) {
+                        return;
+                    }
+                    path = nameChain;
+                }
+                paths.add(new ArrayList<>(path));
+                return;
+            }
+
+            if (exp instanceof LocalLambdaExpression) {
+                int paramCount = exp.getParameterCount();
+                LocalNames bodyLocalNames = localNames;
+                for (int i = 0; i < paramCount - 1; i++) {
+                    bodyLocalNames = new LocalNames(((Identifier) exp.getParameterValue(i)).getName(), bodyLocalNames);
+                }
+                analyze((Expression) exp.getParameterValue(paramCount - 1), bodyLocalNames);
+                return;
+            }
+
+            if (exp instanceof BuiltInsForStringsMisc.evalBI || exp instanceof Interpret
+                    || exp instanceof BuiltinVariable && isGetOptionalTemplate((BuiltinVariable) exp)) {
+                complete = false;
+            }
+            analyzeExpressionParameters(exp, localNames);
+        }
+
+        private boolean isDefined(String name, LocalNames localNames) {
+            return definedNames.contains(name) || localNames != null && localNames.contains(name);
+        }
+
+    }
+
+    /**
+     * Returns the names in a chain like {@code a.b["c"]}, or {@code null} if the expression is not such a chain. If the
+     * chain starts with a special variable that falls back to the data-model (like {@code .vars.a.b}), then the first
+     * name is the special variable name, with {@code "."} prefix.
+     */
+    private static List<String> getNameChain(Expression exp) {
+        if (exp instanceof Identifier) {
+            List<String> nameChain = new ArrayList<>();
+            nameChain.add(((Identifier) exp).getName());
+            return nameChain;
+        }
+        if (exp instanceof BuiltinVariable) {
+            String name = ((BuiltinVariable) exp).getName();
+            if (name.equals(BuiltinVariable.DATA_MODEL_CC)) {
+                name = BuiltinVariable.DATA_MODEL;
+            }
+            if (name.equals(BuiltinVariable.VARS) || name.equals(BuiltinVariable.DATA_MODEL)
+                    || name.equals(BuiltinVariable.GLOBALS)) {
+                List<String> nameChain = new ArrayList<>();
+                nameChain.add("." + name);
+                return nameChain;
+            }
+            return null;
+        }
+        if (exp instanceof Dot) {
+            List<String> nameChain = getNameChain(((Dot) exp).getTarget());
+            if (nameChain != null) {
+                nameChain.add(((Dot) exp).getRHO());
+            }
+            return nameChain;
+        }
+        if (exp instanceof DynamicKeyName) {
+            Expression keyExp = ((DynamicKeyName) exp).getKeyExpression();
+            if (!(keyExp instanceof StringLiteral && keyExp.isLiteral())) {
+                return null;
+            }
+            List<String> nameChain = getNameChain(((DynamicKeyName) exp).getTarget());
+            if (nameChain != null) {
+                try {
+                    nameChain.add(keyExp.evalAndCoerceToPlainText(null));
+                } catch (TemplateException e) {
+                    // Evaluation of literals must not need the Environment
+                    throw new BugException(e);
+                }
+            }
+            return nameChain;
+        }
+        if (exp instanceof ParentheticalExpression) {
+            return getNameChain((Expression) exp.getParameterValue(0));
+        }
+        return null;
+    }
+
+    private static boolean isGetOptionalTemplate(BuiltinVariable exp) {
+        String name = exp.getName();
+        return name.equals(BuiltinVariable.GET_OPTIONAL_TEMPLATE)
+                || name.equals(BuiltinVariable.GET_OPTIONAL_TEMPLATE_CC);
+    }
+
+    /**
+     * Elements that don't change if, how many times, or in what order their children are executed.
+     */
+    private static boolean isExecutedExactlyOnce(TemplateElement element) {
+        return element instanceof MixedContent || element instanceof AssignmentInstruction
+                || element instanceof NoEscapeBlock || element instanceof OutputFormatBlock
+                || element instanceof AutoEscBlock || element instanceof NoAutoEscBlock
+                || element instanceof CompressedBlock;
+    }
+
+    private static final class LocalNames {
+        private final String name;
+        private final LocalNames parent;
+
+        LocalNames(String name, LocalNames parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        boolean contains(String name) {
+            for (LocalNames localNames = this; localNames != null; localNames = localNames.parent) {
+                if (localNames.name.equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
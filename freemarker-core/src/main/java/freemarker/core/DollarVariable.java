@@ -101,7 +101,8 @@ final class DollarVariable extends Interpolation {
 
     @Override
     protected Object calculateInterpolatedStringOrMarkup(Environment env) throws TemplateException {
-        return EvalUtil.coerceModelToStringOrMarkup(escapedExpression.eval(env), escapedExpression, null, env);
+        return EvalUtil.coerceInterpolatedValueToStringOrMarkup(
+                escapedExpression.evalForInterpolation(env), escapedExpression, env);
     }
 
     @Override
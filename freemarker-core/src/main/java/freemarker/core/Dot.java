@@ -19,6 +19,7 @@
 
 package freemarker.core;
 
+import freemarker.template.InterpolationAwareTemplateHashModel;
 import freemarker.template.TemplateException;
 import freemarker.template.TemplateHashModel;
 import freemarker.template.TemplateModel;
@@ -45,12 +46,32 @@ class Dot extends Expression {
         copyFieldsFrom(dot);
     }
 
+    Expression getTarget() {
+        return target;
+    }
+
     @Override
     TemplateModel _eval(Environment env) throws TemplateException {
         TemplateModel leftModel = target.eval(env);
         if (leftModel instanceof TemplateHashModel) {
             return evalOnHash((TemplateHashModel) leftModel);
         }
+        return evalOnNonHash(leftModel, env);
+    }
+
+    @Override
+    Object _evalForInterpolation(Environment env) throws TemplateException {
+        TemplateModel leftModel = target.eval(env);
+        if (leftModel instanceof InterpolationAwareTemplateHashModel) {
+            return ((InterpolationAwareTemplateHashModel) leftModel).getForInterpolation(key);
+        }
+        if (leftModel instanceof TemplateHashModel) {
+            return evalOnHash((TemplateHashModel) leftModel);
+        }
+        return evalOnNonHash(leftModel, env);
+    }
+
+    private TemplateModel evalOnNonHash(TemplateModel leftModel, Environment env) throws TemplateException {
         if (leftModel == null && env.isClassicCompatible()) {
             return null; // ${noSuchVar.foo} has just printed nothing in FM 1.
         }
@@ -41,6 +41,11 @@ class DotBeforeMethodCall extends Dot {
         super(dot);
     }
 
+    @Override
+    Object _evalForInterpolation(Environment env) throws TemplateException {
+        return _eval(env);
+    }
+
     @Override
     protected TemplateModel evalOnHash(TemplateHashModel leftModel) throws TemplateException {
         if (leftModel instanceof MethodCallAwareTemplateHashModel) {
@@ -65,6 +65,14 @@ class DynamicKeyName extends Expression {
         copyFieldsFrom(dynamicKeyName);
     }
 
+    Expression getTarget() {
+        return target;
+    }
+
+    Expression getKeyExpression() {
+        return keyExpression;
+    }
+
     @Override
     TemplateModel _eval(Environment env) throws TemplateException {
         TemplateModel targetModel = target.eval(env);
@@ -28,6 +28,7 @@ import java.sql.Timestamp;
 import java.text.Collator;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -40,12 +41,21 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import freemarker.cache.TemplateNameFormat;
 import freemarker.cache._CacheAPI;
 import freemarker.ext.beans.BeansWrapper;
+import freemarker.ext.util.WrapperTemplateModel;
 import freemarker.log.Logger;
+import freemarker.template.AdapterTemplateModel;
 import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapper;
 import freemarker.template.MalformedTemplateNameException;
 import freemarker.template.ObjectWrapper;
 import freemarker.template.SimpleHash;
@@ -71,9 +81,11 @@ import freemarker.template.TemplateTransformModel;
 import freemarker.template.TransformControl;
 import freemarker.template.Version;
 import freemarker.template._ObjectWrappers;
+import freemarker.template._TemplateAPI;
 import freemarker.template._VersionInts;
 import freemarker.template.utility.DateUtil;
 import freemarker.template.utility.DateUtil.DateToISO8601CalendarFactory;
+import freemarker.template.utility.NullArgumentException;
 import freemarker.template.utility.NullWriter;
 import freemarker.template.utility.StringUtil;
 import freemarker.template.utility.TemplateModelUtils;
@@ -103,7 +115,9 @@ public final class Environment extends Configurable {
 
     private final Configuration configuration;
     private final boolean incompatibleImprovementsGE2328;
-    private final TemplateHashModel rootDataModel;
+    private TemplateHashModel rootDataModel;
+    /** Set by {@link #prefetchDataModel(Executor)}; {@code null} if that wasn't called. */
+    private Map<String, PrefetchedDataModelValue> prefetchedDataModelValues;
     private TemplateElement[] instructionStack = new TemplateElement[16];
     private int instructionStackSize = 0;
     private final ArrayList recoveredErrorStack = new ArrayList();
@@ -189,6 +203,20 @@ public final class Environment extends Configurable {
 
     private TemplateProcessingTracer templateProcessingTracer;
 
+    /**
+     * The effective values of the settings that are read very often during template processing; {@code null} if
+     * it has to be (re)created. See {@link SettingsSnapshot}.
+     */
+    private SettingsSnapshot settingsSnapshot;
+
+    /** Set by {@link #reset(TemplateHashModel, Writer)}; then we don't drop the cached values after processing. */
+    private boolean reusable;
+    /**
+     * The setting-dependent cached values that {@link #reset(TemplateHashModel, Writer)} has moved aside, to be
+     * restored by {@link #process()} if the settings are still the same. {@code null} if there's nothing to restore.
+     */
+    private SettingDependentCachedValues cachedValuesBeforeReset;
+
     /**
      * Retrieves the environment object associated with the current thread, or {@code null} if there's no template
      * processing going on in this thread. Data model implementations that need access to the environment can call this
@@ -316,8 +344,14 @@ public final class Environment extends Configurable {
         Object savedEnv = threadEnv.get();
         threadEnv.set(this);
         try {
-            // Cached values from a previous execution are possibly outdated.
-            clearCachedValues();
+            // The Template or Configuration settings might have been changed since the Environment was created.
+            settingsSnapshot = null;
+            if (cachedValuesBeforeReset != null) {
+                restoreCachedValuesIfSettingsUnchanged();
+            } else {
+                // Cached values from a previous execution are possibly outdated.
+                clearCachedValues();
+            }
             try {
                 doAutoImportsAndIncludes(this);
                 visit(getTemplate().getRootTreeNode());
@@ -326,14 +360,144 @@ public final class Environment extends Configurable {
                     out.flush();
                 }
             } finally {
-                // It's just to allow the GC to free memory...
-                clearCachedValues();
+                if (!reusable) {
+                    // It's just to allow the GC to free memory...
+                    clearCachedValues();
+                }
             }
         } finally {
             threadEnv.set(savedEnv);
         }
     }
 
+    /**
+     * Brings this {@link Environment} back to the state it was in right after it was created, but with a new data-model
+     * and output, so that {@link #process()} can be called again. This is useful if the same template is processed
+     * very often, as the cost of creating a new {@link Environment} is avoided. Everything that was set during the
+     * previous processing (or after creating the {@link Environment}) is lost, including the settings (like the
+     * {@code locale}), the variables in the namespaces, and the loaded libraries. However, the formatters and other
+     * values that this {@link Environment} has cached internally are kept, as long as the settings they depend on end
+     * up being the same again when {@link #process()} is called.
+     *
+     * <p>
+     * It's up to the caller to ensure that the same {@link Environment} is only used by one thread at a time, like by
+     * storing it in a {@link ThreadLocal}, or in a pool. Typically, you should use
+     * {@link Template#resetProcessingEnvironment(Environment, Object, Writer)} instead of calling this directly.
+     *
+     * @param rootDataModel
+     *            Not {@code null}; see the similar parameter of
+     *            {@link #Environment(Template, TemplateHashModel, Writer)}
+     * @param out
+     *            Not {@code null}
+     *
+     * @throws IllegalStateException
+     *             If this {@link Environment} is processing a template right now.
+     *
+     * @since 2.3.34
+     */
+    public void reset(TemplateHashModel rootDataModel, Writer out) {
+        NullArgumentException.check("rootDataModel", rootDataModel);
+        NullArgumentException.check("out", out);
+        if (instructionStackSize != 0) {
+            throw new IllegalStateException("Can't reset an Environment while it's processing a template.");
+        }
+
+        cachedValuesBeforeReset = new SettingDependentCachedValues();
+        clearCachedValues();
+        cachedTemplateNumberFormat = null;
+        cachedSQLDateAndTimeTimeZoneSameAsNormal = null;
+        cNumberFormat = null;
+        cTemplateNumberFormat = null;
+        cTemplateNumberFormatWithPre2331IcIBug = null;
+        clearCachedTrueAndFalseString();
+
+        unsetAllSettings();
+        settingsSnapshot = null;
+        legacyParent = null;
+
+        this.rootDataModel = rootDataModel;
+        this.out = out;
+        prefetchedDataModelValues = null;
+
+        Arrays.fill(instructionStack, null);
+        recoveredErrorStack.clear();
+        currentMacroContext = null;
+        localContextStack = null;
+        mainNamespace.clear();
+        globalNamespace.clear();
+        currentNamespace = mainNamespace;
+        loadedLibs = null;
+        inAttemptBlock = false;
+        lastThrowable = null;
+        lastReturnValue = null;
+        currentVisitorNode = null;
+        nodeNamespaces = null;
+        nodeNamespaceIndex = 0;
+        currentNodeName = null;
+        currentNodeNS = null;
+        fastInvalidReferenceExceptions = false;
+        templateProcessingTracer = null;
+        customStateVariables = null;
+
+        macroToNamespaceLookup.clear();
+        importMacros(getMainTemplate());
+
+        reusable = true;
+    }
+
+    private void restoreCachedValuesIfSettingsUnchanged() {
+        SettingDependentCachedValues cachedValues = cachedValuesBeforeReset;
+        cachedValuesBeforeReset = null;
+        if (!cachedValues.settingValues.equals(getCacheAffectingSettingValues())) {
+            clearCachedValues();
+            return;
+        }
+        // Some of these might have been re-created since the reset (under the same settings); we keep those.
+        if (cachedTemplateNumberFormat == null) {
+            cachedTemplateNumberFormat = cachedValues.templateNumberFormat;
+        }
+        if (cachedTemplateNumberFormats == null) {
+            cachedTemplateNumberFormats = cachedValues.templateNumberFormats;
+        }
+        if (cachedTempDateFormatArray == null) {
+            cachedTempDateFormatArray = cachedValues.tempDateFormatArray;
+        }
+        if (cachedTempDateFormatsByFmtStrArray == null) {
+            cachedTempDateFormatsByFmtStrArray = cachedValues.tempDateFormatsByFmtStrArray;
+        }
+        if (cachedSQLDateAndTimeTimeZoneSameAsNormal == null) {
+            cachedSQLDateAndTimeTimeZoneSameAsNormal = cachedValues.sqlDateAndTimeTimeZoneSameAsNormal;
+        }
+        if (cNumberFormat == null) {
+            cNumberFormat = cachedValues.cNumberFormat;
+        }
+        if (cTemplateNumberFormat == null) {
+            cTemplateNumberFormat = cachedValues.cTemplateNumberFormat;
+        }
+        if (cTemplateNumberFormatWithPre2331IcIBug == null) {
+            cTemplateNumberFormatWithPre2331IcIBug = cachedValues.cTemplateNumberFormatWithPre2331IcIBug;
+        }
+        if (cachedCollator == null) {
+            cachedCollator = cachedValues.collator;
+        }
+        if (!cachedURLEscapingCharsetSet) {
+            cachedURLEscapingCharset = cachedValues.urlEscapingCharset;
+            cachedURLEscapingCharsetSet = cachedValues.urlEscapingCharsetSet;
+        }
+    }
+
+    /**
+     * The effective values of the settings that the cached values in {@link SettingDependentCachedValues} depend on.
+     */
+    private List<Object> getCacheAffectingSettingValues() {
+        return Arrays.asList(
+                getLocale(), getTimeZone(), getSQLDateAndTimeTimeZone(),
+                getNumberFormat(), getSharedNumberFormats(), getCFormat(),
+                getTimeFormat(), getDateFormat(), getDateTimeFormat(), getJavaTimeDateFormats(),
+                getCustomNumberFormats(), getCustomDateFormats(),
+                getURLEscapingCharset(), getOutputEncoding());
+    }
+
     /**
      * "Visit" the template element.
      */
@@ -600,6 +764,16 @@ public final class Environment extends Configurable {
         return inAttemptBlock;
     }
 
+    /**
+     * Tells if the {@link TemplateException}-s created now should be created without a Java stack trace; see
+     * {@link Configuration#setLightweightHandledTemplateExceptions(boolean)}.
+     */
+    boolean getLightweightTemplateExceptions() {
+        return configuration.getLightweightHandledTemplateExceptions()
+                && instructionStackSize != 0
+                && (inAttemptBlock || getTemplateExceptionHandler() == TemplateExceptionHandler.IGNORE_HANDLER);
+    }
+
     /**
      * Used for {@code #nested}.
      */
@@ -706,6 +880,35 @@ public final class Environment extends Configurable {
         }
     }
 
+    /**
+     * Same as {@link #evaluateWithNewLocal(Expression, String, TemplateModel)}, but instead of creating a new
+     * {@link LocalContext} on each call, it reuses the one passed in, so calling a lambda for each element of a
+     * listing doesn't allocate anything.
+     *
+     * @param localContext Created with {@link LocalLambdaExpression#newReusableLocalContext()}; not shared between
+     *            threads.
+     * @param lamdaArgValue Not {@code null}
+     *
+     * @since 2.3.34
+     */
+    TemplateModel evaluateWithNewLocal(
+            Expression exp, ReusableLocalContextWithNewLocal localContext, TemplateModel lamdaArgValue)
+            throws TemplateException {
+        if (localContext.lambdaArgValue != null) {
+            // Already on the local context stack (re-entrant call); not expected to happen, but be on the safe side.
+            return evaluateWithNewLocal(exp, localContext.lambdaArgName, lamdaArgValue);
+        }
+
+        localContext.lambdaArgValue = lamdaArgValue;
+        pushLocalContext(localContext);
+        try {
+            return exp.eval(this);
+        } finally {
+            localContextStack.pop();
+            localContext.lambdaArgValue = null;
+        }
+    }
+
     /**
      * Specialization for 1 local variables.
      */
@@ -729,6 +932,30 @@ public final class Environment extends Configurable {
         }
     }
 
+    /**
+     * Mutable variation of {@link LocalContextWithNewLocal}, used by
+     * {@link #evaluateWithNewLocal(Expression, ReusableLocalContextWithNewLocal, TemplateModel)}.
+     */
+    static final class ReusableLocalContextWithNewLocal implements LocalContext {
+        private final String lambdaArgName;
+        /** Non-{@code null} exactly when this is on the local context stack. */
+        private TemplateModel lambdaArgValue;
+
+        ReusableLocalContextWithNewLocal(String lambdaArgName) {
+            this.lambdaArgName = lambdaArgName;
+        }
+
+        @Override
+        public TemplateModel getLocalVariable(String name) throws TemplateModelException {
+            return name.equals(lambdaArgName) ? lambdaArgValue : null;
+        }
+
+        @Override
+        public Collection getLocalVariableNames() throws TemplateModelException {
+            return Collections.singleton(lambdaArgName);
+        }
+    }
+
     /**
      * Used for {@code #visit} and {@code #recurse}.
      */
@@ -1234,9 +1461,125 @@ public final class Environment extends Configurable {
         }
     }
 
+    /**
+     * Overridden to ensure that {@link #settingsSnapshot} is invalidated when the parent changes, which happens with
+     * {@code #include} and such when {@code incompatible_improvements} is less than 2.3.22.
+     */
+    @Override
+    void setParent(Configurable parent) {
+        super.setParent(parent);
+        settingsSnapshot = null;
+    }
+
+    private SettingsSnapshot getSettingsSnapshot() {
+        SettingsSnapshot settingsSnapshot = this.settingsSnapshot;
+        if (settingsSnapshot == null) {
+            settingsSnapshot = new SettingsSnapshot();
+            this.settingsSnapshot = settingsSnapshot;
+        }
+        return settingsSnapshot;
+    }
+
+    @Override
+    public Locale getLocale() {
+        return getSettingsSnapshot().locale;
+    }
+
+    @Override
+    public TimeZone getTimeZone() {
+        return getSettingsSnapshot().timeZone;
+    }
+
+    @Override
+    public TimeZone getSQLDateAndTimeTimeZone() {
+        return getSettingsSnapshot().sqlDateAndTimeTimeZone;
+    }
+
+    @Override
+    public CFormat getCFormat() {
+        return getSettingsSnapshot().cFormat;
+    }
+
+    @Override
+    public String getNumberFormat() {
+        return getSettingsSnapshot().numberFormat;
+    }
+
+    @Override
+    public TemplateExceptionHandler getTemplateExceptionHandler() {
+        return getSettingsSnapshot().templateExceptionHandler;
+    }
+
+    @Override
+    public ArithmeticEngine getArithmeticEngine() {
+        return getSettingsSnapshot().arithmeticEngine;
+    }
+
+    @Override
+    public void setArithmeticEngine(ArithmeticEngine arithmeticEngine) {
+        super.setArithmeticEngine(arithmeticEngine);
+        settingsSnapshot = null;
+    }
+
+    @Override
+    public ObjectWrapper getObjectWrapper() {
+        return getSettingsSnapshot().objectWrapper;
+    }
+
+    @Override
+    public void setObjectWrapper(ObjectWrapper objectWrapper) {
+        super.setObjectWrapper(objectWrapper);
+        settingsSnapshot = null;
+    }
+
+    @Override
+    public boolean isClassicCompatible() {
+        return getSettingsSnapshot().classicCompatible != 0;
+    }
+
+    @Override
+    public int getClassicCompatibleAsInt() {
+        return getSettingsSnapshot().classicCompatible;
+    }
+
+    @Override
+    public void setClassicCompatible(boolean classicCompatibility) {
+        super.setClassicCompatible(classicCompatibility);
+        settingsSnapshot = null;
+    }
+
+    @Override
+    public void setClassicCompatibleAsInt(int classicCompatibility) {
+        super.setClassicCompatibleAsInt(classicCompatibility);
+        settingsSnapshot = null;
+    }
+
+    @Override
+    public TruncateBuiltinAlgorithm getTruncateBuiltinAlgorithm() {
+        return getSettingsSnapshot().truncateBuiltinAlgorithm;
+    }
+
+    @Override
+    public void setTruncateBuiltinAlgorithm(TruncateBuiltinAlgorithm truncateBuiltinAlgorithm) {
+        super.setTruncateBuiltinAlgorithm(truncateBuiltinAlgorithm);
+        settingsSnapshot = null;
+    }
+
+    @Override
+    public boolean getWrapUncheckedExceptions() {
+        return getSettingsSnapshot().wrapUncheckedExceptions;
+    }
+
+    @Override
+    public void setWrapUncheckedExceptions(boolean wrapUncheckedExceptions) {
+        super.setWrapUncheckedExceptions(wrapUncheckedExceptions);
+        settingsSnapshot = null;
+    }
+
     @Override
     public void setTemplateExceptionHandler(TemplateExceptionHandler templateExceptionHandler) {
         super.setTemplateExceptionHandler(templateExceptionHandler);
+        settingsSnapshot = null;
         lastThrowable = null;
     }
 
@@ -1244,6 +1587,7 @@ public final class Environment extends Configurable {
     public void setLocale(Locale locale) {
         Locale prevLocale = getLocale();
         super.setLocale(locale);
+        settingsSnapshot = null;
         if (!locale.equals(prevLocale)) {
             cachedTemplateNumberFormats = null;
             if (cachedTemplateNumberFormat != null && cachedTemplateNumberFormat.isLocaleBound()) {
@@ -1269,6 +1613,7 @@ public final class Environment extends Configurable {
     public void setTimeZone(TimeZone timeZone) {
         TimeZone prevTimeZone = getTimeZone();
         super.setTimeZone(timeZone);
+        settingsSnapshot = null;
 
         if (!timeZone.equals(prevTimeZone)) {
             if (cachedTempDateFormatArray != null) {
@@ -1293,6 +1638,7 @@ public final class Environment extends Configurable {
     public void setSQLDateAndTimeTimeZone(TimeZone timeZone) {
         TimeZone prevTimeZone = getSQLDateAndTimeTimeZone();
         super.setSQLDateAndTimeTimeZone(timeZone);
+        settingsSnapshot = null;
 
         if (!nullSafeEquals(timeZone, prevTimeZone)) {
             if (cachedTempDateFormatArray != null) {
@@ -1445,9 +1791,20 @@ public final class Environment extends Configurable {
     @Override
     public void setNumberFormat(String formatName) {
         super.setNumberFormat(formatName);
+        settingsSnapshot = null;
         cachedTemplateNumberFormat = null;
     }
 
+    @Override
+    public void setSharedNumberFormats(boolean sharedNumberFormats) {
+        boolean prevSharedNumberFormats = getSharedNumberFormats();
+        super.setSharedNumberFormats(sharedNumberFormats);
+        if (sharedNumberFormats != prevSharedNumberFormats) {
+            cachedTemplateNumberFormat = null;
+            cachedTemplateNumberFormats = null;
+        }
+    }
+
     /**
      * Format number with the default number format.
      * 
@@ -1669,7 +2026,9 @@ public final class Environment extends Configurable {
                 && (formatStringLen == 1 || formatString.equals(COMPUTER_FORMAT_STRING))) {
             return getCTemplateNumberFormatWithPre2331IcIBug();
         } else {
-            return JavaTemplateNumberFormatFactory.INSTANCE.get(formatString, locale, this);
+            TemplateNumberFormatFactory formatFactory = getSharedNumberFormats()
+                    ? SharedJavaTemplateNumberFormatFactory.INSTANCE : JavaTemplateNumberFormatFactory.INSTANCE;
+            return formatFactory.get(formatString, locale, this);
         }
     }
 
@@ -1735,6 +2094,7 @@ public final class Environment extends Configurable {
     public void setCFormat(CFormat cFormat) {
         CFormat prevCFormat = getCFormat();
         super.setCFormat(cFormat);
+        settingsSnapshot = null;
         if (prevCFormat != cFormat) {
             cTemplateNumberFormat = null;
             cTemplateNumberFormatWithPre2331IcIBug = null;
@@ -1786,6 +2146,16 @@ public final class Environment extends Configurable {
         }
     }
 
+    @Override
+    public void setJavaTimeDateFormats(boolean javaTimeDateFormats) {
+        boolean prevJavaTimeDateFormats = getJavaTimeDateFormats();
+        super.setJavaTimeDateFormats(javaTimeDateFormats);
+        if (javaTimeDateFormats != prevJavaTimeDateFormats) {
+            cachedTempDateFormatArray = null;
+            cachedTempDateFormatsByFmtStrArray = null;
+        }
+    }
+
     @Override
     public void setBooleanFormat(String booleanFormat) {
         super.setBooleanFormat(booleanFormat);
@@ -2346,7 +2716,8 @@ public final class Environment extends Configurable {
             }
         } else {
             formatParams = formatString;
-            formatFactory = JavaTemplateDateFormatFactory.INSTANCE;
+            formatFactory = getJavaTimeDateFormats()
+                    ? SharedJavaTemplateDateFormatFactory.INSTANCE : JavaTemplateDateFormatFactory.INSTANCE;
         }
 
         return formatFactory.get(formatParams, dateType, locale, timeZone,
@@ -2493,7 +2864,7 @@ public final class Environment extends Configurable {
      * @since 2.3.30
      */
     public TemplateModel getDataModelOrSharedVariable(String name) throws TemplateModelException {
-        TemplateModel dataModelVal = rootDataModel.get(name);
+        TemplateModel dataModelVal = getRootDataModelVariable(name);
         if (dataModelVal != null) {
             return dataModelVal;
         }
@@ -2501,6 +2872,117 @@ public final class Environment extends Configurable {
         return configuration.getSharedVariable(name);
     }
 
+    private TemplateModel getRootDataModelVariable(String name) throws TemplateModelException {
+        if (prefetchedDataModelValues != null) {
+            PrefetchedDataModelValue prefetchedValue = prefetchedDataModelValues.get(name);
+            if (prefetchedValue != null) {
+                if (prefetchedValue.model != null) {
+                    return prefetchedValue.model;
+                }
+                Object value;
+                try {
+                    value = prefetchedValue.future.join();
+                } catch (CompletionException e) {
+                    throw new TemplateModelException(
+                            "The background computation of data-model variable " + StringUtil.jQuote(name)
+                            + " has failed; see cause exception.",
+                            e.getCause() != null ? e.getCause() : e);
+                } catch (CancellationException e) {
+                    throw new TemplateModelException(
+                            "The background computation of data-model variable " + StringUtil.jQuote(name)
+                            + " was cancelled.", e);
+                }
+                TemplateModel model = getObjectWrapper().wrap(value);
+                prefetchedValue.model = model;
+                return model;
+            }
+        }
+        return rootDataModel.get(name);
+    }
+
+    /**
+     * Starts calling the {@link Supplier}-s that are the values of the top-level variables of the data-model in the
+     * background, using the given {@link Executor}, so that they are computed in parallel with each other, and with
+     * the template processing. Reading such a variable in the template then waits for the result of the
+     * {@link Supplier}, and wraps it with the {@link #getObjectWrapper() object_wrapper} (only once); if a variable is
+     * never read, its result is never waited for (but the computation isn't cancelled either). Call this before
+     * {@link #process()}; calling it again has no effect.
+     *
+     * <p>This only does something if the {@link #getObjectWrapper() object_wrapper} is a {@link DefaultObjectWrapper}
+     * whose {@link DefaultObjectWrapper#getFutureSupport() futureSupport} is {@code true}, as otherwise
+     * {@link Supplier}-s aren't replaced with their result in the data-model. Also, the data-model {@link Map} must be
+     * accessible without wrapping the values, that is, the data-model must be an {@link AdapterTemplateModel} or
+     * {@link WrapperTemplateModel} of a {@link Map}, or a {@link SimpleHash}. For {@link Future}-s (that are usually
+     * already running when they are put into the data-model), and for values that aren't top-level variables, see
+     * {@link DefaultObjectWrapper#setFutureSupport(boolean)}.
+     *
+     * @param executor
+     *            The {@link Executor} that calls the {@link Supplier}-s; not {@code null}.
+     *
+     * @since 2.3.34
+     */
+    public void prefetchDataModel(Executor executor) throws TemplateModelException {
+        NullArgumentException.check("executor", executor);
+        if (prefetchedDataModelValues != null) {
+            return;
+        }
+
+        Map<String, PrefetchedDataModelValue> prefetchedValues = new HashMap<>();
+        ObjectWrapper objectWrapper = getObjectWrapper();
+        if (objectWrapper instanceof DefaultObjectWrapper
+                && ((DefaultObjectWrapper) objectWrapper).getFutureSupport()) {
+            if (rootDataModel instanceof SimpleHash) {
+                SimpleHash dataModelHash = (SimpleHash) rootDataModel;
+                for (TemplateModelIterator it = dataModelHash.keys().iterator(); it.hasNext(); ) {
+                    TemplateModel key = it.next();
+                    if (key instanceof TemplateScalarModel) {
+                        String name = ((TemplateScalarModel) key).getAsString();
+                        prefetchIfSupplier(name, _TemplateAPI.getSimpleHashValueWithoutWrapping(dataModelHash, name),
+                                executor, prefetchedValues);
+                    }
+                }
+            } else {
+                Object dataModelObject;
+                if (rootDataModel instanceof AdapterTemplateModel) {
+                    dataModelObject = ((AdapterTemplateModel) rootDataModel).getAdaptedObject(Map.class);
+                } else if (rootDataModel instanceof WrapperTemplateModel) {
+                    dataModelObject = ((WrapperTemplateModel) rootDataModel).getWrappedObject();
+                } else {
+                    dataModelObject = null;
+                }
+                if (dataModelObject instanceof Map) {
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) dataModelObject).entrySet()) {
+                        if (entry.getKey() instanceof String) {
+                            prefetchIfSupplier((String) entry.getKey(), entry.getValue(), executor, prefetchedValues);
+                        }
+                    }
+                }
+            }
+        }
+        prefetchedDataModelValues = prefetchedValues;
+    }
+
+    private static void prefetchIfSupplier(
+            String name, Object value, Executor executor, Map<String, PrefetchedDataModelValue> prefetchedValues) {
+        if (value instanceof Supplier && !(value instanceof TemplateModel)) {
+            prefetchedValues.put(
+                    name, new PrefetchedDataModelValue(CompletableFuture.supplyAsync((Supplier<?>) value, executor)));
+        }
+    }
+
+    /**
+     * A top-level data-model variable whose {@link Supplier} was started by {@link #prefetchDataModel(Executor)}.
+     */
+    private static final class PrefetchedDataModelValue {
+        private final CompletableFuture<?> future;
+        /** The wrapped result of {@link #future}; {@code null} until it was first read. */
+        private TemplateModel model;
+
+        private PrefetchedDataModelValue(CompletableFuture<?> future) {
+            this.future = future;
+        }
+    }
+
     /**
      * Sets a variable in the global namespace, like {@code <#global name=value>}.
      * This can be considered a convenient shorthand for {@code getGlobalNamespace().put(name, model)}.
@@ -2810,7 +3292,7 @@ public final class Environment extends Configurable {
      */
     public TemplateHashModel getDataModel() {
         return rootDataModel instanceof TemplateHashModelEx
-                ? new TemplateHashModelEx() {
+                ? new TemplateHashModelEx2() {
                     @Override
                     public boolean isEmpty() throws TemplateModelException {
                         return false;
@@ -2826,7 +3308,60 @@ public final class Environment extends Configurable {
                     // the hash will return them, if only for BWC reasons
                     @Override
                     public TemplateCollectionModel values() throws TemplateModelException {
-                        return ((TemplateHashModelEx) rootDataModel).values();
+                        if (prefetchedDataModelValues == null) {
+                            return ((TemplateHashModelEx) rootDataModel).values();
+                        }
+                        // The values must come from the prefetched results, or else the Supplier-s are called again:
+                        return new TemplateCollectionModel() {
+                            @Override
+                            public TemplateModelIterator iterator() throws TemplateModelException {
+                                final TemplateModelIterator keyIterator = keys().iterator();
+                                return new TemplateModelIterator() {
+                                    @Override
+                                    public boolean hasNext() throws TemplateModelException {
+                                        return keyIterator.hasNext();
+                                    }
+
+                                    @Override
+                                    public TemplateModel next() throws TemplateModelException {
+                                        return getRootDataModelVariable(
+                                                ((TemplateScalarModel) keyIterator.next()).getAsString());
+                                    }
+                                };
+                            }
+                        };
+                    }
+
+                    @Override
+                    public KeyValuePairIterator keyValuePairIterator() throws TemplateModelException {
+                        if (prefetchedDataModelValues == null && rootDataModel instanceof TemplateHashModelEx2) {
+                            return ((TemplateHashModelEx2) rootDataModel).keyValuePairIterator();
+                        }
+                        final TemplateModelIterator keyIterator = keys().iterator();
+                        return new KeyValuePairIterator() {
+                            @Override
+                            public boolean hasNext() throws TemplateModelException {
+                                return keyIterator.hasNext();
+                            }
+
+                            @Override
+                            public KeyValuePair next() throws TemplateModelException {
+                                final TemplateModel key = keyIterator.next();
+                                final TemplateModel value = getRootDataModelVariable(
+                                        ((TemplateScalarModel) key).getAsString());
+                                return new KeyValuePair() {
+                                    @Override
+                                    public TemplateModel getKey() {
+                                        return key;
+                                    }
+
+                                    @Override
+                                    public TemplateModel getValue() {
+                                        return value;
+                                    }
+                                };
+                            }
+                        };
                     }
 
                     @Override
@@ -2847,7 +3382,7 @@ public final class Environment extends Configurable {
 
                 @Override
                 public TemplateModel get(String key) throws TemplateModelException {
-                    TemplateModel value = rootDataModel.get(key);
+                    TemplateModel value = getRootDataModelVariable(key);
                     return value != null ? value : configuration.getSharedVariable(key);
                 }
             };
@@ -2870,7 +3405,7 @@ public final class Environment extends Configurable {
             public TemplateModel get(String key) throws TemplateModelException {
                 TemplateModel result = globalNamespace.get(key);
                 if (result == null) {
-                    result = rootDataModel.get(key);
+                    result = getRootDataModelVariable(key);
                 }
                 if (result == null) {
                     result = configuration.getSharedVariable(key);
@@ -3101,11 +3636,11 @@ public final class Environment extends Configurable {
                 ignoreMissing);
     }
 
-    private Object getIncludedTemplateCustomLookupCondition() {
+    Object getIncludedTemplateCustomLookupCondition() {
         return getTemplate().getCustomLookupCondition();
     }
 
-    private String getIncludedTemplateEncoding() {
+    String getIncludedTemplateEncoding() {
         String encoding;
         // This branch shouldn't exist, as it doesn't make much sense to inherit encoding. But we have to keep BC.
         encoding = getTemplate().getEncoding();
@@ -3282,6 +3817,13 @@ public final class Environment extends Configurable {
 
     private void initializeImportLibNamespace(final Namespace newNamespace, Template loadedTemplate)
             throws TemplateException, IOException {
+        LibraryDefinitions libraryDefinitions = LibraryDefinitions.get(loadedTemplate);
+        if (libraryDefinitions != null) {
+            // Same effect as executing the library, but much faster
+            libraryDefinitions.initializeNamespace(newNamespace, macroToNamespaceLookup);
+            return;
+        }
+        
         Namespace prevNamespace = this.currentNamespace;
         this.currentNamespace = newNamespace;
         Writer prevOut = out;
@@ -3494,6 +4036,52 @@ public final class Environment extends Configurable {
         
     }
     
+    /**
+     * The effective values of the settings that are read very often during template processing (like for each
+     * interpolation or arithmetical operation), so that getting them doesn't have to walk the parent chain (the
+     * {@link Environment}, then the {@link Template}, then the {@link Configuration}) each time. It's created when
+     * first needed, and thrown away whenever one of these settings, or the parent, is changed in the
+     * {@link Environment}, also when {@link Environment#process()} is called. Changing the settings of the
+     * {@link Template} or {@link Configuration} during template processing isn't supported anyway, so that doesn't
+     * invalidate it.
+     */
+    private final class SettingsSnapshot {
+        private final Locale locale = Environment.super.getLocale();
+        private final TimeZone timeZone = Environment.super.getTimeZone();
+        private final TimeZone sqlDateAndTimeTimeZone = Environment.super.getSQLDateAndTimeTimeZone();
+        private final CFormat cFormat = Environment.super.getCFormat();
+        private final String numberFormat = Environment.super.getNumberFormat();
+        private final TemplateExceptionHandler templateExceptionHandler
+                = Environment.super.getTemplateExceptionHandler();
+        private final ArithmeticEngine arithmeticEngine = Environment.super.getArithmeticEngine();
+        private final ObjectWrapper objectWrapper = Environment.super.getObjectWrapper();
+        private final int classicCompatible = Environment.super.getClassicCompatibleAsInt();
+        private final TruncateBuiltinAlgorithm truncateBuiltinAlgorithm
+                = Environment.super.getTruncateBuiltinAlgorithm();
+        private final boolean wrapUncheckedExceptions = Environment.super.getWrapUncheckedExceptions();
+    }
+
+    /**
+     * The setting-dependent cached values of an {@link Environment}, moved aside by
+     * {@link Environment#reset(TemplateHashModel, Writer)}, together with the setting values they belong to.
+     */
+    private final class SettingDependentCachedValues {
+        private final List<Object> settingValues = getCacheAffectingSettingValues();
+        private final TemplateNumberFormat templateNumberFormat = cachedTemplateNumberFormat;
+        private final Map<String, TemplateNumberFormat> templateNumberFormats = cachedTemplateNumberFormats;
+        private final TemplateDateFormat[] tempDateFormatArray = cachedTempDateFormatArray;
+        private final HashMap<String, TemplateDateFormat>[] tempDateFormatsByFmtStrArray
+                = cachedTempDateFormatsByFmtStrArray;
+        private final Boolean sqlDateAndTimeTimeZoneSameAsNormal = cachedSQLDateAndTimeTimeZoneSameAsNormal;
+        private final NumberFormat cNumberFormat = Environment.this.cNumberFormat;
+        private final TemplateNumberFormat cTemplateNumberFormat = Environment.this.cTemplateNumberFormat;
+        private final TemplateNumberFormat cTemplateNumberFormatWithPre2331IcIBug
+                = Environment.this.cTemplateNumberFormatWithPre2331IcIBug;
+        private final Collator collator = cachedCollator;
+        private final String urlEscapingCharset = cachedURLEscapingCharset;
+        private final boolean urlEscapingCharsetSet = cachedURLEscapingCharsetSet;
+    }
+
     private enum InitializationStatus {
         UNINITIALIZED, INITIALIZING, INITIALIZED, FAILED
     }
@@ -25,6 +25,7 @@ import java.util.Date;
 
 import freemarker.ext.beans.BeanModel;
 import freemarker.ext.beans._BeansAPI;
+import freemarker.template.SimpleNumber;
 import freemarker.template.TemplateBooleanModel;
 import freemarker.template.TemplateCollectionModel;
 import freemarker.template.TemplateDateModel;
@@ -407,6 +408,31 @@ class EvalUtil {
         }
     }
 
+    /**
+     * Like {@link #coerceModelToStringOrMarkup(TemplateModel, Expression, String, Environment)}, but also accepts the
+     * {@link String} and {@link Number} values that {@link Expression#evalForInterpolation(Environment)} can return.
+     *
+     * @return Never {@code null}
+     */
+    static Object coerceInterpolatedValueToStringOrMarkup(Object value, Expression exp, Environment env)
+            throws TemplateException {
+        if (value instanceof String) {
+            return value;
+        } else if (value instanceof Number) {
+            Number number = (Number) value;
+            TemplateNumberFormat format = env.getTemplateNumberFormat(exp, false);
+            try {
+                return format instanceof BackwardCompatibleTemplateNumberFormat
+                        ? assertFormatResultNotNull(((BackwardCompatibleTemplateNumberFormat) format).format(number))
+                        : assertFormatResultNotNull(format.format(new SimpleNumber(number)));
+            } catch (TemplateValueFormatException e) {
+                throw _MessageUtil.newCantFormatNumberException(format, exp, e, false);
+            }
+        } else {
+            return coerceModelToStringOrMarkup((TemplateModel) value, exp, null, env);
+        }
+    }
+
     /**
      * Like {@link #coerceModelToStringOrMarkup(TemplateModel, Expression, String, Environment)}, but gives error
      * if the result is markup. This is what you normally use where markup results can't be used.
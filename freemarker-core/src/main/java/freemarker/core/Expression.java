@@ -113,6 +113,38 @@ abstract public class Expression extends TemplateObject {
         }
     }
     
+    /**
+     * Like {@link #eval(Environment)}, but used when the result will be printed by an interpolation, in which case the
+     * expression may return a {@link String} or {@link Number} instead of a {@link TemplateModel}, so that no
+     * {@link TemplateModel} has to be created only to be converted to string right after that.
+     *
+     * @return A {@link TemplateModel}, or a {@link String}, or a {@link Number}, or {@code null}.
+     */
+    final Object evalForInterpolation(Environment env) throws TemplateException {
+        try {
+            return constantValue != null ? constantValue : _evalForInterpolation(env);
+        } catch (FlowControlException | TemplateException e) {
+            throw e;
+        } catch (Exception e) {
+            if (env != null && EvalUtil.shouldWrapUncheckedException(e, env)) {
+                throw new _MiscTemplateException(
+                        this, e, env, "Expression has thrown an unchecked exception; see the cause exception.");
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+    }
+
+    /**
+     * Override this if the expression can return a {@link String} or {@link Number} instead of a
+     * {@link TemplateModel} more efficiently; see {@link #evalForInterpolation(Environment)}.
+     */
+    Object _evalForInterpolation(Environment env) throws TemplateException {
+        return _eval(env);
+    }
+
     String evalAndCoerceToPlainText(Environment env) throws TemplateException {
         return EvalUtil.coerceModelToPlainText(eval(env), this, null, env);
     }
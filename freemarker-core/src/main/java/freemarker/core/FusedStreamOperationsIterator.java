@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import freemarker.core.IntermediateStreamOperationLikeBuiltIn.ElementTransformer;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+
+/**
+ * Runs a chain of lazy {@link IntermediateStreamOperationLikeBuiltIn}-s (like
+ * {@code xs?filter(f)?map(g)?take_while(h)}) in a single loop, instead of stacking a separate
+ * {@link TemplateModelIterator} for each built-in. The observable behavior (the order and count of element transformer
+ * invocations, and the elements produced) is the same as with the non-fused chain; in particular, the trailing
+ * {@code ?map}-s are only applied in {@link #next()}, while the preceding stages are applied when looking for the
+ * next element in {@link #hasNext()}.
+ *
+ * @since 2.3.34
+ */
+final class FusedStreamOperationsIterator implements TemplateModelIterator {
+
+    private final TemplateModelIterator sourceIterator;
+    private final IntermediateStreamOperationLikeBuiltIn[] stages;
+    private final ElementTransformer[] elementTransformers;
+    private final Environment env;
+
+    /**
+     * The stages with index less than this are applied during prefetching; the rest are all {@code ?map}-s, which
+     * are applied in {@link #next()}.
+     */
+    private final int prefetchedStageCount;
+
+    /** For each {@code ?drop_while} stage, if it's still dropping elements; {@code null} if there's no such stage. */
+    private final boolean[] dropping;
+
+    private boolean prefetchDone;
+    private TemplateModel prefetchedElement;
+    private boolean prefetchedEndOfIterator;
+
+    /**
+     * @param stages The built-ins to apply, in the order they are applied on each element (innermost first).
+     * @param elementTransformers The evaluated argument of each stage, at the same index as the stage.
+     */
+    FusedStreamOperationsIterator(
+            TemplateModelIterator sourceIterator,
+            IntermediateStreamOperationLikeBuiltIn[] stages, ElementTransformer[] elementTransformers,
+            Environment env) {
+        this.sourceIterator = sourceIterator;
+        this.stages = stages;
+        this.elementTransformers = elementTransformers;
+        this.env = env;
+
+        int prefetchedStageCount = stages.length;
+        while (prefetchedStageCount > 0
+                && stages[prefetchedStageCount - 1].getStageKind()
+                        == IntermediateStreamOperationLikeBuiltIn.STAGE_KIND_MAP) {
+            prefetchedStageCount--;
+        }
+        this.prefetchedStageCount = prefetchedStageCount;
+
+        boolean[] dropping = null;
+        for (int i = 0; i < prefetchedStageCount; i++) {
+            if (stages[i].getStageKind() == IntermediateStreamOperationLikeBuiltIn.STAGE_KIND_DROP_WHILE) {
+                if (dropping == null) {
+                    dropping = new boolean[prefetchedStageCount];
+                }
+                dropping[i] = true;
+            }
+        }
+        this.dropping = dropping;
+    }
+
+    @Override
+    public TemplateModel next() throws TemplateModelException {
+        TemplateModel element;
+        if (prefetchedStageCount != 0) {
+            ensurePrefetchDone();
+            if (prefetchedEndOfIterator) {
+                throw new IllegalStateException("next() was called when hasNext() is false");
+            }
+            prefetchDone = false;
+            element = prefetchedElement;
+            prefetchedElement = null;
+        } else {
+            element = sourceIterator.next();
+        }
+
+        try {
+            for (int i = prefetchedStageCount; i < stages.length; i++) {
+                element = stages[i].mapElement(element, elementTransformers[i], env);
+            }
+        } catch (TemplateException e) {
+            throw new _TemplateModelException(e, env, "Failed to transform element");
+        }
+        return element;
+    }
+
+    @Override
+    public boolean hasNext() throws TemplateModelException {
+        if (prefetchedStageCount == 0) {
+            return sourceIterator.hasNext();
+        }
+        ensurePrefetchDone();
+        return !prefetchedEndOfIterator;
+    }
+
+    private void ensurePrefetchDone() throws TemplateModelException {
+        if (prefetchDone) {
+            return;
+        }
+
+        while (!prefetchedEndOfIterator && sourceIterator.hasNext()) {
+            TemplateModel element = sourceIterator.next();
+            boolean elementKept;
+            try {
+                elementKept = applyPrefetchedStages(element);
+            } catch (TemplateException e) {
+                throw new _TemplateModelException(e, env, "Failed to transform element");
+            }
+            if (elementKept) {
+                prefetchDone = true;
+                return;
+            }
+        }
+
+        prefetchedEndOfIterator = true;
+        prefetchedElement = null;
+        prefetchDone = true;
+    }
+
+    /**
+     * Stores the transformed element into {@link #prefetchedElement}, unless the element was dropped.
+     *
+     * @return If the element was kept; if {@code false}, {@link #prefetchedEndOfIterator} might have been set too.
+     */
+    private boolean applyPrefetchedStages(TemplateModel element) throws TemplateException {
+        for (int i = 0; i < prefetchedStageCount; i++) {
+            IntermediateStreamOperationLikeBuiltIn stage = stages[i];
+            switch (stage.getStageKind()) {
+            case IntermediateStreamOperationLikeBuiltIn.STAGE_KIND_MAP:
+                element = stage.mapElement(element, elementTransformers[i], env);
+                break;
+            case IntermediateStreamOperationLikeBuiltIn.STAGE_KIND_FILTER:
+                if (!stage.elementMatches(element, elementTransformers[i], env)) {
+                    return false;
+                }
+                break;
+            case IntermediateStreamOperationLikeBuiltIn.STAGE_KIND_TAKE_WHILE:
+                if (!stage.elementMatches(element, elementTransformers[i], env)) {
+                    prefetchedEndOfIterator = true;
+                    return false;
+                }
+                break;
+            case IntermediateStreamOperationLikeBuiltIn.STAGE_KIND_DROP_WHILE:
+                if (dropping[i]) {
+                    if (stage.elementMatches(element, elementTransformers[i], env)) {
+                        return false;
+                    }
+                    dropping[i] = false;
+                }
+                break;
+            default:
+                throw new BugException();
+            }
+        }
+        prefetchedElement = element;
+        return true;
+    }
+
+}
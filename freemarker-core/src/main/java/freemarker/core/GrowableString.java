@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+/**
+ * Immutable string that was created by concatenation, and that can be concatenated further in amortized O(1) time,
+ * so that building a long string with repeated {@code +} (like {@code <#assign s = s + x>} inside a {@code #list})
+ * isn't O(N<sup>2</sup>). Instances created by appending to each other share the same {@link StringBuilder}; when
+ * appending to the instance that ends where the buffer currently ends, the buffer is simply extended, otherwise
+ * (like when appending twice to the same instance) it's copied. The {@link String} is only created when
+ * {@link #toString()} is called, and then it's cached.
+ *
+ * <p>The methods that work with "a {@link String} or {@link GrowableString}" use {@link Object} as the type, similarly
+ * to {@link EvalUtil#coerceModelToStringOrMarkup}.
+ *
+ * <p>Thread-safe, as the same instance can be reachable from multiple threads (through shared variables for example).
+ *
+ * @since 2.3.34
+ */
+final class GrowableString {
+
+    /**
+     * Below this result length concatenation just creates a {@link String}, as copying is cheap, and most
+     * concatenation results are short and aren't concatenated further.
+     */
+    static final int MIN_LENGTH = 256;
+
+    /** Shared with the other instances that were appended to this one; guarded by itself. */
+    private final StringBuilder buffer;
+    /** The length of the prefix of {@link #buffer} that belongs to this instance. */
+    private final int length;
+    private String string;
+
+    private GrowableString(StringBuilder buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    /**
+     * Concatenates two strings.
+     *
+     * @param left
+     *            A {@link String} or {@link GrowableString}
+     *
+     * @return A {@link String} or {@link GrowableString}
+     */
+    static Object concat(Object left, String right) {
+        if (left instanceof GrowableString) {
+            return ((GrowableString) left).append(right);
+        }
+
+        String leftStr = (String) left;
+        int resultLength = leftStr.length() + right.length();
+        if (resultLength < MIN_LENGTH) {
+            return leftStr.concat(right);
+        }
+        if (resultLength < 0) {
+            throw new OutOfMemoryError("Concatenation result is too long");
+        }
+        StringBuilder buffer = newBuffer(resultLength);
+        buffer.append(leftStr).append(right);
+        return new GrowableString(buffer, resultLength);
+    }
+
+    /**
+     * @param stringOrGrowable
+     *            A {@link String} or {@link GrowableString}
+     */
+    static String asString(Object stringOrGrowable) {
+        return stringOrGrowable instanceof GrowableString ? stringOrGrowable.toString() : (String) stringOrGrowable;
+    }
+
+    /**
+     * @param stringOrGrowable
+     *            A {@link String} or {@link GrowableString}
+     */
+    static int lengthOf(Object stringOrGrowable) {
+        return stringOrGrowable instanceof GrowableString
+                ? ((GrowableString) stringOrGrowable).length
+                : ((String) stringOrGrowable).length();
+    }
+
+    GrowableString append(String right) {
+        if (right.length() == 0) {
+            return this;
+        }
+
+        int resultLength = length + right.length();
+        if (resultLength < 0) {
+            throw new OutOfMemoryError("Concatenation result is too long");
+        }
+        synchronized (buffer) {
+            if (buffer.length() == length) {
+                buffer.append(right);
+                return new GrowableString(buffer, resultLength);
+            }
+        }
+
+        // Another instance was already appended to this one, so we can't extend the buffer.
+        StringBuilder newBuffer = newBuffer(resultLength);
+        synchronized (buffer) {
+            newBuffer.append(buffer, 0, length);
+        }
+        newBuffer.append(right);
+        return new GrowableString(newBuffer, resultLength);
+    }
+
+    /** Leaves room for further appends, as most likely that's how we got here. */
+    private static StringBuilder newBuffer(int contentLength) {
+        return new StringBuilder(contentLength < Integer.MAX_VALUE / 2 ? contentLength * 2 : contentLength);
+    }
+
+    int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        String string = this.string;
+        if (string == null) {
+            synchronized (buffer) {
+                string = buffer.substring(0, length);
+            }
+            this.string = string;
+        }
+        return string;
+    }
+
+}
@@ -77,4 +77,15 @@ public class HTMLOutputFormat extends CommonMarkupOutputFormat<TemplateHTMLOutpu
         return new TemplateHTMLOutputModel(plainTextContent, markupContent);
     }
 
+    @Override
+    boolean isGrowableContentSupported() {
+        return getClass() == HTMLOutputFormat.class;
+    }
+
+    @Override
+    TemplateHTMLOutputModel newTemplateMarkupOutputModelWithGrowableContent(
+            Object plainTextContent, Object markupContent) {
+        return new TemplateHTMLOutputModel(plainTextContent, markupContent);
+    }
+
 }
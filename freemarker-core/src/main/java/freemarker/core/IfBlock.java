@@ -20,6 +20,8 @@
 package freemarker.core;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import freemarker.template.TemplateException;
 
@@ -30,6 +32,14 @@ import freemarker.template.TemplateException;
  */
 final class IfBlock extends TemplateElement {
 
+    /**
+     * If the conditions are all like {@code x == literal}, with the same {@code x}, then that {@code x}, otherwise
+     * {@code null}. Set in {@link #postParseCleanup}.
+     */
+    private Expression constantCasesSubject;
+    /** Non-{@code null} exactly if {@link #constantCasesSubject} is non-{@code null}. */
+    private ConstantCaseIndex constantCaseIndex;
+
     IfBlock(ConditionalBlock block) {
         setChildBufferCapacity(1);
         addBlock(block);
@@ -43,6 +53,25 @@ final class IfBlock extends TemplateElement {
     TemplateElement[] accept(Environment env) throws TemplateException, IOException {
         int ln  = getChildCount();
         if (env.getTemplateProcessingTracer() == null) {
+            if (constantCaseIndex != null) {
+                env.replaceElementStackTop((ConditionalBlock) getChild(0));
+                int matchingIndex = constantCaseIndex.getCaseIndex(
+                        constantCasesSubject.eval(env), constantCasesSubject, env);
+                if (matchingIndex != ConstantCaseIndex.UNSUPPORTED_VALUE) {
+                    if (matchingIndex == ConstantCaseIndex.NO_MATCH) {
+                        ConditionalBlock lastCBlock = (ConditionalBlock) getChild(ln - 1);
+                        if (lastCBlock.condition != null) {
+                            return null;
+                        }
+                        matchingIndex = ln - 1;
+                    }
+                    ConditionalBlock cblock = (ConditionalBlock) getChild(matchingIndex);
+                    env.replaceElementStackTop(cblock);
+                    return cblock.getChildBuffer();
+                }
+                // Falls back to evaluating the conditions one by one, which gives the proper error message
+            }
+            
             for (int i = 0; i < ln; i++) {
                 ConditionalBlock cblock = (ConditionalBlock) getChild(i);
                 Expression condition = cblock.condition;
@@ -73,8 +102,75 @@ final class IfBlock extends TemplateElement {
             cblock.setLocation(getTemplate(), cblock, this);
             return cblock.postParseCleanup(stripWhitespace);
         } else {
-            return super.postParseCleanup(stripWhitespace);
+            TemplateElement result = super.postParseCleanup(stripWhitespace);
+            initConstantCaseIndex();
+            return result;
+        }
+    }
+
+    /**
+     * Recognizes {@code #if}-{@code #elseif} chains like {@code <#if x == 'a'>...<#elseif x == 'b'>...<#else>...},
+     * where {@code x} is a variable (or a chain of {@code .}-s), so that the matching branch can be found with a hash
+     * lookup.
+     */
+    private void initConstantCaseIndex() {
+        int ln = getChildCount();
+        List<Expression> caseValueExps = new ArrayList<>(ln);
+        Expression subject = null;
+        for (int i = 0; i < ln; i++) {
+            Expression condition = ((ConditionalBlock) getChild(i)).condition;
+            if (condition == null) {
+                // #else
+                caseValueExps.add(null);
+                continue;
+            }
+            
+            condition = MiscUtil.peelParentheses(condition);
+            if (!(condition instanceof ComparisonExpression)) {
+                return;
+            }
+            ComparisonExpression comparison = (ComparisonExpression) condition;
+            if (comparison.getOperation() != EvalUtil.CMP_OP_EQUALS) {
+                return;
+            }
+            
+            Expression left = MiscUtil.peelParentheses(comparison.getLeft());
+            Expression right = MiscUtil.peelParentheses(comparison.getRight());
+            final Expression caseSubject;
+            final Expression caseValueExp;
+            if (isVariableReference(left)) {
+                caseSubject = left;
+                caseValueExp = right;
+            } else if (isVariableReference(right)) {
+                caseSubject = right;
+                caseValueExp = left;
+            } else {
+                return;
+            }
+            if (subject == null) {
+                subject = caseSubject;
+            } else if (!subject.getCanonicalForm().equals(caseSubject.getCanonicalForm())) {
+                return;
+            }
+            caseValueExps.add(caseValueExp);
         }
+        if (subject == null) {
+            return;
+        }
+        
+        constantCaseIndex = ConstantCaseIndex.createOrNull(caseValueExps, getTemplate().getConfiguration());
+        if (constantCaseIndex != null) {
+            constantCasesSubject = subject;
+        }
+    }
+
+    /**
+     * Whether the expression is just a variable reference, so evaluating it once instead of for each condition
+     * doesn't change the result.
+     */
+    private static boolean isVariableReference(Expression exp) {
+        return exp instanceof Identifier
+                || exp instanceof Dot && isVariableReference(MiscUtil.peelParentheses(((Dot) exp).getTarget()));
     }
     
     @Override
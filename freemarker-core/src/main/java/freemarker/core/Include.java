@@ -20,7 +20,10 @@
 package freemarker.core;
 
 import java.io.IOException;
+import java.util.Locale;
+import java.util.Objects;
 
+import freemarker.template.Configuration;
 import freemarker.template.MalformedTemplateNameException;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
@@ -39,6 +42,13 @@ final class Include extends TemplateElement {
     private final String encoding;
     private final Boolean parse;
     private final Boolean ignoreMissingExpPrecalcedValue;
+    /** Non-{@code null} exactly if the template name is a literal. */
+    private final CallSiteTemplateCache callSiteTemplateCache;
+    /**
+     * Set when the template is loaded, if {@link Configuration#setInlineLiteralIncludes(boolean)} is enabled; see
+     * {@link LiteralIncludeInliner}.
+     */
+    private InlinedTemplate inlinedTemplate;
 
     /**
      * @param template the template that this {@code #include} is a part of.
@@ -115,19 +125,15 @@ final class Include extends TemplateElement {
         } else {
             ignoreMissingExpPrecalcedValue = null;
         }
+        
+        callSiteTemplateCache = includedTemplatePathExp.isLiteral() ? new CallSiteTemplateCache() : null;
     }
     
     @Override
     TemplateElement[] accept(Environment env) throws TemplateException, IOException {
-        final String includedTemplateName = includedTemplateNameExp.evalAndCoerceToPlainText(env);
-        final String fullIncludedTemplateName;
-        try {
-            fullIncludedTemplateName = env.toFullTemplateName(getTemplate().getName(), includedTemplateName);
-        } catch (MalformedTemplateNameException e) {
-            throw new _MiscTemplateException(e, env,
-                    "Malformed template name ", new _DelayedJQuote(e.getTemplateName()), ":\n",
-                    e.getMalformednessDescription());
-        }
+        // With literal template name, the name is resolved only if callSiteTemplateCache has no valid template.
+        final String includedTemplateName = callSiteTemplateCache == null
+                ? includedTemplateNameExp.evalAndCoerceToPlainText(env) : null;
         
         final String encoding = this.encoding != null
                 ? this.encoding
@@ -157,22 +163,95 @@ final class Include extends TemplateElement {
             ignoreMissing = false;
         }
         
-        final Template includedTemplate;
+        final InlinedTemplate inlinedTemplate = this.inlinedTemplate;
+        if (inlinedTemplate != null && inlinedTemplate.isApplicable(env, encoding)) {
+            env.include(inlinedTemplate.template);
+            return null;
+        }
+        
+        final Template includedTemplate = callSiteTemplateCache != null
+                ? callSiteTemplateCache.getTemplate(env, encoding, parse,
+                        () -> getTemplateForInclusion(
+                                includedTemplateNameExp.evalAndCoerceToPlainText(env),
+                                encoding, parse, ignoreMissing, env))
+                : getTemplateForInclusion(includedTemplateName, encoding, parse, ignoreMissing, env);
+        
+        if (includedTemplate != null) {
+            env.include(includedTemplate);
+        }
+        return null;
+    }
+    
+    private Template getTemplateForInclusion(
+            String includedTemplateName, String encoding, boolean parse, boolean ignoreMissing, Environment env)
+            throws TemplateException {
+        final String fullIncludedTemplateName;
+        try {
+            fullIncludedTemplateName = env.toFullTemplateName(getTemplate().getName(), includedTemplateName);
+        } catch (MalformedTemplateNameException e) {
+            throw new _MiscTemplateException(e, env,
+                    "Malformed template name ", new _DelayedJQuote(e.getTemplateName()), ":\n",
+                    e.getMalformednessDescription());
+        }
+        
         try {
-            includedTemplate = env.getTemplateForInclusion(fullIncludedTemplateName, encoding, parse, ignoreMissing);
+            return env.getTemplateForInclusion(fullIncludedTemplateName, encoding, parse, ignoreMissing);
         } catch (IOException e) {
             throw new _MiscTemplateException(e, env,
                     "Template inclusion failed (for parameter value ",
                     new _DelayedJQuote(includedTemplateName),
                     "):\n", new _DelayedGetMessage(e));
         }
-        
-        if (includedTemplate != null) {
-            env.include(includedTemplate);
-        }
-        return null;
     }
     
+    /**
+     * Returns the name of the included template if this {@code #include} can be resolved on parse time, otherwise
+     * {@code null}.
+     */
+    String getInlinableIncludedTemplateName() {
+        if (encodingExp != null && encoding == null
+                || parse != Boolean.TRUE
+                || ignoreMissingExp != null && ignoreMissingExpPrecalcedValue != Boolean.FALSE) {
+            return null;
+        }
+        return getLiteralIncludedTemplateName();
+    }
+
+    /**
+     * The name of the included template as it was specified (so it's possibly relative), if it's a literal, otherwise
+     * {@code null}.
+     */
+    String getLiteralIncludedTemplateName() {
+        if (!includedTemplateNameExp.isLiteral()) {
+            return null;
+        }
+        try {
+            return includedTemplateNameExp.evalAndCoerceToPlainText(null);
+        } catch (TemplateException e) {
+            // Will be reported on runtime
+            return null;
+        }
+    }
+
+    /**
+     * Whether the included template is parsed, if that was specified with a literal (or not specified at all),
+     * otherwise {@code null}.
+     */
+    Boolean getLiteralParse() {
+        return parse;
+    }
+
+    /**
+     * The encoding if it was specified with a literal, otherwise {@code null}.
+     */
+    String getLiteralEncoding() {
+        return encoding;
+    }
+
+    void setInlinedTemplate(Template template, Locale locale, Object customLookupCondition, String encoding) {
+        inlinedTemplate = new InlinedTemplate(template, locale, customLookupCondition, encoding);
+    }
+
     @Override
     protected String dump(boolean canonical) {
         StringBuilder buf = new StringBuilder();
@@ -255,5 +334,34 @@ final class Include extends TemplateElement {
     boolean isShownInStackTrace() {
         return true;
     }
+
+    /**
+     * The template that the {@code #include} was resolved to on load time, along with the lookup parameters that were
+     * used, because on runtime they can differ from those, in which case the template must be looked up as usual.
+     */
+    private static final class InlinedTemplate {
+        private final Template template;
+        private final Locale locale;
+        private final Object customLookupCondition;
+        private final String encoding;
+
+        InlinedTemplate(Template template, Locale locale, Object customLookupCondition, String encoding) {
+            this.template = template;
+            this.locale = locale;
+            this.customLookupCondition = customLookupCondition;
+            this.encoding = encoding;
+        }
+
+        /**
+         * @param encoding
+         *            The explicitly specified encoding, or {@code null}
+         */
+        boolean isApplicable(Environment env, String encoding) {
+            return !env.isClassicCompatible()
+                    && locale.equals(env.getLocale())
+                    && Objects.equals(customLookupCondition, env.getIncludedTemplateCustomLookupCondition())
+                    && this.encoding.equals(encoding != null ? encoding : env.getIncludedTemplateEncoding());
+        }
+    }
     
 }
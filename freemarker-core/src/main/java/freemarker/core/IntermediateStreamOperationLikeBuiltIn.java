@@ -22,7 +22,9 @@ package freemarker.core;
 import java.util.Collections;
 import java.util.List;
 
+import freemarker.template.TemplateBooleanModel;
 import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateCollectionModelEx;
 import freemarker.template.TemplateException;
 import freemarker.template.TemplateMethodModel;
 import freemarker.template.TemplateModel;
@@ -38,8 +40,13 @@ import freemarker.template.TemplateSequenceModel;
  */
 abstract class IntermediateStreamOperationLikeBuiltIn extends BuiltInWithParseTimeParameters {
 
+    // Values of getStageKind():
+    static final int STAGE_KIND_MAP = 0;
+    static final int STAGE_KIND_FILTER = 1;
+    static final int STAGE_KIND_TAKE_WHILE = 2;
+    static final int STAGE_KIND_DROP_WHILE = 3;
+
     private Expression elementTransformerExp;
-    private ElementTransformer precreatedElementTransformer;
     private boolean lazilyGeneratedResultEnabled;
 
     @Override
@@ -55,11 +62,7 @@ abstract class IntermediateStreamOperationLikeBuiltIn extends BuiltInWithParseTi
     private void setElementTransformerExp(Expression elementTransformerExp) throws ParseException {
         this.elementTransformerExp = elementTransformerExp;
         if (this.elementTransformerExp instanceof LocalLambdaExpression) {
-            LocalLambdaExpression localLambdaExp = (LocalLambdaExpression) this.elementTransformerExp;
-            checkLocalLambdaParamCount(localLambdaExp, 1);
-            // We can't do this with other kind of expressions, like a function or method reference, as they
-            // need to be evaluated on runtime:
-            precreatedElementTransformer = new LocalLambdaElementTransformer(localLambdaExp);
+            checkLocalLambdaParamCount((LocalLambdaExpression) this.elementTransformerExp, 1);
         }
     }
 
@@ -120,35 +123,137 @@ abstract class IntermediateStreamOperationLikeBuiltIn extends BuiltInWithParseTi
 
     @Override
     TemplateModel _eval(Environment env) throws TemplateException {
+        int fusedTargetCount = getFusedTargetCount();
+        if (fusedTargetCount != 0) {
+            return evalFused(fusedTargetCount, env);
+        }
+
         TemplateModel targetValue = target.eval(env);
+        return calculateResult(
+                newTargetIterator(targetValue, env), targetValue, isTargetSequence(targetValue),
+                evalElementTransformerExp(env),
+                env);
+    }
 
-        final TemplateModelIterator targetIterator;
-        final boolean targetIsSequence;
+    private TemplateModelIterator newTargetIterator(TemplateModel targetValue, Environment env)
+            throws TemplateException {
+        if (targetValue instanceof TemplateCollectionModel) {
+            return isLazilyGeneratedResultEnabled()
+                    ? new LazyCollectionTemplateModelIterator((TemplateCollectionModel) targetValue)
+                    : ((TemplateCollectionModel) targetValue).iterator();
+        } else if (targetValue instanceof TemplateSequenceModel) {
+            return new LazySequenceIterator((TemplateSequenceModel) targetValue);
+        } else {
+            throw new NonSequenceOrCollectionException(target, targetValue, env);
+        }
+    }
+
+    /** Assumes that {@link #newTargetIterator(TemplateModel, Environment)} has already accepted the value. */
+    private static boolean isTargetSequence(TemplateModel targetValue) {
+        if (targetValue instanceof TemplateCollectionModel) {
+            return targetValue instanceof LazilyGeneratedCollectionModel
+                    ? ((LazilyGeneratedCollectionModel) targetValue).isSequence()
+                    : targetValue instanceof TemplateSequenceModel;
+        }
+        return true;
+    }
+
+    /**
+     * Returns how many built-ins of this kind are directly chained on the left side of this one, which we will run in
+     * a single {@link FusedStreamOperationsIterator}, instead of stacking an iterator per built-in. Such chained
+     * built-ins always have lazily generated result, as we are their target (see {@link #setTarget(Expression)}).
+     */
+    private int getFusedTargetCount() {
+        int count = 0;
+        Expression exp = target;
+        while (exp instanceof IntermediateStreamOperationLikeBuiltIn && exp.constantValue == null) {
+            count++;
+            exp = ((IntermediateStreamOperationLikeBuiltIn) exp).target;
+        }
+        return count;
+    }
+
+    private TemplateModel evalFused(int fusedTargetCount, Environment env) throws TemplateException {
+        // Innermost first, this one last:
+        IntermediateStreamOperationLikeBuiltIn[] stages = new IntermediateStreamOperationLikeBuiltIn[
+                fusedTargetCount + 1];
         {
-            if (targetValue instanceof TemplateCollectionModel) {
-                targetIterator = isLazilyGeneratedResultEnabled()
-                        ? new LazyCollectionTemplateModelIterator((TemplateCollectionModel) targetValue)
-                        : ((TemplateCollectionModel) targetValue).iterator();
-                targetIsSequence = targetValue instanceof LazilyGeneratedCollectionModel
-                        ? ((LazilyGeneratedCollectionModel) targetValue).isSequence()
-                        : targetValue instanceof TemplateSequenceModel;
-            } else if (targetValue instanceof TemplateSequenceModel) {
-                targetIterator = new LazySequenceIterator((TemplateSequenceModel) targetValue);
-                targetIsSequence = true;
-            } else {
-                throw new NonSequenceOrCollectionException(target, targetValue, env);
+            IntermediateStreamOperationLikeBuiltIn stage = this;
+            for (int i = fusedTargetCount; i >= 0; i--) {
+                stages[i] = stage;
+                if (i != 0) {
+                    stage = (IntermediateStreamOperationLikeBuiltIn) stage.target;
+                }
             }
         }
 
-        return calculateResult(
-                targetIterator, targetValue, targetIsSequence,
-                evalElementTransformerExp(env),
-                env);
+        // Evaluate in the same order as without fusing: the source first, then the arguments from inside out.
+        IntermediateStreamOperationLikeBuiltIn innermostStage = stages[0];
+        TemplateModel sourceValue = innermostStage.target.eval(env);
+        TemplateModelIterator sourceIterator = innermostStage.newTargetIterator(sourceValue, env);
+        boolean sourceIsSequence = isTargetSequence(sourceValue);
+        ElementTransformer[] elementTransformers = new ElementTransformer[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            elementTransformers[i] = stages[i].evalElementTransformerExp(env);
+        }
+
+        if (isLazilyGeneratedResultEnabled()) {
+            return newFusedResult(
+                    sourceIterator, sourceValue, sourceIsSequence, stages, elementTransformers, env);
+        } else {
+            // The eager implementation of this built-in consumes the fused chain on its left side.
+            IntermediateStreamOperationLikeBuiltIn[] targetStages = new IntermediateStreamOperationLikeBuiltIn[
+                    fusedTargetCount];
+            System.arraycopy(stages, 0, targetStages, 0, fusedTargetCount);
+            ElementTransformer[] targetElementTransformers = new ElementTransformer[fusedTargetCount];
+            System.arraycopy(elementTransformers, 0, targetElementTransformers, 0, fusedTargetCount);
+            LazilyGeneratedCollectionModel fusedTargetValue = newFusedResult(
+                    sourceIterator, sourceValue, sourceIsSequence, targetStages, targetElementTransformers, env);
+            return calculateResult(
+                    fusedTargetValue.iterator(), fusedTargetValue, sourceIsSequence,
+                    elementTransformers[fusedTargetCount],
+                    env);
+        }
+    }
+
+    private static LazilyGeneratedCollectionModel newFusedResult(
+            TemplateModelIterator sourceIterator, TemplateModel sourceValue, boolean sourceIsSequence,
+            IntermediateStreamOperationLikeBuiltIn[] stages, ElementTransformer[] elementTransformers,
+            Environment env) {
+        TemplateModelIterator fusedIterator = new FusedStreamOperationsIterator(
+                sourceIterator, stages, elementTransformers, env);
+        for (IntermediateStreamOperationLikeBuiltIn stage : stages) {
+            if (stage.getStageKind() != STAGE_KIND_MAP) {
+                return new LazilyGeneratedCollectionModelWithUnknownSize(fusedIterator, sourceIsSequence);
+            }
+        }
+        return newSameSizeLazilyGeneratedResult(fusedIterator, sourceValue, sourceIsSequence);
+    }
+
+    /**
+     * Creates the lazily generated result of an operation that doesn't change the number of elements (like
+     * {@code ?map}), so the size can be queried from the left hand operand.
+     */
+    static LazilyGeneratedCollectionModel newSameSizeLazilyGeneratedResult(
+            TemplateModelIterator resultIterator, TemplateModel lho, boolean lhoIsSequence) {
+        if (lho instanceof TemplateCollectionModelEx) { // Preferred branch, as TempCollModEx has isEmpty() too
+            return new LazilyGeneratedCollectionModelWithSameSizeCollEx(
+                    resultIterator, (TemplateCollectionModelEx) lho, lhoIsSequence);
+        } else if (lho instanceof TemplateSequenceModel) {
+            return new LazilyGeneratedCollectionModelWithSameSizeSeq(
+                    resultIterator, (TemplateSequenceModel) lho);
+        } else {
+            return new LazilyGeneratedCollectionModelWithUnknownSize(
+                    resultIterator, lhoIsSequence);
+        }
     }
 
     private ElementTransformer evalElementTransformerExp(Environment env) throws TemplateException {
-        if (precreatedElementTransformer != null) {
-            return precreatedElementTransformer;
+        if (elementTransformerExp instanceof LocalLambdaExpression) {
+            // Unlike with a function or method reference, we need not evaluate anything here, but as the
+            // transformer holds the mutable LocalContext of the lambda parameter, it can't be shared between
+            // evaluations (and threads).
+            return new LocalLambdaElementTransformer((LocalLambdaExpression) elementTransformerExp);
         }
 
         TemplateModel elementTransformerModel = elementTransformerExp.eval(env);
@@ -175,6 +280,46 @@ abstract class IntermediateStreamOperationLikeBuiltIn extends BuiltInWithParseTi
             ElementTransformer elementTransformer,
             Environment env) throws TemplateException;
 
+    /**
+     * Tells which of the {@code STAGE_KIND_...} constants describe this built-in; used when running a chain of these
+     * built-ins with {@link FusedStreamOperationsIterator}.
+     */
+    abstract int getStageKind();
+
+    /**
+     * Used by filter-like built-ins (like {@code ?filter}, {@code ?take_while}) to decide if the predicate matches
+     * the element.
+     */
+    final boolean elementMatches(TemplateModel element, ElementTransformer elementTransformer, Environment env)
+            throws TemplateException {
+        TemplateModel transformedElement = elementTransformer.transformElement(element, env);
+        if (!(transformedElement instanceof TemplateBooleanModel)) {
+            if (transformedElement == null) {
+                throw new _TemplateModelException(getElementTransformerExp(), env,
+                        "The filter expression has returned no value (has returned null), " +
+                                "rather than a boolean.");
+            }
+            throw new _TemplateModelException(getElementTransformerExp(), env,
+                    "The filter expression had to return a boolean value, but it returned ",
+                    new _DelayedAOrAn(new _DelayedFTLTypeDescription(transformedElement)),
+                    " instead.");
+        }
+        return ((TemplateBooleanModel) transformedElement).getAsBoolean();
+    }
+
+    /**
+     * Used by {@code ?map} to transform the element.
+     */
+    final TemplateModel mapElement(TemplateModel element, ElementTransformer elementTransformer, Environment env)
+            throws TemplateException {
+        TemplateModel transformedElement = elementTransformer.transformElement(element, env);
+        if (transformedElement == null) {
+            throw new _TemplateModelException(getElementTransformerExp(), env,
+                    "The element mapper function has returned no return value (has returned null).");
+        }
+        return transformedElement;
+    }
+
     /**
      * Wraps the built-in argument that specifies how to transform the elements of the sequence, to hide the
      * complexity of doing that.
@@ -183,17 +328,22 @@ abstract class IntermediateStreamOperationLikeBuiltIn extends BuiltInWithParseTi
         TemplateModel transformElement(TemplateModel element, Environment env) throws TemplateException;
     }
 
-    /** {@link ElementTransformer} that wraps a local lambda expression. */
+    /**
+     * {@link ElementTransformer} that wraps a local lambda expression. It reuses the same {@link LocalContext} for
+     * all elements, so it must not be shared between evaluations of the built-in.
+     */
     private static class LocalLambdaElementTransformer implements ElementTransformer {
         private final LocalLambdaExpression elementTransformerExp;
+        private final Environment.ReusableLocalContextWithNewLocal localContext;
 
         public LocalLambdaElementTransformer(LocalLambdaExpression elementTransformerExp) {
             this.elementTransformerExp = elementTransformerExp;
+            this.localContext = elementTransformerExp.newReusableLocalContext();
         }
 
         @Override
         public TemplateModel transformElement(TemplateModel element, Environment env) throws TemplateException {
-            return elementTransformerExp.invokeLambdaDefinedFunction(element, env);
+            return elementTransformerExp.invokeLambdaDefinedFunction(element, localContext, env);
         }
     }
 
@@ -91,12 +91,23 @@ class Interpret extends OutputFormatBoundBuiltIn {
                 pCfg = new _ParserConfigurationWithInheritedFormat(
                         pCfg, outputFormat, Integer.valueOf(autoEscapingPolicy));
             }
-            interpretedTemplate = new Template(
-                    (parentTemplate.getName() != null ? parentTemplate.getName() : "nameless_template") + "->" + id,
-                    null,
-                    new StringReader(templateSource),
-                    parentTemplate.getConfiguration(), pCfg,
-                    null);
+            String interpretedTemplateName =
+                    (parentTemplate.getName() != null ? parentTemplate.getName() : "nameless_template") + "->" + id;
+            ParsedStringCache parsedStringCache = env.getConfiguration().getParsedStringCache();
+            if (parsedStringCache != null) {
+                Object cacheKey = ParsedStringCache.createInterpretKey(
+                        templateSource, interpretedTemplateName, pCfg, env.getLocale());
+                Template cachedTemplate = (Template) parsedStringCache.get(cacheKey);
+                if (cachedTemplate == null) {
+                    cachedTemplate = parseInterpretedTemplate(
+                            interpretedTemplateName, templateSource, parentTemplate, pCfg, env);
+                    parsedStringCache.put(cacheKey, cachedTemplate);
+                }
+                interpretedTemplate = cachedTemplate;
+            } else {
+                interpretedTemplate = parseInterpretedTemplate(
+                        interpretedTemplateName, templateSource, parentTemplate, pCfg, env);
+            }
         } catch (IOException e) {
             throw new _MiscTemplateException(this, e, env, new Object[] {
                         "Template parsing with \"?", key, "\" has failed with this error:\n\n",
@@ -106,10 +117,22 @@ class Interpret extends OutputFormatBoundBuiltIn {
                         "\n\nThe failed expression:" });
         }
         
-        interpretedTemplate.setLocale(env.getLocale());
         return new TemplateProcessorModel(interpretedTemplate);
     }
 
+    private static Template parseInterpretedTemplate(
+            String name, String templateSource, Template parentTemplate, ParserConfiguration pCfg, Environment env)
+            throws IOException {
+        Template interpretedTemplate = new Template(
+                name,
+                null,
+                new StringReader(templateSource),
+                parentTemplate.getConfiguration(), pCfg,
+                null);
+        interpretedTemplate.setLocale(env.getLocale());
+        return interpretedTemplate;
+    }
+
     private class TemplateProcessorModel
     implements
         TemplateTransformModel {
@@ -313,8 +313,13 @@ final class IteratorBlock extends TemplateElement {
                 listNotEmpty = size != 0;
                 if (listNotEmpty) {
                     if (loopVar1Name != null) {
+                            // For ranges (like 1..n) we calculate the items directly, without bounds checking.
+                            final RangeModel rangeModel = seqModel instanceof BoundedRangeModel
+                                    ? (RangeModel) seqModel : null;
                             listLoop: for (index = 0; index < size; index++) {
-                                loopVar1Value = seqModel.get(index);
+                                loopVar1Value = rangeModel != null
+                                        ? rangeModel.getWithoutBoundsCheck(index)
+                                        : seqModel.get(index);
                                 hasNext = (size > index + 1);
                                 try {
                                     visibleLoopVar1Name = loopVar1Name; // Makes all loop variables visible in FTL
@@ -468,7 +473,7 @@ final class IteratorBlock extends TemplateElement {
                                         ? null : TemplateNullModel.INSTANCE;
                     case 6: 
                         if (name.endsWith(LOOP_STATE_INDEX)) {
-                            return new SimpleNumber(index);
+                            return SimpleNumber.valueOf(index);
                         }
                         break;
                     case 9: 
@@ -38,6 +38,13 @@ class JavaTemplateDateFormat extends TemplateDateFormat {
         this.javaDateFormat = javaDateFormat;
     }
     
+    /**
+     * Returns the wrapped {@link DateFormat}; not thread-safe, so don't share it.
+     */
+    DateFormat getJavaDateFormat() {
+        return javaDateFormat;
+    }
+
     @Override
     public String formatToPlainText(TemplateDateModel dateModel) throws TemplateModelException {
         return javaDateFormat.format(TemplateFormatUtil.getNonNullDate(dateModel));
@@ -66,40 +66,7 @@ class JavaTemplateDateFormatFactory extends TemplateDateFormatFactory {
         jFormat = GLOBAL_FORMAT_CACHE.get(cacheKey);
         if (jFormat == null) {
             // Add format to global format cache.
-            StringTokenizer tok = new StringTokenizer(nameOrPattern, "_");
-            int tok1Style = tok.hasMoreTokens() ? parseDateStyleToken(tok.nextToken()) : DateFormat.DEFAULT;
-            if (tok1Style != -1) {
-                switch (dateType) {
-                    case TemplateDateModel.UNKNOWN: {
-                        throw new UnknownDateTypeFormattingUnsupportedException();
-                    }
-                    case TemplateDateModel.TIME: {
-                        jFormat = DateFormat.getTimeInstance(tok1Style, cacheKey.locale);
-                        break;
-                    }
-                    case TemplateDateModel.DATE: {
-                        jFormat = DateFormat.getDateInstance(tok1Style, cacheKey.locale);
-                        break;
-                    }
-                    case TemplateDateModel.DATETIME: {
-                        int tok2Style = tok.hasMoreTokens() ? parseDateStyleToken(tok.nextToken()) : tok1Style;
-                        if (tok2Style != -1) {
-                            jFormat = DateFormat.getDateTimeInstance(tok1Style, tok2Style, cacheKey.locale);
-                        }
-                        break;
-                    }
-                }
-            }
-            if (jFormat == null) {
-                try {
-                    jFormat = new SimpleDateFormat(nameOrPattern, cacheKey.locale);
-                } catch (IllegalArgumentException e) {
-                    final String msg = e.getMessage();
-                    throw new InvalidFormatParametersException(
-                            msg != null ? msg : "Invalid SimpleDateFormat pattern", e);
-                }
-            }
-            jFormat.setTimeZone(cacheKey.timeZone);
+            jFormat = createJavaDateFormat(dateType, nameOrPattern, cacheKey.locale, cacheKey.timeZone);
             
             if (GLOBAL_FORMAT_CACHE.size() >= LEAK_ALERT_DATE_FORMAT_CACHE_SIZE) {
                 boolean triggered = false;
@@ -125,6 +92,49 @@ class JavaTemplateDateFormatFactory extends TemplateDateFormatFactory {
         return (DateFormat) jFormat.clone();  // For thread safety
     }
 
+    /**
+     * Creates a new {@link DateFormat}, that's not shared with anything else, for the given format string.
+     */
+    static DateFormat createJavaDateFormat(int dateType, String nameOrPattern, Locale locale, TimeZone timeZone)
+            throws UnknownDateTypeFormattingUnsupportedException, InvalidFormatParametersException {
+        DateFormat jFormat = null;
+        StringTokenizer tok = new StringTokenizer(nameOrPattern, "_");
+        int tok1Style = tok.hasMoreTokens() ? parseDateStyleToken(tok.nextToken()) : DateFormat.DEFAULT;
+        if (tok1Style != -1) {
+            switch (dateType) {
+                case TemplateDateModel.UNKNOWN: {
+                    throw new UnknownDateTypeFormattingUnsupportedException();
+                }
+                case TemplateDateModel.TIME: {
+                    jFormat = DateFormat.getTimeInstance(tok1Style, locale);
+                    break;
+                }
+                case TemplateDateModel.DATE: {
+                    jFormat = DateFormat.getDateInstance(tok1Style, locale);
+                    break;
+                }
+                case TemplateDateModel.DATETIME: {
+                    int tok2Style = tok.hasMoreTokens() ? parseDateStyleToken(tok.nextToken()) : tok1Style;
+                    if (tok2Style != -1) {
+                        jFormat = DateFormat.getDateTimeInstance(tok1Style, tok2Style, locale);
+                    }
+                    break;
+                }
+            }
+        }
+        if (jFormat == null) {
+            try {
+                jFormat = new SimpleDateFormat(nameOrPattern, locale);
+            } catch (IllegalArgumentException e) {
+                final String msg = e.getMessage();
+                throw new InvalidFormatParametersException(
+                        msg != null ? msg : "Invalid SimpleDateFormat pattern", e);
+            }
+        }
+        jFormat.setTimeZone(timeZone);
+        return jFormat;
+    }
+
     private static final class CacheKey {
         private final int dateType;
         private final String pattern;
@@ -154,7 +164,7 @@ class JavaTemplateDateFormatFactory extends TemplateDateFormatFactory {
         }
     }
 
-    private int parseDateStyleToken(String token) {
+    private static int parseDateStyleToken(String token) {
         if ("short".equals(token)) {
             return DateFormat.SHORT;
         }
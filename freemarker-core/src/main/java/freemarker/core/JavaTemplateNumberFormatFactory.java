@@ -48,21 +48,7 @@ class JavaTemplateNumberFormatFactory extends TemplateNumberFormatFactory {
         CacheKey cacheKey = new CacheKey(params, locale);
         NumberFormat jFormat = GLOBAL_FORMAT_CACHE.get(cacheKey);
         if (jFormat == null) {
-            if ("number".equals(params)) {
-                jFormat = NumberFormat.getNumberInstance(locale);
-            } else if ("currency".equals(params)) {
-                jFormat = NumberFormat.getCurrencyInstance(locale);
-            } else if ("percent".equals(params)) {
-                jFormat = NumberFormat.getPercentInstance(locale);
-            } else {
-                try {
-                    jFormat = ExtendedDecimalFormatParser.parse(params, locale);
-                } catch (ParseException e) {
-                    String msg = e.getMessage();
-                    throw new InvalidFormatParametersException(
-                            msg != null ? msg : "Invalid DecimalFormat pattern", e);
-                }
-            }
+            jFormat = createJavaNumberFormat(params, locale);
 
             if (GLOBAL_FORMAT_CACHE.size() >= LEAK_ALERT_NUMBER_FORMAT_CACHE_SIZE) {
                 boolean triggered = false;
@@ -91,6 +77,27 @@ class JavaTemplateNumberFormatFactory extends TemplateNumberFormatFactory {
         return new JavaTemplateNumberFormat(jFormat, params); 
     }
 
+    /**
+     * Creates a new {@link NumberFormat}, that's not shared with anything else, for the given format string.
+     */
+    static NumberFormat createJavaNumberFormat(String params, Locale locale) throws InvalidFormatParametersException {
+        if ("number".equals(params)) {
+            return NumberFormat.getNumberInstance(locale);
+        } else if ("currency".equals(params)) {
+            return NumberFormat.getCurrencyInstance(locale);
+        } else if ("percent".equals(params)) {
+            return NumberFormat.getPercentInstance(locale);
+        } else {
+            try {
+                return ExtendedDecimalFormatParser.parse(params, locale);
+            } catch (ParseException e) {
+                String msg = e.getMessage();
+                throw new InvalidFormatParametersException(
+                        msg != null ? msg : "Invalid DecimalFormat pattern", e);
+            }
+        }
+    }
+
     private static final class CacheKey {
         private final String pattern;
         private final Locale locale;
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Date;
+
+import freemarker.template.DefaultTemporalAdapter;
+import freemarker.template.TemplateDateModel;
+import freemarker.template.TemplateModelException;
+
+/**
+ * {@link DateTimeFormatter}-based format. As {@link DateTimeFormatter} is immutable and thread-safe, unlike
+ * {@link java.text.DateFormat}, instances of this class can be shared among threads, and so are cached globally by the
+ * {@link TemplateDateFormatFactory}-s that create them.
+ */
+final class JavaTimeTemplateDateFormat extends TemplateDateFormat {
+
+    private static final LocalDate EPOCH_DATE = LocalDate.of(1970, 1, 1);
+
+    private final DateTimeFormatter dateTimeFormatter;
+    private final String description;
+
+    /**
+     * @param dateTimeFormatter
+     *            Must already have the desired locale and zone set.
+     */
+    JavaTimeTemplateDateFormat(DateTimeFormatter dateTimeFormatter, String description) {
+        this.dateTimeFormatter = dateTimeFormatter;
+        this.description = description;
+    }
+
+    @Override
+    public String formatToPlainText(TemplateDateModel dateModel) throws TemplateModelException {
+        if (dateModel instanceof DefaultTemporalAdapter) {
+            try {
+                return dateTimeFormatter.format(((DefaultTemporalAdapter) dateModel).getTemporal());
+            } catch (DateTimeException e) {
+                // The pattern refers to fields that the Temporal doesn't have (like the time of the day, or the zone
+                // offset of a LocalDate). Fall back to formatting the converted Date, which has all fields.
+            }
+        }
+        // Date.toInstant() isn't supported by java.sql.Date and java.sql.Time, so we don't use that.
+        return dateTimeFormatter.format(Instant.ofEpochMilli(TemplateFormatUtil.getNonNullDate(dateModel).getTime()));
+    }
+
+    @Override
+    public Date parse(String s, int dateType) throws UnparsableValueException {
+        try {
+            TemporalAccessor parsed = dateTimeFormatter.parse(s);
+            if (parsed.isSupported(ChronoField.INSTANT_SECONDS)) {
+                return new Date(Instant.from(parsed).toEpochMilli());
+            }
+
+            LocalDate date = parsed.query(TemporalQueries.localDate());
+            LocalTime time = parsed.query(TemporalQueries.localTime());
+            if (date == null && time == null) {
+                throw new UnparsableValueException(
+                        "The parsed string contains neither date nor time of the day: " + s);
+            }
+            ZoneId zoneId = parsed.query(TemporalQueries.zone());
+            if (zoneId == null) {
+                zoneId = dateTimeFormatter.getZone();
+            }
+            return new Date(
+                    (date != null ? date : EPOCH_DATE).atTime(time != null ? time : LocalTime.MIDNIGHT)
+                    .atZone(zoneId).toInstant().toEpochMilli());
+        } catch (DateTimeException e) {
+            throw new UnparsableValueException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public boolean isLocaleBound() {
+        return true;
+    }
+
+    @Override
+    public boolean isTimeZoneBound() {
+        return true;
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+import java.util.StringTokenizer;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+import freemarker.log.Logger;
+import freemarker.template.DefaultTemporalAdapter;
+import freemarker.template.TemplateDateModel;
+
+/**
+ * Creates {@link TemplateDateFormat}-s that are backed by a {@code java.time} {@link DateTimeFormatter}. The format
+ * parameters are either a {@link DateTimeFormatter#ofPattern(String, Locale) DateTimeFormatter pattern} (like
+ * {@code "uuuu-MM-dd HH:mm"}), or a {@code "short"}, {@code "medium"}, {@code "long"}, or {@code "full"} style (and for
+ * date-time values, optionally an underscore and another style for the time part, like {@code "short_medium"}), just
+ * like for the default date format factory.
+ *
+ * <p>
+ * Unlike the default date format factory, which is based on {@link java.text.SimpleDateFormat}, this has to create
+ * the formats only once per format string, locale, and time zone, as {@link DateTimeFormatter} is immutable and
+ * thread-safe, so the formats are shared by all threads. Also, values wrapped into {@link DefaultTemporalAdapter} are
+ * formatted without converting them to {@link java.util.Date}.
+ *
+ * <p>
+ * To use this factory, register it as a custom format, like
+ * {@code cfg.setCustomDateFormats(Collections.singletonMap("javaTime", JavaTimeTemplateDateFormatFactory.INSTANCE))},
+ * and then refer to it with a format string like {@code "@javaTime uuuu-MM-dd"}.
+ *
+ * @since 2.3.34
+ */
+public final class JavaTimeTemplateDateFormatFactory extends TemplateDateFormatFactory {
+
+    public static final JavaTimeTemplateDateFormatFactory INSTANCE = new JavaTimeTemplateDateFormatFactory();
+
+    private static final Logger LOG = Logger.getLogger("freemarker.runtime");
+
+    private static final ConcurrentHashMap<CacheKey, JavaTimeTemplateDateFormat> GLOBAL_FORMAT_CACHE
+            = new ConcurrentHashMap<>();
+    private static final int LEAK_ALERT_DATE_FORMAT_CACHE_SIZE = 1024;
+
+    private JavaTimeTemplateDateFormatFactory() {
+        // Can't be instantiated
+    }
+
+    /**
+     * @param zonelessInput
+     *            Has no effect in this implementation.
+     */
+    @Override
+    public TemplateDateFormat get(String params, int dateType, Locale locale, TimeZone timeZone, boolean zonelessInput,
+            Environment env) throws UnknownDateTypeFormattingUnsupportedException, InvalidFormatParametersException {
+        CacheKey cacheKey = new CacheKey(dateType, params, locale, timeZone);
+        JavaTimeTemplateDateFormat format = GLOBAL_FORMAT_CACHE.get(cacheKey);
+        if (format == null) {
+            format = new JavaTimeTemplateDateFormat(
+                    createDateTimeFormatter(dateType, params, locale).withLocale(locale)
+                            .withZone(timeZone.toZoneId()),
+                    params);
+
+            if (GLOBAL_FORMAT_CACHE.size() >= LEAK_ALERT_DATE_FORMAT_CACHE_SIZE) {
+                boolean triggered = false;
+                synchronized (JavaTimeTemplateDateFormatFactory.class) {
+                    if (GLOBAL_FORMAT_CACHE.size() >= LEAK_ALERT_DATE_FORMAT_CACHE_SIZE) {
+                        triggered = true;
+                        GLOBAL_FORMAT_CACHE.clear();
+                    }
+                }
+                if (triggered) {
+                    LOG.warn("Global java.time DateTimeFormatter cache has exceeded "
+                            + LEAK_ALERT_DATE_FORMAT_CACHE_SIZE + " entries => cache flushed. "
+                            + "Typical cause: Some template generates high variety of format pattern strings.");
+                }
+            }
+
+            JavaTimeTemplateDateFormat prevFormat = GLOBAL_FORMAT_CACHE.putIfAbsent(cacheKey, format);
+            if (prevFormat != null) {
+                format = prevFormat;
+            }
+        }
+        return format;
+    }
+
+    private static DateTimeFormatter createDateTimeFormatter(int dateType, String nameOrPattern, Locale locale)
+            throws UnknownDateTypeFormattingUnsupportedException, InvalidFormatParametersException {
+        StringTokenizer tok = new StringTokenizer(nameOrPattern, "_");
+        FormatStyle tok1Style = tok.hasMoreTokens() ? parseDateStyleToken(tok.nextToken()) : FormatStyle.MEDIUM;
+        if (tok1Style != null) {
+            switch (dateType) {
+                case TemplateDateModel.UNKNOWN: {
+                    throw new UnknownDateTypeFormattingUnsupportedException();
+                }
+                case TemplateDateModel.TIME: {
+                    return DateTimeFormatter.ofLocalizedTime(tok1Style);
+                }
+                case TemplateDateModel.DATE: {
+                    return DateTimeFormatter.ofLocalizedDate(tok1Style);
+                }
+                case TemplateDateModel.DATETIME: {
+                    FormatStyle tok2Style = tok.hasMoreTokens() ? parseDateStyleToken(tok.nextToken()) : tok1Style;
+                    if (tok2Style != null) {
+                        return DateTimeFormatter.ofLocalizedDateTime(tok1Style, tok2Style);
+                    }
+                    break;
+                }
+            }
+        }
+        try {
+            return DateTimeFormatter.ofPattern(nameOrPattern, locale);
+        } catch (IllegalArgumentException e) {
+            final String msg = e.getMessage();
+            throw new InvalidFormatParametersException(
+                    msg != null ? msg : "Invalid DateTimeFormatter pattern", e);
+        }
+    }
+
+    private static FormatStyle parseDateStyleToken(String token) {
+        if ("short".equals(token)) {
+            return FormatStyle.SHORT;
+        }
+        if ("medium".equals(token)) {
+            return FormatStyle.MEDIUM;
+        }
+        if ("long".equals(token)) {
+            return FormatStyle.LONG;
+        }
+        if ("full".equals(token)) {
+            return FormatStyle.FULL;
+        }
+        return null;
+    }
+
+    private static final class CacheKey {
+        private final int dateType;
+        private final String pattern;
+        private final Locale locale;
+        private final TimeZone timeZone;
+
+        CacheKey(int dateType, String pattern, Locale locale, TimeZone timeZone) {
+            this.dateType = dateType;
+            this.pattern = pattern;
+            this.locale = locale;
+            this.timeZone = timeZone;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof CacheKey) {
+                CacheKey fk = (CacheKey) o;
+                return dateType == fk.dateType && fk.pattern.equals(pattern) && fk.locale.equals(locale)
+                        && fk.timeZone.equals(timeZone);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return dateType ^ pattern.hashCode() ^ locale.hashCode() ^ timeZone.hashCode();
+        }
+    }
+
+}
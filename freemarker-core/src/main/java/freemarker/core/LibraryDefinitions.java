@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import freemarker.core.Environment.Namespace;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
+import freemarker.template._TemplateAPI;
+
+/**
+ * The variables that an imported template (a library) defines on its top level, for templates whose top level only
+ * contains {@code #macro}-s, {@code #function}-s, {@code #assign}-s of literals, and static text (which is discarded
+ * on import anyway), possibly nested into directives that only have parse-time effect (like {@code #escape}). As
+ * executing the top level of such a library has no effect other than defining these variables, the namespace of the
+ * library can be populated without executing it. These are calculated only once per {@link Template} object, so they
+ * are shared by all template executions (and are updated when the template is reloaded, as then it's a new
+ * {@link Template} object). As each {@link Environment} still gets its own {@link Namespace}, assigning to the
+ * variables of the namespace affects only that {@link Environment}.
+ */
+final class LibraryDefinitions {
+
+    /** Stored into the {@link Template} if it's not a side effect free library. */
+    private static final Object NOT_SIDE_EFFECT_FREE = new Object();
+
+    /** The variables, in the order as executing the library would define them. */
+    private final String[] names;
+    private final TemplateModel[] values;
+    private final Macro[] macros;
+
+    private LibraryDefinitions(List<String> names, List<TemplateModel> values, List<Macro> macros) {
+        this.names = names.toArray(new String[0]);
+        this.values = values.toArray(new TemplateModel[0]);
+        this.macros = macros.toArray(new Macro[0]);
+    }
+
+    /**
+     * @return {@code null} if the template has to be executed to initialize its namespace.
+     */
+    static LibraryDefinitions get(Template template) throws TemplateException {
+        Object libraryDefinitions = _TemplateAPI.getLibraryDefinitions(template);
+        if (libraryDefinitions == null) {
+            // Concurrent threads might calculate this at the same time, but they will have the same result.
+            libraryDefinitions = create(template);
+            _TemplateAPI.setLibraryDefinitions(template, libraryDefinitions);
+        }
+        return libraryDefinitions != NOT_SIDE_EFFECT_FREE ? (LibraryDefinitions) libraryDefinitions : null;
+    }
+
+    private static Object create(Template template) throws TemplateException {
+        List<String> names = new ArrayList<>();
+        List<TemplateModel> values = new ArrayList<>();
+        List<Macro> macros = new ArrayList<>();
+
+        // Like Environment.include does, first all macros are defined, then the top level is executed.
+        for (Object macro : template.getMacros().values()) {
+            addMacro((Macro) macro, names, values, macros);
+        }
+        TemplateElement rootElement = template.getRootTreeNode();
+        if (rootElement != null && !addTopLevelDefinitions(rootElement, names, values, macros)) {
+            return NOT_SIDE_EFFECT_FREE;
+        }
+        return new LibraryDefinitions(names, values, macros);
+    }
+
+    /**
+     * @return {@code false} if the element can have effect other than defining variables in the current namespace.
+     */
+    private static boolean addTopLevelDefinitions(
+            TemplateElement element, List<String> names, List<TemplateModel> values, List<Macro> macros)
+            throws TemplateException {
+        if (element instanceof Macro) {
+            addMacro((Macro) element, names, values, macros);
+            return true;
+        } else if (element instanceof Assignment) {
+            Assignment assignment = (Assignment) element;
+            TemplateModel value = assignment.getConstantNamespaceVariableValue();
+            if (value == null) {
+                return false;
+            }
+            names.add(assignment.getVariableName());
+            values.add(value);
+            return true;
+        } else if (element instanceof TextBlock || element instanceof Comment) {
+            return true;
+        } else if (element instanceof MixedContent || element instanceof AssignmentInstruction
+                || element instanceof EscapeBlock || element instanceof NoEscapeBlock
+                || element instanceof OutputFormatBlock
+                || element instanceof AutoEscBlock || element instanceof NoAutoEscBlock) {
+            // These only visit their children on runtime.
+            int childCount = element.getChildCount();
+            for (int i = 0; i < childCount; i++) {
+                if (!addTopLevelDefinitions(element.getChild(i), names, values, macros)) {
+                    return false;
+                }
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private static void addMacro(Macro macro, List<String> names, List<TemplateModel> values, List<Macro> macros) {
+        names.add(macro.getName());
+        values.add(macro);
+        macros.add(macro);
+    }
+
+    /**
+     * Does what executing the top level of the library would do, with the given namespace being the current
+     * namespace.
+     */
+    void initializeNamespace(Namespace namespace, Map<Object, Namespace> macroToNamespaceLookup) {
+        for (Macro macro : macros) {
+            macroToNamespaceLookup.put(macro.getNamespaceLookupKey(), namespace);
+        }
+        for (int i = 0; i < names.length; i++) {
+            namespace.put(names[i], values[i]);
+        }
+    }
+
+}
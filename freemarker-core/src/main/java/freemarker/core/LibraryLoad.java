@@ -36,6 +36,8 @@ public final class LibraryLoad extends TemplateElement {
 
     private Expression importedTemplateNameExp;
     private String targetNsVarName;
+    /** Non-{@code null} exactly if the template name is a literal. */
+    private final CallSiteTemplateCache callSiteTemplateCache;
 
     /**
      * @param template the template that this {@code Include} is a part of.
@@ -47,31 +49,61 @@ public final class LibraryLoad extends TemplateElement {
             String targetNsVarName) {
         this.targetNsVarName = targetNsVarName;
         this.importedTemplateNameExp = templateName;
+        this.callSiteTemplateCache = templateName.isLiteral() ? new CallSiteTemplateCache() : null;
     }
 
     @Override
     TemplateElement[] accept(Environment env) throws TemplateException, IOException {
-        final String importedTemplateName = importedTemplateNameExp.evalAndCoerceToPlainText(env);
-        final String fullImportedTemplateName;
-        try {
-            fullImportedTemplateName = env.toFullTemplateName(getTemplate().getName(), importedTemplateName);
-        } catch (MalformedTemplateNameException e) {
-            throw new _MiscTemplateException(e, env,
-                    "Malformed template name ", new _DelayedJQuote(e.getTemplateName()), ":\n",
-                    e.getMalformednessDescription());
+        if (callSiteTemplateCache != null && !env.getLazyImports()) {
+            // Lazy imports don't look up the template, so only eager imports can benefit from this.
+            Template importedTemplate = callSiteTemplateCache.getTemplate(env, null, true,
+                    () -> getTemplateForImporting(importedTemplateNameExp.evalAndCoerceToPlainText(env), env));
+            try {
+                env.importLib(importedTemplate, targetNsVarName);
+            } catch (IOException e) {
+                throw newImportFailedException(importedTemplateNameExp.evalAndCoerceToPlainText(env), e, env);
+            }
+            return null;
         }
         
+        final String importedTemplateName = importedTemplateNameExp.evalAndCoerceToPlainText(env);
+        final String fullImportedTemplateName = toFullImportedTemplateName(importedTemplateName, env);
         try {
             env.importLib(fullImportedTemplateName, targetNsVarName);
         } catch (IOException e) {
-            throw new _MiscTemplateException(e, env,
-                    "Template importing failed (for parameter value ",
-                    new _DelayedJQuote(importedTemplateName),
-                    "):\n", new _DelayedGetMessage(e));
+            throw newImportFailedException(importedTemplateName, e, env);
         }
         return null;
     }
 
+    private Template getTemplateForImporting(String importedTemplateName, Environment env) throws TemplateException {
+        final String fullImportedTemplateName = toFullImportedTemplateName(importedTemplateName, env);
+        try {
+            return env.getTemplateForImporting(fullImportedTemplateName);
+        } catch (IOException e) {
+            throw newImportFailedException(importedTemplateName, e, env);
+        }
+    }
+    
+    private String toFullImportedTemplateName(String importedTemplateName, Environment env)
+            throws _MiscTemplateException {
+        try {
+            return env.toFullTemplateName(getTemplate().getName(), importedTemplateName);
+        } catch (MalformedTemplateNameException e) {
+            throw new _MiscTemplateException(e, env,
+                    "Malformed template name ", new _DelayedJQuote(e.getTemplateName()), ":\n",
+                    e.getMalformednessDescription());
+        }
+    }
+
+    private _MiscTemplateException newImportFailedException(
+            String importedTemplateName, IOException e, Environment env) {
+        return new _MiscTemplateException(e, env,
+                "Template importing failed (for parameter value ",
+                new _DelayedJQuote(importedTemplateName),
+                "):\n", new _DelayedGetMessage(e));
+    }
+
     @Override
     protected String dump(boolean canonical) {
         StringBuilder buf = new StringBuilder();
@@ -113,6 +145,26 @@ public final class LibraryLoad extends TemplateElement {
         }
     }    
     
+    /**
+     * The name of the imported template as it was specified (so it's possibly relative), if it's a literal, otherwise
+     * {@code null}.
+     */
+    String getLiteralImportedTemplateName() {
+        if (!importedTemplateNameExp.isLiteral()) {
+            return null;
+        }
+        try {
+            return importedTemplateNameExp.evalAndCoerceToPlainText(null);
+        } catch (TemplateException e) {
+            // Will be reported on runtime
+            return null;
+        }
+    }
+
+    String getTargetNsVarName() {
+        return targetNsVarName;
+    }
+
     public String getTemplateName() {
         return importedTemplateNameExp.toString();
     }
@@ -80,7 +80,7 @@ final class ListableRightUnboundedRangeModel extends RightUnboundedRangeModel im
                     }
                 }
                 needInc = true;
-                return nextType == 1 ? new SimpleNumber(nextInt)
+                return nextType == 1 ? SimpleNumber.valueOf(nextInt)
                         : (nextType == 2 ? new SimpleNumber(nextLong)
                         : new SimpleNumber(nextBigInteger)); 
             }
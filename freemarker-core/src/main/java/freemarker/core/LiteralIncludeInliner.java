@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.util.Locale;
+
+import freemarker.cache.TemplateCache;
+import freemarker.cache._CacheAPI;
+import freemarker.template.Configuration;
+import freemarker.template.MalformedTemplateNameException;
+import freemarker.template.Template;
+
+/**
+ * Resolves the {@code #include}-s with literal arguments to templates when the including template is loaded; see
+ * {@link Configuration#setInlineLiteralIncludes(boolean)}.
+ */
+final class LiteralIncludeInliner {
+
+    private final Template template;
+    private final TemplateCache templateCache;
+
+    private LiteralIncludeInliner(Template template, TemplateCache templateCache) {
+        this.template = template;
+        this.templateCache = templateCache;
+    }
+
+    /**
+     * Must be called before the template is published to other threads.
+     */
+    static void inline(Template template, TemplateCache templateCache) {
+        if (template.getRootTreeNode() != null) {
+            new LiteralIncludeInliner(template, templateCache).inline(template.getRootTreeNode());
+        }
+    }
+
+    private void inline(TemplateElement element) {
+        if (element instanceof Include) {
+            inline((Include) element);
+        }
+        int childCount = element.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            inline(element.getChild(i));
+        }
+    }
+
+    private void inline(Include include) {
+        String includedTemplateName = include.getInlinableIncludedTemplateName();
+        if (includedTemplateName == null) {
+            return;
+        }
+        
+        Configuration cfg = template.getConfiguration();
+        final String fullIncludedTemplateName;
+        try {
+            // Same as Environment.toFullTemplateName, if classic_compatible is off 
+            fullIncludedTemplateName = _CacheAPI.toRootBasedName(
+                    cfg.getTemplateNameFormat(), template.getName(), includedTemplateName);
+        } catch (MalformedTemplateNameException e) {
+            // Will be reported on runtime
+            return;
+        }
+        
+        // Same as what Environment.getIncludedTemplateCustomLookupCondition() and getIncludedTemplateEncoding()
+        // returns when this is the main template, and the locale wasn't changed. Otherwise Include will notice that
+        // the lookup parameters differ, and won't use the inlined template.
+        Locale locale = template.getLocale();
+        Object customLookupCondition = template.getCustomLookupCondition();
+        String encoding = include.getLiteralEncoding();
+        if (encoding == null) {
+            encoding = template.getEncoding();
+            if (encoding == null) {
+                encoding = cfg.getEncoding(locale);
+            }
+        }
+        
+        Template includedTemplate = _CacheAPI.getTemplateForInlining(
+                templateCache, fullIncludedTemplateName, locale, customLookupCondition, encoding);
+        if (includedTemplate != null) {
+            include.setInlinedTemplate(includedTemplate, locale, customLookupCondition, encoding);
+        }
+    }
+
+}
@@ -67,6 +67,32 @@ final class LocalLambdaExpression extends Expression {
                 argValue != null ? argValue : TemplateNullModel.INSTANCE);
     }
 
+    /**
+     * Same as {@link #invokeLambdaDefinedFunction(TemplateModel, Environment)}, but reuses the {@link LocalContext}
+     * that binds the parameter, so calling this for each element of a listing doesn't allocate anything.
+     *
+     * @param localContext Created with {@link #newReusableLocalContext()}, typically once per evaluation of the
+     *            built-in that calls the lambda.
+     *
+     * @since 2.3.34
+     */
+    TemplateModel invokeLambdaDefinedFunction(
+            TemplateModel argValue, Environment.ReusableLocalContextWithNewLocal localContext, Environment env)
+            throws TemplateException {
+        return env.evaluateWithNewLocal(rho, localContext,
+                argValue != null ? argValue : TemplateNullModel.INSTANCE);
+    }
+
+    /**
+     * Creates the mutable {@link LocalContext} for {@link #invokeLambdaDefinedFunction(TemplateModel,
+     * Environment.ReusableLocalContextWithNewLocal, Environment)}; must not be shared between threads.
+     *
+     * @since 2.3.34
+     */
+    Environment.ReusableLocalContextWithNewLocal newReusableLocalContext() {
+        return new Environment.ReusableLocalContextWithNewLocal(lho.getParameters().get(0).getName());
+    }
+
     @Override
     boolean isLiteral() {
         // As we don't support true lambdas, they can't be evaluted in parse time.
@@ -113,6 +113,10 @@ final class MethodCall extends Expression {
         return target;
     }
 
+    List<Expression> getArguments() {
+        return arguments.items;
+    }
+
     @Override
     Object getParameterValue(int idx) {
         if (idx == 0) {
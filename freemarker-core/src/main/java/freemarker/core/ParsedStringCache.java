@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import freemarker.template.Configuration;
+
+/**
+ * Stores the results of parsing strings at runtime with {@code ?interpret}, {@code ?eval}, and {@code ?eval_json}, so
+ * that when the same string is parsed again (with the same parser settings), the earlier result can be reused. This is
+ * useful when the same template snippets are stored outside the templates (like in a database), and they are
+ * interpreted again and again. See {@link Configuration#setParsedStringCacheMaxSize(int)}.
+ *
+ * <p>This class is thread-safe; lookups don't lock. When the number of entries exceeds the maximum size, the entries
+ * that weren't used since the previous eviction are removed first.
+ *
+ * <p>Note that the results of {@code ?eval_json} are shared too, so they must not be modified (which is normally not
+ * possible from templates anyway).
+ *
+ * @since 2.3.34
+ */
+public final class ParsedStringCache {
+
+    private static final Object INTERPRET_KEY_KIND = "interpret";
+    private static final Object EVAL_KEY_KIND = "eval";
+    private static final Object EVAL_JSON_KEY_KIND = "eval_json";
+
+    private final int maxSize;
+    private final ConcurrentHashMap<Object, Entry> entries;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final Object evictionLock = new Object();
+
+    /**
+     * @param maxSize
+     *            The maximum number of entries; must be at least 1.
+     */
+    ParsedStringCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, but was " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** The current number of entries. */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /** The number of times a parsing result was found in the cache. */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /** The number of times a parsing result wasn't found in the cache, so the string had to be parsed. */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /** Removes all entries; doesn't reset the statistics. */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Creates the key for an {@code ?interpret} result.
+     *
+     * @param pCfg
+     *            The parser configuration used for the template, including the inherited output format.
+     */
+    static Object createInterpretKey(
+            String templateSource, String templateName, ParserConfiguration pCfg, Locale locale) {
+        return Arrays.asList(INTERPRET_KEY_KIND, templateSource, templateName, createParserConfigurationKey(pCfg),
+                locale);
+    }
+
+    /**
+     * Creates the key for an {@code ?eval} result.
+     *
+     * @param parentTemplate
+     *            The template the expression belongs to (compared by identity).
+     * @param pCfg
+     *            The parser configuration used for the expression, including the inherited output format.
+     */
+    static Object createEvalKey(String expressionSource, Object parentTemplate, ParserConfiguration pCfg) {
+        return Arrays.asList(EVAL_KEY_KIND, expressionSource, parentTemplate, createParserConfigurationKey(pCfg));
+    }
+
+    /** Creates the key for an {@code ?eval_json} result. */
+    static Object createEvalJsonKey(String json) {
+        return Arrays.asList(EVAL_JSON_KEY_KIND, json);
+    }
+
+    /**
+     * Compares the settings by value, so that changing a setting of a {@link ParserConfiguration} (like of the
+     * {@link Configuration}) won't return stale results.
+     */
+    private static List<Object> createParserConfigurationKey(ParserConfiguration pCfg) {
+        return Arrays.asList(
+                pCfg.getTagSyntax(), pCfg.getInterpolationSyntax(), pCfg.getNamingConvention(),
+                pCfg.getWhitespaceStripping(), pCfg.getArithmeticEngine(), pCfg.getStrictSyntaxMode(),
+                pCfg.getAutoEscapingPolicy(), pCfg.getOutputFormat(), pCfg.getRecognizeStandardFileExtensions(),
+                pCfg.getIncompatibleImprovements(), pCfg.getTabSize());
+    }
+
+    /**
+     * @return {@code null} if there's no entry for the key.
+     */
+    Object get(Object key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        entry.usedSinceEviction = true;
+        hitCount.incrementAndGet();
+        return entry.value;
+    }
+
+    void put(Object key, Object value) {
+        entries.put(key, new Entry(value));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        synchronized (evictionLock) {
+            // Evict somewhat more than needed, so that we don't have to do this on each put.
+            int targetSize = maxSize - Math.max(maxSize / 4, 1) + 1;
+            while (entries.size() > targetSize) {
+                for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && entries.size() > targetSize; ) {
+                    Entry entry = it.next();
+                    if (entry.usedSinceEviction) {
+                        entry.usedSinceEviction = false; // Gets a second chance
+                    } else {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private volatile boolean usedSinceEviction;
+
+        Entry(Object value) {
+            this.value = value;
+        }
+    }
+
+}
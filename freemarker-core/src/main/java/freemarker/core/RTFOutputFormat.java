@@ -77,4 +77,15 @@ public class RTFOutputFormat extends CommonMarkupOutputFormat<TemplateRTFOutputM
         return new TemplateRTFOutputModel(plainTextContent, markupContent);
     }
 
+    @Override
+    boolean isGrowableContentSupported() {
+        return getClass() == RTFOutputFormat.class;
+    }
+
+    @Override
+    TemplateRTFOutputModel newTemplateMarkupOutputModelWithGrowableContent(
+            Object plainTextContent, Object markupContent) {
+        return new TemplateRTFOutputModel(plainTextContent, markupContent);
+    }
+
 }
@@ -41,8 +41,16 @@ abstract class RangeModel implements TemplateSequenceModel, java.io.Serializable
         if (index < 0 || index >= size()) {
             throw new _TemplateModelException("Range item index ", Integer.valueOf(index), " is out of bounds.");
         }
+        return getWithoutBoundsCheck(index);
+    }
+
+    /**
+     * Same as {@link #get(int)}, but the caller must ensure that the index is within bounds. Used when listing the
+     * range, to avoid the repeated bounds checking.
+     */
+    final TemplateModel getWithoutBoundsCheck(int index) {
         long value = begin + getStep() * (long) index;
-        return value <= Integer.MAX_VALUE ? new SimpleNumber((int) value) : new SimpleNumber(value);
+        return value <= Integer.MAX_VALUE ? SimpleNumber.valueOf((int) value) : new SimpleNumber(value);
     }
     
     /**
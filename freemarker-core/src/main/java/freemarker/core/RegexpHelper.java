@@ -19,10 +19,11 @@
 
 package freemarker.core;
 
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import freemarker.cache.MruCacheStorage;
 import freemarker.log.Logger;
 import freemarker.template.TemplateModelException;
 import freemarker.template.utility.StringUtil;
@@ -39,7 +40,8 @@ final class RegexpHelper {
     private static final Object flagWarningsCntSync = new Object();
     private static int flagWarningsCnt;
     
-    private static final MruCacheStorage patternCache = new MruCacheStorage(50, 150);
+    private static final int PATTERN_CACHE_MAX_SIZE = 150;
+    private static final ConcurrentHashMap<PatternCacheKey, Pattern> patternCache = new ConcurrentHashMap<>();
 
     static private long intFlagToLong(int flag) {
         return flag & 0x0000FFFFL;
@@ -66,11 +68,7 @@ final class RegexpHelper {
     throws TemplateModelException {
         PatternCacheKey patternKey = new PatternCacheKey(patternString, flags);
         
-        Pattern result;
-        
-        synchronized (patternCache) {
-            result = (Pattern) patternCache.get(patternKey);
-        }
+        Pattern result = patternCache.get(patternKey);
         if (result != null) {
             return result;
         }
@@ -81,11 +79,93 @@ final class RegexpHelper {
             throw new _TemplateModelException(e,
                     "Malformed regular expression: ", new _DelayedGetMessage(e));
         }
-        synchronized (patternCache) {
-            patternCache.put(patternKey, result);
+        if (patternCache.size() >= PATTERN_CACHE_MAX_SIZE) {
+            evictSomePatterns();
         }
+        patternCache.put(patternKey, result);
         return result;
-    };
+    }
+
+    /**
+     * Removes a quarter of the cache entries, in no particular order. This is not as good as an LRU, but needs no
+     * locking, and the patterns given as literals are compiled on parsing time anyway (see
+     * {@link #getParseTimeRegexpArgumentsOrNull(Expression, Expression, boolean)}), so mostly the patterns coming
+     * from the data-model are in this cache.
+     */
+    private static void evictSomePatterns() {
+        int removalCnt = PATTERN_CACHE_MAX_SIZE / 4;
+        for (Iterator<PatternCacheKey> it = patternCache.keySet().iterator(); it.hasNext() && removalCnt > 0;
+                removalCnt--) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Processes the regular expression and flags arguments of a directly called built-in on parsing time, if they are
+     * string literals.
+     * 
+     * @param flagsArg
+     *            {@code null} if there's no flags argument.
+     * @param regexpOnly
+     *            Whether the built-in always treats the pattern as regular expression (as opposed to only when the "r"
+     *            flag is present).
+     * 
+     * @return {@code null} if the arguments weren't literals, or if using them would cause a warning or an error, as
+     *         those are reported on runtime, like before.
+     */
+    static ParseTimeRegexpArguments getParseTimeRegexpArgumentsOrNull(
+            Expression patternArg, Expression flagsArg, boolean regexpOnly) {
+        String patternString = getStringLiteralValueOrNull(patternArg);
+        if (patternString == null) {
+            return null;
+        }
+        String flagString = flagsArg != null ? getStringLiteralValueOrNull(flagsArg) : "";
+        if (flagString == null) {
+            return null;
+        }
+        for (int i = 0; i < flagString.length(); i++) {
+            if ("imcsrf".indexOf(flagString.charAt(i)) == -1) {
+                return null;
+            }
+        }
+        long flags = parseFlagString(flagString);
+        
+        if (regexpOnly) {
+            if ((flags & RE_FLAG_FIRST_ONLY) != 0) {
+                return null;
+            }
+        } else if ((flags & RE_FLAG_REGEXP) == 0) {
+            if ((flags & (RE_FLAG_MULTILINE | RE_FLAG_DOTALL | RE_FLAG_COMMENTS)) != 0) {
+                return null;
+            }
+            return new ParseTimeRegexpArguments(flags, null);
+        }
+        
+        try {
+            return new ParseTimeRegexpArguments(flags, Pattern.compile(patternString, (int) flags));
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+    
+    private static String getStringLiteralValueOrNull(Expression exp) {
+        return exp instanceof StringLiteral && exp.isLiteral() ? ((StringLiteral) exp).getAsString() : null;
+    }
+
+    /**
+     * The result of {@link RegexpHelper#getParseTimeRegexpArgumentsOrNull(Expression, Expression, boolean)}.
+     */
+    static final class ParseTimeRegexpArguments {
+        final long flags;
+        /** {@code null} if the pattern isn't a regular expression. */
+        final Pattern pattern;
+
+        private ParseTimeRegexpArguments(long flags, Pattern pattern) {
+            this.flags = flags;
+            this.pattern = pattern;
+        }
+    }
 
     private static class PatternCacheKey {
         private final String patternString;
@@ -0,0 +1,407 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.Collator;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import freemarker.ext.util.WrapperTemplateModel;
+import freemarker.template.TemplateBooleanModel;
+import freemarker.template.TemplateDateModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+import freemarker.template._VersionInts;
+
+/**
+ * Hash index of the items of a {@link TemplateSequenceModel}, used by {@code ?seq_contains}, {@code ?seq_index_of},
+ * and {@code ?seq_last_index_of} instead of a linear scan, when they are called on the same sequence repeatedly
+ * during the same template processing. The index is built after {@link #PROBES_BEFORE_INDEXING} searches, and is
+ * stored in the {@link Environment}.
+ *
+ * <p>The lookup result must be the same as that of the linear scan, which compares the items with
+ * {@link EvalUtil#compare} (with the {@code ==} operator). Thus only values whose equality can be expressed by a hash
+ * key are indexed: strings, booleans, and numbers when the {@link ArithmeticEngine} is
+ * {@link ArithmeticEngine#BIGDECIMAL_ENGINE} (and they are of the standard {@link Number} types, and not NaN or
+ * infinite). For anything else (like for dates, or if the searched value is both a string and a number) the lookup
+ * methods return {@link #UNKNOWN}, and the caller has to fall back to the linear scan. Values of other types can't be
+ * equal to anything (as type mismatch means "not equal"), so for those the lookup doesn't find anything.
+ */
+final class SequenceIndex {
+
+    /** Returned by the lookup methods if the index can't be used for the searched value. */
+    static final int UNKNOWN = -2;
+
+    /** Shorter sequences aren't indexed. */
+    private static final int MIN_SIZE = 16;
+    /** The number of searches in the same sequence after which the index is built. */
+    private static final int PROBES_BEFORE_INDEXING = 4;
+    /** The maximum number of sequences tracked per {@link Environment}. */
+    private static final int MAX_TRACKED_SEQUENCES = 64;
+
+    private static final Object TRACKER_CUSTOM_STATE_KEY = new Object();
+
+    /** Stored as the index of sequences that can't be indexed, so that we don't try to build it again. */
+    private static final SequenceIndex NOT_INDEXABLE = new SequenceIndex(null, null, false, false, false);
+
+    /** Maps the keys to an {@link Integer} position, or if the key occurs multiple times, to a {@link Positions}. */
+    private final HashMap<Object, Object> positionsByKey;
+    /** If {@code null}, strings are compared after NFKC normalization, otherwise with this {@link Collator}. */
+    private final Collator collator;
+    private final boolean numbersIndexed;
+    private final boolean stringsIndexed;
+    private final boolean booleansIndexed;
+
+    private SequenceIndex(
+            HashMap<Object, Object> positionsByKey, Collator collator,
+            boolean numbersIndexed, boolean stringsIndexed, boolean booleansIndexed) {
+        this.positionsByKey = positionsByKey;
+        this.collator = collator;
+        this.numbersIndexed = numbersIndexed;
+        this.stringsIndexed = stringsIndexed;
+        this.booleansIndexed = booleansIndexed;
+    }
+
+    /**
+     * Returns the index of the sequence, if it was already searched enough times in the current {@link Environment}
+     * to worth building it (or it was already built earlier), otherwise returns {@code null}.
+     */
+    static SequenceIndex get(TemplateSequenceModel seq, int seqSize, Environment env) {
+        if (seqSize < MIN_SIZE || env == null || env.isClassicCompatible()) {
+            return null;
+        }
+
+        Collator collator = env.getConfiguration().getIncompatibleImprovements().intValue() < _VersionInts.V_2_3_33
+                ? env.getCollator() : null;
+        TrackerKey trackerKey = new TrackerKey(seq, seqSize, env.getArithmeticEngine(), collator);
+        Tracker tracker = (Tracker) env.getCustomState(TRACKER_CUSTOM_STATE_KEY);
+        if (tracker == null) {
+            tracker = new Tracker();
+            env.setCustomState(TRACKER_CUSTOM_STATE_KEY, tracker);
+        }
+        TrackedSequence trackedSeq = tracker.get(trackerKey);
+        if (trackedSeq == null) {
+            trackedSeq = new TrackedSequence();
+            tracker.put(trackerKey, trackedSeq);
+        }
+
+        SequenceIndex index = trackedSeq.index;
+        if (index == null) {
+            if (++trackedSeq.probes < PROBES_BEFORE_INDEXING) {
+                return null;
+            }
+            index = build(seq, seqSize, env.getArithmeticEngine() == ArithmeticEngine.BIGDECIMAL_ENGINE, collator);
+            trackedSeq.index = index;
+        }
+        return index != NOT_INDEXABLE ? index : null;
+    }
+
+    private static SequenceIndex build(
+            TemplateSequenceModel seq, int seqSize, boolean numbersIndexed, Collator collator) {
+        boolean stringsIndexed = true;
+        boolean booleansIndexed = true;
+        HashMap<Object, Object> positionsByKey = new HashMap<>(seqSize * 4 / 3 + 1);
+        for (int i = 0; i < seqSize; i++) {
+            TemplateModel item;
+            try {
+                item = seq.get(i);
+            } catch (TemplateModelException | RuntimeException e) {
+                // The linear scan will report this, if it gets there.
+                return NOT_INDEXABLE;
+            }
+            if (item == null) {
+                continue; // Not equal to anything
+            }
+
+            // An item can have multiple types. As the searched value must have only one of these types (or else we
+            // won't use the index), we can index the item for each of its types.
+            if (numbersIndexed && item instanceof TemplateNumberModel) {
+                Object key;
+                try {
+                    key = toNumberKey(((TemplateNumberModel) item).getAsNumber());
+                } catch (TemplateModelException | RuntimeException e) {
+                    key = null;
+                }
+                if (key != null) {
+                    addPosition(positionsByKey, key, i);
+                } else {
+                    numbersIndexed = false;
+                }
+            }
+            if (stringsIndexed && item instanceof TemplateScalarModel) {
+                Object key;
+                try {
+                    key = toStringKey(((TemplateScalarModel) item).getAsString(), collator);
+                } catch (TemplateModelException | RuntimeException e) {
+                    key = null;
+                }
+                if (key != null) {
+                    addPosition(positionsByKey, key, i);
+                } else {
+                    stringsIndexed = false;
+                }
+            }
+            if (booleansIndexed && item instanceof TemplateBooleanModel) {
+                try {
+                    addPosition(positionsByKey, Boolean.valueOf(((TemplateBooleanModel) item).getAsBoolean()), i);
+                } catch (TemplateModelException | RuntimeException e) {
+                    booleansIndexed = false;
+                }
+            }
+        }
+        return new SequenceIndex(positionsByKey, collator, numbersIndexed, stringsIndexed, booleansIndexed);
+    }
+
+    private static void addPosition(HashMap<Object, Object> positionsByKey, Object key, int position) {
+        Object prevPositions = positionsByKey.putIfAbsent(key, Integer.valueOf(position));
+        if (prevPositions != null) {
+            Positions positions;
+            if (prevPositions instanceof Integer) {
+                positions = new Positions(((Integer) prevPositions).intValue());
+                positionsByKey.put(key, positions);
+            } else {
+                positions = (Positions) prevPositions;
+            }
+            positions.add(position);
+        }
+    }
+
+    /**
+     * Returns the lowest position where the item is equal to {@code searched}, and that's not lower than
+     * {@code fromIndex}; -1 if there's no such item, or {@link #UNKNOWN} if the index can't be used for this
+     * {@code searched} value.
+     */
+    int indexOf(TemplateModel searched, int fromIndex) {
+        Object positions = getPositions(searched);
+        if (positions == null || positions == UNKNOWN_POSITIONS) {
+            return positions == null ? -1 : UNKNOWN;
+        }
+        if (positions instanceof Integer) {
+            int position = ((Integer) positions).intValue();
+            return position >= fromIndex ? position : -1;
+        }
+        Positions multiPositions = (Positions) positions;
+        int i = Arrays.binarySearch(multiPositions.array, 0, multiPositions.size, fromIndex);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < multiPositions.size ? multiPositions.array[i] : -1;
+    }
+
+    /**
+     * Returns the highest position where the item is equal to {@code searched}, and that's not higher than
+     * {@code toIndex}; -1 if there's no such item, or {@link #UNKNOWN} if the index can't be used for this
+     * {@code searched} value.
+     */
+    int lastIndexOf(TemplateModel searched, int toIndex) {
+        Object positions = getPositions(searched);
+        if (positions == null || positions == UNKNOWN_POSITIONS) {
+            return positions == null ? -1 : UNKNOWN;
+        }
+        if (positions instanceof Integer) {
+            int position = ((Integer) positions).intValue();
+            return position <= toIndex ? position : -1;
+        }
+        Positions multiPositions = (Positions) positions;
+        int i = Arrays.binarySearch(multiPositions.array, 0, multiPositions.size, toIndex);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return i >= 0 ? multiPositions.array[i] : -1;
+    }
+
+    private static final Object UNKNOWN_POSITIONS = new Object();
+
+    /**
+     * @return {@code null} if the searched value is not equal to any item, {@link #UNKNOWN_POSITIONS} if the index
+     *     can't be used for the searched value, otherwise an {@link Integer} or a {@link Positions}.
+     */
+    private Object getPositions(TemplateModel searched) {
+        if (searched == null || searched instanceof TemplateDateModel) {
+            return UNKNOWN_POSITIONS;
+        }
+
+        Object key = null;
+        int types = 0;
+        try {
+            if (searched instanceof TemplateNumberModel) {
+                types++;
+                key = numbersIndexed ? toNumberKey(((TemplateNumberModel) searched).getAsNumber()) : null;
+            }
+            if (searched instanceof TemplateScalarModel) {
+                types++;
+                key = stringsIndexed ? toStringKey(((TemplateScalarModel) searched).getAsString(), collator) : null;
+            }
+            if (searched instanceof TemplateBooleanModel) {
+                types++;
+                key = booleansIndexed ? Boolean.valueOf(((TemplateBooleanModel) searched).getAsBoolean()) : null;
+            }
+        } catch (TemplateModelException | RuntimeException e) {
+            // Let the linear scan report the error, if there's any
+            return UNKNOWN_POSITIONS;
+        }
+        if (types == 0) {
+            // Can't be equal to any item, as it's not a type that EvalUtil.compare supports.
+            return null;
+        }
+        if (types > 1 || key == null) {
+            return UNKNOWN_POSITIONS;
+        }
+        return positionsByKey.get(key);
+    }
+
+    /**
+     * Returns a key that's equal for two numbers exactly if {@link ArithmeticEngine#BIGDECIMAL_ENGINE} considers them
+     * to be equal, or {@code null} if we don't know how to calculate the key for the number.
+     */
+    private static Object toNumberKey(Number num) {
+        if (num instanceof Integer || num instanceof Long || num instanceof Short || num instanceof Byte) {
+            return Long.valueOf(num.longValue());
+        }
+        if (num == null) {
+            return null;
+        }
+        Class<?> numClass = num.getClass();
+        BigDecimal bd;
+        if (numClass == BigDecimal.class) {
+            bd = (BigDecimal) num;
+        } else if (numClass == BigInteger.class) {
+            bd = new BigDecimal((BigInteger) num);
+        } else if (numClass == Double.class || numClass == Float.class) {
+            double d = num.doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return null;
+            }
+            // Like BigDecimalEngine, we convert via toString. (A same-type comparison gives the same result, as
+            // Double.toString(double) and Float.toString(float) are unique for each value, except that negative zero
+            // is also handled by the stripTrailingZeros() below.)
+            bd = new BigDecimal(num.toString());
+        } else {
+            return null;
+        }
+        bd = bd.stripTrailingZeros();
+        if (bd.signum() == 0) {
+            return Long.valueOf(0);
+        }
+        // Integers that fit into a long are represented with Long, as for the primitive integer types above
+        if (bd.scale() <= 0) {
+            try {
+                return Long.valueOf(bd.longValueExact());
+            } catch (ArithmeticException e) {
+                // Falls through
+            }
+        }
+        return bd;
+    }
+
+    private static Object toStringKey(String s, Collator collator) {
+        if (s == null) {
+            return null;
+        }
+        return collator == null ? Normalizer.normalize(s, Normalizer.Form.NFKC) : collator.getCollationKey(s);
+    }
+
+    /** Growable array of item positions, in increasing order. */
+    private static final class Positions {
+        private int[] array;
+        private int size;
+
+        Positions(int firstPosition) {
+            array = new int[4];
+            array[0] = firstPosition;
+            size = 1;
+        }
+
+        void add(int position) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size * 2);
+            }
+            array[size++] = position;
+        }
+    }
+
+    /**
+     * Identifies a sequence, similarly as the key of the {@code ?sort} result cache does; the source is the wrapped
+     * object if there's one (as the {@link TemplateSequenceModel} can be a new instance each time the variable is
+     * read), otherwise the {@link TemplateSequenceModel}, in both cases compared by identity. Also contains what
+     * affects the equality of the items.
+     */
+    private static final class TrackerKey {
+        private final Object source;
+        private final Class<?> seqClass;
+        private final int size;
+        private final ArithmeticEngine arithmeticEngine;
+        private final Collator collator;
+
+        TrackerKey(TemplateSequenceModel seq, int size, ArithmeticEngine arithmeticEngine, Collator collator) {
+            this.source = seq instanceof WrapperTemplateModel ? ((WrapperTemplateModel) seq).getWrappedObject()
+                    : seq;
+            this.seqClass = seq.getClass();
+            this.size = size;
+            this.arithmeticEngine = arithmeticEngine;
+            this.collator = collator;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TrackerKey)) return false;
+            TrackerKey that = (TrackerKey) o;
+            return source == that.source
+                    && seqClass == that.seqClass
+                    && size == that.size
+                    && arithmeticEngine == that.arithmeticEngine
+                    && collator == that.collator;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(source) * 31 + size;
+        }
+    }
+
+    private static final class TrackedSequence {
+        private int probes;
+        private SequenceIndex index;
+    }
+
+    /**
+     * The most recently searched sequences of an {@link Environment}.
+     */
+    private static final class Tracker extends LinkedHashMap<TrackerKey, TrackedSequence> {
+
+        Tracker() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TrackerKey, TrackedSequence> eldest) {
+            return size() > MAX_TRACKED_SEQUENCES;
+        }
+    }
+
+}
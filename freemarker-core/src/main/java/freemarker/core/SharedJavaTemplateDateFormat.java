@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+
+import freemarker.template.TemplateDateModel;
+import freemarker.template.TemplateModelException;
+
+/**
+ * A {@link SimpleDateFormat} pattern that was translated to an equivalent {@link DateTimeFormatter}, so unlike
+ * {@link JavaTemplateDateFormat}, instances can be shared among threads. Created by
+ * {@link SharedJavaTemplateDateFormatFactory}.
+ *
+ * <p>
+ * The few cases where the {@link DateTimeFormatter} wouldn't give the same output as the {@link SimpleDateFormat}
+ * (dates before or around the Julian-Gregorian calendar change, or before the first time zone transition, and for some
+ * ISO 8601 zone offset patterns, historical zone offsets that aren't whole minutes, or less than an hour) are formatted
+ * with a copy of the original {@link SimpleDateFormat}. Parsing is always done with a copy of the original
+ * {@link SimpleDateFormat}, so that it remains as lenient as with {@link JavaTemplateDateFormat}.
+ */
+final class SharedJavaTemplateDateFormat extends TemplateDateFormat {
+
+    private final DateTimeFormatter dateTimeFormatter;
+    /** Never used directly, as it's not thread-safe; it's only cloned. */
+    private final SimpleDateFormat simpleDateFormatPrototype;
+    private final long minDateTimeFormatterMillis;
+    /** {@code null} if the zone offsets need not be checked before formatting with {@link #dateTimeFormatter}. */
+    private final ZoneRules zoneRulesToCheck;
+    private final boolean subHourZoneOffsetUnsupported;
+
+    /**
+     * @param dateTimeFormatter
+     *            Must already have the zone set.
+     * @param minDateTimeFormatterMillis
+     *            The {@link DateTimeFormatter} is used only for instants that are not before this.
+     * @param zoneRulesToCheck
+     *            If not {@code null}, the zone offset must be a whole minute to use the {@link DateTimeFormatter}.
+     * @param subHourZoneOffsetUnsupported
+     *            If the {@link DateTimeFormatter} can't be used if the zone offset is not 0, but is less than an hour.
+     *            Only has effect if {@code zoneRulesToCheck} is non-{@code null}.
+     */
+    SharedJavaTemplateDateFormat(
+            DateTimeFormatter dateTimeFormatter, SimpleDateFormat simpleDateFormatPrototype,
+            long minDateTimeFormatterMillis,
+            ZoneRules zoneRulesToCheck, boolean subHourZoneOffsetUnsupported) {
+        this.dateTimeFormatter = dateTimeFormatter;
+        this.simpleDateFormatPrototype = simpleDateFormatPrototype;
+        this.minDateTimeFormatterMillis = minDateTimeFormatterMillis;
+        this.zoneRulesToCheck = zoneRulesToCheck;
+        this.subHourZoneOffsetUnsupported = subHourZoneOffsetUnsupported;
+    }
+
+    @Override
+    public String formatToPlainText(TemplateDateModel dateModel) throws TemplateModelException {
+        Date date = TemplateFormatUtil.getNonNullDate(dateModel);
+        long millis = date.getTime();
+        if (millis < minDateTimeFormatterMillis) {
+            return newSimpleDateFormat().format(date);
+        }
+        Instant instant = Instant.ofEpochMilli(millis);
+        if (zoneRulesToCheck != null) {
+            int offsetSeconds = zoneRulesToCheck.getOffset(instant).getTotalSeconds();
+            if (offsetSeconds % 60 != 0
+                    || subHourZoneOffsetUnsupported && offsetSeconds != 0 && Math.abs(offsetSeconds) < 3600) {
+                return newSimpleDateFormat().format(date);
+            }
+        }
+        return dateTimeFormatter.format(instant);
+    }
+
+    @Override
+    public Date parse(String s, int dateType) throws UnparsableValueException {
+        try {
+            return newSimpleDateFormat().parse(s);
+        } catch (ParseException e) {
+            throw new UnparsableValueException(e.getMessage(), e);
+        }
+    }
+
+    private DateFormat newSimpleDateFormat() {
+        return (DateFormat) simpleDateFormatPrototype.clone();
+    }
+
+    @Override
+    public String getDescription() {
+        return simpleDateFormatPrototype.toPattern();
+    }
+
+    @Override
+    public boolean isLocaleBound() {
+        return true;
+    }
+
+    @Override
+    public boolean isTimeZoneBound() {
+        return true;
+    }
+
+}
@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.text.DateFormat;
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+import freemarker.log.Logger;
+
+/**
+ * Accepts the same format strings as {@link JavaTemplateDateFormatFactory} (and gives the same output), but where
+ * possible it translates the {@link SimpleDateFormat} pattern to a {@link DateTimeFormatter}, which, unlike
+ * {@link SimpleDateFormat}, is thread-safe. Thus, the resulting formats can be shared by all threads, instead of
+ * cloning a {@link SimpleDateFormat} for each {@link Environment} that uses it. Used instead of
+ * {@link JavaTemplateDateFormatFactory} if {@link Configurable#getJavaTimeDateFormats()} is {@code true}.
+ *
+ * <p>
+ * Patterns that can't be translated without a risk of changing the output (like those that contain week-based or zone
+ * name fields, or month names without a day of month field, or if the locale uses a non-Gregorian calendar or
+ * non-ASCII digits) are left to {@link JavaTemplateDateFormatFactory}.
+ */
+class SharedJavaTemplateDateFormatFactory extends TemplateDateFormatFactory {
+
+    static final SharedJavaTemplateDateFormatFactory INSTANCE = new SharedJavaTemplateDateFormatFactory();
+
+    private static final Logger LOG = Logger.getLogger("freemarker.runtime");
+
+    /**
+     * Stores {@link SharedJavaTemplateDateFormat}-s, or for the format strings that couldn't be translated, a
+     * {@link JavaTemplateDateFormat} that must be cloned before use.
+     */
+    private static final ConcurrentHashMap<CacheKey, TemplateDateFormat> GLOBAL_FORMAT_CACHE
+            = new ConcurrentHashMap<>();
+    private static final int LEAK_ALERT_DATE_FORMAT_CACHE_SIZE = 1024;
+
+    private static final long MILLIS_IN_DAY = 24L * 60 * 60 * 1000;
+    /** 1900-01-02T00:00:00Z; one day later than the earliest transition that {@link TimeZone} knows about. */
+    private static final long MIN_TIME_ZONE_TRANSITION_MILLIS = -2208902400000L;
+
+    private SharedJavaTemplateDateFormatFactory() {
+        // Can't be instantiated
+    }
+
+    /**
+     * @param zonelessInput
+     *            Has no effect in this implementation.
+     */
+    @Override
+    public TemplateDateFormat get(String params, int dateType, Locale locale, TimeZone timeZone, boolean zonelessInput,
+            Environment env) throws UnknownDateTypeFormattingUnsupportedException, InvalidFormatParametersException {
+        CacheKey cacheKey = new CacheKey(dateType, params, locale, timeZone);
+        TemplateDateFormat format = GLOBAL_FORMAT_CACHE.get(cacheKey);
+        if (format == null) {
+            DateFormat jFormat = JavaTemplateDateFormatFactory.createJavaDateFormat(
+                    dateType, params, locale, timeZone);
+            format = createSharedFormat(jFormat, locale, timeZone);
+            if (format == null) {
+                format = new JavaTemplateDateFormat(jFormat);
+            }
+
+            if (GLOBAL_FORMAT_CACHE.size() >= LEAK_ALERT_DATE_FORMAT_CACHE_SIZE) {
+                boolean triggered = false;
+                synchronized (SharedJavaTemplateDateFormatFactory.class) {
+                    if (GLOBAL_FORMAT_CACHE.size() >= LEAK_ALERT_DATE_FORMAT_CACHE_SIZE) {
+                        triggered = true;
+                        GLOBAL_FORMAT_CACHE.clear();
+                    }
+                }
+                if (triggered) {
+                    LOG.warn("Global shared Java date format cache has exceeded "
+                            + LEAK_ALERT_DATE_FORMAT_CACHE_SIZE + " entries => cache flushed. "
+                            + "Typical cause: Some template generates high variety of format pattern strings.");
+                }
+            }
+
+            TemplateDateFormat prevFormat = GLOBAL_FORMAT_CACHE.putIfAbsent(cacheKey, format);
+            if (prevFormat != null) {
+                format = prevFormat;
+            }
+        }
+
+        if (format instanceof JavaTemplateDateFormat) {
+            // For thread safety
+            return new JavaTemplateDateFormat(
+                    (DateFormat) ((JavaTemplateDateFormat) format).getJavaDateFormat().clone());
+        }
+        return format;
+    }
+
+    /**
+     * @return {@code null} if the format can't be translated so that it surely gives the same output.
+     */
+    private static SharedJavaTemplateDateFormat createSharedFormat(
+            DateFormat jFormat, Locale locale, TimeZone timeZone) {
+        if (!(jFormat instanceof SimpleDateFormat)) {
+            return null;
+        }
+        SimpleDateFormat sdf = (SimpleDateFormat) jFormat;
+
+        if (sdf.getCalendar().getClass() != GregorianCalendar.class) {
+            return null;
+        }
+        NumberFormat numberFormat = sdf.getNumberFormat();
+        if (!(numberFormat instanceof DecimalFormat)
+                || ((DecimalFormat) numberFormat).getDecimalFormatSymbols().getZeroDigit() != '0'
+                || numberFormat.isGroupingUsed()) {
+            return null;
+        }
+        // Custom TimeZone implementations may not have a java.time equivalent.
+        if (!timeZone.equals(TimeZone.getTimeZone(timeZone.getID()))) {
+            return null;
+        }
+
+        PatternTranslator translator = new PatternTranslator(sdf.getDateFormatSymbols());
+        if (!translator.translate(sdf.toPattern())) {
+            return null;
+        }
+
+        ZoneId zoneId = timeZone.toZoneId();
+        ZoneRules zoneRulesToCheck = null;
+        if (translator.iso8601ZoneOffsetUsed) {
+            ZoneRules zoneRules = zoneId.getRules();
+            if (zoneRules.isFixedOffset()) {
+                int offsetSeconds = zoneRules.getOffset(Instant.EPOCH).getTotalSeconds();
+                if (offsetSeconds % 60 != 0
+                        || translator.iso8601HourOnlyZoneOffsetUsed
+                                && offsetSeconds != 0 && Math.abs(offsetSeconds) < 3600) {
+                    return null;
+                }
+            } else {
+                zoneRulesToCheck = zoneRules;
+            }
+        }
+
+        return new SharedJavaTemplateDateFormat(
+                translator.builder.toFormatter(locale).withZone(zoneId),
+                sdf,
+                getMinDateTimeFormatterMillis((GregorianCalendar) sdf.getCalendar(), zoneId),
+                zoneRulesToCheck, translator.iso8601HourOnlyZoneOffsetUsed);
+    }
+
+    /**
+     * Returns the earliest instant from which the {@link DateTimeFormatter} gives the same result as the
+     * {@link SimpleDateFormat}.
+     */
+    private static long getMinDateTimeFormatterMillis(GregorianCalendar calendar, ZoneId zoneId) {
+        // Before the Gregorian change, GregorianCalendar uses the Julian calendar, while java.time uses the proleptic
+        // Gregorian calendar. Also, the day of the year, and such, differs in the whole year of the change.
+        long gregorianChangeMillis = calendar.getGregorianChange().getTime();
+        long minMillis = LocalDate.ofEpochDay(Math.floorDiv(gregorianChangeMillis, MILLIS_IN_DAY))
+                .plusYears(1).withDayOfYear(1)
+                .minusDays(1) // For the time zones with positive offset
+                .toEpochDay() * MILLIS_IN_DAY
+                + MILLIS_IN_DAY * 2; // For the time zones with negative offset
+
+        ZoneRules zoneRules = zoneId.getRules();
+        if (!zoneRules.isFixedOffset()) {
+            // TimeZone ignores the transitions before 1900, while java.time doesn't.
+            minMillis = Math.max(minMillis, MIN_TIME_ZONE_TRANSITION_MILLIS);
+            // Before the first transition java.time uses the local mean time, while TimeZone uses the offset after it.
+            ZoneOffsetTransition firstTransition = zoneRules.nextTransition(Instant.MIN);
+            if (firstTransition != null) {
+                minMillis = Math.max(minMillis, firstTransition.getInstant().toEpochMilli());
+            }
+        }
+
+        return minMillis;
+    }
+
+    /**
+     * Translates a {@link SimpleDateFormat} pattern to {@link DateTimeFormatterBuilder} calls, replicating what
+     * {@link SimpleDateFormat#format(java.util.Date)} does for a {@link GregorianCalendar}. The texts (like month
+     * names) are taken from the {@link DateFormatSymbols} of the {@link SimpleDateFormat}, as the {@code java.time}
+     * locale data can differ from them.
+     */
+    private static final class PatternTranslator {
+        /** The largest minimum width {@link DateTimeFormatterBuilder#appendValue(java.time.temporal.TemporalField,
+         * int, int, SignStyle)} accepts. */
+        private static final int MAX_WIDTH = 19;
+
+        private final DateFormatSymbols symbols;
+        private final DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder();
+        private final StringBuilder literal = new StringBuilder();
+        private boolean iso8601ZoneOffsetUsed;
+        private boolean iso8601HourOnlyZoneOffsetUsed;
+        private boolean monthTextUsed;
+        private boolean dayOfMonthUsed;
+
+        PatternTranslator(DateFormatSymbols symbols) {
+            this.symbols = symbols;
+        }
+
+        /**
+         * @return {@code false} if the pattern contains something that we can't translate.
+         */
+        boolean translate(String pattern) {
+            final int ln = pattern.length();
+            int i = 0;
+            while (i < ln) {
+                char c = pattern.charAt(i);
+                if (c == '\'') {
+                    if (i + 1 < ln && pattern.charAt(i + 1) == '\'') {
+                        literal.append('\'');
+                        i += 2;
+                    } else {
+                        i++;
+                        boolean closed = false;
+                        while (i < ln) {
+                            c = pattern.charAt(i);
+                            if (c == '\'') {
+                                if (i + 1 < ln && pattern.charAt(i + 1) == '\'') {
+                                    literal.append('\'');
+                                    i += 2;
+                                } else {
+                                    i++;
+                                    closed = true;
+                                    break;
+                                }
+                            } else {
+                                literal.append(c);
+                                i++;
+                            }
+                        }
+                        if (!closed) {
+                            return false;
+                        }
+                    }
+                } else if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+                    int start = i;
+                    do {
+                        i++;
+                    } while (i < ln && pattern.charAt(i) == c);
+                    flushLiteral();
+                    if (!appendField(c, i - start)) {
+                        return false;
+                    }
+                } else {
+                    literal.append(c);
+                    i++;
+                }
+            }
+            flushLiteral();
+            // Without a day of month field, SimpleDateFormat may use the stand-alone month names (like "январь"
+            // instead of "января"), depending on the pattern and the Java version, and those aren't in the
+            // DateFormatSymbols.
+            return !monthTextUsed || dayOfMonthUsed;
+        }
+
+        private void flushLiteral() {
+            if (literal.length() != 0) {
+                builder.appendLiteral(literal.toString());
+                literal.setLength(0);
+            }
+        }
+
+        private boolean appendField(char letter, int count) {
+            switch (letter) {
+            case 'y':
+                if (count == 2) {
+                    builder.appendValueReduced(ChronoField.YEAR_OF_ERA, 2, 2, 2000);
+                    return true;
+                }
+                return appendNumber(ChronoField.YEAR_OF_ERA, count);
+            case 'M':
+                monthTextUsed |= count >= 3;
+                if (count >= 4) {
+                    return appendText(ChronoField.MONTH_OF_YEAR, symbols.getMonths(), 1, 12);
+                } else if (count == 3) {
+                    return appendText(ChronoField.MONTH_OF_YEAR, symbols.getShortMonths(), 1, 12);
+                }
+                return appendNumber(ChronoField.MONTH_OF_YEAR, count);
+            case 'd':
+                dayOfMonthUsed = true;
+                return appendNumber(ChronoField.DAY_OF_MONTH, count);
+            case 'k':
+                return appendNumber(ChronoField.CLOCK_HOUR_OF_DAY, count);
+            case 'H':
+                return appendNumber(ChronoField.HOUR_OF_DAY, count);
+            case 'm':
+                return appendNumber(ChronoField.MINUTE_OF_HOUR, count);
+            case 's':
+                return appendNumber(ChronoField.SECOND_OF_MINUTE, count);
+            case 'S':
+                return appendNumber(ChronoField.MILLI_OF_SECOND, count);
+            case 'E':
+                return appendDayOfWeekText(count >= 4 ? symbols.getWeekdays() : symbols.getShortWeekdays());
+            case 'D':
+                return appendNumber(ChronoField.DAY_OF_YEAR, count);
+            case 'F':
+                // Calendar.DAY_OF_WEEK_IN_MONTH is (dayOfMonth - 1) / 7 + 1, just like this:
+                return appendNumber(ChronoField.ALIGNED_WEEK_OF_MONTH, count);
+            case 'a':
+                return appendText(ChronoField.AMPM_OF_DAY, symbols.getAmPmStrings(), 0, 2);
+            case 'h':
+                return appendNumber(ChronoField.CLOCK_HOUR_OF_AMPM, count);
+            case 'K':
+                return appendNumber(ChronoField.HOUR_OF_AMPM, count);
+            case 'u':
+                return appendNumber(ChronoField.DAY_OF_WEEK, count);
+            case 'Z':
+                builder.appendOffset("+HHMM", "+0000");
+                return true;
+            case 'X':
+                iso8601ZoneOffsetUsed = true;
+                if (count == 1) {
+                    iso8601HourOnlyZoneOffsetUsed = true;
+                    builder.appendOffset("+HH", "Z");
+                } else if (count == 2) {
+                    builder.appendOffset("+HHMM", "Z");
+                } else if (count == 3) {
+                    builder.appendOffset("+HH:MM", "Z");
+                } else {
+                    return false;
+                }
+                return true;
+            default:
+                // Week-based fields ('w', 'W', 'Y') depend on Calendar settings that WeekFields doesn't exactly
+                // replicate, and zone names ('z'), stand-alone month names ('L'), and for some locales era names
+                // ('G') aren't the same as in the DateFormatSymbols.
+                return false;
+            }
+        }
+
+        private boolean appendNumber(ChronoField field, int minWidth) {
+            if (minWidth > MAX_WIDTH) {
+                return false;
+            }
+            builder.appendValue(field, minWidth, MAX_WIDTH, SignStyle.NORMAL);
+            return true;
+        }
+
+        private boolean appendText(ChronoField field, String[] texts, int firstValue, int valueCount) {
+            if (texts.length < valueCount) {
+                return false;
+            }
+            Map<Long, String> textByValue = new HashMap<>();
+            for (int i = 0; i < valueCount; i++) {
+                textByValue.put((long) (firstValue + i), texts[i]);
+            }
+            builder.appendText(field, textByValue);
+            return true;
+        }
+
+        /**
+         * @param texts
+         *            Indexed with {@link java.util.Calendar#DAY_OF_WEEK} values, which start with Sunday as 1.
+         */
+        private boolean appendDayOfWeekText(String[] texts) {
+            if (texts.length < 8) {
+                return false;
+            }
+            Map<Long, String> textByValue = new HashMap<>();
+            for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+                textByValue.put((long) dayOfWeek.getValue(), texts[dayOfWeek.getValue() % 7 + 1]);
+            }
+            builder.appendText(ChronoField.DAY_OF_WEEK, textByValue);
+            return true;
+        }
+    }
+
+    private static final class CacheKey {
+        private final int dateType;
+        private final String pattern;
+        private final Locale locale;
+        private final TimeZone timeZone;
+
+        CacheKey(int dateType, String pattern, Locale locale, TimeZone timeZone) {
+            this.dateType = dateType;
+            this.pattern = pattern;
+            this.locale = locale;
+            this.timeZone = timeZone;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof CacheKey) {
+                CacheKey fk = (CacheKey) o;
+                return dateType == fk.dateType && fk.pattern.equals(pattern) && fk.locale.equals(locale)
+                        && fk.timeZone.equals(timeZone);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return dateType ^ pattern.hashCode() ^ locale.hashCode() ^ timeZone.hashCode();
+        }
+    }
+
+}
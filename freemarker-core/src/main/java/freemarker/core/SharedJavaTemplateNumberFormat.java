@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.text.NumberFormat;
+
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateNumberModel;
+
+/**
+ * Formats with a {@link CompiledDecimalFormat}, which is shared by all threads, and only falls back to the
+ * {@link NumberFormat} (that has to be cloned for each instance of this class, as it's not thread-safe) for the values
+ * that {@link CompiledDecimalFormat} can't format. Created by {@link SharedJavaTemplateNumberFormatFactory}.
+ */
+final class SharedJavaTemplateNumberFormat extends BackwardCompatibleTemplateNumberFormat {
+
+    private final String formatString;
+    private final CompiledDecimalFormat compiledFormat;
+    /** Never used directly, as it's not thread-safe; it's only cloned. */
+    private final NumberFormat javaNumberFormatPrototype;
+    /** Created on demand from {@link #javaNumberFormatPrototype}. */
+    private NumberFormat javaNumberFormat;
+
+    SharedJavaTemplateNumberFormat(
+            CompiledDecimalFormat compiledFormat, NumberFormat javaNumberFormatPrototype, String formatString) {
+        this.compiledFormat = compiledFormat;
+        this.javaNumberFormatPrototype = javaNumberFormatPrototype;
+        this.formatString = formatString;
+    }
+
+    @Override
+    public String formatToPlainText(TemplateNumberModel numberModel)
+            throws UnformattableValueException, TemplateModelException {
+        return format(TemplateFormatUtil.getNonNullNumber(numberModel));
+    }
+
+    @Override
+    String format(Number number) throws UnformattableValueException {
+        String result = compiledFormat.format(number);
+        if (result != null) {
+            return result;
+        }
+
+        if (javaNumberFormat == null) {
+            javaNumberFormat = (NumberFormat) javaNumberFormatPrototype.clone();
+        }
+        try {
+            return javaNumberFormat.format(number);
+        } catch (ArithmeticException e) {
+            throw new UnformattableValueException(
+                    "This format can't format the " + number + " number. Reason: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isLocaleBound() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return formatString;
+    }
+
+}
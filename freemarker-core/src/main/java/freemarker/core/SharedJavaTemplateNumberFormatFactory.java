@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import freemarker.log.Logger;
+
+/**
+ * Accepts the same format strings as {@link JavaTemplateNumberFormatFactory} (and gives the same output), but where
+ * possible it compiles the {@link DecimalFormat} into a {@link CompiledDecimalFormat}, which, unlike
+ * {@link DecimalFormat}, is immutable and thread-safe, so it's shared by all threads. Thus, the {@link DecimalFormat}
+ * need not be cloned for each {@link Environment} that uses it (unless it meets a value that
+ * {@link CompiledDecimalFormat} can't format). Used instead of {@link JavaTemplateNumberFormatFactory} if
+ * {@link Configurable#getSharedNumberFormats()} is {@code true}.
+ */
+class SharedJavaTemplateNumberFormatFactory extends TemplateNumberFormatFactory {
+
+    static final SharedJavaTemplateNumberFormatFactory INSTANCE = new SharedJavaTemplateNumberFormatFactory();
+
+    private static final Logger LOG = Logger.getLogger("freemarker.runtime");
+
+    private static final ConcurrentHashMap<CacheKey, CompiledFormats> GLOBAL_FORMAT_CACHE
+            = new ConcurrentHashMap<>();
+    private static final int LEAK_ALERT_NUMBER_FORMAT_CACHE_SIZE = 1024;
+
+    private SharedJavaTemplateNumberFormatFactory() {
+        // Not meant to be instantiated
+    }
+
+    @Override
+    public TemplateNumberFormat get(String params, Locale locale, Environment env)
+            throws InvalidFormatParametersException {
+        CacheKey cacheKey = new CacheKey(params, locale);
+        CompiledFormats formats = GLOBAL_FORMAT_CACHE.get(cacheKey);
+        if (formats == null) {
+            NumberFormat jFormat = JavaTemplateNumberFormatFactory.createJavaNumberFormat(params, locale);
+            formats = new CompiledFormats(jFormat, CompiledDecimalFormat.compile(jFormat));
+
+            if (GLOBAL_FORMAT_CACHE.size() >= LEAK_ALERT_NUMBER_FORMAT_CACHE_SIZE) {
+                boolean triggered = false;
+                synchronized (SharedJavaTemplateNumberFormatFactory.class) {
+                    if (GLOBAL_FORMAT_CACHE.size() >= LEAK_ALERT_NUMBER_FORMAT_CACHE_SIZE) {
+                        triggered = true;
+                        GLOBAL_FORMAT_CACHE.clear();
+                    }
+                }
+                if (triggered) {
+                    LOG.warn("Global shared Java NumberFormat cache has exceeded "
+                            + LEAK_ALERT_NUMBER_FORMAT_CACHE_SIZE + " entries => cache flushed. "
+                            + "Typical cause: Some template generates high variety of format pattern strings.");
+                }
+            }
+
+            CompiledFormats prevFormats = GLOBAL_FORMAT_CACHE.putIfAbsent(cacheKey, formats);
+            if (prevFormats != null) {
+                formats = prevFormats;
+            }
+        }
+
+        if (formats.compiledFormat == null) {
+            // JFormat-s aren't thread-safe; must clone it
+            return new JavaTemplateNumberFormat((NumberFormat) formats.javaNumberFormat.clone(), params);
+        }
+        return new SharedJavaTemplateNumberFormat(formats.compiledFormat, formats.javaNumberFormat, params);
+    }
+
+    private static final class CompiledFormats {
+        /** Never used directly, as it's not thread-safe; it's only cloned. */
+        private final NumberFormat javaNumberFormat;
+        /** {@code null} if the {@link NumberFormat} couldn't be compiled. */
+        private final CompiledDecimalFormat compiledFormat;
+
+        CompiledFormats(NumberFormat javaNumberFormat, CompiledDecimalFormat compiledFormat) {
+            this.javaNumberFormat = javaNumberFormat;
+            this.compiledFormat = compiledFormat;
+        }
+    }
+
+    private static final class CacheKey {
+        private final String pattern;
+        private final Locale locale;
+
+        CacheKey(String pattern, Locale locale) {
+            this.pattern = pattern;
+            this.locale = locale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof CacheKey) {
+                CacheKey fk = (CacheKey) o;
+                return fk.pattern.equals(pattern) && fk.locale.equals(locale);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return pattern.hashCode() ^ locale.hashCode();
+        }
+    }
+
+}
@@ -30,11 +30,12 @@ import freemarker.template.TemplateException;
 public class StopException extends TemplateException {
     
     StopException(Environment env) {
-        super(env);
+        // The Java stack trace is always captured, as this is never handled by the TemplateExceptionHandler.
+        super(null, env, true);
     }
 
     StopException(Environment env, String s) {
-        super(s, env);
+        super(s, env, true);
     }
 
     @Override
@@ -20,8 +20,11 @@
 package freemarker.core;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
 
 /**
  * An instruction representing a switch-case structure.
@@ -31,6 +34,8 @@ final class SwitchBlock extends TemplateElement {
     private Case defaultCase;
     private final Expression searched;
     private int firstCaseIndex;
+    /** Non-{@code null} if all {@code #case} values are suitable literals; set in {@link #postParseCleanup}. */
+    private ConstantCaseIndex constantCaseIndex;
 
     /**
      * @param searched the expression to be tested.
@@ -62,7 +67,25 @@ final class SwitchBlock extends TemplateElement {
         boolean processedCase = false;
         int ln = getChildCount();
         try {
-            for (int i = firstCaseIndex; i < ln; i++) {
+            final TemplateModel searchedValue;
+            int firstCaseToTestIndex = firstCaseIndex;
+            if (constantCaseIndex != null) {
+                searchedValue = searched.eval(env);
+                int matchingCaseIndex = constantCaseIndex.getCaseIndex(searchedValue, searched, env);
+                if (matchingCaseIndex != ConstantCaseIndex.UNSUPPORTED_VALUE) {
+                    if (matchingCaseIndex != ConstantCaseIndex.NO_MATCH) {
+                        // As if the cases before were tested, and were false.
+                        firstCaseToTestIndex = firstCaseIndex + matchingCaseIndex;
+                        processedCase = true;
+                    } else {
+                        firstCaseToTestIndex = ln;
+                    }
+                }
+            } else {
+                searchedValue = null;
+            }
+            
+            for (int i = firstCaseToTestIndex; i < ln; i++) {
                 Case cas = (Case) getChild(i);
                 boolean processCase = false;
 
@@ -71,9 +94,17 @@ final class SwitchBlock extends TemplateElement {
                     processCase = true;
                 } else if (cas.condition != null) {
                     // Otherwise, if this case isn't the default, test it.
-                    processCase = EvalUtil.compare(
-                            searched,
-                            EvalUtil.CMP_OP_EQUALS, "case==", cas.condition, cas.condition, env);
+                    processCase = constantCaseIndex == null
+                            ? EvalUtil.compare(
+                                    searched,
+                                    EvalUtil.CMP_OP_EQUALS, "case==", cas.condition, cas.condition, env)
+                            : EvalUtil.compare(
+                                    searchedValue, searched,
+                                    EvalUtil.CMP_OP_EQUALS, "case==",
+                                    cas.condition.eval(env), cas.condition,
+                                    cas.condition, false,
+                                    false, false, false,
+                                    env);
                 }
                 if (processCase) {
                     env.visit(cas);
@@ -147,6 +178,12 @@ final class SwitchBlock extends TemplateElement {
         }
         firstCaseIndex = i;
         
+        List<Expression> caseValueExps = new ArrayList<>(ln - firstCaseIndex);
+        for (i = firstCaseIndex; i < ln; i++) {
+            caseValueExps.add(((Case) getChild(i)).condition);
+        }
+        constantCaseIndex = ConstantCaseIndex.createOrNull(caseValueExps, getTemplate().getConfiguration());
+        
         return result;
     }
     
@@ -42,6 +42,15 @@ public final class TemplateCombinedMarkupOutputModel
         this.outputFormat = outputFormat; 
     }
 
+    /**
+     * See {@link CommonTemplateMarkupOutputModel#CommonTemplateMarkupOutputModel(Object, Object)}.
+     */
+    TemplateCombinedMarkupOutputModel(Object plainTextContent, Object markupContent,
+            CombinedMarkupOutputFormat outputFormat) {
+        super(plainTextContent, markupContent);
+        this.outputFormat = outputFormat;
+    }
+
     @Override
     public CombinedMarkupOutputFormat getOutputFormat() {
         return outputFormat;
@@ -191,6 +191,12 @@ public final class TemplateConfiguration extends Configurable implements ParserC
         if (tc.isDateTimeFormatSet()) {
             setDateTimeFormat(tc.getDateTimeFormat());
         }
+        if (tc.isSharedNumberFormatsSet()) {
+            setSharedNumberFormats(tc.getSharedNumberFormats());
+        }
+        if (tc.isJavaTimeDateFormatsSet()) {
+            setJavaTimeDateFormats(tc.getJavaTimeDateFormats());
+        }
         if (tc.isCFormatSet()) {
             setCFormat(tc.getCFormat());
         }
@@ -336,6 +342,12 @@ public final class TemplateConfiguration extends Configurable implements ParserC
         if (isDateTimeFormatSet() && !template.isDateTimeFormatSet()) {
             template.setDateTimeFormat(getDateTimeFormat());
         }
+        if (isSharedNumberFormatsSet() && !template.isSharedNumberFormatsSet()) {
+            template.setSharedNumberFormats(getSharedNumberFormats());
+        }
+        if (isJavaTimeDateFormatsSet() && !template.isJavaTimeDateFormatsSet()) {
+            template.setJavaTimeDateFormats(getJavaTimeDateFormats());
+        }
         if (isCFormatSet() && !template.isCFormatSet()) {
             template.setCFormat(getCFormat());
         }
@@ -686,6 +698,8 @@ public final class TemplateConfiguration extends Configurable implements ParserC
                 || isCustomNumberFormatsSet()
                 || isDateFormatSet()
                 || isDateTimeFormatSet()
+                || isSharedNumberFormatsSet()
+                || isJavaTimeDateFormatsSet()
                 || isCFormatSet()
                 || isLazyImportsSet()
                 || isLazyAutoImportsSet()
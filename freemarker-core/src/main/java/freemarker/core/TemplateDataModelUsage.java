@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import freemarker.template.Template;
+
+/**
+ * The result of {@link Template#getDataModelUsage()}: the variables of the data-model that a template might read.
+ * This is a conservative estimate based on the source code of the template (static analysis), so it doesn't depend on
+ * the data-model, and it may contain variables that are never actually read (like because the reading is in an
+ * {@code #if} branch that's never taken).
+ *
+ * <p>The variables are described with paths, where the first item of the path is the name of the top-level variable,
+ * and the further items are the names of the subvariables, like {@code ["user", "address", "city"]} for
+ * {@code user.address.city} (or for {@code user["address"].city}). A path means that the template might use the value
+ * at that path as a whole, so it might read any of its subvariables too. Because of that, if a path is in the result,
+ * then no longer path that starts with it will be. If the name of a subvariable isn't known when the template is
+ * parsed (like in {@code user[fieldName]}), the path ends before that subvariable.
+ *
+ * <p>What can't be followed by the analysis (dynamically evaluated or interpreted template fragments, accessing
+ * {@code .vars}, {@code .data_model}, or {@code .globals} with a key that's not a literal, or including or importing a
+ * template whose name is not a literal) makes the result incomplete; see {@link #isComplete()}. Also note that Java
+ * methods, directives, and other {@link freemarker.template.TemplateModel}-s called from the template can access the
+ * data-model through the {@link Environment}, which is not considered by the analysis.
+ *
+ * @since 2.3.34
+ */
+public final class TemplateDataModelUsage {
+
+    private final Set<String> topLevelNames;
+    private final Set<List<String>> paths;
+    private final boolean complete;
+
+    TemplateDataModelUsage(Set<String> topLevelNames, Set<List<String>> paths, boolean complete) {
+        this.topLevelNames = Collections.unmodifiableSet(topLevelNames);
+        this.paths = Collections.unmodifiableSet(paths);
+        this.complete = complete;
+    }
+
+    /**
+     * The names of the top-level variables that the template might read, in the order they first occur. Note that
+     * these can also be {@linkplain freemarker.template.Configuration#setSharedVariables(java.util.Map) shared
+     * variables}, as the template can't tell those apart from data-model variables.
+     */
+    public Set<String> getTopLevelNames() {
+        return topLevelNames;
+    }
+
+    /**
+     * The paths of the variables that the template might read; see in the class documentation what they mean exactly.
+     * The paths are in the order they first occur; each path is an unmodifiable {@link List}.
+     */
+    public Set<List<String>> getPaths() {
+        return paths;
+    }
+
+    /**
+     * Tells if the template contains variable access that the analysis couldn't follow, in which case the template
+     * might read any data-model variable, even if it's not returned by {@link #getTopLevelNames()}.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return "TemplateDataModelUsage(paths=" + paths + ", complete=" + complete + ")";
+    }
+
+}
@@ -35,6 +35,13 @@ public class TemplateHTMLOutputModel extends CommonTemplateMarkupOutputModel<Tem
         super(plainTextContent, markupContent);
     }
 
+    /**
+     * See {@link CommonTemplateMarkupOutputModel#CommonTemplateMarkupOutputModel(Object, Object)}.
+     */
+    TemplateHTMLOutputModel(Object plainTextContent, Object markupContent) {
+        super(plainTextContent, markupContent);
+    }
+
     @Override
     public HTMLOutputFormat getOutputFormat() {
         return HTMLOutputFormat.INSTANCE;
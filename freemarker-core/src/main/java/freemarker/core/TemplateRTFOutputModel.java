@@ -35,6 +35,13 @@ public class TemplateRTFOutputModel extends CommonTemplateMarkupOutputModel<Temp
         super(plainTextContent, markupContent);
     }
 
+    /**
+     * See {@link CommonTemplateMarkupOutputModel#CommonTemplateMarkupOutputModel(Object, Object)}.
+     */
+    TemplateRTFOutputModel(Object plainTextContent, Object markupContent) {
+        super(plainTextContent, markupContent);
+    }
+
     @Override
     public RTFOutputFormat getOutputFormat() {
         return RTFOutputFormat.INSTANCE;
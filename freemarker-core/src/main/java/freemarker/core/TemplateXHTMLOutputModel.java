@@ -35,6 +35,13 @@ public class TemplateXHTMLOutputModel extends TemplateXMLOutputModel {
         super(plainTextContent, markupContent);
     }
 
+    /**
+     * See {@link CommonTemplateMarkupOutputModel#CommonTemplateMarkupOutputModel(Object, Object)}.
+     */
+    TemplateXHTMLOutputModel(Object plainTextContent, Object markupContent) {
+        super(plainTextContent, markupContent);
+    }
+
     @Override
     public XHTMLOutputFormat getOutputFormat() {
         return XHTMLOutputFormat.INSTANCE;
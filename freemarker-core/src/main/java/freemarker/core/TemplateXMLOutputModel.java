@@ -35,6 +35,13 @@ public class TemplateXMLOutputModel extends CommonTemplateMarkupOutputModel<Temp
         super(plainTextContent, markupContent);
     }
 
+    /**
+     * See {@link CommonTemplateMarkupOutputModel#CommonTemplateMarkupOutputModel(Object, Object)}.
+     */
+    TemplateXMLOutputModel(Object plainTextContent, Object markupContent) {
+        super(plainTextContent, markupContent);
+    }
+
     @Override
     public XMLOutputFormat getOutputFormat() {
         return XMLOutputFormat.INSTANCE;
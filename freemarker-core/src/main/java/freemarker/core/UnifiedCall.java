@@ -111,6 +111,13 @@ final class UnifiedCall extends TemplateElement implements DirectiveCallPlace {
         return null;
     }
 
+    /**
+     * The names of the loop variables declared after the {@code ;}, or {@code null}.
+     */
+    List<String> getBodyParameterNames() {
+        return bodyParameterNames;
+    }
+
     @Override
     protected String dump(boolean canonical) {
         StringBuilder sb = new StringBuilder();
@@ -77,4 +77,15 @@ public class XHTMLOutputFormat extends XMLOutputFormat {
         return new TemplateXHTMLOutputModel(plainTextContent, markupContent);
     }
 
+    @Override
+    boolean isGrowableContentSupported() {
+        return getClass() == XHTMLOutputFormat.class;
+    }
+
+    @Override
+    TemplateXHTMLOutputModel newTemplateMarkupOutputModelWithGrowableContent(
+            Object plainTextContent, Object markupContent) {
+        return new TemplateXHTMLOutputModel(plainTextContent, markupContent);
+    }
+
 }
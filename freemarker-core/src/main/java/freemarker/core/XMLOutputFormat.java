@@ -77,4 +77,15 @@ public class XMLOutputFormat extends CommonMarkupOutputFormat<TemplateXMLOutputM
         return new TemplateXMLOutputModel(plainTextContent, markupContent);
     }
 
+    @Override
+    boolean isGrowableContentSupported() {
+        return getClass() == XMLOutputFormat.class;
+    }
+
+    @Override
+    TemplateXMLOutputModel newTemplateMarkupOutputModelWithGrowableContent(
+            Object plainTextContent, Object markupContent) {
+        return new TemplateXMLOutputModel(plainTextContent, markupContent);
+    }
+
 }
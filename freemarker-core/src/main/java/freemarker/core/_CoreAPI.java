@@ -19,12 +19,14 @@
 
 package freemarker.core;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
 import java.util.TreeSet;
 
+import freemarker.cache.TemplateCache;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
 import freemarker.template.TemplateCollectionModel;
@@ -154,6 +156,17 @@ public class _CoreAPI {
     public static TemplateElement[] getInstructionStackSnapshot(Environment env) {
         return env.getInstructionStackSnapshot();
     }
+
+    /**
+     * @param env
+     *            If {@code null}, {@link Environment#getCurrentEnvironment()} will be used.
+     */
+    public static boolean getLightweightTemplateExceptions(Environment env) {
+        if (env == null) {
+            env = Environment.getCurrentEnvironment();
+        }
+        return env != null && env.getLightweightTemplateExceptions();
+    }
     
     public static void outputInstructionStack(
             TemplateElement[] instructionStackSnapshot, boolean terseMode, Writer pw) {
@@ -172,6 +185,27 @@ public class _CoreAPI {
         }
     }
     
+    /**
+     * Used by the {@link TemplateCache} when {@link Configuration#setInlineLiteralIncludes(boolean)} is enabled.
+     */
+    public static void inlineLiteralIncludes(Template template, TemplateCache templateCache) {
+        LiteralIncludeInliner.inline(template, templateCache);
+    }
+
+    /**
+     * Used by {@link Configuration#setParsedStringCacheMaxSize(int)}.
+     */
+    public static ParsedStringCache newParsedStringCache(int maxSize) {
+        return new ParsedStringCache(maxSize);
+    }
+
+    /**
+     * Implements {@link Template#getDataModelUsage()}.
+     */
+    public static TemplateDataModelUsage getDataModelUsage(Template template) throws IOException {
+        return DataModelUsageAnalyzer.analyze(template);
+    }
+    
     static final public void checkHasNoNestedContent(TemplateDirectiveBody body)
             throws NestedContentNotSupportedException {
         NestedContentNotSupportedException.check(body);
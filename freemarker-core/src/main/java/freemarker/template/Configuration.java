@@ -71,6 +71,7 @@ import freemarker.core.LegacyCFormat;
 import freemarker.core.MarkupOutputFormat;
 import freemarker.core.OutputFormat;
 import freemarker.core.ParseException;
+import freemarker.core.ParsedStringCache;
 import freemarker.core.ParserConfiguration;
 import freemarker.core.PlainTextOutputFormat;
 import freemarker.core.RTFOutputFormat;
@@ -326,6 +327,30 @@ public class Configuration extends Configurable implements Cloneable, ParserConf
     /** Alias to the {@code ..._SNAKE_CASE} variation. @since 2.3.25 */
     public static final String FALLBACK_ON_NULL_LOOP_VARIABLE_KEY = FALLBACK_ON_NULL_LOOP_VARIABLE_KEY_SNAKE_CASE;
 
+    /** Legacy, snake case ({@code like_this}) variation of the setting name. @since 2.3.34 */
+    public static final String PARSED_STRING_CACHE_MAX_SIZE_KEY_SNAKE_CASE = "parsed_string_cache_max_size";
+    /** Modern, camel case ({@code likeThis}) variation of the setting name. @since 2.3.34 */
+    public static final String PARSED_STRING_CACHE_MAX_SIZE_KEY_CAMEL_CASE = "parsedStringCacheMaxSize";
+    /** Alias to the {@code ..._SNAKE_CASE} variation. @since 2.3.34 */
+    public static final String PARSED_STRING_CACHE_MAX_SIZE_KEY = PARSED_STRING_CACHE_MAX_SIZE_KEY_SNAKE_CASE;
+
+    /** Legacy, snake case ({@code like_this}) variation of the setting name. @since 2.3.34 */
+    public static final String INLINE_LITERAL_INCLUDES_KEY_SNAKE_CASE = "inline_literal_includes";
+    /** Modern, camel case ({@code likeThis}) variation of the setting name. @since 2.3.34 */
+    public static final String INLINE_LITERAL_INCLUDES_KEY_CAMEL_CASE = "inlineLiteralIncludes";
+    /** Alias to the {@code ..._SNAKE_CASE} variation. @since 2.3.34 */
+    public static final String INLINE_LITERAL_INCLUDES_KEY = INLINE_LITERAL_INCLUDES_KEY_SNAKE_CASE;
+
+    /** Legacy, snake case ({@code like_this}) variation of the setting name. @since 2.3.34 */
+    public static final String LIGHTWEIGHT_HANDLED_TEMPLATE_EXCEPTIONS_KEY_SNAKE_CASE
+            = "lightweight_handled_template_exceptions";
+    /** Modern, camel case ({@code likeThis}) variation of the setting name. @since 2.3.34 */
+    public static final String LIGHTWEIGHT_HANDLED_TEMPLATE_EXCEPTIONS_KEY_CAMEL_CASE
+            = "lightweightHandledTemplateExceptions";
+    /** Alias to the {@code ..._SNAKE_CASE} variation. @since 2.3.34 */
+    public static final String LIGHTWEIGHT_HANDLED_TEMPLATE_EXCEPTIONS_KEY
+            = LIGHTWEIGHT_HANDLED_TEMPLATE_EXCEPTIONS_KEY_SNAKE_CASE;
+
     private static final String[] SETTING_NAMES_SNAKE_CASE = new String[] {
         // Must be sorted alphabetically!
         AUTO_ESCAPING_POLICY_KEY_SNAKE_CASE,
@@ -333,10 +358,13 @@ public class Configuration extends Configurable implements Cloneable, ParserConf
         DEFAULT_ENCODING_KEY_SNAKE_CASE,
         FALLBACK_ON_NULL_LOOP_VARIABLE_KEY_SNAKE_CASE,
         INCOMPATIBLE_IMPROVEMENTS_KEY_SNAKE_CASE,
+        INLINE_LITERAL_INCLUDES_KEY_SNAKE_CASE,
         INTERPOLATION_SYNTAX_KEY_SNAKE_CASE,
+        LIGHTWEIGHT_HANDLED_TEMPLATE_EXCEPTIONS_KEY_SNAKE_CASE,
         LOCALIZED_LOOKUP_KEY_SNAKE_CASE,
         NAMING_CONVENTION_KEY_SNAKE_CASE,
         OUTPUT_FORMAT_KEY_SNAKE_CASE,
+        PARSED_STRING_CACHE_MAX_SIZE_KEY_SNAKE_CASE,
         RECOGNIZE_STANDARD_FILE_EXTENSIONS_KEY_SNAKE_CASE,
         REGISTERED_CUSTOM_OUTPUT_FORMATS_KEY_SNAKE_CASE,
         STRICT_SYNTAX_KEY_SNAKE_CASE,
@@ -357,10 +385,13 @@ public class Configuration extends Configurable implements Cloneable, ParserConf
         DEFAULT_ENCODING_KEY_CAMEL_CASE,
         FALLBACK_ON_NULL_LOOP_VARIABLE_KEY_CAMEL_CASE,
         INCOMPATIBLE_IMPROVEMENTS_KEY_CAMEL_CASE,
+        INLINE_LITERAL_INCLUDES_KEY_CAMEL_CASE,
         INTERPOLATION_SYNTAX_KEY_CAMEL_CASE,
+        LIGHTWEIGHT_HANDLED_TEMPLATE_EXCEPTIONS_KEY_CAMEL_CASE,
         LOCALIZED_LOOKUP_KEY_CAMEL_CASE,
         NAMING_CONVENTION_KEY_CAMEL_CASE,
         OUTPUT_FORMAT_KEY_CAMEL_CASE,
+        PARSED_STRING_CACHE_MAX_SIZE_KEY_CAMEL_CASE,
         RECOGNIZE_STANDARD_FILE_EXTENSIONS_KEY_CAMEL_CASE,
         REGISTERED_CUSTOM_OUTPUT_FORMATS_KEY_CAMEL_CASE,
         STRICT_SYNTAX_KEY_CAMEL_CASE,
@@ -560,6 +591,9 @@ public class Configuration extends Configurable implements Cloneable, ParserConf
     private boolean preventStrippings;
 
     private TemplateCache cache;
+    private volatile ParsedStringCache parsedStringCache;
+    private volatile boolean inlineLiteralIncludes;
+    private volatile boolean lightweightHandledTemplateExceptions;
     
     private boolean templateLoaderExplicitlySet;
     private boolean templateLookupStrategyExplicitlySet;
@@ -1059,6 +1093,11 @@ public class Configuration extends Configurable implements Cloneable, ParserConf
                 cache.getTemplateLookupStrategy(), cache.getTemplateNameFormat(),
                 getTemplateConfigurations());
     }
+
+    // Package visible for _TemplateAPI
+    TemplateCache getTemplateCache() {
+        return cache;
+    }
     
     private TemplateLoader getDefaultTemplateLoader() {
         return createDefaultTemplateLoader(getIncompatibleImprovements(), getTemplateLoader());
@@ -1179,6 +1218,9 @@ public class Configuration extends Configurable implements Cloneable, ParserConf
                     cache.getTemplateLoader(), cache.getCacheStorage(),
                     cache.getTemplateLookupStrategy(), cache.getTemplateNameFormat(),
                     cache.getTemplateConfigurations());
+            // The cached Template-s belong to this Configuration, so the copy can't share them:
+            copy.parsedStringCache = parsedStringCache != null
+                    ? _CoreAPI.newParsedStringCache(parsedStringCache.getMaxSize()) : null;
             return copy;
         } catch (CloneNotSupportedException e) {
             throw new BugException("Cloning failed", e);
@@ -1602,6 +1644,111 @@ public class Configuration extends Configurable implements Cloneable, ParserConf
         }
     }
 
+    /**
+     * Sets the maximum number of entries in the cache that stores the results of parsing strings at runtime with
+     * {@code ?interpret}, {@code ?eval}, and {@code ?eval_json}, so parsing the same string again (with the same
+     * parser settings) doesn't parse it again. This is useful if the same template snippets are coming from outside
+     * the templates (like from a database), and are interpreted again and again. The default is 0, which means that
+     * there's no such cache. Setting this will discard the earlier cache content.
+     *
+     * <p>Note that as the results of {@code ?eval_json} are cached too, if this is enabled, Java code must not modify
+     * those results (like via {@link SimpleHash#put(String, Object)}).
+     *
+     * @param maxSize
+     *            The maximum number of cache entries, or 0 to disable the cache.
+     *
+     * @see #getParsedStringCache()
+     *
+     * @since 2.3.34
+     */
+    public void setParsedStringCacheMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize can't be negative: " + maxSize);
+        }
+        parsedStringCache = maxSize != 0 ? _CoreAPI.newParsedStringCache(maxSize) : null;
+    }
+
+    /**
+     * The getter pair of {@link #setParsedStringCacheMaxSize(int)}.
+     *
+     * @since 2.3.34
+     */
+    public int getParsedStringCacheMaxSize() {
+        ParsedStringCache parsedStringCache = this.parsedStringCache;
+        return parsedStringCache != null ? parsedStringCache.getMaxSize() : 0;
+    }
+
+    /**
+     * Returns the cache configured with {@link #setParsedStringCacheMaxSize(int)}, so you can query its statistics;
+     * {@code null} if that cache is disabled.
+     *
+     * @since 2.3.34
+     */
+    public ParsedStringCache getParsedStringCache() {
+        return parsedStringCache;
+    }
+
+    /**
+     * Sets whether {@code #include}-s whose arguments are all literals (like {@code <#include "/common/header.ftl">}),
+     * and that don't have {@code ignore_missing=true}, should be resolved to the included template already when the
+     * including template is loaded. Such includes won't look up the included template on runtime anymore (as far as
+     * the locale, custom lookup condition and encoding that the lookup would use are the same as on load time). The
+     * template cache remembers which templates were inlined into the including template, and when it checks if the
+     * including template was modified (see {@link #setTemplateUpdateDelayMilliseconds(long)}), it also checks if the
+     * inlined templates were, and if so, it reloads the including template. So, like with the inlining of the source
+     * code, if you keep using a {@link Template} object outside the cache, it will keep using the included templates
+     * that were current when it was loaded. Defaults to {@code false}.
+     *
+     * <p>This only affects templates that are loaded after calling this method, so it should be set before the
+     * {@link Configuration} is used, or else {@link #clearTemplateCache()} should be called.
+     *
+     * @since 2.3.34
+     */
+    public void setInlineLiteralIncludes(boolean inlineLiteralIncludes) {
+        this.inlineLiteralIncludes = inlineLiteralIncludes;
+    }
+
+    /**
+     * The getter pair of {@link #setInlineLiteralIncludes(boolean)}.
+     *
+     * @since 2.3.34
+     */
+    public boolean getInlineLiteralIncludes() {
+        return inlineLiteralIncludes;
+    }
+
+    /**
+     * Sets whether the {@link TemplateException}-s that are created during template processing, and that will be
+     * handled inside the template processing, should be created without capturing the Java stack trace (so
+     * {@link Throwable#getStackTrace()} will return an empty array for them). That's the case inside an
+     * {@code #attempt} block, and when the {@link #setTemplateExceptionHandler(TemplateExceptionHandler)
+     * template_exception_handler} is {@link TemplateExceptionHandler#IGNORE_HANDLER}. Capturing the Java stack trace
+     * is the most expensive part of creating an exception, and as template processing is deeply recursive, it's
+     * especially expensive here, which matters if a template relies on such handling a lot (like if it uses
+     * {@code #attempt} for optional values). The FTL stack trace, which is usually the more useful part, is still
+     * available. The downside is that when such an exception is logged (as by the
+     * {@link #setAttemptExceptionReporter(AttemptExceptionReporter) attempt_exception_reporter}, or the
+     * {@link #setLogTemplateExceptions(boolean) log_template_exceptions} setting), the Java stack trace will be
+     * missing from the log. Defaults to {@code false}.
+     *
+     * <p>Note that {@code exp!default} and {@code exp??} don't create exceptions when {@code exp} is missing,
+     * regardless of this setting.
+     *
+     * @since 2.3.34
+     */
+    public void setLightweightHandledTemplateExceptions(boolean lightweightHandledTemplateExceptions) {
+        this.lightweightHandledTemplateExceptions = lightweightHandledTemplateExceptions;
+    }
+
+    /**
+     * The getter pair of {@link #setLightweightHandledTemplateExceptions(boolean)}.
+     *
+     * @since 2.3.34
+     */
+    public boolean getLightweightHandledTemplateExceptions() {
+        return lightweightHandledTemplateExceptions;
+    }
+
     /**
      * Sets the file system directory from which to load templates. This is equivalent to
      * {@code setTemplateLoader(new FileTemplateLoader(dir))}, so see
@@ -3321,6 +3468,10 @@ public class Configuration extends Configurable implements Cloneable, ParserConf
      */
     public void clearTemplateCache() {
         cache.clear();
+        ParsedStringCache parsedStringCache = this.parsedStringCache;
+        if (parsedStringCache != null) {
+            parsedStringCache.clear();
+        }
     }
     
     /**
@@ -3623,6 +3774,15 @@ public class Configuration extends Configurable implements Cloneable, ParserConf
             } else if (FALLBACK_ON_NULL_LOOP_VARIABLE_KEY_SNAKE_CASE.equals(name)
                     || FALLBACK_ON_NULL_LOOP_VARIABLE_KEY_CAMEL_CASE.equals(name)) {
                 setFallbackOnNullLoopVariable(StringUtil.getYesNo(value));
+            } else if (PARSED_STRING_CACHE_MAX_SIZE_KEY_SNAKE_CASE.equals(name)
+                    || PARSED_STRING_CACHE_MAX_SIZE_KEY_CAMEL_CASE.equals(name)) {
+                setParsedStringCacheMaxSize(Integer.parseInt(value));
+            } else if (INLINE_LITERAL_INCLUDES_KEY_SNAKE_CASE.equals(name)
+                    || INLINE_LITERAL_INCLUDES_KEY_CAMEL_CASE.equals(name)) {
+                setInlineLiteralIncludes(StringUtil.getYesNo(value));
+            } else if (LIGHTWEIGHT_HANDLED_TEMPLATE_EXCEPTIONS_KEY_SNAKE_CASE.equals(name)
+                    || LIGHTWEIGHT_HANDLED_TEMPLATE_EXCEPTIONS_KEY_CAMEL_CASE.equals(name)) {
+                setLightweightHandledTemplateExceptions(StringUtil.getYesNo(value));
             } else {
                 unknown = true;
             }
@@ -45,8 +45,8 @@ import freemarker.template.utility.ObjectWrapperWithAPISupport;
  * @since 2.3.22
  */
 public class DefaultMapAdapter extends WrappingTemplateModel
-        implements TemplateHashModelEx2, AdapterTemplateModel, WrapperTemplateModel, TemplateModelWithAPISupport,
-        Serializable {
+        implements TemplateHashModelEx2, InterpolationAwareTemplateHashModel, AdapterTemplateModel,
+        WrapperTemplateModel, TemplateModelWithAPISupport, Serializable {
 
     private final Map map;
 
@@ -119,6 +119,30 @@ public class DefaultMapAdapter extends WrappingTemplateModel
         return wrap(val);
     }
 
+    /**
+     * Returns the {@link String} or {@link Number} value as is, if the {@link ObjectWrapper} would wrap it to a
+     * {@link SimpleScalar} or {@link SimpleNumber}, otherwise it's the same as {@link #get(String)}.
+     *
+     * @since 2.3.34
+     */
+    @Override
+    public Object getForInterpolation(String key) throws TemplateModelException {
+        Object val;
+        try {
+            val = map.get(key);
+        } catch (ClassCastException | NullPointerException e) {
+            return get(key); // To throw the same exception as get does
+        }
+        if (val == null) {
+            return get(key); // To handle Character keys, and wrapped null-s
+        }
+        if ((val instanceof String || val instanceof Number)
+                && DefaultObjectWrapper.isStandardStringAndNumberWrapping(getObjectWrapper())) {
+            return val;
+        }
+        return wrap(val);
+    }
+
     @Override
     public boolean isEmpty() {
         return map.isEmpty();
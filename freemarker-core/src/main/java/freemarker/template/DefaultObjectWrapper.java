@@ -20,6 +20,11 @@
 package freemarker.template;
 
 import java.lang.reflect.Array;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
@@ -27,9 +32,19 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.BaseStream;
+import java.util.stream.Stream;
 
 import org.w3c.dom.Node;
 
+import freemarker.core.BugException;
+import freemarker.core.Environment;
 import freemarker.ext.beans.BeansWrapper;
 import freemarker.ext.beans.BeansWrapperConfiguration;
 import freemarker.ext.beans.DefaultMemberAccessPolicy;
@@ -73,9 +88,13 @@ public class DefaultObjectWrapper extends freemarker.ext.beans.BeansWrapper {
     private boolean useAdaptersForContainers;
     private boolean forceLegacyNonListCollections;
     private boolean iterableSupport;
+    private boolean temporalSupport;
+    private boolean streamSupport;
+    private boolean futureSupport;
     private boolean domNodeSupport;
     private boolean jythonSupport;
     private final boolean useAdapterForEnumerations;
+    private final boolean standardStringAndNumberWrapping;
 
     /**
      * Creates a new instance with the incompatible-improvements-version specified in
@@ -136,8 +155,12 @@ public class DefaultObjectWrapper extends freemarker.ext.beans.BeansWrapper {
                 && getIncompatibleImprovements().intValue() >= _VersionInts.V_2_3_26;
         forceLegacyNonListCollections = dowDowCfg.getForceLegacyNonListCollections();
         iterableSupport = dowDowCfg.getIterableSupport();
+        temporalSupport = dowDowCfg.getTemporalSupport();
+        streamSupport = dowDowCfg.getStreamSupport();
+        futureSupport = dowDowCfg.getFutureSupport();
         domNodeSupport = dowDowCfg.getDOMNodeSupport();
         jythonSupport = dowDowCfg.getJythonSupport();
+        standardStringAndNumberWrapping = getOuterIdentity() == this && isWrapMethodNotOverridden();
         finalizeConstruction(writeProtected);
     }
 
@@ -175,6 +198,23 @@ public class DefaultObjectWrapper extends freemarker.ext.beans.BeansWrapper {
         JYTHON_WRAPPER = ow;
     }
 
+    private boolean isWrapMethodNotOverridden() {
+        try {
+            return getClass().getMethod("wrap", Object.class).getDeclaringClass() == DefaultObjectWrapper.class;
+        } catch (NoSuchMethodException e) {
+            throw new BugException(e);
+        }
+    }
+
+    /**
+     * Tells if the {@link ObjectWrapper} is a {@link DefaultObjectWrapper} whose {@link #wrap(Object)} is guaranteed to
+     * wrap {@link String}-s into {@link SimpleScalar}, and {@link Number}-s into {@link SimpleNumber}, so an
+     * {@link InterpolationAwareTemplateHashModel} can return such values without wrapping them.
+     */
+    static boolean isStandardStringAndNumberWrapping(ObjectWrapper ow) {
+        return ow instanceof DefaultObjectWrapper && ((DefaultObjectWrapper) ow).standardStringAndNumberWrapping;
+    }
+
     /**
      * Wraps the parameter object to {@link TemplateModel} interface(s). Simple types like numbers, strings, booleans
      * and dates will be wrapped into the corresponding {@code SimpleXxx} classes (like {@link SimpleNumber}).
@@ -251,10 +291,51 @@ public class DefaultObjectWrapper extends freemarker.ext.beans.BeansWrapper {
         if (iterableSupport && obj instanceof Iterable) {
             return DefaultIterableAdapter.adapt((Iterable<?>) obj, this);
         }
+        if (temporalSupport && obj instanceof Temporal && DefaultTemporalAdapter.isSupportedTemporal(obj)) {
+            return DefaultTemporalAdapter.adapt((Temporal) obj, this);
+        }
+        if (streamSupport && obj instanceof BaseStream) {
+            return DefaultStreamAdapter.adapt((BaseStream<?, ?>) obj, this);
+        }
+        if (futureSupport) {
+            if (obj instanceof Future) {
+                return wrap(getFutureResult((Future<?>) obj));
+            }
+            if (obj instanceof Supplier) {
+                return wrap(getSupplierResult((Supplier<?>) obj));
+            }
+        }
         
         return handleUnknownType(obj);
     }
     
+    private static Object getFutureResult(Future<?> future) throws TemplateModelException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new TemplateModelException(
+                    "The computation of the value (a " + future.getClass().getName() + ") has failed; see cause "
+                    + "exception.", e.getCause());
+        } catch (CancellationException e) {
+            throw new TemplateModelException(
+                    "The computation of the value (a " + future.getClass().getName() + ") was cancelled.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemplateModelException(
+                    "Interrupted while waiting for the value (a " + future.getClass().getName() + ").", e);
+        }
+    }
+
+    private static Object getSupplierResult(Supplier<?> supplier) throws TemplateModelException {
+        try {
+            return supplier.get();
+        } catch (RuntimeException e) {
+            throw new TemplateModelException(
+                    "The computation of the value (a " + Supplier.class.getName() + ") has failed; see cause "
+                    + "exception.", e);
+        }
+    }
+
     /**
      * Called for an object that isn't considered to be of a "basic" Java type, like for an application specific type,
      * or for a W3C DOM node. In its default implementation, W3C {@link Node}-s will be wrapped as {@link NodeModel}-s
@@ -397,6 +478,89 @@ public class DefaultObjectWrapper extends freemarker.ext.beans.BeansWrapper {
         this.iterableSupport = iterableSupport;
     }
 
+    /**
+     * Getter pair of {@link #setTemporalSupport(boolean)}; see there.
+     *
+     * @since 2.3.34
+     */
+    public boolean getTemporalSupport() {
+        return temporalSupport;
+    }
+
+    /**
+     * Specifies whether the {@code java.time} classes for which
+     * {@link DefaultTemporalAdapter#isSupportedTemporal(Object)} returns {@code true} (like {@link LocalDate},
+     * {@link LocalDateTime}, {@link Instant}, {@link ZonedDateTime}) will be wrapped into
+     * {@link DefaultTemporalAdapter}, and so will be seen as date/time/date-time values ({@link TemplateDateModel}-s)
+     * by templates, or they will be just seen as generic objects (JavaBean-s). Defaults to
+     * {@code false} for backward compatibility. Before setting this to {@code true} in older projects, check if the
+     * templates call Java methods on such values (like {@code myLocalDate.year}), because the Java API is only exposed
+     * to the templates directly if the value is wrapped as generic object. (It's still accessible with {@code ?api}
+     * though, if the {@code api_builtin_enabled} setting is {@code true}.)
+     *
+     * @since 2.3.34
+     */
+    public void setTemporalSupport(boolean temporalSupport) {
+        checkModifiable();
+        this.temporalSupport = temporalSupport;
+    }
+
+    /**
+     * Getter pair of {@link #setStreamSupport(boolean)}; see there.
+     *
+     * @since 2.3.34
+     */
+    public boolean getStreamSupport() {
+        return streamSupport;
+    }
+
+    /**
+     * Specifies whether {@link BaseStream}-s (like {@link Stream}-s) will be wrapped into {@link DefaultStreamAdapter},
+     * and so will be seen as listable values ({@link TemplateCollectionModel}-s) that can be listed once, with the
+     * elements fetched one by one, or they will be just seen as generic objects (JavaBean-s). Defaults to
+     * {@code false} for backward compatibility. Before setting this to {@code true} in older projects, check if the
+     * templates call Java methods on streams, because the Java API is only exposed to the templates directly if the
+     * value is wrapped as generic object.
+     *
+     * @since 2.3.34
+     */
+    public void setStreamSupport(boolean streamSupport) {
+        checkModifiable();
+        this.streamSupport = streamSupport;
+    }
+
+    /**
+     * Getter pair of {@link #setFutureSupport(boolean)}; see there.
+     *
+     * @since 2.3.34
+     */
+    public boolean getFutureSupport() {
+        return futureSupport;
+    }
+
+    /**
+     * Specifies whether {@link Future}-s (like {@link CompletableFuture}-s) and {@link Supplier}-s will be replaced
+     * with their result (the value they compute) when wrapped, or they will be just seen as generic objects
+     * (JavaBean-s). Defaults to {@code false} for backward compatibility.
+     *
+     * <p>As the values in containers like {@link Map}-s are only wrapped when the template reads them (whether you use
+     * adapters or {@link SimpleHash}), this allows putting already started {@link CompletableFuture}-s into the
+     * data-model, and then template processing only waits for those that the template actually reads. So page latency
+     * can be close to the longest of the computations, instead of their sum. {@link Supplier}-s are called when
+     * the template reads them, on the thread that processes the template, unless they were started in the background
+     * with {@link Environment#prefetchDataModel(Executor)}.
+     *
+     * <p>If the computation has failed, a {@link TemplateModelException} will be thrown, with the exception thrown
+     * by the computation as its cause. Note that the result of the same {@link Supplier} won't be cached, so if it's
+     * wrapped repeatedly (unlikely, as wrapped values are typically cached by containers), it's called repeatedly.
+     *
+     * @since 2.3.34
+     */
+    public void setFutureSupport(boolean futureSupport) {
+        checkModifiable();
+        this.futureSupport = futureSupport;
+    }
+
     /**
      * Getter pair of {@link #setDOMNodeSupport(boolean)}; see there.
      *
@@ -473,6 +637,9 @@ public class DefaultObjectWrapper extends freemarker.ext.beans.BeansWrapper {
         return "useAdaptersForContainers=" + useAdaptersForContainers
                 + ", forceLegacyNonListCollections=" + forceLegacyNonListCollections
                 + ", iterableSupport=" + iterableSupport
+                + ", temporalSupport=" + temporalSupport
+                + ", streamSupport=" + streamSupport
+                + ", futureSupport=" + futureSupport
                 + ", domNodeSupport=" + domNodeSupport
                 + ", jythonSupport=" + jythonSupport
                 + bwProps;
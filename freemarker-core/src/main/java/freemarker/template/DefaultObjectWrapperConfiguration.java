@@ -35,6 +35,9 @@ public abstract class DefaultObjectWrapperConfiguration extends BeansWrapperConf
     private boolean useAdaptersForContainers;
     private boolean forceLegacyNonListCollections;
     private boolean iterableSupport;
+    private boolean temporalSupport;
+    private boolean streamSupport;
+    private boolean futureSupport;
     private boolean domNodeSupport;
     private boolean jythonSupport;
 
@@ -106,6 +109,60 @@ public abstract class DefaultObjectWrapperConfiguration extends BeansWrapperConf
     public void setIterableSupport(boolean iterableSupport) {
         this.iterableSupport = iterableSupport;
     }
+
+    /**
+     * See {@link DefaultObjectWrapper#getTemporalSupport()}.
+     *
+     * @since 2.3.34
+     */
+    public boolean getTemporalSupport() {
+        return temporalSupport;
+    }
+
+    /**
+     * See {@link DefaultObjectWrapper#setTemporalSupport(boolean)}.
+     *
+     * @since 2.3.34
+     */
+    public void setTemporalSupport(boolean temporalSupport) {
+        this.temporalSupport = temporalSupport;
+    }
+
+    /**
+     * See {@link DefaultObjectWrapper#getStreamSupport()}.
+     *
+     * @since 2.3.34
+     */
+    public boolean getStreamSupport() {
+        return streamSupport;
+    }
+
+    /**
+     * See {@link DefaultObjectWrapper#setStreamSupport(boolean)}.
+     *
+     * @since 2.3.34
+     */
+    public void setStreamSupport(boolean streamSupport) {
+        this.streamSupport = streamSupport;
+    }
+
+    /**
+     * See {@link DefaultObjectWrapper#getFutureSupport()}.
+     *
+     * @since 2.3.34
+     */
+    public boolean getFutureSupport() {
+        return futureSupport;
+    }
+
+    /**
+     * See {@link DefaultObjectWrapper#setFutureSupport(boolean)}.
+     *
+     * @since 2.3.34
+     */
+    public void setFutureSupport(boolean futureSupport) {
+        this.futureSupport = futureSupport;
+    }
     
     @Override
     public int hashCode() {
@@ -114,6 +171,9 @@ public abstract class DefaultObjectWrapperConfiguration extends BeansWrapperConf
         result = result * prime + (useAdaptersForContainers ? 1231 : 1237);
         result = result * prime + (forceLegacyNonListCollections ? 1231 : 1237);
         result = result * prime + (iterableSupport ? 1231 : 1237);
+        result = result * prime + (temporalSupport ? 1231 : 1237);
+        result = result * prime + (streamSupport ? 1231 : 1237);
+        result = result * prime + (futureSupport ? 1231 : 1237);
         result = result * prime + (domNodeSupport ? 1231 : 1237);
         result = result * prime + (jythonSupport ? 1231 : 1237);
         return result;
@@ -126,6 +186,9 @@ public abstract class DefaultObjectWrapperConfiguration extends BeansWrapperConf
         return useAdaptersForContainers == thatDowCfg.getUseAdaptersForContainers()
                 && forceLegacyNonListCollections == thatDowCfg.forceLegacyNonListCollections
                 && iterableSupport == thatDowCfg.iterableSupport
+                && temporalSupport == thatDowCfg.temporalSupport
+                && streamSupport == thatDowCfg.streamSupport
+                && futureSupport == thatDowCfg.futureSupport
                 && domNodeSupport == thatDowCfg.domNodeSupport
                 && jythonSupport == thatDowCfg.jythonSupport;
     }
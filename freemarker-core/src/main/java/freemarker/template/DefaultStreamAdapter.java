@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.template;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.stream.BaseStream;
+
+import freemarker.ext.util.WrapperTemplateModel;
+import freemarker.template.utility.ObjectWrapperWithAPISupport;
+
+/**
+ * Adapts a {@link BaseStream} (like a {@link java.util.stream.Stream}) to the corresponding {@link TemplateModel}
+ * interface(s), most importantly to {@link TemplateCollectionModel}. The stream is consumed with
+ * {@link BaseStream#iterator()} when the collection is first listed, so, like with {@link DefaultIteratorAdapter}, the
+ * resulting {@link TemplateCollectionModel} can only be listed (iterated) once, and the elements are fetched one by
+ * one, without loading them into memory together. Note that this adapter doesn't close the stream.
+ * 
+ * <p>
+ * This adapter is used by {@link DefaultObjectWrapper} if its {@link DefaultObjectWrapper#setStreamSupport(boolean)
+ * streamSupport} property is {@code true}, which is not the default for backward compatibility.
+ * 
+ * @since 2.3.34
+ */
+@SuppressWarnings("serial")
+public class DefaultStreamAdapter extends WrappingTemplateModel implements TemplateCollectionModel,
+        AdapterTemplateModel, WrapperTemplateModel, TemplateModelWithAPISupport, Serializable {
+
+    @SuppressFBWarnings(value="SE_BAD_FIELD", justification="We hope it's Seralizable")
+    private final BaseStream<?, ?> stream;
+    @SuppressFBWarnings(value="SE_BAD_FIELD", justification="We hope it's Seralizable")
+    private Iterator<?> iterator;
+    private boolean iteratorOwnedBySomeone;
+
+    /**
+     * Factory method for creating new adapter instances.
+     *
+     * @param stream
+     *            The stream to adapt; can't be {@code null}.
+     */
+    public static DefaultStreamAdapter adapt(BaseStream<?, ?> stream, ObjectWrapper wrapper) {
+        return new DefaultStreamAdapter(stream, wrapper);
+    }
+
+    private DefaultStreamAdapter(BaseStream<?, ?> stream, ObjectWrapper wrapper) {
+        super(wrapper);
+        this.stream = stream;
+    }
+
+    @Override
+    public Object getWrappedObject() {
+        return stream;
+    }
+
+    @Override
+    public Object getAdaptedObject(Class<?> hint) {
+        return getWrappedObject();
+    }
+
+    @Override
+    public TemplateModelIterator iterator() throws TemplateModelException {
+        return new SimpleTemplateModelIterator();
+    }
+
+    @Override
+    public TemplateModel getAPI() throws TemplateModelException {
+        return ((ObjectWrapperWithAPISupport) getObjectWrapper()).wrapAsAPI(stream);
+    }
+
+    private Iterator<?> getStreamIterator() {
+        if (iterator == null) {
+            iterator = stream.iterator();
+        }
+        return iterator;
+    }
+    
+    /**
+     * Not thread-safe.
+     */
+    private class SimpleTemplateModelIterator implements TemplateModelIterator {
+
+        private boolean iteratorOwnedByMe;
+
+        @Override
+        public TemplateModel next() throws TemplateModelException {
+            if (!iteratorOwnedByMe) {
+                checkNotOwner();
+                iteratorOwnedBySomeone = true;
+                iteratorOwnedByMe = true;
+            }
+
+            Iterator<?> iterator = getStreamIterator();
+            if (!iterator.hasNext()) {
+                throw new TemplateModelException("The collection has no more items.");
+            }
+
+            Object value = iterator.next();
+            return value instanceof TemplateModel ? (TemplateModel) value : wrap(value);
+        }
+
+        @Override
+        public boolean hasNext() throws TemplateModelException {
+            if (!iteratorOwnedByMe) {
+                checkNotOwner();
+            }
+
+            return getStreamIterator().hasNext();
+        }
+
+        private void checkNotOwner() throws TemplateModelException {
+            if (iteratorOwnedBySomeone) {
+                throw new TemplateModelException(
+                        "This collection value wraps a java.util.stream.BaseStream, thus it can be listed only once.");
+            }
+        }
+    }
+
+}
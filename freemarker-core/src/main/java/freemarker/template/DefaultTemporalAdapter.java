@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.template;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.Date;
+import java.util.TimeZone;
+
+import freemarker.core.BugException;
+import freemarker.core.Environment;
+import freemarker.ext.util.WrapperTemplateModel;
+import freemarker.template.utility.ObjectWrapperWithAPISupport;
+
+/**
+ * Adapts a {@code java.time} {@link Temporal} to the {@link TemplateDateModel} interface, so that templates can format,
+ * compare, and otherwise handle it like any other date/time/date-time value. Only the {@link Temporal} classes for
+ * which {@link #isSupportedTemporal(Object)} returns {@code true} can be adapted.
+ *
+ * <p>
+ * As {@link TemplateDateModel#getAsDate()} must return a point on the time line, values that have no time zone
+ * (like {@link LocalDate}, {@link LocalDateTime}, {@link LocalTime}) are converted with the time zone of the current
+ * {@link Environment}, so that formatting the result shows the same local date/time:
+ * <ul>
+ *   <li>{@link LocalDate} and {@link LocalTime} are converted to {@link java.sql.Date} and {@link java.sql.Time}, with
+ *       {@link Environment#getSQLDateAndTimeTimeZone()} if that's set, otherwise with
+ *       {@link Environment#getTimeZone()}, as that's the time zone that will be used for formatting SQL date-s and
+ *       time-s.
+ *   <li>{@link LocalDateTime} is converted with {@link Environment#getTimeZone()}.
+ * </ul>
+ * If there's no current {@link Environment}, the default time zone of the JVM is used.
+ *
+ * <p>
+ * The {@link TemplateDateFormat}-s created by {@link freemarker.core.JavaTimeTemplateDateFormatFactory} format the
+ * adapted {@link Temporal} directly, without converting it to {@link Date}.
+ *
+ * <p>
+ * Thread safety: A {@link DefaultTemporalAdapter} is immutable, and hence thread-safe.
+ *
+ * <p>
+ * This adapter is used by {@link DefaultObjectWrapper} if its {@link DefaultObjectWrapper#setTemporalSupport(boolean)
+ * temporalSupport} property is {@code true}, which is not the default for backward compatibility (so you have to set
+ * it explicitly).
+ *
+ * @since 2.3.34
+ */
+@SuppressWarnings("serial")
+public class DefaultTemporalAdapter extends WrappingTemplateModel implements TemplateDateModel,
+        AdapterTemplateModel, WrapperTemplateModel, TemplateModelWithAPISupport, Serializable {
+
+    private static final LocalDate EPOCH_DATE = LocalDate.of(1970, 1, 1);
+
+    private final Temporal temporal;
+    private final int dateType;
+
+    /**
+     * Tells if the argument object can be adapted with {@link #adapt(Temporal, ObjectWrapperWithAPISupport)}. Currently
+     * these are supported: {@link Instant}, {@link LocalDate}, {@link LocalDateTime}, {@link LocalTime},
+     * {@link OffsetDateTime}, {@link OffsetTime}, {@link ZonedDateTime}.
+     */
+    public static boolean isSupportedTemporal(Object obj) {
+        return getDateType(obj) != UNKNOWN;
+    }
+
+    /**
+     * Factory method for creating new adapter instances.
+     *
+     * @param temporal
+     *            The value to adapt; can't be {@code null}, and {@link #isSupportedTemporal(Object)} must return
+     *            {@code true} for it.
+     * @param wrapper
+     *            The {@link ObjectWrapper} used for {@code ?api}.
+     *
+     * @throws IllegalArgumentException
+     *            If {@link #isSupportedTemporal(Object)} returns {@code false} for the {@code temporal} argument.
+     */
+    public static DefaultTemporalAdapter adapt(Temporal temporal, ObjectWrapperWithAPISupport wrapper) {
+        int dateType = getDateType(temporal);
+        if (dateType == UNKNOWN) {
+            throw new IllegalArgumentException("Unsupported Temporal class: " + temporal.getClass().getName());
+        }
+        return new DefaultTemporalAdapter(temporal, dateType, wrapper);
+    }
+
+    private DefaultTemporalAdapter(Temporal temporal, int dateType, ObjectWrapperWithAPISupport wrapper) {
+        super(wrapper);
+        this.temporal = temporal;
+        this.dateType = dateType;
+    }
+
+    private static int getDateType(Object obj) {
+        if (obj instanceof Instant || obj instanceof LocalDateTime || obj instanceof ZonedDateTime
+                || obj instanceof OffsetDateTime) {
+            return DATETIME;
+        }
+        if (obj instanceof LocalDate) {
+            return DATE;
+        }
+        if (obj instanceof LocalTime || obj instanceof OffsetTime) {
+            return TIME;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns the adapted {@link Temporal}.
+     */
+    public Temporal getTemporal() {
+        return temporal;
+    }
+
+    @Override
+    public Date getAsDate() throws TemplateModelException {
+        if (temporal instanceof Instant) {
+            return new Date(((Instant) temporal).toEpochMilli());
+        }
+        if (temporal instanceof ZonedDateTime) {
+            return new Date(((ZonedDateTime) temporal).toInstant().toEpochMilli());
+        }
+        if (temporal instanceof OffsetDateTime) {
+            return new Date(((OffsetDateTime) temporal).toInstant().toEpochMilli());
+        }
+        if (temporal instanceof LocalDateTime) {
+            return new Date(((LocalDateTime) temporal).atZone(getCurrentZoneId(false)).toInstant().toEpochMilli());
+        }
+        if (temporal instanceof LocalDate) {
+            return new java.sql.Date(
+                    ((LocalDate) temporal).atStartOfDay(getCurrentZoneId(true)).toInstant().toEpochMilli());
+        }
+        if (temporal instanceof LocalTime) {
+            return new java.sql.Time(
+                    ((LocalTime) temporal).atDate(EPOCH_DATE).atZone(getCurrentZoneId(true))
+                            .toInstant().toEpochMilli());
+        }
+        if (temporal instanceof OffsetTime) {
+            return new Date(((OffsetTime) temporal).atDate(EPOCH_DATE).toInstant().toEpochMilli());
+        }
+        throw new BugException("Unhandled Temporal class: " + temporal.getClass().getName());
+    }
+
+    private static ZoneId getCurrentZoneId(boolean sqlDateOrTime) {
+        Environment env = Environment.getCurrentEnvironment();
+        TimeZone timeZone;
+        if (env == null) {
+            timeZone = TimeZone.getDefault();
+        } else {
+            timeZone = sqlDateOrTime ? env.getSQLDateAndTimeTimeZone() : null;
+            if (timeZone == null) {
+                timeZone = env.getTimeZone();
+            }
+        }
+        return timeZone.toZoneId();
+    }
+
+    @Override
+    public int getDateType() {
+        return dateType;
+    }
+
+    @Override
+    public Object getWrappedObject() {
+        return temporal;
+    }
+
+    @Override
+    public Object getAdaptedObject(Class<?> hint) {
+        return getWrappedObject();
+    }
+
+    @Override
+    public TemplateModel getAPI() throws TemplateModelException {
+        return ((ObjectWrapperWithAPISupport) getObjectWrapper()).wrapAsAPI(temporal);
+    }
+
+    @Override
+    public String toString() {
+        return temporal.toString();
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.template;
+
+/**
+ * Adds an extra getter method to {@link TemplateHashModel} that can return the plain Java value behind a key, instead
+ * of a {@link TemplateModel}, knowing that the value will be printed by an interpolation. At least as of 2.3.34, this
+ * is only used by the template language when an interpolation (like {@code ${product.price}}, or
+ * {@code [=product.price]}) directly prints the result of the dot operator. In such case, the {@link TemplateModel}
+ * that {@link #get(String)} would return is only created to be immediately converted to string by the interpolation,
+ * which is pure overhead.
+ *
+ * <p>Implementations can only return a non-{@link TemplateModel} value if printing that value gives exactly the same
+ * result as printing what {@link #get(String)} would return. In practice this means that the {@link ObjectWrapper}
+ * involved would wrap the value into {@link SimpleScalar}, or {@link SimpleNumber}, or into some other model that
+ * behaves identically for printing. When in doubt, just return the same as {@link #get(String)}.
+ *
+ * <p>{@link SimpleHash}, and {@link DefaultMapAdapter} implement this interface, but only return plain Java values if
+ * the {@link ObjectWrapper} they use is a {@link DefaultObjectWrapper} that doesn't override
+ * {@link DefaultObjectWrapper#wrap(Object)}.
+ *
+ * @since 2.3.34
+ */
+public interface InterpolationAwareTemplateHashModel extends TemplateHashModel {
+
+    /**
+     * This is called instead of {@link #get(String)} if we know that the return value will be printed by an
+     * interpolation.
+     *
+     * @param key
+     *      Same as for {@link #get(String)}
+     *
+     * @return
+     *      A {@link String}, or a {@link Number}, or any value that {@link #get(String)} could return (including
+     *      {@code null}). A {@link String} or {@link Number} will be formatted and printed just like a
+     *      {@link TemplateScalarModel} or {@link TemplateNumberModel} of the same value would be. Any other
+     *      non-{@link TemplateModel} return value is a bug.
+     */
+    Object getForInterpolation(String key) throws TemplateModelException;
+
+}
@@ -69,7 +69,8 @@ import freemarker.ext.beans.BeansWrapper;
  * @see DefaultMapAdapter
  * @see TemplateHashModelEx
  */
-public class SimpleHash extends WrappingTemplateModel implements TemplateHashModelEx2, Serializable {
+public class SimpleHash extends WrappingTemplateModel
+        implements TemplateHashModelEx2, InterpolationAwareTemplateHashModel, Serializable {
 
     private final Map map;
     private boolean putFailed;
@@ -276,6 +277,43 @@ public class SimpleHash extends WrappingTemplateModel implements TemplateHashMod
         return tm;
     }
 
+    /**
+     * Returns the value as it's stored in the underlying map, without wrapping it (and without caching the wrapped
+     * value), or {@code null} if there's no such entry. Unlike {@link #get(String)}, this doesn't fall back to
+     * {@link Character} keys.
+     */
+    Object getWithoutWrapping(String key) {
+        try {
+            return map.get(key);
+        } catch (ClassCastException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the {@link String} or {@link Number} value as is, if the {@link ObjectWrapper} would wrap it to a
+     * {@link SimpleScalar} or {@link SimpleNumber}, otherwise it's the same as {@link #get(String)}. As subclasses
+     * may override {@link #get(String)}, this only differs from that if the class is exactly {@link SimpleHash}.
+     *
+     * @since 2.3.34
+     */
+    @Override
+    public Object getForInterpolation(String key) throws TemplateModelException {
+        if (getClass() == SimpleHash.class) {
+            Object result;
+            try {
+                result = map.get(key);
+            } catch (ClassCastException | NullPointerException e) {
+                return get(key); // To throw the same exception as get does
+            }
+            if ((result instanceof String || result instanceof Number)
+                    && DefaultObjectWrapper.isStandardStringAndNumberWrapping(getObjectWrapper())) {
+                return result;
+            }
+        }
+        return get(key);
+    }
+
     /**
      * Tells if the map contains a key or not, regardless if the associated value is {@code null} or not.
      * @since 2.3.20
@@ -293,6 +331,16 @@ public class SimpleHash extends WrappingTemplateModel implements TemplateHashMod
         map.remove(key);
     }
 
+    /**
+     * Removes all entries from the underlying map.
+     *
+     * @since 2.3.34
+     */
+    public void clear() {
+        map.clear();
+        unwrappedMap = null;
+    }
+
     /**
      * Adds all the key/value entries in the map
      * @param m the map with the entries to add, the keys are assumed to be strings.
@@ -398,6 +446,13 @@ public class SimpleHash extends WrappingTemplateModel implements TemplateHashMod
             }
         }
 
+        @Override
+        Object getWithoutWrapping(String key) {
+            synchronized (SimpleHash.this) {
+                return SimpleHash.this.getWithoutWrapping(key);
+            }
+        }
+
         @Override
         public void remove(String key) {
             synchronized (SimpleHash.this) {
@@ -405,6 +460,13 @@ public class SimpleHash extends WrappingTemplateModel implements TemplateHashMod
             }
         }
 
+        @Override
+        public void clear() {
+            synchronized (SimpleHash.this) {
+                SimpleHash.this.clear();
+            }
+        }
+
         @Override
         public int size() {
             synchronized (SimpleHash.this) {
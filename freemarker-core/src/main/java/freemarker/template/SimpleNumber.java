@@ -30,6 +30,14 @@ import java.io.Serializable;
  */
 public final class SimpleNumber implements TemplateNumberModel, Serializable {
 
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 16383;
+    /**
+     * Lazily filled; racing threads may create multiple instances for the same value, which is harmless, as the class
+     * is immutable (and has only final fields, so instances are safely published even without synchronization).
+     */
+    private static final SimpleNumber[] CACHE = new SimpleNumber[CACHE_HIGH - CACHE_LOW + 1];
+
     /**
      * @serial the value of this {@code SimpleNumber} 
      */
@@ -63,6 +71,26 @@ public final class SimpleNumber implements TemplateNumberModel, Serializable {
         this.value = Double.valueOf(val);
     }
 
+    /**
+     * Returns a {@link SimpleNumber} that stores an {@link Integer}, just like {@link #SimpleNumber(int)} would create,
+     * but for small values (currently for -128 to 16383) it returns a cached instance. This is meant for values that
+     * are generated in great quantity, like the indexes of listed items, or the items of numerical ranges.
+     *
+     * @since 2.3.34
+     */
+    public static SimpleNumber valueOf(int val) {
+        if (val < CACHE_LOW || val > CACHE_HIGH) {
+            return new SimpleNumber(val);
+        }
+        int cacheIdx = val - CACHE_LOW;
+        SimpleNumber result = CACHE[cacheIdx];
+        if (result == null) {
+            result = new SimpleNumber(val);
+            CACHE[cacheIdx] = result;
+        }
+        return result;
+    }
+
     @Override
     public Number getAsNumber() {
         return value;
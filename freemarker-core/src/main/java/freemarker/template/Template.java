@@ -50,6 +50,7 @@ import freemarker.core.OutputFormat;
 import freemarker.core.ParseException;
 import freemarker.core.ParserConfiguration;
 import freemarker.core.TemplateConfiguration;
+import freemarker.core.TemplateDataModelUsage;
 import freemarker.core.TemplateElement;
 import freemarker.core.TextBlock;
 import freemarker.core.TokenMgrError;
@@ -98,6 +99,8 @@ public class Template extends Configurable {
     private Map prefixToNamespaceURILookup = new HashMap();
     private Map namespaceURIToPrefixLookup = new HashMap();
     private Version templateLanguageVersion;
+    /** Used by {@code freemarker.core} when the template is imported; see {@link #getLibraryDefinitions()}. */
+    private volatile Object libraryDefinitions;
 
     /**
      * A prime constructor to which all other constructors should
@@ -461,6 +464,49 @@ public class Template extends Configurable {
     */
     public Environment createProcessingEnvironment(Object dataModel, Writer out, ObjectWrapper wrapper)
     throws TemplateException, IOException {
+        return new Environment(this, toDataModelHash(dataModel, wrapper), out);
+    }
+
+    /**
+     * Prepares an {@link Environment} that was earlier created for this template (typically with
+     * {@link #createProcessingEnvironment(Object, Writer, ObjectWrapper)}), and was already used to process it, so
+     * that it can process this template again, with another data-model and output. See
+     * {@link Environment#reset(TemplateHashModel, Writer)} for the details. After this, call
+     * {@link Environment#process()} to process the template.
+     *
+     * @param env
+     *            The {@link Environment} to reuse; its {@link Environment#getMainTemplate()} must be this template.
+     * @param dataModel
+     *            Same as the similar parameter of {@link #createProcessingEnvironment(Object, Writer, ObjectWrapper)}
+     * @param out
+     *            Same as the similar parameter of {@link #createProcessingEnvironment(Object, Writer, ObjectWrapper)}
+     * @param wrapper
+     *            Same as the similar parameter of {@link #createProcessingEnvironment(Object, Writer, ObjectWrapper)}
+     *
+     * @throws TemplateException if an exception occurs while wrapping the data-model.
+     *
+     * @since 2.3.34
+     */
+    public void resetProcessingEnvironment(Environment env, Object dataModel, Writer out, ObjectWrapper wrapper)
+            throws TemplateException {
+        if (env.getMainTemplate() != this) {
+            throw new IllegalArgumentException("The Environment was created for another template: "
+                    + env.getMainTemplate().getName());
+        }
+        env.reset(toDataModelHash(dataModel, wrapper), out);
+    }
+
+    /**
+     * Same as {@link #resetProcessingEnvironment(Environment, Object, Writer, ObjectWrapper)
+     * resetProcessingEnvironment(env, dataModel, out, null)}.
+     *
+     * @since 2.3.34
+     */
+    public void resetProcessingEnvironment(Environment env, Object dataModel, Writer out) throws TemplateException {
+        resetProcessingEnvironment(env, dataModel, out, null);
+    }
+
+    private TemplateHashModel toDataModelHash(Object dataModel, ObjectWrapper wrapper) throws TemplateModelException {
         final TemplateHashModel dataModelHash;
         if (dataModel instanceof TemplateHashModel) {
             dataModelHash = (TemplateHashModel) dataModel;
@@ -487,7 +533,7 @@ public class Template extends Configurable {
                 }
             }
         }
-        return new Environment(this, dataModelHash, out);
+        return dataModelHash;
     }
 
     /**
@@ -498,6 +544,23 @@ public class Template extends Configurable {
     throws TemplateException, IOException {
         return createProcessingEnvironment(dataModel, out, null);
     }
+
+    /**
+     * Tells which variables of the data-model this template might read (like {@code user}, and {@code user.name}
+     * under it), based on its source code, so for example the data-model can be built with only the data that the
+     * template needs; see {@link TemplateDataModelUsage} for the details. The templates included or imported with a
+     * literal name, and the auto-included and auto-imported templates are analyzed as well; these are loaded with
+     * {@link Configuration#getTemplate(String, Locale, Object, String, boolean, boolean)}, using the locale, custom
+     * lookup condition, and encoding of this template. The result isn't cached, so cache it if you need it often.
+     *
+     * @throws IOException
+     *             If loading an included or imported template has failed.
+     *
+     * @since 2.3.34
+     */
+    public TemplateDataModelUsage getDataModelUsage() throws IOException {
+        return _CoreAPI.getDataModelUsage(this);
+    }
     
     /**
      * Returns a string representing the raw template
@@ -721,6 +784,19 @@ public class Template extends Configurable {
         this.autoEscaping = autoEscaping;
     }
     
+    /**
+     * The variables defined by the top level of this template, when it's imported, if that can be computed without
+     * executing the template; lazily calculated and set by {@code freemarker.core}. {@code null} if it wasn't yet
+     * calculated.
+     */
+    Object getLibraryDefinitions() {
+        return libraryDefinitions;
+    }
+
+    void setLibraryDefinitions(Object libraryDefinitions) {
+        this.libraryDefinitions = libraryDefinitions;
+    }
+
     /**
      * Dump the raw template in canonical form.
      */
@@ -132,6 +132,19 @@ public class TemplateException extends Exception {
     public TemplateException(String description, Throwable cause, Environment env) {
         this(description, cause, env, null, null);
     }
+
+    /**
+     * Like {@link #TemplateException(String, Environment)}, but if {@code writableStackTrace} is {@code true}, the Java
+     * stack trace is captured even if
+     * {@link Configuration#setLightweightHandledTemplateExceptions(boolean) lightweight_handled_template_exceptions}
+     * would prevent that. This is for exceptions that the {@link TemplateExceptionHandler} never handles, like
+     * {@link freemarker.core.StopException}.
+     *
+     * @since 2.3.34
+     */
+    protected TemplateException(String description, Environment env, boolean writableStackTrace) {
+        this(description, null, env, null, null, writableStackTrace);
+    }
     
     /**
      * Don't use this; this is to be used internally by FreeMarker. No backward compatibility guarantees.
@@ -144,15 +157,26 @@ public class TemplateException extends Exception {
             _ErrorDescriptionBuilder descriptionBuilder) {
         this(null, cause, env, blamedExpr, descriptionBuilder);
     }
-    
+
     private TemplateException(
             String renderedDescription,
             Throwable cause,            
             Environment env, Expression blamedExpression,
             _ErrorDescriptionBuilder descriptionBuilder) {
+        this(renderedDescription, cause, env, blamedExpression, descriptionBuilder, false);
+    }
+
+    private TemplateException(
+            String renderedDescription,
+            Throwable cause,            
+            Environment env, Expression blamedExpression,
+            _ErrorDescriptionBuilder descriptionBuilder,
+            boolean writableStackTrace) {
         // Note: Keep this constructor lightweight.
         
-        super(cause);  // Message managed locally.
+        super(
+                null,  // Message managed locally.
+                cause, true, writableStackTrace || !_CoreAPI.getLightweightTemplateExceptions(env));
         
         if (env == null) env = Environment.getCurrentEnvironment();
         this.env = env;
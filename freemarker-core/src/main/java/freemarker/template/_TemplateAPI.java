@@ -24,6 +24,7 @@ import java.util.Set;
 import java.util.TimeZone;
 
 import freemarker.cache.CacheStorage;
+import freemarker.cache.TemplateCache;
 import freemarker.cache.TemplateLoader;
 import freemarker.cache.TemplateLookupStrategy;
 import freemarker.cache.TemplateNameFormat;
@@ -121,7 +122,15 @@ public class _TemplateAPI {
     public static TemplateNameFormat getDefaultTemplateNameFormat(Version incompatibleImprovements) {
         return Configuration.getDefaultTemplateNameFormat(incompatibleImprovements);
     }
+
+    public static TemplateCache getTemplateCache(Configuration cfg) {
+        return cfg.getTemplateCache();
+    }
     
+    public static Object getSimpleHashValueWithoutWrapping(SimpleHash hash, String key) {
+        return hash.getWithoutWrapping(key);
+    }
+
     /**
      * [2.4] getSettingNames() becomes to public; remove this.
      */
@@ -137,6 +146,14 @@ public class _TemplateAPI {
         t.setOutputFormat(outputFormat);
     }
 
+    public static Object getLibraryDefinitions(Template t) {
+        return t.getLibraryDefinitions();
+    }
+
+    public static void setLibraryDefinitions(Template t, Object libraryDefinitions) {
+        t.setLibraryDefinitions(libraryDefinitions);
+    }
+
     public static void validateAutoEscapingPolicyValue(int autoEscaping) {
         if (autoEscaping != Configuration.ENABLE_IF_DEFAULT_AUTO_ESCAPING_POLICY
                 && autoEscaping != Configuration.ENABLE_IF_SUPPORTED_AUTO_ESCAPING_POLICY
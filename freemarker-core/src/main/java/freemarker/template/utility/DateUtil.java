@@ -20,13 +20,13 @@
 package freemarker.template.utility;
 
 import java.text.ParseException;
+import java.time.DateTimeException;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.Locale;
 import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Date and time related utilities.
@@ -88,35 +88,63 @@ public class DateUtil {
     private static final String REGEX_ISO8601_EXTENDED_TIME_BASE
             = "([0-9]{2})(?::([0-9]{2})(?::([0-9]{2})(?:[\\.,]([0-9]+))?)?)?";
         
-    private static final Pattern PATTERN_XS_DATE = Pattern.compile(
-            REGEX_XS_DATE_BASE + REGEX_XS_OPTIONAL_TIME_ZONE);
-    private static final Pattern PATTERN_ISO8601_BASIC_DATE = Pattern.compile(
-            REGEX_ISO8601_BASIC_DATE_BASE); // No time zone allowed here
-    private static final Pattern PATTERN_ISO8601_EXTENDED_DATE = Pattern.compile(
-            REGEX_ISO8601_EXTENDED_DATE_BASE); // No time zone allowed here
-
-    private static final Pattern PATTERN_XS_TIME = Pattern.compile(
-            REGEX_XS_TIME_BASE + REGEX_XS_OPTIONAL_TIME_ZONE);
-    private static final Pattern PATTERN_ISO8601_BASIC_TIME = Pattern.compile(
-            REGEX_ISO8601_BASIC_TIME_BASE + REGEX_ISO8601_BASIC_OPTIONAL_TIME_ZONE);
-    private static final Pattern PATTERN_ISO8601_EXTENDED_TIME = Pattern.compile(
-            REGEX_ISO8601_EXTENDED_TIME_BASE + REGEX_ISO8601_EXTENDED_OPTIONAL_TIME_ZONE);
+    // The regular expressions are only used in error messages; the actual parsing is done by the match... methods.
+    private static final String REGEX_XS_DATE
+            = REGEX_XS_DATE_BASE + REGEX_XS_OPTIONAL_TIME_ZONE;
+    private static final String REGEX_ISO8601_BASIC_DATE
+            = REGEX_ISO8601_BASIC_DATE_BASE; // No time zone allowed here
+    private static final String REGEX_ISO8601_EXTENDED_DATE
+            = REGEX_ISO8601_EXTENDED_DATE_BASE; // No time zone allowed here
+
+    private static final String REGEX_XS_TIME
+            = REGEX_XS_TIME_BASE + REGEX_XS_OPTIONAL_TIME_ZONE;
+    private static final String REGEX_ISO8601_BASIC_TIME
+            = REGEX_ISO8601_BASIC_TIME_BASE + REGEX_ISO8601_BASIC_OPTIONAL_TIME_ZONE;
+    private static final String REGEX_ISO8601_EXTENDED_TIME
+            = REGEX_ISO8601_EXTENDED_TIME_BASE + REGEX_ISO8601_EXTENDED_OPTIONAL_TIME_ZONE;
     
-    private static final Pattern PATTERN_XS_DATE_TIME = Pattern.compile(
-            REGEX_XS_DATE_BASE
+    private static final String REGEX_XS_DATE_TIME
+            = REGEX_XS_DATE_BASE
             + "T" + REGEX_XS_TIME_BASE
-            + REGEX_XS_OPTIONAL_TIME_ZONE);
-    private static final Pattern PATTERN_ISO8601_BASIC_DATE_TIME = Pattern.compile(
-            REGEX_ISO8601_BASIC_DATE_BASE
+            + REGEX_XS_OPTIONAL_TIME_ZONE;
+    private static final String REGEX_ISO8601_BASIC_DATE_TIME
+            = REGEX_ISO8601_BASIC_DATE_BASE
             + "T" + REGEX_ISO8601_BASIC_TIME_BASE
-            + REGEX_ISO8601_BASIC_OPTIONAL_TIME_ZONE);
-    private static final Pattern PATTERN_ISO8601_EXTENDED_DATE_TIME = Pattern.compile(
-            REGEX_ISO8601_EXTENDED_DATE_BASE
+            + REGEX_ISO8601_BASIC_OPTIONAL_TIME_ZONE;
+    private static final String REGEX_ISO8601_EXTENDED_DATE_TIME
+            = REGEX_ISO8601_EXTENDED_DATE_BASE
             + "T" + REGEX_ISO8601_EXTENDED_TIME_BASE
-            + REGEX_ISO8601_EXTENDED_OPTIONAL_TIME_ZONE);
-    
-    private static final Pattern PATTERN_XS_TIME_ZONE = Pattern.compile(
-            REGEX_XS_TIME_ZONE);
+            + REGEX_ISO8601_EXTENDED_OPTIONAL_TIME_ZONE;
+
+    // The syntax variations understood by the match... methods:
+    private static final int SYNTAX_XS = 0;
+    private static final int SYNTAX_ISO8601_BASIC = 1;
+    private static final int SYNTAX_ISO8601_EXTENDED = 2;
+
+    // Indexes in the group boundaries array filled by the match... methods. Each group has a start and an end index
+    // in the array; the start is -1 if the (optional) group is missing.
+    private static final int GROUP_YEAR = 0;
+    private static final int GROUP_MONTH = 2;
+    private static final int GROUP_DAY = 4;
+    private static final int GROUP_HOURS = 6;
+    private static final int GROUP_MINUTES = 8;
+    private static final int GROUP_SECONDS = 10;
+    private static final int GROUP_FRACTION_SECONDS = 12;
+    private static final int GROUP_TIME_ZONE = 14;
+    private static final int GROUP_BOUNDARIES_LENGTH = 16;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * Dates farther from the epoch than this are converted with {@link GregorianCalendar} instead of with our own
+     * arithmetic (about 95000 years).
+     */
+    private static final long MAX_ARITHMETIC_ABS_TIME = 3000000000000000L;
+    /** Parsed years (in the era) above this are converted with the {@link CalendarFieldsToDateConverter}. */
+    private static final int MAX_ARITHMETIC_YEAR = 90000;
+
+    /** Stands for unknown or non-fixed time zone offset, as no real offset can have this value. */
+    private static final int NO_FIXED_OFFSET = Integer.MIN_VALUE;
     
     private static final String MSG_YEAR_0_NOT_ALLOWED
             = "Year 0 is not allowed in XML schema dates. BC 1 is -1, AD 1 is 1.";
@@ -238,7 +266,10 @@ public class DateUtil {
      *        internally for calculations. The point of this parameter is that
      *        creating a new calendar is relatively expensive, so it's desirable
      *        to reuse calendars and only set their time and zone. (This was
-     *        tested on Sun JDK 1.6 x86 Win, where it gave 2x-3x speedup.) 
+     *        tested on Sun JDK 1.6 x86 Win, where it gave 2x-3x speedup.)
+     *        Since 2.3.34 the calendar fields are calculated without a calendar,
+     *        except for dates that are tens of thousands of years away from the
+     *        present, so this is rarely used, and can be {@code null}.
      */
     public static String dateToISO8601String(
             Date date,
@@ -277,7 +308,43 @@ public class DateUtil {
             timeZone = UTC;
         }
         
-        GregorianCalendar cal = calendarFactory.get(timeZone, date);
+        long time = date.getTime();
+        int offset = timeZone.getOffset(time);
+        
+        // The year is in astronomical numbering (0 is 1 BC, -1 is 2 BC, etc.)
+        int year;
+        int month;
+        int day;
+        int millisOfDay;
+        if (time >= -MAX_ARITHMETIC_ABS_TIME && time <= MAX_ARITHMETIC_ABS_TIME) {
+            long localTime = time + offset;
+            millisOfDay = (int) Math.floorMod(localTime, MILLIS_PER_DAY);
+            
+            // Proleptic Gregorian calendar fields from the day number; see days_from_civil in
+            // http://howardhinnant.github.io/date_algorithms.html for the explanation.
+            long shiftedEpochDay = Math.floorDiv(localTime, MILLIS_PER_DAY) + 719468; // Counted from 0000-03-01
+            long era = Math.floorDiv(shiftedEpochDay, 146097);
+            int dayOfEra = (int) (shiftedEpochDay - era * 146097);
+            int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+            int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100); // Starts with March
+            int shiftedMonth = (5 * dayOfYear + 2) / 153; // March is 0
+            day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+            month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+            year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+        } else {
+            if (calendarFactory == null) {
+                calendarFactory = new TrivialDateToISO8601CalendarFactory();
+            }
+            GregorianCalendar cal = calendarFactory.get(timeZone, date);
+            year = cal.get(Calendar.YEAR);
+            if (cal.get(Calendar.ERA) == GregorianCalendar.BC) {
+                year = 1 - year;
+            }
+            month = cal.get(Calendar.MONTH) + 1;
+            day = cal.get(Calendar.DAY_OF_MONTH);
+            millisOfDay = ((cal.get(Calendar.HOUR_OF_DAY) * 60 + cal.get(Calendar.MINUTE)) * 60
+                    + cal.get(Calendar.SECOND)) * 1000 + cal.get(Calendar.MILLISECOND);
+        }
 
         int maxLength;
         if (!timePart) {
@@ -293,10 +360,8 @@ public class DateUtil {
         int dstIdx = 0;
         
         if (datePart) {
-            int x = cal.get(Calendar.YEAR);
-            if (x > 0 && cal.get(Calendar.ERA) == GregorianCalendar.BC) {
-                x = -x + (xsMode ? 0 : 1);
-            }
+            // XML Schema has no year 0, so there 1 BC is -1:
+            int x = xsMode && year <= 0 ? year - 1 : year;
             if (x >= 0 && x < 9999) {
                 res[dstIdx++] = (char) ('0' + x / 1000);
                 res[dstIdx++] = (char) ('0' + x % 1000 / 100);
@@ -316,13 +381,11 @@ public class DateUtil {
     
             res[dstIdx++] = '-';
             
-            x = cal.get(Calendar.MONTH) + 1;
-            dstIdx = append00(res, dstIdx, x);
+            dstIdx = append00(res, dstIdx, month);
     
             res[dstIdx++] = '-';
             
-            x = cal.get(Calendar.DAY_OF_MONTH);
-            dstIdx = append00(res, dstIdx, x);
+            dstIdx = append00(res, dstIdx, day);
 
             if (timePart) {
                 res[dstIdx++] = 'T';
@@ -330,30 +393,25 @@ public class DateUtil {
         }
 
         if (timePart) {
-            int x = cal.get(Calendar.HOUR_OF_DAY);
+            int x = millisOfDay / (60 * 60 * 1000);
             dstIdx = append00(res, dstIdx, x);
     
             if (accuracy >= ACCURACY_MINUTES) {
                 res[dstIdx++] = ':';
         
-                x = cal.get(Calendar.MINUTE);
+                x = millisOfDay / (60 * 1000) % 60;
                 dstIdx = append00(res, dstIdx, x);
         
                 if (accuracy >= ACCURACY_SECONDS) {
                     res[dstIdx++] = ':';
             
-                    x = cal.get(Calendar.SECOND);
+                    x = millisOfDay / 1000 % 60;
                     dstIdx = append00(res, dstIdx, x);
             
                     if (accuracy >= ACCURACY_MILLISECONDS) {
-                        x = cal.get(Calendar.MILLISECOND);
+                        x = millisOfDay % 1000;
                         int forcedDigits = accuracy == ACCURACY_MILLISECONDS_FORCED ? 3 : 0;
                         if (x != 0 || forcedDigits != 0) {
-                            if (x > 999) {
-                                // Shouldn't ever happen...
-                                throw new RuntimeException(
-                                        "Calendar.MILLISECOND > 999");
-                            }
                             res[dstIdx++] = '.';
                             do {
                                 res[dstIdx++] = (char) ('0' + (x / 100));
@@ -370,7 +428,7 @@ public class DateUtil {
             if (timeZone == UTC) {
                 res[dstIdx++] = 'Z';
             } else {
-                int dt = timeZone.getOffset(date.getTime());
+                int dt = offset;
                 boolean positive;
                 if (dt < 0) {
                     positive = false;
@@ -422,7 +480,9 @@ public class DateUtil {
      *     time zone offset explicitly. Can't be {@code null}.
      * @param calToDateConverter Used internally to calculate the result from the calendar field values.
      *     If you don't have a such object around, you can just use
-     *     {@code new }{@link TrivialCalendarFieldsToDateConverter}{@code ()}. 
+     *     {@code new }{@link TrivialCalendarFieldsToDateConverter}{@code ()}. Since 2.3.34 it's only used if the
+     *     time zone offset isn't fixed (like it has daylight saving time), or for years that are very far from the
+     *     present.
      * 
      * @throws DateParseException if the date is malformed, or if the time
      *     zone offset is unspecified and the {@code defaultTimeZone} is
@@ -432,12 +492,12 @@ public class DateUtil {
             String dateStr, TimeZone defaultTimeZone,
             CalendarFieldsToDateConverter calToDateConverter) 
             throws DateParseException {
-        Matcher m = PATTERN_XS_DATE.matcher(dateStr);
-        if (!m.matches()) {
-            throw new DateParseException("The value didn't match the expected pattern: " + PATTERN_XS_DATE); 
+        int[] groups = new int[GROUP_BOUNDARIES_LENGTH];
+        if (!matchDate(dateStr, SYNTAX_XS, groups)) {
+            throw new DateParseException("The value didn't match the expected pattern: " + REGEX_XS_DATE); 
         }
-        return parseDate_parseMatcher(
-                m, defaultTimeZone, true, calToDateConverter);
+        return parseDate_parseGroups(
+                dateStr, groups, defaultTimeZone, true, calToDateConverter);
     }
 
     /**
@@ -447,27 +507,26 @@ public class DateUtil {
             String dateStr, TimeZone defaultTimeZone,
             CalendarFieldsToDateConverter calToDateConverter) 
             throws DateParseException {
-        Matcher m = PATTERN_ISO8601_EXTENDED_DATE.matcher(dateStr);
-        if (!m.matches()) {
-            m = PATTERN_ISO8601_BASIC_DATE.matcher(dateStr);
-            if (!m.matches()) {
+        int[] groups = new int[GROUP_BOUNDARIES_LENGTH];
+        if (!matchDate(dateStr, SYNTAX_ISO8601_EXTENDED, groups)) {
+            if (!matchDate(dateStr, SYNTAX_ISO8601_BASIC, groups)) {
                 throw new DateParseException("The value didn't match the expected pattern: "
-                            + PATTERN_ISO8601_EXTENDED_DATE + " or "
-                            + PATTERN_ISO8601_BASIC_DATE);
+                            + REGEX_ISO8601_EXTENDED_DATE + " or "
+                            + REGEX_ISO8601_BASIC_DATE);
             }
         }
-        return parseDate_parseMatcher(
-                m, defaultTimeZone, false, calToDateConverter);
+        return parseDate_parseGroups(
+                dateStr, groups, defaultTimeZone, false, calToDateConverter);
     }
     
-    private static Date parseDate_parseMatcher(
-            Matcher m, TimeZone defaultTZ,
+    private static Date parseDate_parseGroups(
+            String s, int[] groups, TimeZone defaultTZ,
             boolean xsMode,
             CalendarFieldsToDateConverter calToDateConverter) 
             throws DateParseException {
         NullArgumentException.check("defaultTZ", defaultTZ);
         try {
-            int year = groupToInt(m.group(1), "year", Integer.MIN_VALUE, Integer.MAX_VALUE);
+            int year = groupToInt(s, groups, GROUP_YEAR, "year", Integer.MIN_VALUE, Integer.MAX_VALUE);
             
             int era;
             // Starting from ISO 8601:2000 Second Edition, 0001 is AD 1, 0000 is BC 1, -0001 is BC 2.
@@ -483,12 +542,14 @@ public class DateUtil {
                 era = GregorianCalendar.AD;
             }
             
-            int month = groupToInt(m.group(2), "month", 1, 12) - 1;
-            int day = groupToInt(m.group(3), "day-of-month", 1, 31);
+            int month = groupToInt(s, groups, GROUP_MONTH, "month", 1, 12) - 1;
+            int day = groupToInt(s, groups, GROUP_DAY, "day-of-month", 1, 31);
 
-            TimeZone tz = xsMode ? parseMatchingTimeZone(m.group(4), defaultTZ) : defaultTZ;
+            // With ISO 8601 the time zone group is always missing
+            int offset = parseMatchingTimeZoneOffset(s, groups);
             
-            return calToDateConverter.calculate(era, year, month, day, 0, 0, 0, 0, false, tz);
+            return calculate(
+                    era, year, month, day, 0, 0, 0, 0, false, offset, s, groups, defaultTZ, calToDateConverter);
         } catch (IllegalArgumentException e) {
             // Calendar methods used to throw this for illegal dates.
             throw new DateParseException(
@@ -506,11 +567,11 @@ public class DateUtil {
     public static Date parseXSTime(
             String timeStr, TimeZone defaultTZ, CalendarFieldsToDateConverter calToDateConverter) 
             throws DateParseException {
-        Matcher m = PATTERN_XS_TIME.matcher(timeStr);
-        if (!m.matches()) {
-            throw new DateParseException("The value didn't match the expected pattern: " + PATTERN_XS_TIME);
+        int[] groups = new int[GROUP_BOUNDARIES_LENGTH];
+        if (!matchTime(timeStr, SYNTAX_XS, groups)) {
+            throw new DateParseException("The value didn't match the expected pattern: " + REGEX_XS_TIME);
         }
-        return parseTime_parseMatcher(m, defaultTZ, calToDateConverter);
+        return parseTime_parseGroups(timeStr, groups, defaultTZ, calToDateConverter);
     }
 
     /**
@@ -519,27 +580,26 @@ public class DateUtil {
     public static Date parseISO8601Time(
             String timeStr, TimeZone defaultTZ, CalendarFieldsToDateConverter calToDateConverter) 
             throws DateParseException {
-        Matcher m = PATTERN_ISO8601_EXTENDED_TIME.matcher(timeStr);
-        if (!m.matches()) {
-            m = PATTERN_ISO8601_BASIC_TIME.matcher(timeStr);
-            if (!m.matches()) {
+        int[] groups = new int[GROUP_BOUNDARIES_LENGTH];
+        if (!matchTime(timeStr, SYNTAX_ISO8601_EXTENDED, groups)) {
+            if (!matchTime(timeStr, SYNTAX_ISO8601_BASIC, groups)) {
                 throw new DateParseException("The value didn't match the expected pattern: "
-                            + PATTERN_ISO8601_EXTENDED_TIME + " or "
-                            + PATTERN_ISO8601_BASIC_TIME);
+                            + REGEX_ISO8601_EXTENDED_TIME + " or "
+                            + REGEX_ISO8601_BASIC_TIME);
             }
         }
-        return parseTime_parseMatcher(m, defaultTZ, calToDateConverter);
+        return parseTime_parseGroups(timeStr, groups, defaultTZ, calToDateConverter);
     }
     
-    private static Date parseTime_parseMatcher(
-            Matcher m, TimeZone defaultTZ,
+    private static Date parseTime_parseGroups(
+            String s, int[] groups, TimeZone defaultTZ,
             CalendarFieldsToDateConverter calToDateConverter) 
             throws DateParseException {
         NullArgumentException.check("defaultTZ", defaultTZ);
         try {
             // ISO 8601 allows both 00:00 and 24:00,
             // but Calendar.set(...) doesn't if the Calendar is not lenient.
-            int hours = groupToInt(m.group(1), "hour-of-day", 0, 24);
+            int hours = groupToInt(s, groups, GROUP_HOURS, "hour-of-day", 0, 24);
             boolean hourWas24;
             if (hours == 24) {
                 hours = 0;
@@ -549,18 +609,18 @@ public class DateUtil {
                 hourWas24 = false;
             }
             
-            final String minutesStr = m.group(2);
-            int minutes = minutesStr != null ? groupToInt(minutesStr, "minute", 0, 59) : 0;
+            int minutes = groups[GROUP_MINUTES] != -1
+                    ? groupToInt(s, groups, GROUP_MINUTES, "minute", 0, 59) : 0;
             
-            final String secsStr = m.group(3);
             // Allow 60 because of leap seconds
-            int secs = secsStr != null ? groupToInt(secsStr, "second", 0, 60) : 0;
+            int secs = groups[GROUP_SECONDS] != -1
+                    ? groupToInt(s, groups, GROUP_SECONDS, "second", 0, 60) : 0;
             
-            int millisecs = groupToMillisecond(m.group(4));
+            int millisecs = groupToMillisecond(s, groups);
             
             // As a time is just the distance from the beginning of the day,
             // the time-zone offest should be 0 usually.
-            TimeZone tz = parseMatchingTimeZone(m.group(5), defaultTZ);
+            int offset = parseMatchingTimeZoneOffset(s, groups);
             
             // Continue handling the 24:00 special case
             int day;
@@ -576,8 +636,9 @@ public class DateUtil {
                 day = 1;
             }
             
-            return calToDateConverter.calculate(
-                    GregorianCalendar.AD, 1970, 0, day, hours, minutes, secs, millisecs, false, tz);
+            return calculate(
+                    GregorianCalendar.AD, 1970, 0, day, hours, minutes, secs, millisecs, false,
+                    offset, s, groups, defaultTZ, calToDateConverter);
         } catch (IllegalArgumentException e) {
             // Calendar methods used to throw this for illegal dates.
             throw new DateParseException(
@@ -598,13 +659,13 @@ public class DateUtil {
     public static Date parseXSDateTime(
             String dateTimeStr, TimeZone defaultTZ, CalendarFieldsToDateConverter calToDateConverter) 
             throws DateParseException {
-        Matcher m = PATTERN_XS_DATE_TIME.matcher(dateTimeStr);
-        if (!m.matches()) {
+        int[] groups = new int[GROUP_BOUNDARIES_LENGTH];
+        if (!matchDateTime(dateTimeStr, SYNTAX_XS, groups)) {
             throw new DateParseException(
-                    "The value didn't match the expected pattern: " + PATTERN_XS_DATE_TIME);
+                    "The value didn't match the expected pattern: " + REGEX_XS_DATE_TIME);
         }
-        return parseDateTime_parseMatcher(
-                m, defaultTZ, true, calToDateConverter);
+        return parseDateTime_parseGroups(
+                dateTimeStr, groups, defaultTZ, true, calToDateConverter);
     }
 
     /**
@@ -613,27 +674,26 @@ public class DateUtil {
     public static Date parseISO8601DateTime(
             String dateTimeStr, TimeZone defaultTZ, CalendarFieldsToDateConverter calToDateConverter) 
             throws DateParseException {
-        Matcher m = PATTERN_ISO8601_EXTENDED_DATE_TIME.matcher(dateTimeStr);
-        if (!m.matches()) {
-            m = PATTERN_ISO8601_BASIC_DATE_TIME.matcher(dateTimeStr);
-            if (!m.matches()) {
+        int[] groups = new int[GROUP_BOUNDARIES_LENGTH];
+        if (!matchDateTime(dateTimeStr, SYNTAX_ISO8601_EXTENDED, groups)) {
+            if (!matchDateTime(dateTimeStr, SYNTAX_ISO8601_BASIC, groups)) {
                 throw new DateParseException("The value (" + dateTimeStr + ") didn't match the expected pattern: "
-                            + PATTERN_ISO8601_EXTENDED_DATE_TIME + " or "
-                            + PATTERN_ISO8601_BASIC_DATE_TIME);
+                            + REGEX_ISO8601_EXTENDED_DATE_TIME + " or "
+                            + REGEX_ISO8601_BASIC_DATE_TIME);
             }
         }
-        return parseDateTime_parseMatcher(
-                m, defaultTZ, false, calToDateConverter);
+        return parseDateTime_parseGroups(
+                dateTimeStr, groups, defaultTZ, false, calToDateConverter);
     }
     
-    private static Date parseDateTime_parseMatcher(
-            Matcher m, TimeZone defaultTZ,
+    private static Date parseDateTime_parseGroups(
+            String s, int[] groups, TimeZone defaultTZ,
             boolean xsMode,
             CalendarFieldsToDateConverter calToDateConverter) 
             throws DateParseException {
         NullArgumentException.check("defaultTZ", defaultTZ);
         try {
-            int year = groupToInt(m.group(1), "year", Integer.MIN_VALUE, Integer.MAX_VALUE);
+            int year = groupToInt(s, groups, GROUP_YEAR, "year", Integer.MIN_VALUE, Integer.MAX_VALUE);
             
             int era;
             // Starting from ISO 8601:2000 Second Edition, 0001 is AD 1, 0000 is BC 1, -0001 is BC 2.
@@ -649,12 +709,12 @@ public class DateUtil {
                 era = GregorianCalendar.AD;
             }
             
-            int month = groupToInt(m.group(2), "month", 1, 12) - 1;
-            int day = groupToInt(m.group(3), "day-of-month", 1, 31);
+            int month = groupToInt(s, groups, GROUP_MONTH, "month", 1, 12) - 1;
+            int day = groupToInt(s, groups, GROUP_DAY, "day-of-month", 1, 31);
             
             // ISO 8601 allows both 00:00 and 24:00,
             // but cal.set(...) doesn't if the Calendar is not lenient.
-            int hours = groupToInt(m.group(4), "hour-of-day", 0, 24);
+            int hours = groupToInt(s, groups, GROUP_HOURS, "hour-of-day", 0, 24);
             boolean hourWas24;
             if (hours == 24) {
                 hours = 0;
@@ -664,18 +724,18 @@ public class DateUtil {
                 hourWas24 = false;
             }
             
-            final String minutesStr = m.group(5);
-            int minutes = minutesStr != null ? groupToInt(minutesStr, "minute", 0, 59) : 0;
+            int minutes = groups[GROUP_MINUTES] != -1
+                    ? groupToInt(s, groups, GROUP_MINUTES, "minute", 0, 59) : 0;
             
-            final String secsStr = m.group(6);
             // Allow 60 because of leap seconds
-            int secs = secsStr != null ? groupToInt(secsStr, "second", 0, 60) : 0;
+            int secs = groups[GROUP_SECONDS] != -1
+                    ? groupToInt(s, groups, GROUP_SECONDS, "second", 0, 60) : 0;
             
-            int millisecs = groupToMillisecond(m.group(7));
+            int millisecs = groupToMillisecond(s, groups);
             
             // As a time is just the distance from the beginning of the day,
             // the time-zone offest should be 0 usually.
-            TimeZone tz = parseMatchingTimeZone(m.group(8), defaultTZ);
+            int offset = parseMatchingTimeZoneOffset(s, groups);
             
             // Continue handling the 24:00 specail case
             if (hourWas24) {
@@ -686,8 +746,9 @@ public class DateUtil {
                 }
             }
             
-            return calToDateConverter.calculate(
-                    era, year, month, day, hours, minutes, secs, millisecs, hourWas24, tz);
+            return calculate(
+                    era, year, month, day, hours, minutes, secs, millisecs, hourWas24,
+                    offset, s, groups, defaultTZ, calToDateConverter);
         } catch (IllegalArgumentException e) {
             // Calendar methods used to throw this for illegal dates.
             throw new DateParseException(
@@ -704,104 +765,425 @@ public class DateUtil {
      */
     public static TimeZone parseXSTimeZone(String timeZoneStr)
             throws DateParseException {
-        Matcher m = PATTERN_XS_TIME_ZONE.matcher(timeZoneStr);
-        if (!m.matches()) {
+        int[] groups = new int[GROUP_BOUNDARIES_LENGTH];
+        groups[GROUP_TIME_ZONE] = -1;
+        if (scanTimeZone(timeZoneStr, 0, SYNTAX_XS, groups) != timeZoneStr.length()
+                || groups[GROUP_TIME_ZONE] == -1) {
             throw new DateParseException(
-                    "The time zone offset didn't match the expected pattern: " + PATTERN_XS_TIME_ZONE);
+                    "The time zone offset didn't match the expected pattern: " + REGEX_XS_TIME_ZONE);
+        }
+        return parseMatchingTimeZone(timeZoneStr, groups, null);
+    }
+
+    /**
+     * Calculates the {@link Date} from the fields. If the time zone offset is fixed, it's done with simple
+     * arithmetic, otherwise it's delegated to the {@link CalendarFieldsToDateConverter}.
+     * 
+     * @param offset
+     *            The offset parsed from the string, or {@link #NO_FIXED_OFFSET} if the string contains no offset.
+     */
+    private static Date calculate(int era, int year, int month, int day, int hours, int minutes, int secs,
+            int millisecs, boolean addOneDay,
+            int offset, String s, int[] groups, TimeZone defaultTZ,
+            CalendarFieldsToDateConverter calToDateConverter)
+            throws DateParseException {
+        if (offset == NO_FIXED_OFFSET) {
+            offset = getFixedOffset(defaultTZ);
+        }
+        if (offset != NO_FIXED_OFFSET && year <= MAX_ARITHMETIC_YEAR) {
+            // Same validation as of the non-lenient GregorianCalendar:
+            int astronomicalYear = era == GregorianCalendar.BC ? 1 - year : year;
+            if (day > 28 && day > getMonthLength(astronomicalYear, month)) {
+                throw new IllegalArgumentException("DAY_OF_MONTH");
+            }
+            if (secs > 59) {
+                throw new IllegalArgumentException("SECOND");
+            }
+            
+            long epochDay = getEpochDay(astronomicalYear, month, day) + (addOneDay ? 1 : 0);
+            return new Date(epochDay * MILLIS_PER_DAY
+                    + ((hours * 60 + minutes) * 60 + secs) * 1000 + millisecs
+                    - offset);
         }
-        return parseMatchingTimeZone(timeZoneStr, null);
+        
+        TimeZone tz = parseMatchingTimeZone(s, groups, defaultTZ);
+        return calToDateConverter.calculate(era, year, month, day, hours, minutes, secs, millisecs, addOneDay, tz);
     }
 
-    private static int groupToInt(String g, String gName,
+    /**
+     * Returns the offset of the time zone if it's known to be fixed, or {@link #NO_FIXED_OFFSET}.
+     */
+    private static int getFixedOffset(TimeZone tz) {
+        if (tz == UTC) {
+            return 0;
+        }
+        // For other TimeZone subclasses we can't be sure that toZoneId() gives equivalent rules.
+        if (tz.getClass() == UTC.getClass()) {
+            try {
+                if (tz.toZoneId().getRules().isFixedOffset()) {
+                    return tz.getRawOffset();
+                }
+            } catch (DateTimeException e) {
+                // Falls back to calendar based calculation
+            }
+        }
+        return NO_FIXED_OFFSET;
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 in the proleptic Gregorian calendar; see days_from_civil in
+     * http://howardhinnant.github.io/date_algorithms.html for the explanation.
+     * 
+     * @param year
+     *            Astronomical year number, so 0 is 1 BC.
+     * @param month
+     *            0-based month
+     */
+    private static long getEpochDay(int year, int month, int day) {
+        long shiftedYear = month < 2 ? year - 1L : year; // Year starts with March
+        long era = Math.floorDiv(shiftedYear, 400);
+        int yearOfEra = (int) (shiftedYear - era * 400);
+        int dayOfYear = (153 * (month < 2 ? month + 10 : month - 2) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @param year
+     *            Astronomical year number, so 0 is 1 BC.
+     * @param month
+     *            0-based month
+     */
+    private static int getMonthLength(int year, int month) {
+        switch (month) {
+        case 1:
+            return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        case 3:
+        case 5:
+        case 8:
+        case 10:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * Matches the whole string against a date syntax (see {@link #REGEX_XS_DATE} for example), and stores the
+     * boundaries of the groups into {@code groups}.
+     */
+    private static boolean matchDate(String s, int syntax, int[] groups) {
+        Arrays.fill(groups, -1);
+        int pos = scanDate(s, 0, syntax, groups);
+        if (pos != -1 && syntax == SYNTAX_XS) {
+            pos = scanTimeZone(s, pos, syntax, groups);
+        }
+        return pos == s.length();
+    }
+
+    /**
+     * Like {@link #matchDate(String, int, int[])}, but for a time syntax.
+     */
+    private static boolean matchTime(String s, int syntax, int[] groups) {
+        Arrays.fill(groups, -1);
+        int pos = scanTime(s, 0, syntax, groups);
+        if (pos != -1) {
+            pos = scanTimeZone(s, pos, syntax, groups);
+        }
+        return pos == s.length();
+    }
+
+    /**
+     * Like {@link #matchDate(String, int, int[])}, but for a date-time syntax.
+     */
+    private static boolean matchDateTime(String s, int syntax, int[] groups) {
+        Arrays.fill(groups, -1);
+        int pos = scanDate(s, 0, syntax, groups);
+        if (pos == -1 || !isCharAt(s, pos, 'T')) {
+            return false;
+        }
+        pos = scanTime(s, pos + 1, syntax, groups);
+        if (pos != -1) {
+            pos = scanTimeZone(s, pos, syntax, groups);
+        }
+        return pos == s.length();
+    }
+
+    /**
+     * Scans the date part (without time zone) starting from {@code pos}.
+     * 
+     * @return The index after the date part, or -1 if it doesn't match.
+     */
+    private static int scanDate(String s, int pos, int syntax, int[] groups) {
+        int yearStart = pos;
+        if (isCharAt(s, pos, '-')) {
+            pos++;
+        }
+        int digitsStart = pos;
+        pos = skipDigits(s, pos);
+        if (syntax == SYNTAX_ISO8601_BASIC) {
+            // The year has at least 4 digits, and month and day are the last 4 digits.
+            if (pos - digitsStart < 8) {
+                return -1;
+            }
+            setGroup(groups, GROUP_YEAR, yearStart, pos - 4);
+            setGroup(groups, GROUP_MONTH, pos - 4, pos - 2);
+            setGroup(groups, GROUP_DAY, pos - 2, pos);
+            return pos;
+        }
+        
+        if (pos - digitsStart < (syntax == SYNTAX_XS ? 1 : 4)) {
+            return -1;
+        }
+        setGroup(groups, GROUP_YEAR, yearStart, pos);
+        if (!isCharAt(s, pos, '-') || !isTwoDigitsAt(s, pos + 1)) {
+            return -1;
+        }
+        setGroup(groups, GROUP_MONTH, pos + 1, pos + 3);
+        pos += 3;
+        if (!isCharAt(s, pos, '-') || !isTwoDigitsAt(s, pos + 1)) {
+            return -1;
+        }
+        setGroup(groups, GROUP_DAY, pos + 1, pos + 3);
+        return pos + 3;
+    }
+
+    /**
+     * Scans the time part (without time zone) starting from {@code pos}.
+     * 
+     * @return The index after the time part, or -1 if it doesn't match.
+     */
+    private static int scanTime(String s, int pos, int syntax, int[] groups) {
+        if (!isTwoDigitsAt(s, pos)) {
+            return -1;
+        }
+        setGroup(groups, GROUP_HOURS, pos, pos + 2);
+        pos += 2;
+        
+        boolean xs = syntax == SYNTAX_XS;
+        // In the basic syntax there's no separator, so then we just look for the next digit. If the separator is
+        // there but is not followed by 2 digits, the whole string can't match, so we needn't backtrack.
+        int sepLen = syntax == SYNTAX_ISO8601_BASIC ? 0 : 1;
+        if (sepLen == 0 ? isDigitAt(s, pos) : isCharAt(s, pos, ':')) {
+            if (!isTwoDigitsAt(s, pos + sepLen)) {
+                return -1;
+            }
+            setGroup(groups, GROUP_MINUTES, pos + sepLen, pos + sepLen + 2);
+            pos += sepLen + 2;
+            
+            if (sepLen == 0 ? isDigitAt(s, pos) : isCharAt(s, pos, ':')) {
+                if (!isTwoDigitsAt(s, pos + sepLen)) {
+                    return -1;
+                }
+                setGroup(groups, GROUP_SECONDS, pos + sepLen, pos + sepLen + 2);
+                pos += sepLen + 2;
+                
+                if (isCharAt(s, pos, '.') || !xs && isCharAt(s, pos, ',')) {
+                    int fractionStart = pos + 1;
+                    pos = skipDigits(s, fractionStart);
+                    if (pos == fractionStart) {
+                        return -1;
+                    }
+                    setGroup(groups, GROUP_FRACTION_SECONDS, fractionStart, pos);
+                }
+            } else if (xs) {
+                return -1;
+            }
+        } else if (xs) {
+            return -1;
+        }
+        return pos;
+    }
+
+    /**
+     * Scans the optional time zone part starting from {@code pos}.
+     * 
+     * @return The index after the time zone part (which is {@code pos} if there's no time zone part), or -1 if it
+     *         doesn't match.
+     */
+    private static int scanTimeZone(String s, int pos, int syntax, int[] groups) {
+        if (pos >= s.length()) {
+            return pos;
+        }
+        char c = s.charAt(pos);
+        if (c == 'Z') {
+            setGroup(groups, GROUP_TIME_ZONE, pos, pos + 1);
+            return pos + 1;
+        }
+        if (c != '+' && c != '-') {
+            return pos;
+        }
+        int start = pos;
+        if (!isTwoDigitsAt(s, pos + 1)) {
+            return -1;
+        }
+        pos += 3;
+        if (syntax == SYNTAX_ISO8601_BASIC) {
+            if (isDigitAt(s, pos)) {
+                if (!isTwoDigitsAt(s, pos)) {
+                    return -1;
+                }
+                pos += 2;
+            }
+        } else if (isCharAt(s, pos, ':')) {
+            if (!isTwoDigitsAt(s, pos + 1)) {
+                return -1;
+            }
+            pos += 3;
+        } else if (syntax == SYNTAX_XS) {
+            return -1;
+        }
+        setGroup(groups, GROUP_TIME_ZONE, start, pos);
+        return pos;
+    }
+
+    private static void setGroup(int[] groups, int group, int start, int end) {
+        groups[group] = start;
+        groups[group + 1] = end;
+    }
+
+    private static int skipDigits(String s, int pos) {
+        int ln = s.length();
+        while (pos < ln && isDigit(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isCharAt(String s, int pos, char c) {
+        return pos < s.length() && s.charAt(pos) == c;
+    }
+
+    private static boolean isDigitAt(String s, int pos) {
+        return pos < s.length() && isDigit(s.charAt(pos));
+    }
+
+    private static boolean isTwoDigitsAt(String s, int pos) {
+        return pos + 1 < s.length() && isDigit(s.charAt(pos)) && isDigit(s.charAt(pos + 1));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int groupToInt(String s, int[] groups, int group, String gName,
             int min, int max)
             throws DateParseException {
-        if (g == null) {
+        int start = groups[group];
+        if (start == -1) {
             throw new DateParseException("The " + gName + " part "
                     + "is missing.");
         }
+        return substringToInt(s, start, groups[group + 1], gName, min, max);
+    }
 
-        int start;
-        
-        // Remove minus sign, so we can remove the 0-s later:
+    /**
+     * Parses a substring that was already matched as an optional minus sign followed by digits.
+     */
+    private static int substringToInt(String s, int start, int end, String gName,
+            int min, int max)
+            throws DateParseException {
         boolean negative;
-        if (g.startsWith("-")) {
+        if (s.charAt(start) == '-') {
             negative = true;
-            start = 1;
+            start++;
         } else {
             negative = false;
-            start = 0;
         }
         
-        // Remove leading 0-s:
-        while (start < g.length() - 1 && g.charAt(start) == '0') {
+        // Skip leading 0-s:
+        while (start < end - 1 && s.charAt(start) == '0') {
             start++;
         }
-        if (start != 0) {
-            g = g.substring(start);
-        }
         
-        try {
-            int r = Integer.parseInt(g);
-            if (negative) {
-                r = -r;
-            }
-            if (r < min) {
-                throw new DateParseException("The " + gName + " part "
-                    + "must be at least " + min + ".");
-            }
-            if (r > max) {
-                throw new DateParseException("The " + gName + " part "
-                    + "can't be more than " + max + ".");
+        long r = 0;
+        if (end - start <= 10) {
+            for (int i = start; i < end; i++) {
+                r = r * 10 + (s.charAt(i) - '0');
             }
-            return r;
-        } catch (NumberFormatException e) {
+        }
+        if (end - start > 10 || r > Integer.MAX_VALUE) {
             throw new DateParseException("The " + gName + " part "
                     + "is a malformed integer.");
         }
+        if (negative) {
+            r = -r;
+        }
+        if (r < min) {
+            throw new DateParseException("The " + gName + " part "
+                + "must be at least " + min + ".");
+        }
+        if (r > max) {
+            throw new DateParseException("The " + gName + " part "
+                + "can't be more than " + max + ".");
+        }
+        return (int) r;
+    }
+
+    /**
+     * Returns the offset in milliseconds from the time zone group, or {@link #NO_FIXED_OFFSET} if the group is
+     * missing.
+     */
+    private static int parseMatchingTimeZoneOffset(String s, int[] groups)
+            throws DateParseException {
+        int start = groups[GROUP_TIME_ZONE];
+        if (start == -1) {
+            return NO_FIXED_OFFSET;
+        }
+        int end = groups[GROUP_TIME_ZONE + 1];
+        if (s.charAt(start) == 'Z') {
+            return 0;
+        }
+        
+        int offset = substringToInt(s, start + 1, start + 3, "offset-hours", 0, 23) * 60;
+        if (end - start > 3) {
+            int mStartIdx = s.charAt(start + 3) == ':' ? start + 4 : start + 3;
+            offset += substringToInt(s, mStartIdx, mStartIdx + 2, "offset-minutes", 0, 59);
+        }
+        offset *= 60 * 1000;
+        return s.charAt(start) == '-' ? -offset : offset;
     }
 
     private static TimeZone parseMatchingTimeZone(
-            String s, TimeZone defaultZone)
+            String s, int[] groups, TimeZone defaultZone)
             throws DateParseException {
-        if (s == null) {
+        int start = groups[GROUP_TIME_ZONE];
+        if (start == -1) {
             return defaultZone;
         }
-        if (s.equals("Z")) {
+        int end = groups[GROUP_TIME_ZONE + 1];
+        if (s.charAt(start) == 'Z') {
             return DateUtil.UTC;
         }
         
         StringBuilder sb = new StringBuilder(9);
         sb.append("GMT");
-        sb.append(s.charAt(0));
+        sb.append(s.charAt(start));
         
-        String h = s.substring(1, 3);
-        groupToInt(h, "offset-hours", 0, 23);
-        sb.append(h);
+        substringToInt(s, start + 1, start + 3, "offset-hours", 0, 23);
+        sb.append(s, start + 1, start + 3);
         
-        String m;
-        int ln = s.length();
-        if (ln > 3) {
-            int startIdx = s.charAt(3) == ':' ? 4 : 3;
-            m = s.substring(startIdx, startIdx + 2);
-            groupToInt(m, "offset-minutes", 0, 59);
+        if (end - start > 3) {
+            int mStartIdx = s.charAt(start + 3) == ':' ? start + 4 : start + 3;
+            substringToInt(s, mStartIdx, mStartIdx + 2, "offset-minutes", 0, 59);
             sb.append(':');
-            sb.append(m);
+            sb.append(s, mStartIdx, mStartIdx + 2);
         }
         
         return TimeZone.getTimeZone(sb.toString());
     }
 
-    private static int groupToMillisecond(String g)
+    private static int groupToMillisecond(String s, int[] groups)
             throws DateParseException {
-        if (g == null) {
+        int start = groups[GROUP_FRACTION_SECONDS];
+        if (start == -1) {
             return 0;
         }
         
-        if (g.length() > 3) {
-            g = g.substring(0, 3);
-        }
-        int i = groupToInt(g, "partial-seconds", 0, Integer.MAX_VALUE);
-        return g.length() == 1 ? i * 100 : (g.length() == 2 ? i * 10 : i);
+        int end = Math.min(groups[GROUP_FRACTION_SECONDS + 1], start + 3);
+        int i = substringToInt(s, start, end, "partial-seconds", 0, Integer.MAX_VALUE);
+        int ln = end - start;
+        return ln == 1 ? i * 100 : (ln == 2 ? i * 10 : i);
     }
     
     /**
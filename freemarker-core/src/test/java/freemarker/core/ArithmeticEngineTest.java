@@ -95,6 +95,36 @@ public class ArithmeticEngineTest {
         }
     }
 
+    @Test
+    public void bigDecimalEngineIntegerFastPathTest() {
+        assertBigDecimalEquals(new BigDecimal("3"), BIGDECIMAL_ENGINE.add(1, 2L));
+        assertBigDecimalEquals(new BigDecimal("3"), BIGDECIMAL_ENGINE.add((byte) 1, new BigDecimal("2")));
+        assertBigDecimalEquals(new BigDecimal("3.00"), BIGDECIMAL_ENGINE.add(1, new BigDecimal("2.00")));
+        assertBigDecimalEquals(new BigDecimal("-1"), BIGDECIMAL_ENGINE.subtract((short) 1, 2));
+        assertBigDecimalEquals(new BigDecimal("6"), BIGDECIMAL_ENGINE.multiply(2, new BigDecimal("3")));
+        assertBigDecimalEquals(new BigDecimal("6E+3"), BIGDECIMAL_ENGINE.multiply(2, new BigDecimal("3E+3")));
+
+        // Overflow falls back to BigDecimal arithmetic:
+        assertBigDecimalEquals(new BigDecimal("9223372036854775808"), BIGDECIMAL_ENGINE.add(Long.MAX_VALUE, 1));
+        assertBigDecimalEquals(new BigDecimal("-9223372036854775809"), BIGDECIMAL_ENGINE.subtract(Long.MIN_VALUE, 1));
+        assertBigDecimalEquals(new BigDecimal("9223372036854775808"),
+                BIGDECIMAL_ENGINE.multiply(Long.MIN_VALUE, -1));
+        assertBigDecimalEquals(new BigDecimal("85070591730234615847396907784232501249"),
+                BIGDECIMAL_ENGINE.multiply(Long.MAX_VALUE, new BigDecimal(Long.MAX_VALUE)));
+
+        assertEquals(-1, BIGDECIMAL_ENGINE.compareNumbers(1, 2L));
+        assertEquals(1, BIGDECIMAL_ENGINE.compareNumbers(new BigDecimal("3"), (short) 2));
+        assertEquals(0, BIGDECIMAL_ENGINE.compareNumbers((byte) 2, new BigDecimal("2")));
+        assertEquals(-1, BIGDECIMAL_ENGINE.compareNumbers(
+                Long.MAX_VALUE, new BigDecimal("9223372036854775808")));
+    }
+
+    private static void assertBigDecimalEquals(BigDecimal expected, Number actual) {
+        assertThat(actual, Matchers.instanceOf(BigDecimal.class));
+        // Unlike compareTo, equals also compares the scale
+        assertEquals(expected, actual);
+    }
+
     @Test
     public void toNumberTest() {
         for (ArithmeticEngine arithmeticEngine : new ArithmeticEngine[]{BIGDECIMAL_ENGINE, CONSERVATIVE_ENGINE}) {
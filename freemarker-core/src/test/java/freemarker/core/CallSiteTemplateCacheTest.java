@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import freemarker.cache.NullCacheStorage;
+import freemarker.cache.StringTemplateLoader;
+import freemarker.cache.TemplateCache;
+import freemarker.cache._CacheAPI;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template._TemplateAPI;
+import freemarker.test.TemplateTest;
+
+public class CallSiteTemplateCacheTest extends TemplateTest {
+
+    private StringTemplateLoader templateLoader;
+    
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        Configuration cfg = super.createConfiguration();
+        templateLoader = new StringTemplateLoader();
+        cfg.setTemplateLoader(templateLoader);
+        cfg.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+        return cfg;
+    }
+
+    @Before
+    public void setup() {
+        addTemplate("inc.ftl", "[inc]");
+        addTemplate("inc_de.ftl", "[inc_de]");
+        addTemplate("lib.ftl", "<#macro m>[lib]</#macro>");
+        addTemplate("dir/inc.ftl", "[dir/inc]");
+        addTemplate("dir/includer.ftl", "<#include 'inc.ftl'>");
+        addTemplate("includer.ftl", "<#include 'inc.ftl'><#include 'dir/includer.ftl'>");
+        addTemplate("importer.ftl", "<#import 'lib.ftl' as lib><@lib.m />");
+        addTemplate("localeLoop.ftl",
+                "<#list ['en_US', 'de', 'en_US'] as l><#setting locale=l><#include 'inc.ftl'></#list>");
+    }
+
+    @Test
+    public void testRepeatedInclude() throws IOException, TemplateException {
+        for (int i = 0; i < 3; i++) {
+            assertOutputForNamed("includer.ftl", "[inc][dir/inc]");
+        }
+    }
+
+    @Test
+    public void testLocaleIsPartOfTheKey() throws IOException, TemplateException {
+        for (int i = 0; i < 2; i++) {
+            assertOutputForNamed("localeLoop.ftl", "[inc][inc_de][inc]");
+        }
+    }
+
+    @Test
+    public void testInvalidatedByTemplateCacheChanges() throws IOException, TemplateException {
+        assertOutputForNamed("includer.ftl", "[inc][dir/inc]");
+        assertOutputForNamed("importer.ftl", "[lib]");
+        
+        templateLoader.putTemplate("inc.ftl", "[inc v2]", 2);
+        templateLoader.putTemplate("lib.ftl", "<#macro m>[lib v2]</#macro>", 2);
+        // The template update delay didn't elapse yet:
+        assertOutputForNamed("includer.ftl", "[inc][dir/inc]");
+        assertOutputForNamed("importer.ftl", "[lib]");
+        
+        getConfiguration().removeTemplateFromCache("inc.ftl");
+        assertOutputForNamed("includer.ftl", "[inc v2][dir/inc]");
+        assertOutputForNamed("importer.ftl", "[lib]");
+        
+        getConfiguration().clearTemplateCache();
+        assertOutputForNamed("importer.ftl", "[lib v2]");
+        
+        templateLoader.putTemplate("dir/inc.ftl", "[dir/inc v2]", 3);
+        getConfiguration().setTemplateUpdateDelayMilliseconds(0);
+        assertOutputForNamed("includer.ftl", "[inc v2][dir/inc v2]");
+        templateLoader.putTemplate("dir/inc.ftl", "[dir/inc v3]", 4);
+        assertOutputForNamed("includer.ftl", "[inc v2][dir/inc v3]");
+    }
+
+    @Test
+    public void testLastCheckedComesFromTheTemplateCache() throws IOException, TemplateException {
+        Configuration cfg = getConfiguration();
+        TemplateCache templateCache = _TemplateAPI.getTemplateCache(cfg);
+        long before = System.currentTimeMillis();
+        Template t = cfg.getTemplate("inc.ftl", Locale.US, "UTF-8");
+        long lastChecked = _CacheAPI.getLastChecked(templateCache, t, Locale.US, null, "UTF-8", true);
+        assertTrue(lastChecked >= before && lastChecked <= System.currentTimeMillis());
+        // Getting it again within the update delay doesn't check it again:
+        cfg.getTemplate("inc.ftl", Locale.US, "UTF-8");
+        assertEquals(lastChecked, _CacheAPI.getLastChecked(templateCache, t, Locale.US, null, "UTF-8", true));
+
+        Template other = new Template("inc.ftl", "[inc]", cfg);
+        assertEquals(Long.MIN_VALUE, _CacheAPI.getLastChecked(templateCache, other, Locale.US, null, "UTF-8", true));
+        cfg.removeTemplateFromCache("inc.ftl", Locale.US, "UTF-8");
+        assertEquals(Long.MIN_VALUE, _CacheAPI.getLastChecked(templateCache, t, Locale.US, null, "UTF-8", true));
+    }
+
+    @Test
+    public void testNotUsedWithNullCacheStorage() throws IOException, TemplateException {
+        getConfiguration().setCacheStorage(NullCacheStorage.INSTANCE);
+        Template t = new Template(null, "<#include 'inc.ftl'>", getConfiguration());
+        assertOutput(t, "[inc]");
+        templateLoader.putTemplate("inc.ftl", "[inc v2]", 2);
+        assertOutput(t, "[inc v2]");
+    }
+
+    @Test
+    public void testLazyImport() throws IOException, TemplateException {
+        getConfiguration().setLazyImports(true);
+        for (int i = 0; i < 2; i++) {
+            assertOutputForNamed("importer.ftl", "[lib]");
+        }
+    }
+
+}
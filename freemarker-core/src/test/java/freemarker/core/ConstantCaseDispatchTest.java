@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+import freemarker.test.TemplateTest;
+
+public class ConstantCaseDispatchTest extends TemplateTest {
+
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        Configuration cfg = super.createConfiguration();
+        cfg.setIncompatibleImprovements(Configuration.VERSION_2_3_33);
+        return cfg;
+    }
+
+    private static final String STRING_SWITCH = ""
+            + "<#switch x>"
+            + "<#case 'a'>A"
+            + "<#case 'b'>B<#break>"
+            + "<#default>D"
+            + "<#case 'c'>C<#break>"
+            + "<#case 'a'>A2"
+            + "<#case 'e'>E"
+            + "</#switch>";
+
+    @Test
+    public void testStringSwitch() throws IOException, TemplateException {
+        assertOutput("<#assign x = 'a'>" + STRING_SWITCH, "AB");
+        assertOutput("<#assign x = 'b'>" + STRING_SWITCH, "B");
+        assertOutput("<#assign x = 'c'>" + STRING_SWITCH, "C");
+        assertOutput("<#assign x = 'e'>" + STRING_SWITCH, "E");
+        assertOutput("<#assign x = 'z'>" + STRING_SWITCH, "D");
+        // NFKC normalization, like for the == operator:
+        assertOutput("<#assign x = '\\xFB01'>"
+                + "<#switch x><#case 'fi'>fi<#case 'a'><#case 'b'><#case 'c'></#switch>", "fi");
+        assertErrorContains("<#assign x = 1>" + STRING_SWITCH, "Can't compare");
+        assertErrorContains(STRING_SWITCH, "null or missing");
+    }
+
+    private static final String NUMBER_SWITCH = ""
+            + "<#switch x>"
+            + "<#case 1>1<#break>"
+            + "<#case 2.5>2.5<#break>"
+            + "<#case 100>100<#break>"
+            + "<#case -3>-3<#break>"
+            + "<#case 0>0<#break>"
+            + "<#default>D"
+            + "</#switch>";
+
+    @Test
+    public void testNumberSwitch() throws IOException, TemplateException {
+        assertOutput("<#assign x = 1>" + NUMBER_SWITCH, "1");
+        assertOutput("<#assign x = 1.0>" + NUMBER_SWITCH, "1");
+        assertOutput("<#assign x = 2.50>" + NUMBER_SWITCH, "2.5");
+        assertOutput("<#assign x = 10 * 10>" + NUMBER_SWITCH, "100");
+        assertOutput("<#assign x = -3>" + NUMBER_SWITCH, "-3");
+        assertOutput("<#assign x = -0>" + NUMBER_SWITCH, "0");
+        assertOutput("<#assign x = 3>" + NUMBER_SWITCH, "D");
+        addToDataModel("d", 2.5);
+        addToDataModel("l", 100L);
+        addToDataModel("inf", Double.POSITIVE_INFINITY);
+        assertOutput("<#assign x = d>" + NUMBER_SWITCH, "2.5");
+        assertOutput("<#assign x = l>" + NUMBER_SWITCH, "100");
+        assertOutput("<#assign x = inf>" + NUMBER_SWITCH, "D");
+        assertErrorContains("<#assign x = '1'>" + NUMBER_SWITCH, "Can't compare");
+    }
+
+    private static final String IF_CHAIN = ""
+            + "<#if x == 'a'>A"
+            + "<#elseif (x == 'b')>B"
+            + "<#elseif 'c' == x>C"
+            + "<#elseif x == 'a'>A2"
+            + "<#elseif x == 'd'>D"
+            + "<#else>E"
+            + "</#if>";
+
+    @Test
+    public void testIfChain() throws IOException, TemplateException {
+        assertOutput("<#assign x = 'a'>" + IF_CHAIN, "A");
+        assertOutput("<#assign x = 'b'>" + IF_CHAIN, "B");
+        assertOutput("<#assign x = 'c'>" + IF_CHAIN, "C");
+        assertOutput("<#assign x = 'd'>" + IF_CHAIN, "D");
+        assertOutput("<#assign x = 'z'>" + IF_CHAIN, "E");
+        assertErrorContains("<#assign x = 1>" + IF_CHAIN, "Can't compare");
+        
+        assertOutput("<#assign o = { 'p': 3 }>"
+                + "<#if o.p == 1>1<#elseif o.p == 2>2<#elseif o.p == 3>3<#elseif o.p == 4>4</#if>", "3");
+        assertOutput("<#assign o = { 'p': 5 }>"
+                + "<#if o.p == 1>1<#elseif o.p == 2>2<#elseif o.p == 3>3<#elseif o.p == 4>4</#if>", "");
+    }
+
+    @Test
+    public void testIfChainsThatArentDispatched() throws IOException, TemplateException {
+        // Different subjects:
+        assertOutput("<#assign x = 'b', y = 'a'>"
+                + "<#if x == 'a'>1<#elseif y == 'a'>2<#elseif x == 'c'>3<#elseif x == 'd'>4</#if>", "2");
+        // Not all conditions are comparisons with literals:
+        assertOutput("<#assign x = 'b'>"
+                + "<#if x == 'a'>1<#elseif x?length == 1>2<#elseif x == 'b'>3<#elseif x == 'd'>4</#if>", "2");
+        // Mixed literal types:
+        assertOutput("<#assign x = 'b'>"
+                + "<#if x == 'a'>1<#elseif x == 'b'>2<#elseif x == 1>3<#elseif x == 'd'>4</#if>", "2");
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.test.TemplateTest;
+
+public class EnvironmentSettingsSnapshotTest extends TemplateTest {
+
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_33);
+        cfg.setLocale(Locale.US);
+        return cfg;
+    }
+
+    @Test
+    public void testSettingChangesAreSeenDuringProcessing() throws Exception {
+        assertOutput(
+                "${1.5} <#setting locale='de_DE'>${1.5} "
+                + "${x!'u'}<#setting classic_compatible=true>[${x}]",
+                "1.5 1,5 u[]");
+    }
+
+    @Test
+    public void testSettingChangesFromJavaAreSeen() throws Exception {
+        addTemplate("t.ftl", "${1.5}");
+        Template t = getConfiguration().getTemplate("t.ftl");
+        StringWriter out = new StringWriter();
+        Environment env = t.createProcessingEnvironment(null, out);
+        assertEquals(Locale.US, env.getLocale());
+        env.setLocale(Locale.GERMANY);
+        assertEquals(Locale.GERMANY, env.getLocale());
+        env.setArithmeticEngine(ArithmeticEngine.CONSERVATIVE_ENGINE);
+        assertSame(ArithmeticEngine.CONSERVATIVE_ENGINE, env.getArithmeticEngine());
+        env.process();
+        assertEquals("1,5", out.toString());
+    }
+
+    @Test
+    public void testTemplateSettingChangesBeforeProcessingAreSeen() throws Exception {
+        addTemplate("t.ftl", "${1.5}");
+        Template t = getConfiguration().getTemplate("t.ftl");
+        StringWriter out = new StringWriter();
+        Environment env = t.createProcessingEnvironment(null, out);
+        assertEquals(Locale.US, env.getLocale());
+        t.setLocale(Locale.GERMANY);
+        env.process();
+        assertEquals("1,5", out.toString());
+        assertEquals(Locale.GERMANY, env.getLocale());
+    }
+
+}
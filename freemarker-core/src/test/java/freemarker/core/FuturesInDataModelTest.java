@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapperBuilder;
+import freemarker.template.SimpleHash;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateHashModelEx2;
+import freemarker.template.TemplateHashModelEx2.KeyValuePair;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.test.TemplateTest;
+
+public class FuturesInDataModelTest extends TemplateTest {
+
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        Configuration cfg = super.createConfiguration();
+        DefaultObjectWrapperBuilder owb = new DefaultObjectWrapperBuilder(Configuration.VERSION_2_3_33);
+        owb.setFutureSupport(true);
+        cfg.setObjectWrapper(owb.build());
+        return cfg;
+    }
+
+    @Test
+    public void testFuturesAndSuppliersAreReplacedWithTheirResult() throws Exception {
+        addToDataModel("f", CompletableFuture.completedFuture("foo"));
+        addToDataModel("s", (Supplier<Integer>) () -> 123);
+        addToDataModel("m", Collections.singletonMap("f", CompletableFuture.completedFuture(true)));
+        assertOutput("${f?upper_case} ${s + 1} ${m.f?c}", "FOO 124 true");
+    }
+
+    @Test
+    public void testUnreadFutureIsNotWaitedFor() throws Exception {
+        addToDataModel("f", new CompletableFuture<String>());
+        addToDataModel("x", 1);
+        assertOutput("${x}", "1");
+    }
+
+    @Test
+    public void testFailedFuture() throws Exception {
+        CompletableFuture<String> f = new CompletableFuture<>();
+        f.completeExceptionally(new IllegalStateException("Backend is down"));
+        addToDataModel("f", f);
+        assertErrorContains("${f}", "has failed");
+    }
+
+    @Test
+    public void testPrefetchDataModel() throws Exception {
+        // Both suppliers wait for each other, so they only finish if they are computed in parallel:
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Set<String> called = ConcurrentHashMap.newKeySet();
+        addToDataModel("a", (Supplier<String>) () -> awaitOthers("a", latch, called));
+        addToDataModel("b", (Supplier<String>) () -> awaitOthers("b", latch, called));
+        addToDataModel("c", (Supplier<String>) () -> { throw new IllegalStateException("Backend is down"); });
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Template t = new Template(null, "${a} ${b}", getConfiguration());
+            StringWriter out = new StringWriter();
+            Environment env = t.createProcessingEnvironment(getDataModel(), out);
+            env.prefetchDataModel(executor);
+            env.process();
+            assertEquals("a b", out.toString());
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(called.contains("a"));
+        assertTrue(called.contains("b"));
+    }
+
+    @Test
+    public void testPrefetchDataModelFailure() throws Exception {
+        addToDataModel("c", (Supplier<String>) () -> { throw new IllegalStateException("Backend is down"); });
+
+        Template t = new Template(null, "${c}", getConfiguration());
+        Environment env = t.createProcessingEnvironment(getDataModel(), new StringWriter());
+        env.prefetchDataModel(Runnable::run);
+        try {
+            env.process();
+            fail();
+        } catch (TemplateException e) {
+            assertTrue(e.getMessage().contains("background computation"));
+            Throwable cause = e.getCause();
+            while (cause != null && !(cause instanceof IllegalStateException)) {
+                cause = cause.getCause();
+            }
+            assertNotNull(cause);
+        }
+    }
+
+    @Test
+    public void testPrefetchDataModelWithSimpleHashRoot() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        Map<String, Object> dataModel = new HashMap<>();
+        dataModel.put("s", (Supplier<String>) () -> "s" + calls.incrementAndGet());
+        dataModel.put("x", 1);
+        SimpleHash dataModelHash = new SimpleHash(dataModel, getConfiguration().getObjectWrapper());
+
+        Template t = new Template(null, "${s} ${s} ${x}", getConfiguration());
+        StringWriter out = new StringWriter();
+        Environment env = t.createProcessingEnvironment(dataModelHash, out);
+        env.prefetchDataModel(Runnable::run);
+        assertEquals(1, calls.get());
+        env.process();
+        assertEquals("s1 s1 1", out.toString());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testPrefetchedValueIsWrappedOnlyOnce() throws Exception {
+        addToDataModel("s", (Supplier<String>) () -> "foo");
+
+        Template t = new Template(null, "", getConfiguration());
+        Environment env = t.createProcessingEnvironment(getDataModel(), new StringWriter());
+        env.prefetchDataModel(Runnable::run);
+        TemplateModel value = env.getDataModelOrSharedVariable("s");
+        assertEquals("foo", ((TemplateScalarModel) value).getAsString());
+        assertSame(value, env.getDataModelOrSharedVariable("s"));
+    }
+
+    @Test
+    public void testPrefetchedValuesThroughDataModelHash() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        addToDataModel("s", (Supplier<String>) () -> "s" + calls.incrementAndGet());
+
+        Template t = new Template(null, "", getConfiguration());
+        Environment env = t.createProcessingEnvironment(getDataModel(), new StringWriter());
+        env.prefetchDataModel(Runnable::run);
+        assertEquals(1, calls.get());
+
+        TemplateHashModelEx2 dataModel = (TemplateHashModelEx2) env.getDataModel();
+        TemplateModel value = dataModel.values().iterator().next();
+        assertEquals("s1", ((TemplateScalarModel) value).getAsString());
+        KeyValuePair kvp = dataModel.keyValuePairIterator().next();
+        assertEquals("s", ((TemplateScalarModel) kvp.getKey()).getAsString());
+        assertSame(value, kvp.getValue());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testPrefetchDataModelWithoutFutureSupport() throws Exception {
+        getConfiguration().setObjectWrapper(new DefaultObjectWrapperBuilder(Configuration.VERSION_2_3_33).build());
+        final AtomicInteger calls = new AtomicInteger();
+        addToDataModel("s", (Supplier<String>) () -> "s" + calls.incrementAndGet());
+        addToDataModel("x", 1);
+
+        Template t = new Template(null, "${x}", getConfiguration());
+        StringWriter out = new StringWriter();
+        Environment env = t.createProcessingEnvironment(getDataModel(), out);
+        env.prefetchDataModel(Runnable::run);
+        env.process();
+        assertEquals("1", out.toString());
+        assertEquals(0, calls.get());
+    }
+
+    private static String awaitOthers(String name, CountDownLatch latch, Set<String> called) {
+        called.add(name);
+        latch.countDown();
+        try {
+            return latch.await(10, TimeUnit.SECONDS) ? name : "timeout";
+        } catch (InterruptedException e) {
+            return "interrupted";
+        }
+    }
+
+}
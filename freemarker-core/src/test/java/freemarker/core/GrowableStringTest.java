@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import freemarker.test.TemplateTest;
+
+public class GrowableStringTest extends TemplateTest {
+
+    @Test
+    public void testShortResultIsString() {
+        assertEquals("ab", GrowableString.concat("a", "b"));
+    }
+
+    @Test
+    public void testAppending() {
+        String longStr = repeat('x', GrowableString.MIN_LENGTH);
+        Object s1 = GrowableString.concat("a", longStr);
+        assertTrue(s1 instanceof GrowableString);
+        assertEquals(longStr.length() + 1, GrowableString.lengthOf(s1));
+
+        Object s2 = GrowableString.concat(s1, "b");
+        Object s3 = GrowableString.concat(s2, "c");
+        // Appending to an instance that's not the last one in the buffer:
+        Object s2Alt = GrowableString.concat(s2, "C");
+        Object s1Alt = GrowableString.concat(s1, "B");
+        Object s3Cont = GrowableString.concat(s3, "d");
+
+        assertEquals("a" + longStr, GrowableString.asString(s1));
+        assertEquals("a" + longStr + "b", GrowableString.asString(s2));
+        assertEquals("a" + longStr + "bc", GrowableString.asString(s3));
+        assertEquals("a" + longStr + "bC", GrowableString.asString(s2Alt));
+        assertEquals("a" + longStr + "B", GrowableString.asString(s1Alt));
+        assertEquals("a" + longStr + "bcd", GrowableString.asString(s3Cont));
+        assertSame(s3, GrowableString.concat(s3, ""));
+    }
+
+    @Test
+    public void testRepeatedConcatenationInTemplate() throws Exception {
+        assertOutput("<#assign s = ''><#list 1..1000 as i><#assign s = s + i?c + ','></#list>"
+                + "${s?length} ${s?substring(0, 10)} ${s?ends_with('999,1000,')?c}",
+                "3893 1,2,3,4,5, true");
+        assertOutput("<#assign s = ''><#list 1..1000 as i><#assign s += i?c + ','></#list>"
+                + "<#assign a = s + 'a'><#assign b = s + 'b'>"
+                + "${a?length} ${a?ends_with('1000,a')?c} ${b?ends_with('1000,b')?c} ${(a == s + 'a')?c}",
+                "3894 true true true");
+    }
+
+    @Test
+    public void testRepeatedMarkupConcatenationInTemplate() throws Exception {
+        assertOutput("<#ftl outputFormat='HTML'>"
+                + "<#assign s = ''?no_esc><#list 1..300 as i><#assign s = s + '<' + i?c></#list>"
+                + "${s?markup_string?length} ${s?markup_string?substring(0, 9)}",
+                "1992 &amp;lt;1&amp;lt;");
+        assertOutput("<#ftl outputFormat='HTML'>"
+                + "<#assign s = ''?no_esc><#list 1..300 as i><#assign s = s + '<br>'?no_esc + i?c></#list>"
+                + "${s?markup_string?length} ${s?markup_string?starts_with('<br>1<br>2')?c}",
+                "1992 true");
+    }
+
+    @Test
+    public void testMarkupConcatOnlyUsesGrowableContentWithBuiltInFormats() throws Exception {
+        String longStr = repeat('x', GrowableString.MIN_LENGTH);
+
+        TemplateHTMLOutputModel html = HTMLOutputFormat.INSTANCE.concat(
+                HTMLOutputFormat.INSTANCE.fromMarkup(longStr), HTMLOutputFormat.INSTANCE.fromMarkup("y"));
+        assertTrue(html.getMarkupContentForConcat() instanceof GrowableString);
+        assertEquals(longStr + "y", html.getMarkupContent());
+
+        // A custom format's newTemplateMarkupOutputModel must get the final content:
+        TemplateDummyOutputModel dummy = DummyOutputFormat.INSTANCE.concat(
+                DummyOutputFormat.INSTANCE.fromMarkup(longStr), DummyOutputFormat.INSTANCE.fromMarkup("y"));
+        assertTrue(dummy.getMarkupContentForConcat() instanceof String);
+        assertEquals(longStr + "y", dummy.getMarkupContent());
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+}
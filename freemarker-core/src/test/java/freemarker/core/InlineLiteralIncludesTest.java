@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import freemarker.cache.StringTemplateLoader;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.test.TemplateTest;
+
+public class InlineLiteralIncludesTest extends TemplateTest {
+
+    private StringTemplateLoader templateLoader;
+    
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        Configuration cfg = super.createConfiguration();
+        templateLoader = new StringTemplateLoader();
+        cfg.setTemplateLoader(templateLoader);
+        cfg.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+        cfg.setInlineLiteralIncludes(true);
+        return cfg;
+    }
+
+    @Before
+    public void setup() {
+        addTemplate("inc.ftl", "[inc]");
+        addTemplate("inc_de.ftl", "[inc_de]");
+        addTemplate("dir/inc.ftl", "[dir/inc]");
+        addTemplate("dir/includer.ftl", "<#include 'inc.ftl'>");
+        addTemplate("includer.ftl", "<#include 'inc.ftl'><#include 'dir/includer.ftl'>");
+        addTemplate("a.ftl", "<#assign d = (d!0) + 1>a${d}<#if d < 3><#include 'b.ftl'></#if>");
+        addTemplate("b.ftl", "b<#include 'a.ftl'>");
+    }
+
+    @Test
+    public void testBasics() throws IOException, TemplateException {
+        for (int i = 0; i < 2; i++) {
+            assertOutputForNamed("includer.ftl", "[inc][dir/inc]");
+        }
+    }
+
+    @Test
+    public void testIncludedTemplateIsNotLookedUpAgain() throws IOException, TemplateException {
+        assertOutputForNamed("includer.ftl", "[inc][dir/inc]");
+        templateLoader.putTemplate("inc.ftl", "[inc v2]", 2);
+        getConfiguration().removeTemplateFromCache("inc.ftl");
+        // As includer.ftl is still cached, it uses the template inlined into it:
+        assertOutputForNamed("includer.ftl", "[inc][dir/inc]");
+        assertOutput("<#include 'inc.ftl'>", "[inc v2]");
+        
+        getConfiguration().clearTemplateCache();
+        assertOutputForNamed("includer.ftl", "[inc v2][dir/inc]");
+    }
+
+    @Test
+    public void testIncluderReloadedWhenIncludedChanges() throws IOException, TemplateException {
+        getConfiguration().setTemplateUpdateDelayMilliseconds(0);
+        Template includer = getConfiguration().getTemplate("includer.ftl");
+        assertSame(includer, getConfiguration().getTemplate("includer.ftl"));
+        assertOutputForNamed("includer.ftl", "[inc][dir/inc]");
+        
+        templateLoader.putTemplate("dir/inc.ftl", "[dir/inc v2]", 2);
+        assertNotSame(includer, getConfiguration().getTemplate("includer.ftl"));
+        assertOutputForNamed("includer.ftl", "[inc][dir/inc v2]");
+
+        templateLoader.putTemplate("dir/inc.ftl", "[dir/inc v3]", 3);
+        assertOutputForNamed("includer.ftl", "[inc][dir/inc v3]");
+        
+        templateLoader.removeTemplate("dir/inc.ftl");
+        assertErrorContainsForNamed("includer.ftl", "not found");
+    }
+
+    @Test
+    public void testCircularInclusion() throws IOException, TemplateException {
+        for (int i = 0; i < 2; i++) {
+            assertOutputForNamed("a.ftl", "a1ba2ba3");
+            assertOutputForNamed("b.ftl", "ba1ba2ba3");
+        }
+        getConfiguration().setTemplateUpdateDelayMilliseconds(0);
+        templateLoader.putTemplate("b.ftl", "B<#include 'a.ftl'>", 2);
+        assertOutputForNamed("a.ftl", "a1Ba2Ba3");
+    }
+
+    @Test
+    public void testLookupParametersDifferOnRuntime() throws IOException, TemplateException {
+        addTemplate("localeIncluder.ftl", "<#include 'inc.ftl'><#setting locale='de'><#include 'inc.ftl'>");
+        assertOutputForNamed("localeIncluder.ftl", "[inc][inc_de]");
+    }
+
+    @Test
+    public void testNotInlined() throws IOException, TemplateException {
+        addTemplate("notInlined.ftl",
+                "<#include 'missing.ftl' ignore_missing=true>"
+                + "<#include 'inc.ftl' parse=false>"
+                + "<#assign n = 'inc.ftl'><#include n>");
+        assertOutputForNamed("notInlined.ftl", "[inc][inc]");
+    }
+
+    @Test
+    public void testDisabled() throws IOException, TemplateException {
+        getConfiguration().setInlineLiteralIncludes(false);
+        assertOutputForNamed("includer.ftl", "[inc][dir/inc]");
+        templateLoader.putTemplate("inc.ftl", "[inc v2]", 2);
+        getConfiguration().removeTemplateFromCache("inc.ftl");
+        assertOutputForNamed("includer.ftl", "[inc v2][dir/inc]");
+    }
+
+    @Test
+    public void testSetSetting() throws Exception {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_0);
+        assertFalse(cfg.getInlineLiteralIncludes());
+        cfg.setSetting(Configuration.INLINE_LITERAL_INCLUDES_KEY_CAMEL_CASE, "true");
+        assertTrue(cfg.getInlineLiteralIncludes());
+        cfg.setSetting(Configuration.INLINE_LITERAL_INCLUDES_KEY_SNAKE_CASE, "false");
+        assertFalse(cfg.getInlineLiteralIncludes());
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultMapAdapter;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.SimpleHash;
+import freemarker.template.SimpleScalar;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.test.TemplateTest;
+
+public class InterpolationAwareHashTest extends TemplateTest {
+
+    private Map<String, Object> map;
+
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        return new Configuration(Configuration.VERSION_2_3_33);
+    }
+
+    @Before
+    public void setup() {
+        map = new HashMap<>();
+        map.put("s", "text");
+        map.put("n", 1.5);
+        map.put("b", true);
+        map.put("nullValue", null);
+        getConfiguration().setNumberFormat("0.00");
+        getConfiguration().setCustomNumberFormats(
+                Collections.singletonMap("hex", HexTemplateNumberFormatFactory.INSTANCE));
+    }
+
+    @Test
+    public void testDefaultMapAdapter() throws Exception {
+        DefaultObjectWrapper ow = new DefaultObjectWrapper(Configuration.VERSION_2_3_33);
+        DefaultMapAdapter adapter = DefaultMapAdapter.adapt(map, ow);
+        assertEquals("text", adapter.getForInterpolation("s"));
+        assertEquals(1.5, adapter.getForInterpolation("n"));
+        assertTrue(adapter.getForInterpolation("b") instanceof TemplateModel);
+        assertNull(adapter.getForInterpolation("noSuchKey"));
+
+        addToDataModel("m", adapter);
+        assertPrintsSameAsWithGet();
+    }
+
+    @Test
+    public void testSimpleHash() throws Exception {
+        DefaultObjectWrapper ow = new DefaultObjectWrapper(Configuration.VERSION_2_3_33);
+        SimpleHash hash = new SimpleHash(map, ow);
+        assertEquals("text", hash.getForInterpolation("s"));
+        assertEquals(1.5, hash.getForInterpolation("n"));
+
+        addToDataModel("m", hash);
+        assertPrintsSameAsWithGet();
+    }
+
+    @Test
+    public void testSimpleHashAfterGet() throws Exception {
+        SimpleHash hash = new SimpleHash(map, new DefaultObjectWrapper(Configuration.VERSION_2_3_33));
+        assertTrue(hash.get("s") instanceof TemplateScalarModel);
+        // SimpleHash has replaced the value with the wrapped one:
+        assertTrue(hash.getForInterpolation("s") instanceof TemplateScalarModel);
+    }
+
+    @Test
+    public void testWrapOverridden() throws Exception {
+        DefaultObjectWrapper ow = new UpperCaseObjectWrapper();
+        DefaultMapAdapter adapter = DefaultMapAdapter.adapt(map, ow);
+        assertTrue(adapter.getForInterpolation("s") instanceof TemplateScalarModel);
+        assertTrue(adapter.getForInterpolation("n") instanceof TemplateNumberModel);
+        SimpleHash hash = new SimpleHash(map, ow);
+        assertTrue(hash.getForInterpolation("s") instanceof TemplateScalarModel);
+
+        addToDataModel("m", adapter);
+        assertOutput("${m.s}", "TEXT");
+        addToDataModel("m", hash);
+        assertOutput("${m.s}", "TEXT");
+    }
+
+    @Test
+    public void testLegacyEscaping() throws Exception {
+        map.put("s", "<a>");
+        addToDataModel("m", DefaultMapAdapter.adapt(map, new DefaultObjectWrapper(Configuration.VERSION_2_3_33)));
+        assertOutput("<#escape x as x?html>${m.s}</#escape>", "&lt;a&gt;");
+        assertOutput("<#ftl output_format='XML'>${m.s}", "&lt;a&gt;");
+    }
+
+    private void assertPrintsSameAsWithGet() throws Exception {
+        assertOutput("${m.s}", "text");
+        assertOutput("${m.n}", "1.50");
+        assertOutput("${m.n?string}", "1.50");
+        assertOutput("<#setting number_format='@hex'>${m.n?floor}", "1");
+        assertErrorContains("<#setting number_format='@hex'>${m.n}", "hexadecimal int", "1.5");
+        assertOutput("<#setting boolean_format='y,n'>${m.b}", "y");
+        assertOutput("${m.s}${m.n}${m.b?c}", "text1.50true");
+        assertOutput("${'[${m.s}]'}", "[text]");
+        assertErrorContains("${m.nullValue}", InvalidReferenceException.class, "m.nullValue");
+        assertErrorContains("${m.noSuchKey}", InvalidReferenceException.class, "m.noSuchKey");
+    }
+
+    private static class UpperCaseObjectWrapper extends DefaultObjectWrapper {
+
+        UpperCaseObjectWrapper() {
+            super(Configuration.VERSION_2_3_33);
+        }
+
+        @Override
+        public TemplateModel wrap(Object obj) throws TemplateModelException {
+            return obj instanceof String ? new SimpleScalar(((String) obj).toUpperCase()) : super.wrap(obj);
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateDateModel;
+import freemarker.test.TemplateTest;
+
+public class JavaTimeDateFormatsTest extends TemplateTest {
+
+    /** 2015-09-06T12:00:00Z */
+    private static final long T = 1441540800000L;
+
+    @Before
+    public void setup() {
+        Configuration cfg = getConfiguration();
+        cfg.setLocale(Locale.US);
+        cfg.setTimeZone(TimeZone.getTimeZone("Europe/Budapest"));
+        cfg.setJavaTimeDateFormats(true);
+    }
+
+    @Test
+    public void testSameOutputAsSimpleDateFormat() throws Exception {
+        String[] patterns = new String[] {
+                "yyyy-MM-dd HH:mm:ss.SSS Z", "y yy yyyyy M MMM MMMM d", "EEE EEEE, h:mm a K k",
+                "D DDD F u", "'at' hh 'o''clock' '' XXX", "yyyyMMdd'T'HHmmssX",
+                "G yyyy", "yyyy 'W'ww", "HH:mm z" };
+        Locale[] locales = new Locale[] { Locale.US, Locale.GERMANY, new Locale("hu", "HU"), Locale.JAPAN,
+                new Locale("th", "TH") };
+        long[] times = new long[] { T, 0, -1, -12219292800000L /* Gregorian change */, -15000000000000L,
+                253402300799999L };
+        for (Locale locale : locales) {
+            for (String pattern : patterns) {
+                for (long time : times) {
+                    SimpleDateFormat sdf = new SimpleDateFormat(pattern, locale);
+                    sdf.setTimeZone(getConfiguration().getTimeZone());
+                    Date date = new Date(time);
+                    addToDataModel("d", date);
+                    assertOutput(
+                            "<#setting locale='" + locale + "'>${d?datetime?string('" + pattern.replace("'", "\\'")
+                                    + "')}",
+                            sdf.format(date));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMonthNamesWithoutDayOfMonth() throws Exception {
+        // SimpleDateFormat might use the stand-alone month names here (like "январь" instead of "января" in "ru").
+        String[] patterns = new String[] { "MMMM yyyy", "MMM yyyy", "MMMM", "d MMMM yyyy" };
+        Locale[] locales = new Locale[] { new Locale("ru", "RU"), new Locale("pl", "PL") };
+        for (Locale locale : locales) {
+            for (String pattern : patterns) {
+                SimpleDateFormat sdf = new SimpleDateFormat(pattern, locale);
+                sdf.setTimeZone(getConfiguration().getTimeZone());
+                Date date = new Date(T);
+                addToDataModel("d", date);
+                assertOutput(
+                        "<#setting locale='" + locale + "'>${d?datetime?string('" + pattern + "')}",
+                        sdf.format(date));
+            }
+        }
+
+        Template t = new Template(null, "", getConfiguration());
+        Environment env = t.createProcessingEnvironment(null, new StringWriter());
+        env.setLocale(new Locale("ru", "RU"));
+        assertTrue(env.getTemplateDateFormat("MMMM yyyy", TemplateDateModel.DATETIME, Date.class)
+                instanceof JavaTemplateDateFormat);
+        assertTrue(env.getTemplateDateFormat("d MMMM yyyy", TemplateDateModel.DATETIME, Date.class)
+                instanceof SharedJavaTemplateDateFormat);
+    }
+
+    @Test
+    public void testStyles() throws Exception {
+        addToDataModel("d", new Date(T));
+        String withSharedFormats = getOutput(
+                "${d?date?string.short} ${d?time?string.medium} ${d?datetime?string.long_short} "
+                + "${d?datetime?string.full}");
+        getConfiguration().setJavaTimeDateFormats(false);
+        assertOutput(
+                "${d?date?string.short} ${d?time?string.medium} ${d?datetime?string.long_short} "
+                + "${d?datetime?string.full}",
+                withSharedFormats);
+    }
+
+    @Test
+    public void testFormatsAreShared() throws Exception {
+        Template t = new Template(null, "", getConfiguration());
+        Environment env1 = t.createProcessingEnvironment(null, new StringWriter());
+        Environment env2 = t.createProcessingEnvironment(null, new StringWriter());
+
+        TemplateDateFormat format1 = env1.getTemplateDateFormat(
+                "yyyy-MM-dd HH:mm", TemplateDateModel.DATETIME, Date.class);
+        assertTrue(format1 instanceof SharedJavaTemplateDateFormat);
+        assertSame(format1, env2.getTemplateDateFormat("yyyy-MM-dd HH:mm", TemplateDateModel.DATETIME, Date.class));
+        assertEquals("yyyy-MM-dd HH:mm", format1.getDescription());
+
+        // Week-based fields aren't translated, so SimpleDateFormat is used, which can't be shared:
+        TemplateDateFormat format2 = env1.getTemplateDateFormat(
+                "yyyy 'W'ww", TemplateDateModel.DATETIME, Date.class);
+        assertTrue(format2 instanceof JavaTemplateDateFormat);
+        assertNotSame(format2, env2.getTemplateDateFormat("yyyy 'W'ww", TemplateDateModel.DATETIME, Date.class));
+    }
+
+    @Test
+    public void testParsing() throws Exception {
+        assertOutput(
+                "<#setting datetime_format='yyyy-MM-dd HH:mm Z'>"
+                + "${'2015-09-06'?date('yyyy-MM-dd')?long} "
+                + "${'2015-09-06 14:00 +0200'?datetime('yyyy-MM-dd HH:mm Z')?long} "
+                + "${'2015-09-06 14:00 +0200'?datetime}",
+                "1441490400000 " + T + " 2015-09-06 14:00 +0200");
+        assertErrorContains("${'2015/09/06'?date('yyyy-MM-dd')}", "2015/09/06");
+    }
+
+    @Test
+    public void testSettingChange() throws Exception {
+        addToDataModel("d", new Date(T));
+        assertOutput(
+                "${d?string('yyyy-MM-dd HH:mm')} "
+                + "<#setting java_time_date_formats=false>${d?string('yyyy-MM-dd HH:mm')} "
+                + "<#setting time_zone='UTC'>${d?string('yyyy-MM-dd HH:mm')} "
+                + "<#setting java_time_date_formats=true>${d?string('yyyy-MM-dd HH:mm')}",
+                "2015-09-06 14:00 2015-09-06 14:00 2015-09-06 12:00 2015-09-06 12:00");
+    }
+
+    @Test
+    public void testSetSetting() throws Exception {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_0);
+        assertFalse(cfg.getJavaTimeDateFormats());
+        cfg.setSetting(Configurable.JAVA_TIME_DATE_FORMATS_KEY_CAMEL_CASE, "true");
+        assertTrue(cfg.getJavaTimeDateFormats());
+        cfg.setSetting(Configurable.JAVA_TIME_DATE_FORMATS_KEY_SNAKE_CASE, "false");
+        assertFalse(cfg.getJavaTimeDateFormats());
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.DefaultObjectWrapperBuilder;
+import freemarker.template.DefaultTemporalAdapter;
+import freemarker.template.TemplateDateModel;
+import freemarker.test.TemplateTest;
+
+public class JavaTimeTest extends TemplateTest {
+
+    /** 2015-09-06T12:00:00Z */
+    private static final long T = 1441540800000L;
+
+    @Before
+    public void setup() {
+        Configuration cfg = getConfiguration();
+        cfg.setIncompatibleImprovements(Configuration.VERSION_2_3_33);
+        cfg.setLocale(Locale.US);
+        cfg.setTimeZone(TimeZone.getTimeZone("GMT+01:00"));
+        cfg.setSQLDateAndTimeTimeZone(TimeZone.getTimeZone("UTC"));
+        cfg.setDateFormat("yyyy-MM-dd");
+        cfg.setTimeFormat("HH:mm:ss");
+        cfg.setDateTimeFormat("yyyy-MM-dd HH:mm");
+        cfg.setCustomDateFormats(Collections.singletonMap("javaTime", JavaTimeTemplateDateFormatFactory.INSTANCE));
+
+        DefaultObjectWrapperBuilder owb = new DefaultObjectWrapperBuilder(Configuration.VERSION_2_3_33);
+        owb.setTemporalSupport(true);
+        cfg.setObjectWrapper(owb.build());
+
+        addToDataModel("localDate", LocalDate.of(2015, 9, 6));
+        addToDataModel("localDate2", LocalDate.of(2015, 9, 7));
+        addToDataModel("localDateTime", LocalDateTime.of(2015, 9, 6, 12, 30));
+        addToDataModel("localTime", LocalTime.of(12, 30, 15));
+        addToDataModel("instant", Instant.ofEpochMilli(T));
+        addToDataModel("zonedDateTime", ZonedDateTime.ofInstant(Instant.ofEpochMilli(T), ZoneOffset.ofHours(5)));
+        addToDataModel("date", new Date(T));
+    }
+
+    @Test
+    public void testWrapping() throws Exception {
+        assertOutput("${localDate?is_date_only?c} ${localTime?is_time?c} ${localDateTime?is_datetime?c} "
+                + "${instant?is_datetime?c} ${zonedDateTime?is_datetime?c}",
+                "true true true true true");
+
+        DefaultObjectWrapper ow = (DefaultObjectWrapper) getConfiguration().getObjectWrapper();
+        TemplateDateModel tdm = (TemplateDateModel) ow.wrap(LocalDate.of(2015, 9, 6));
+        assertTrue(tdm instanceof DefaultTemporalAdapter);
+        assertEquals(TemplateDateModel.DATE, tdm.getDateType());
+        assertEquals(LocalDate.of(2015, 9, 6), ow.unwrap(tdm));
+        assertFalse(DefaultTemporalAdapter.isSupportedTemporal(java.time.Year.of(2015)));
+    }
+
+    @Test
+    public void testNoTemporalSupport() throws Exception {
+        getConfiguration().setObjectWrapper(new DefaultObjectWrapper(Configuration.VERSION_2_3_33));
+        assertOutput("${localDate?is_date_like?c} ${localDate.year?c}", "false 2015");
+    }
+
+    @Test
+    public void testDefaultFormats() throws Exception {
+        assertOutput("${localDate}", "2015-09-06");
+        assertOutput("${localTime}", "12:30:15");
+        assertOutput("${localDateTime}", "2015-09-06 12:30");
+        assertOutput("${instant}", "2015-09-06 13:00");
+        assertOutput("${zonedDateTime}", "2015-09-06 13:00");
+        assertOutput("<#setting time_zone='GMT+02'>${localDateTime} ${instant}", "2015-09-06 12:30 2015-09-06 14:00");
+        assertOutput("${localDate?string.iso} ${localDateTime?string.iso}", "2015-09-06 2015-09-06T12:30:00+01:00");
+        assertOutput("${(localDate < localDate2)?c} ${(localDate == localDate)?c}", "true true");
+    }
+
+    @Test
+    public void testJavaTimeFormats() throws Exception {
+        assertOutput("${localDate?string('@javaTime uuuu-MM-dd EEE')}", "2015-09-06 Sun");
+        assertOutput("${localDate?string('@javaTime uuuu-MM-dd HH:mm')}", "2015-09-06 00:00");
+        assertOutput("${localDateTime?string('@javaTime uuuu-MM-dd HH:mm')}", "2015-09-06 12:30");
+        assertOutput("${localTime?string('@javaTime HH:mm:ss')}", "12:30:15");
+        assertOutput("${instant?string('@javaTime uuuu-MM-dd HH:mm xxx')}", "2015-09-06 13:00 +01:00");
+        assertOutput("${zonedDateTime?string('@javaTime uuuu-MM-dd HH:mm xxx')}", "2015-09-06 13:00 +01:00");
+        assertOutput("${date?string('@javaTime uuuu-MM-dd HH:mm')}", "2015-09-06 13:00");
+        assertOutput("${localDate?string('@javaTime short')}", "9/6/15");
+        assertOutput("${'2015-09-06 13:00'?datetime('@javaTime uuuu-MM-dd HH:mm')?long?c}", String.valueOf(T));
+        assertOutput("${'2015-09-06'?date('@javaTime uuuu-MM-dd')?string.iso}", "2015-09-06");
+        assertErrorContains("${localDate?string('@javaTime uuuu-MM-dd {')}", "reserved character");
+    }
+
+    @Test
+    public void testFormatsAreShared() throws Exception {
+        TimeZone tz = TimeZone.getTimeZone("GMT+01:00");
+        assertSame(
+                JavaTimeTemplateDateFormatFactory.INSTANCE.get(
+                        "uuuu", TemplateDateModel.DATE, Locale.US, tz, false, null),
+                JavaTimeTemplateDateFormatFactory.INSTANCE.get(
+                        "uuuu", TemplateDateModel.DATE, Locale.US, tz, false, null));
+    }
+
+}
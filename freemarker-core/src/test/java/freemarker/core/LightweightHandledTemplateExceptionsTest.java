@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateExceptionHandler;
+import freemarker.template.TemplateMethodModelEx;
+import freemarker.template.TemplateModelException;
+import freemarker.test.TemplateTest;
+
+public class LightweightHandledTemplateExceptionsTest extends TemplateTest {
+
+    private final List<TemplateModelException> createdExceptions = new ArrayList<>();
+
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_33);
+        cfg.setLightweightHandledTemplateExceptions(true);
+        cfg.setAttemptExceptionReporter((te, env) -> { });
+        return cfg;
+    }
+
+    @Before
+    public void addFailingMethod() {
+        addToDataModel("fail", (TemplateMethodModelEx) args -> {
+            TemplateModelException e = new TemplateModelException("Failed on purpose");
+            createdExceptions.add(e);
+            throw e;
+        });
+    }
+
+    @Test
+    public void testInAttempt() throws Exception {
+        assertOutput("<#attempt>${fail()}<#recover>r:${.error?keep_before('\\n')}</#attempt>",
+                "r:Failed on purpose");
+        assertEquals(1, createdExceptions.size());
+        assertEquals(0, createdExceptions.get(0).getStackTrace().length);
+    }
+
+    @Test
+    public void testWithIgnoreHandler() throws Exception {
+        getConfiguration().setTemplateExceptionHandler(TemplateExceptionHandler.IGNORE_HANDLER);
+        assertOutput("a${fail()}b", "ab");
+        assertEquals(1, createdExceptions.size());
+        assertEquals(0, createdExceptions.get(0).getStackTrace().length);
+    }
+
+    @Test
+    public void testNotHandledInside() throws Exception {
+        getConfiguration().setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+        assertErrorContains("${fail()}", "Failed on purpose");
+        assertEquals(1, createdExceptions.size());
+        assertNotEquals(0, createdExceptions.get(0).getStackTrace().length);
+    }
+
+    @Test
+    public void testStopIsNotLightweight() throws Exception {
+        getConfiguration().setTemplateExceptionHandler(TemplateExceptionHandler.IGNORE_HANDLER);
+        Template t = new Template(null, "a<#stop 'Stopped on purpose'>b", getConfiguration());
+        try {
+            t.process(null, new StringWriter());
+            fail();
+        } catch (StopException e) {
+            assertNotEquals(0, e.getStackTrace().length);
+        }
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        getConfiguration().setLightweightHandledTemplateExceptions(false);
+        assertOutput("<#attempt>${fail()}<#recover>r</#attempt>", "r");
+        assertEquals(1, createdExceptions.size());
+        assertNotEquals(0, createdExceptions.get(0).getStackTrace().length);
+    }
+
+    @Test
+    public void testSetSetting() throws Exception {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_0);
+        assertFalse(cfg.getLightweightHandledTemplateExceptions());
+        cfg.setSetting(Configuration.LIGHTWEIGHT_HANDLED_TEMPLATE_EXCEPTIONS_KEY_CAMEL_CASE, "true");
+        assertTrue(cfg.getLightweightHandledTemplateExceptions());
+        cfg.setSetting(Configuration.LIGHTWEIGHT_HANDLED_TEMPLATE_EXCEPTIONS_KEY_SNAKE_CASE, "false");
+        assertFalse(cfg.getLightweightHandledTemplateExceptions());
+    }
+
+}
@@ -101,4 +101,50 @@ public class ListWithStreamLikeBuiltinsTest extends TemplateTest {
                 "1->10, 2->20, ");
     }
 
+    @Test
+    public void testChainedBuiltInsAreFused() throws Exception {
+        String chain = "(1..10)?map(log)?filter(x -> x % 2 == 0)?drop_while(x -> x < 4)?map(x -> x * 10)"
+                + "?take_while(x -> x < 90)";
+        String logFunction = "<#assign s = ''><#function log(x)><#assign s += '[${x}]'><#return x></#function>";
+
+        // Lazy: the elements are consumed one by one, in a single pass.
+        assertOutput(
+                logFunction
+                        + "<#list " + chain + " as x>"
+                        + "<#assign s += x>"
+                        + "<#sep><#assign s += ', '>"
+                        + "</#list>"
+                        + "${s}",
+                "[1][2][3][4]40[5][6], 60[7][8], 80[9][10]");
+
+        // Eager: the outermost built-in consumes the fused chain on its left side.
+        assertOutput(
+                logFunction
+                        + "<#assign xs = " + chain + ">"
+                        + "${s} ${xs?join(', ')}",
+                "[1][2][3][4][5][6][7][8][9][10] 40, 60, 80");
+        assertOutput(
+                "<#assign xs = (1..6)?filter(x -> x != 3)?drop_while(x -> x < 2)>${xs?join(', ')}",
+                "2, 4, 5, 6");
+
+        // Chains that only contain ?map keep the size of the source:
+        assertOutput("${(1..4)?map(x -> x * 2)?map(x -> x + 1)?size}", "4");
+        assertOutput("${(1..4)?map(x -> x * 2)?map(x -> x + 1)?join(', ')}", "3, 5, 7, 9");
+        assertOutput("${(1..4)?map(x -> x * 2)?filter(x -> x > 4)?size}", "2");
+    }
+
+    @Test
+    public void testLambdaLocalContextReuse() throws Exception {
+        assertOutput("${(1..5)?filter(x -> x % 2 == 1)?map(x -> x * 10)?join(', ')}", "10, 30, 50");
+        assertOutput("<#list (1..3)?map(x -> x * 10) as x>${x}<#list (1..2)?map(x -> x + 1) as x>[${x}]</#list>"
+                + "<#sep>, </#list>",
+                "10[2][3], 20[2][3], 30[2][3]");
+        // The parameter of the outer invocation is still visible after the same lambda was called recursively:
+        assertOutput("<#function f xs>"
+                + "<#return xs?map(x -> x?is_sequence?then(f(x)?join('+') + '/' + x?size, x * 2))>"
+                + "</#function>"
+                + "${f([1, [2, 3], 4])?join(', ')}",
+                "2, 4+6/2, 8");
+    }
+
 }
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.test.TemplateTest;
+
+public class ParsedStringCacheTest extends TemplateTest {
+
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        Configuration cfg = super.createConfiguration();
+        cfg.setParsedStringCacheMaxSize(10);
+        return cfg;
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_0);
+        assertEquals(0, cfg.getParsedStringCacheMaxSize());
+        assertNull(cfg.getParsedStringCache());
+    }
+
+    @Test
+    public void testInterpret() throws Exception {
+        ParsedStringCache cache = getConfiguration().getParsedStringCache();
+        assertOutput(
+                "<#list 1..3 as i><#assign x = i><@'[${x}]'?interpret /></#list>",
+                "[1][2][3]");
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEval() throws Exception {
+        ParsedStringCache cache = getConfiguration().getParsedStringCache();
+        assertOutput(
+                "<#list 1..3 as i><#assign x = i>${'x * 2'?eval}<#sep>, </#list>",
+                "2, 4, 6");
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertErrorContains("<#list 1..2 as i>${'1 +'?eval}</#list>", "Failed to \"?eval\"");
+    }
+
+    @Test
+    public void testEvalJson() throws Exception {
+        ParsedStringCache cache = getConfiguration().getParsedStringCache();
+        assertOutput(
+                "<#list 1..3 as i>${'{\"a\": 1}'?evalJson.a}</#list>",
+                "111");
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testOutputFormatIsPartOfTheKey() throws Exception {
+        ParsedStringCache cache = getConfiguration().getParsedStringCache();
+        assertOutput(
+                "<#assign s = '$' + '{\"<\"}'>"
+                + "<@s?interpret />"
+                + "<#outputFormat 'HTML'><@s?interpret /></#outputFormat>"
+                + "<#outputFormat 'XML'><@s?interpret /></#outputFormat>"
+                + "<@s?interpret />",
+                "<&lt;&lt;<");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testParserSettingsArePartOfTheKey() throws Exception {
+        ParsedStringCache cache = getConfiguration().getParsedStringCache();
+        assertOutput("<@'[#if true]y[/#if]'?interpret />", "[#if true]y[/#if]");
+        getConfiguration().setTagSyntax(Configuration.SQUARE_BRACKET_TAG_SYNTAX);
+        assertOutput("[@'[#if true]y[/#if]'?interpret /]", "y");
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ParsedStringCache cache = getConfiguration().getParsedStringCache();
+        assertOutput("<#list 1..100 as i>${(i + ' + 1')?eval}<#sep>,</#list>", createExpectedSums(100));
+        assertEquals(100, cache.getMissCount());
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+
+        getConfiguration().clearTemplateCache();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testSetMaxSize() {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_0);
+        cfg.setParsedStringCacheMaxSize(5);
+        assertEquals(5, cfg.getParsedStringCacheMaxSize());
+        assertEquals(5, cfg.getParsedStringCache().getMaxSize());
+        cfg.setParsedStringCacheMaxSize(0);
+        assertNull(cfg.getParsedStringCache());
+        try {
+            cfg.setParsedStringCacheMaxSize(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testSetSetting() throws Exception {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_0);
+        assertEquals(0, cfg.getParsedStringCacheMaxSize());
+        cfg.setSetting(Configuration.PARSED_STRING_CACHE_MAX_SIZE_KEY_CAMEL_CASE, "100");
+        assertEquals(100, cfg.getParsedStringCacheMaxSize());
+        cfg.setSetting(Configuration.PARSED_STRING_CACHE_MAX_SIZE_KEY_SNAKE_CASE, "0");
+        assertNull(cfg.getParsedStringCache());
+    }
+
+    private static String createExpectedSums(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= n; i++) {
+            if (i != 1) {
+                sb.append(',');
+            }
+            sb.append(i + 1);
+        }
+        return sb.toString();
+    }
+
+}
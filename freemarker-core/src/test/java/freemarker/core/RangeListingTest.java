@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import freemarker.template.TemplateException;
+import freemarker.test.TemplateTest;
+
+public class RangeListingTest extends TemplateTest {
+
+    @Test
+    public void testBoundedRanges() throws IOException, TemplateException {
+        assertOutput("<#list 1..3 as i>${i}<#sep>, </#list>", "1, 2, 3");
+        assertOutput("<#list 3..1 as i>${i}<#sep>, </#list>", "3, 2, 1");
+        assertOutput("<#list 1..<4 as i>${i}<#sep>, </#list>", "1, 2, 3");
+        assertOutput("<#list 1..*3 as i>${i}<#sep>, </#list>", "1, 2, 3");
+        assertOutput("<#list -2..-4 as i>${i}<#sep>, </#list>", "-2, -3, -4");
+        assertOutput("<#list 1..<1 as i>${i}<#else>empty</#list>", "empty");
+        assertOutput("<#list 2147483646..2147483647 as i>${i?c}<#sep>, </#list>", "2147483646, 2147483647");
+        assertOutput("<#list -2147483647..-2147483648 as i>${i?c}<#sep>, </#list>", "-2147483647, -2147483648");
+    }
+
+    @Test
+    public void testIndexAndCounter() throws IOException, TemplateException {
+        assertOutput("<#list 5..7 as i>${i_index}/${i?index}/${i?counter}<#sep>, </#list>", "0/0/1, 1/1/2, 2/2/3");
+        assertOutput("<#list 16380..16386 as i><#if i_index != i - 16380>!</#if>${i?counter}<#sep>, </#list>",
+                "1, 2, 3, 4, 5, 6, 7");
+    }
+
+    @Test
+    public void testArithmeticOnItems() throws IOException, TemplateException {
+        assertOutput("<#assign sum = 0><#list 1..100 as i><#assign sum += i></#list>${sum}", "5050");
+        assertOutput("<#list 1..3 as i>${i * 2 - 1}<#sep>, </#list>", "1, 3, 5");
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import org.junit.Test;
+
+import freemarker.test.TemplateTest;
+
+public class RegexpBuiltInsTest extends TemplateTest {
+
+    @Test
+    public void testMatches() throws Exception {
+        addToDataModel("p", "a(b+)");
+        addToDataModel("f", "i");
+        assertOutput("${'abb'?matches('a(b+)')?c} ${'ABB'?matches('a(b+)', 'i')?c} ${'abb'?matches(p)?c}",
+                "true true true");
+        assertOutput("${'ABB'?matches(p, f)?c}", "true");
+        assertOutput("<#list 'xabbyab'?matches('a(b+)') as m>${m}=${m?groups[1]};</#list>", "abb=bb;ab=b;");
+        assertOutput("${'abb'?matches('a(b+)')?groups[1]}", "bb");
+        assertOutput("<#assign m = 'abb'?matches><#list 1..2 as i>${m('a(b+)')?c}</#list>", "truetrue");
+        assertErrorContains("${'abb'?matches('a(')?c}", "Malformed regular expression");
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+        addToDataModel("p", "a+");
+        assertOutput("${'xaaya'?replace('a', '-')}", "x--y-");
+        assertOutput("${'xAaya'?replace('a', '-', 'i')}", "x--y-");
+        assertOutput("${'xaaya'?replace('a', '-', 'f')}", "x-aya");
+        assertOutput("${'xaaya'?replace('a+', '-', 'r')}", "x-y-");
+        assertOutput("${'xAaya'?replace('a+', '<$0>', 'rif')}", "x<Aa>ya");
+        assertOutput("${'xaaya'?replace(p, '-', 'r')} ${'xa+y'?replace(p, '-')}", "x-y- x-y");
+        assertOutput("<#assign r = 'xaaya'?replace><#list 1..2 as i>${r('a', '')}</#list>", "xyxy");
+        assertErrorContains("${'x'?replace('a(', '-', 'r')}", "Malformed regular expression");
+    }
+
+    @Test
+    public void testSplit() throws Exception {
+        addToDataModel("sep", ",");
+        assertOutput("<#list 'a,b,,c'?split(',') as x>[${x}]</#list>", "[a][b][][c]");
+        assertOutput("<#list ',a,'?split(',') as x>[${x}]</#list>", "[][a][]");
+        assertOutput("<#list 'aXbxc'?split('x', 'i') as x>[${x}]</#list>", "[a][b][c]");
+        assertOutput("<#list 'a::b:c'?split('::') as x>[${x}]</#list>", "[a][b:c]");
+        assertOutput("<#list 'a1b22c'?split('[0-9]+', 'r') as x>[${x}]</#list>", "[a][b][c]");
+        assertOutput("<#list 'a,b'?split(sep) as x>[${x}]</#list>", "[a][b]");
+        assertOutput("<#list 'ab'?split('') as x>[${x}]</#list>", "[a][b]");
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import freemarker.core.AddConcatExpression.FlattenedSequence;
+import freemarker.template.SimpleSequence;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+import freemarker.template._ObjectWrappers;
+import freemarker.test.TemplateTest;
+
+public class RepeatedConcatenationTest extends TemplateTest {
+
+    @Test
+    public void testSequenceAppendedInLoop() throws Exception {
+        addToDataModel("n", AddConcatExpression.MAX_UNFLATTENED_DEPTH * 10);
+        assertOutput("<#assign xs = []><#list 1..100 as i><#assign xs = xs + [i]></#list>"
+                + "${xs?size} ${xs[0]} ${xs[50]} ${xs[99]} ${xs?join(',')?length}",
+                "100 1 51 100 291");
+        assertOutput("<#assign xs = []><#list 1..100 as i><#assign xs += [i]></#list>"
+                + "<#assign ys = xs + ['a']><#assign zs = xs + ['b']>"
+                + "${ys[100]} ${zs[100]} ${ys?size} ${zs?size} ${xs?size}",
+                "a b 101 101 100");
+        assertOutput("<#assign xs = []><#list 1..20 as i><#assign xs = [i] + xs></#list>${xs?join(',')}",
+                "20,19,18,17,16,15,14,13,12,11,10,9,8,7,6,5,4,3,2,1");
+        assertOutput("<#assign xs = []><#list 1..n as i><#assign xs = xs + [i, i]></#list>"
+                + "${xs?size} ${xs?last}",
+                "160 80");
+    }
+
+    @Test
+    public void testHashAppendedInLoop() throws Exception {
+        assertOutput("<#assign h = {}><#list 1..100 as i><#assign h = h + {'k' + i: i, 'last': i}></#list>"
+                + "${h?size} ${h.k1} ${h.k50} ${h.k100} ${h.last} ${h?keys?first} ${h?keys[1]} ${h?keys?last} "
+                + "${h?values?last} ${h.k101!'-'}",
+                "101 1 50 100 100 k1 last k100 100 -");
+        assertOutput("<#assign h = {}><#list 1..100 as i><#assign h += {'k' + i: i, 'last': i}></#list>"
+                + "<#assign h2 = h + {'last': 'x', 'new': 'y'}><#assign h3 = h + {'last': 'z'}>"
+                + "${h.last} ${h2.last} ${h3.last} ${h.new!'-'} ${h2.new} ${h?size} ${h2?size} ${h3?size}",
+                "100 x z - y 101 102 101");
+    }
+
+    @Test
+    public void testFlattenedSequenceBranching() throws TemplateModelException {
+        FlattenedSequence ab = FlattenedSequence.from(seq("a", "b"));
+        FlattenedSequence abc = ab.append(seq("c"));
+        FlattenedSequence abcd = abc.append(seq("d"));
+        FlattenedSequence abx = ab.append(seq("x"));
+        FlattenedSequence abcy = abc.append(seq("y", "z"));
+        assertItems(ab, "a", "b");
+        assertItems(abc, "a", "b", "c");
+        assertItems(abcd, "a", "b", "c", "d");
+        assertItems(abx, "a", "b", "x");
+        assertItems(abcy, "a", "b", "c", "y", "z");
+        assertSame(abc, abc.append(seq()));
+    }
+
+    private static TemplateSequenceModel seq(String... items) {
+        return new SimpleSequence(Arrays.asList(items), _ObjectWrappers.SAFE_OBJECT_WRAPPER);
+    }
+
+    private static void assertItems(TemplateSequenceModel seq, String... expectedItems)
+            throws TemplateModelException {
+        assertEquals(expectedItems.length, seq.size());
+        for (int i = 0; i < expectedItems.length; i++) {
+            assertEquals(expectedItems[i], ((TemplateScalarModel) seq.get(i)).getAsString());
+        }
+        assertNull(seq.get(expectedItems.length));
+    }
+
+}
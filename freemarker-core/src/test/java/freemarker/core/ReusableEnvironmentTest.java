@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.test.TemplateTest;
+
+public class ReusableEnvironmentTest extends TemplateTest {
+
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_33);
+        cfg.setLocale(Locale.US);
+        return cfg;
+    }
+
+    @Test
+    public void testStateDoesNotLeakIntoTheNextProcessing() throws Exception {
+        addTemplate("t.ftl", ""
+                + "${a!'-'} ${g!'-'} ${x} ${1234.5}"
+                + "<#assign a = 1><#global g = 2><#setting locale='de_DE'>"
+                + " ${1234.5}");
+        Template t = getConfiguration().getTemplate("t.ftl");
+
+        StringWriter out = new StringWriter();
+        Environment env = t.createProcessingEnvironment(Collections.singletonMap("x", "first"), out);
+        env.process();
+        assertEquals("- - first 1,234.5 1.234,5", out.toString());
+
+        for (int i = 0; i < 2; i++) {
+            out = new StringWriter();
+            t.resetProcessingEnvironment(env, Collections.singletonMap("x", "again"), out);
+            assertNull(env.getVariable("a"));
+            assertEquals(Locale.US, env.getLocale());
+            env.process();
+            assertEquals("- - again 1,234.5 1.234,5", out.toString());
+        }
+    }
+
+    @Test
+    public void testSettingsCanBeChangedAfterReset() throws Exception {
+        addTemplate("t.ftl", "${1234.5} ${.now?is_datetime?c}");
+        Template t = getConfiguration().getTemplate("t.ftl");
+
+        StringWriter out = new StringWriter();
+        Environment env = t.createProcessingEnvironment(null, out);
+        env.process();
+        assertEquals("1,234.5 true", out.toString());
+
+        out = new StringWriter();
+        t.resetProcessingEnvironment(env, null, out);
+        env.setLocale(Locale.GERMANY);
+        env.process();
+        assertEquals("1.234,5 true", out.toString());
+
+        out = new StringWriter();
+        t.resetProcessingEnvironment(env, null, out);
+        env.setNumberFormat("0.00");
+        env.process();
+        assertEquals("1234.50 true", out.toString());
+    }
+
+    @Test
+    public void testImportsAreExecutedAgain() throws Exception {
+        addTemplate("lib.ftl", "<#assign count = (count!0) + 1>");
+        addTemplate("t.ftl", "<#import 'lib.ftl' as lib>${lib.count}");
+        Template t = getConfiguration().getTemplate("t.ftl");
+
+        StringWriter out = new StringWriter();
+        Environment env = t.createProcessingEnvironment(null, out);
+        env.process();
+        assertEquals("1", out.toString());
+
+        out = new StringWriter();
+        t.resetProcessingEnvironment(env, null, out);
+        env.process();
+        assertEquals("1", out.toString());
+    }
+
+    @Test
+    public void testResetForAnotherTemplateIsRejected() throws Exception {
+        addTemplate("t1.ftl", "1");
+        addTemplate("t2.ftl", "2");
+        Environment env = getConfiguration().getTemplate("t1.ftl")
+                .createProcessingEnvironment(null, new StringWriter());
+        try {
+            getConfiguration().getTemplate("t2.ftl").resetProcessingEnvironment(env, null, new StringWriter());
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("t1.ftl"));
+        }
+    }
+
+}
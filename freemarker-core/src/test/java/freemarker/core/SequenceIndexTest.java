@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+import freemarker.test.TemplateTest;
+
+public class SequenceIndexTest extends TemplateTest {
+
+    private static final String SEARCHES = "<#list searched as s>"
+            + "${xs?seq_contains(s)?c}/${xs?seq_index_of(s)}/${xs?seq_last_index_of(s)}"
+            + "/${xs?seq_index_of(s, 20)}/${xs?seq_last_index_of(s, 20)}<#sep>, </#list>";
+
+    @Test
+    public void testRepeatedSearches() throws IOException, TemplateException {
+        List<Object> xs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            xs.add(i % 2 == 0 ? (Object) (i / 2) : (Object) ("s" + i / 2));
+        }
+        xs.add(true);
+        xs.add(new BigDecimal("3.00"));
+        xs.add("s3");
+        addToDataModel("xs", xs);
+        addToDataModel("searched", new Object[] {
+                3, 3L, 3.0, new BigDecimal("3"), "s3", "3", 24, "s24", 25, true, false, 0.5 });
+        String expected = "true/6/51/51/6, true/6/51/51/6, true/6/51/51/6, true/6/51/51/6, "
+                + "true/7/52/52/7, false/-1/-1/-1/-1, true/48/48/48/-1, true/49/49/49/-1, false/-1/-1/-1/-1, "
+                + "true/50/50/50/-1, false/-1/-1/-1/-1, false/-1/-1/-1/-1";
+        // The index is only built after several searches, so we must see the same result each time:
+        for (int i = 0; i < 3; i++) {
+            assertOutput(SEARCHES, expected);
+        }
+    }
+
+    @Test
+    public void testValuesThatAreNotIndexed() throws IOException, TemplateException {
+        List<Object> xs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            xs.add(i);
+        }
+        xs.add(Double.POSITIVE_INFINITY);
+        addToDataModel("xs", xs);
+        addToDataModel("inf", Double.POSITIVE_INFINITY);
+        String ftl = "<#list 1..5 as _>"
+                + "${xs?seq_contains(1)?c} ${xs?seq_contains(30)?c} ${xs?seq_index_of(inf)}"
+                + "<#sep>, </#list>";
+        assertOutput(ftl, "true false 30, true false 30, true false 30, true false 30, true false 30");
+    }
+
+    @Test
+    public void testLargeIntegersOfDifferentTypes() throws IOException, TemplateException {
+        List<Object> xs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            xs.add(i);
+        }
+        xs.add(1000000000000000000L);
+        xs.add(new BigDecimal("1000000000000000001"));
+        xs.add(new BigDecimal("9223372036854775807.00"));
+        addToDataModel("xs", xs);
+        addToDataModel("searched", new Object[] {
+                new BigDecimal("1000000000000000000"), new BigInteger("1000000000000000000"),
+                1000000000000000001L, Long.MAX_VALUE, new BigDecimal("9223372036854775808") });
+        String ftl = "<#list 1..5 as _><#list searched as s>${xs?seq_index_of(s)}<#sep> </#list><#sep>, </#list>";
+        assertOutput(ftl, "30 30 31 32 -1, 30 30 31 32 -1, 30 30 31 32 -1, 30 30 31 32 -1, 30 30 31 32 -1");
+    }
+
+    @Test
+    public void testStringNormalization() throws IOException, TemplateException {
+        List<Object> xs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            xs.add("x" + i);
+        }
+        xs.add("\uFB01"); // "fi" ligature
+        addToDataModel("xs", xs);
+        String ftl = "<#list 1..5 as _>${xs?seq_index_of('fi')}<#sep>, </#list>";
+
+        getConfiguration().setIncompatibleImprovements(Configuration.VERSION_2_3_33);
+        assertOutput(ftl, "30, 30, 30, 30, 30");
+
+        getConfiguration().setIncompatibleImprovements(Configuration.VERSION_2_3_32);
+        assertOutput(ftl, "-1, -1, -1, -1, -1");
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.test.TemplateTest;
+
+public class SharedNumberFormatsTest extends TemplateTest {
+
+    @Before
+    public void setup() {
+        Configuration cfg = getConfiguration();
+        cfg.setLocale(Locale.US);
+        cfg.setSharedNumberFormats(true);
+    }
+
+    @Test
+    public void testSameOutputAsDecimalFormat() throws Exception {
+        String[] formats = new String[] {
+                "number", "percent", "0", "0.00", "#,##0.###", "#.#", "0000", ".##", "#.00", "0.#;(0.#)",
+                "#,##0.00 'kg'", "#,###0.#;; groupingSeparator='_'", "0.##;; roundingMode=halfUp",
+                "0.##;; roundingMode=halfDown", "0.#;; multiplier=1000", "0.00;; decimalSeparator=','" };
+        Locale[] locales = new Locale[] { Locale.US, Locale.GERMANY, new Locale("hu", "HU"), new Locale("ar", "EG"),
+                new Locale("hi", "IN") };
+        Number[] numbers = new Number[] {
+                0, 1, -1, 1234567, Long.MAX_VALUE, Long.MIN_VALUE, 0.0, -0.0, 0.05, 0.125, 2.5, -2.5, 1.005,
+                -0.0001, 1e-10, 1e22, 123456789.987654321, Double.NaN, Double.NEGATIVE_INFINITY, 1.1f,
+                new BigDecimal("12345.6789"), new BigDecimal("-0.005"), new BigDecimal("1E+30"),
+                new BigInteger("-123456789012345678901234567890") };
+        for (Locale locale : locales) {
+            for (String format : formats) {
+                NumberFormat numberFormat = JavaTemplateNumberFormatFactory.createJavaNumberFormat(format, locale);
+                for (Number number : numbers) {
+                    addToDataModel("n", number);
+                    assertOutput(
+                            "<#setting locale='" + locale + "'>${n?string('" + format.replace("'", "\\'") + "')}",
+                            numberFormat.format(number));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTiesBeforeTheFirstSignificantDigit() throws Exception {
+        String[] formats = new String[] {
+                "number", "#,##0.###", "0.###", "0.####", "0.#####", "0.###;; roundingMode=halfUp",
+                "0.####;; roundingMode=halfDown" };
+        Number[] numbers = new Number[] { 5e-4, -5e-4, 5e-5, -5e-5, 5e-6, -5e-6, 0.05, 0.005, 1.5e-3, 5.0001e-4 };
+        for (String format : formats) {
+            NumberFormat numberFormat = JavaTemplateNumberFormatFactory.createJavaNumberFormat(format, Locale.US);
+            for (Number number : numbers) {
+                addToDataModel("n", number);
+                assertOutput("${n?string('" + format + "')}", numberFormat.format(number));
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedFormats() throws Exception {
+        addToDataModel("n", 1234.5);
+        assertOutput("${n?string.currency} ${n?string('0.0E0')} ${n?string('0;; roundingMode=up')}",
+                "$1,234.50 1.2E3 1235");
+    }
+
+    @Test
+    public void testFormatClasses() throws Exception {
+        Template t = new Template(null, "", getConfiguration());
+        Environment env = t.createProcessingEnvironment(null, new StringWriter());
+
+        TemplateNumberFormat format1 = env.getTemplateNumberFormat("#,##0.##");
+        assertTrue(format1 instanceof SharedJavaTemplateNumberFormat);
+        assertEquals("#,##0.##", format1.getDescription());
+
+        // Currency formats aren't compiled, so DecimalFormat is used:
+        assertTrue(env.getTemplateNumberFormat("currency") instanceof JavaTemplateNumberFormat);
+    }
+
+    @Test
+    public void testSettingChange() throws Exception {
+        addToDataModel("n", 1234.5);
+        assertOutput(
+                "${n} <#setting shared_number_formats=false>${n} "
+                + "<#setting locale='de_DE'>${n} "
+                + "<#setting shared_number_formats=true>${n}",
+                "1,234.5 1,234.5 1.234,5 1.234,5");
+    }
+
+    @Test
+    public void testSetSetting() throws Exception {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_0);
+        assertFalse(cfg.getSharedNumberFormats());
+        cfg.setSetting(Configurable.SHARED_NUMBER_FORMATS_KEY_CAMEL_CASE, "true");
+        assertTrue(cfg.getSharedNumberFormats());
+        cfg.setSetting(Configurable.SHARED_NUMBER_FORMATS_KEY_SNAKE_CASE, "false");
+        assertFalse(cfg.getSharedNumberFormats());
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+import freemarker.test.TemplateTest;
+
+public class SideEffectFreeLibraryImportTest extends TemplateTest {
+
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        Configuration cfg = super.createConfiguration();
+        cfg.setIncompatibleImprovements(Configuration.VERSION_2_3_33);
+        return cfg;
+    }
+
+    @Before
+    public void setup() {
+        addTemplate("lib.ftl", ""
+                + "<#-- comment -->\n"
+                + "<#assign x = 1>\n"
+                + "<#assign s = 'foo', b = true>\n"
+                + "<#escape v as v?upper_case>\n"
+                + "  <#macro m>[m ${x} ${s}]</#macro>\n"
+                + "</#escape>\n"
+                + "<#function f p>\n"
+                + "  <#return p * 2>\n"
+                + "</#function>\n"
+                + "<#assign x = 2>\n"
+                + "Ignored text");
+        addTemplate("sideEffect.ftl", "<#global g = 'g'><#assign y = 1>");
+        addTemplate("nonLiteral.ftl", "<#assign y = 'y' + 1><#assign z = \"${y}\">");
+        addTemplate("calls.ftl", "<#macro m>[m]</#macro><@m />");
+    }
+
+    @Test
+    public void testDetection() throws IOException, TemplateException {
+        assertNotNull(LibraryDefinitions.get(getConfiguration().getTemplate("lib.ftl")));
+        assertNull(LibraryDefinitions.get(getConfiguration().getTemplate("sideEffect.ftl")));
+        assertNull(LibraryDefinitions.get(getConfiguration().getTemplate("nonLiteral.ftl")));
+        assertNull(LibraryDefinitions.get(getConfiguration().getTemplate("calls.ftl")));
+    }
+
+    @Test
+    public void testImport() throws IOException, TemplateException {
+        for (int i = 0; i < 2; i++) {
+            assertOutput(
+                    "<#import 'lib.ftl' as lib>"
+                    + "<@lib.m /> ${lib.x} ${lib.s} ${lib.b?c} ${lib.f(3)} ${lib.m?is_macro?c} ${lib.f?is_function?c}",
+                    "[m 2 FOO] 2 foo true 6 true true");
+        }
+    }
+
+    @Test
+    public void testMacroSeesItsOwnNamespace() throws IOException, TemplateException {
+        assertOutput(
+                "<#assign x = 'main'><#import 'lib.ftl' as lib><@lib.m />",
+                "[m 2 FOO]");
+    }
+
+    @Test
+    public void testNamespaceModificationsAreNotShared() throws IOException, TemplateException {
+        assertOutput(
+                "<#import 'lib.ftl' as lib><#assign x = 3 in lib><@lib.m /> ${lib.x}",
+                "[m 3 FOO] 3");
+        assertOutput(
+                "<#import 'lib.ftl' as lib><@lib.m /> ${lib.x}",
+                "[m 2 FOO] 2");
+    }
+
+    @Test
+    public void testLazyImport() throws IOException, TemplateException {
+        getConfiguration().setLazyImports(true);
+        assertOutput(
+                "<#import 'lib.ftl' as lib>${lib.x} <@lib.m />",
+                "2 [m 2 FOO]");
+    }
+
+    @Test
+    public void testLibrariesWithSideEffectsAreExecuted() throws IOException, TemplateException {
+        assertOutput(
+                "<#import 'sideEffect.ftl' as se>${g} ${se.y}",
+                "g 1");
+        assertOutput(
+                "<#import 'nonLiteral.ftl' as nl>${nl.y} ${nl.z}",
+                "y1 y1");
+    }
+
+}
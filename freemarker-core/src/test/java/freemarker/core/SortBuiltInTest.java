@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import freemarker.template.TemplateException;
+import freemarker.test.TemplateTest;
+
+public class SortBuiltInTest extends TemplateTest {
+
+    @Test
+    public void testSort() throws IOException, TemplateException {
+        addToDataModel("xs", ImmutableList.of("c", "a", "b"));
+        assertOutput("${xs?sort?join(', ')}", "a, b, c");
+        assertOutput("${[3, 1, 2]?sort?join(', ')}", "1, 2, 3");
+        assertOutput("${[true, false]?sort?join(', ')}", "false, true");
+        assertOutput("${[]?sort?size}", "0");
+    }
+
+    @Test
+    public void testSortBy() throws IOException, TemplateException {
+        addToDataModel("xs", ImmutableList.of(
+                ImmutableMap.of("a", 2, "b", ImmutableMap.of("c", "y")),
+                ImmutableMap.of("a", 1, "b", ImmutableMap.of("c", "z")),
+                ImmutableMap.of("a", 3, "b", ImmutableMap.of("c", "x"))));
+        assertOutput("<#list xs?sort_by('a') as x>${x.a}</#list>", "123");
+        assertOutput("<#list xs?sort_by(['b', 'c']) as x>${x.a}</#list>", "312");
+        assertErrorContains("${xs?sort_by('d')?size}", "\"d\"", "null or missing");
+    }
+
+    @Test
+    public void testRepeatedSortingOfSameSequence() throws IOException, TemplateException {
+        List<Map<String, Integer>> rows = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            rows.add(ImmutableMap.of("id", i, "k", (i * 7) % 10, "r", 20000 - i));
+        }
+        addToDataModel("rows", rows);
+        // Must be a stable sort, both below and above the parallel sorting threshold:
+        String ftl = "<#list rows?sort_by('k') as row>${row.id}<#sep>, <#if row?counter == 4><#break></#if></#list>";
+        assertOutput(ftl + "; " + ftl, "0, 10, 20, 30; 0, 10, 20, 30");
+        assertOutput("<#list rows[0..*100]?sort_by('k') as row>${row.id}<#sep>, <#if row?counter == 4><#break></#if>"
+                + "</#list>", "0, 10, 20, 30");
+        // Same sequence, but different key:
+        assertOutput("${rows?sort_by('k')[0].id} ${rows?sort_by('r')[0].id} ${rows?sort_by('k')[0].id}",
+                "0 19999 0");
+        assertOutput("${rows?sort_by('k')?size} ${rows?sort_by('k')?last.k}", "20000 9");
+    }
+
+    @Test
+    public void testCustomArithmeticEngineWithLongSequence() throws IOException, TemplateException {
+        getConfiguration().setArithmeticEngine(new ArithmeticEngine.BigDecimalEngine() {
+            @Override
+            public int compareNumbers(Number first, Number second) {
+                if (Environment.getCurrentEnvironment() == null) {
+                    throw new IllegalStateException("No current Environment");
+                }
+                return super.compareNumbers(first, second);
+            }
+        });
+        List<Integer> xs = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            xs.add(20000 - i);
+        }
+        addToDataModel("xs", xs);
+        assertOutput("${xs?sort?first} ${xs?sort?last}", "1 20000");
+    }
+
+    @Test
+    public void testSortingAfterLocaleChange() throws IOException, TemplateException {
+        addToDataModel("xs", ImmutableList.of("b", "ch", "c", "h", "d", "i", "a", "g", "f", "e",
+                "j", "k", "l", "m", "n", "o", "p"));
+        assertOutput("<#setting locale='en_US'>${xs?sort?join('')} "
+                + "<#setting locale='cs_CZ'>${xs?sort?join('')}",
+                "abcchdefghijklmnop abcdefghchijklmnop");
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.DefaultObjectWrapperBuilder;
+import freemarker.test.TemplateTest;
+
+public class StreamingListingTest extends TemplateTest {
+
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        Configuration cfg = super.createConfiguration();
+        DefaultObjectWrapperBuilder owb = new DefaultObjectWrapperBuilder(Configuration.VERSION_2_3_33);
+        owb.setStreamSupport(true);
+        cfg.setObjectWrapper(owb.build());
+        return cfg;
+    }
+
+    @Test
+    public void testChunkOnIterator() throws Exception {
+        addToDataModel("it", Arrays.asList("a", "b", "c", "d", "e").iterator());
+        assertOutput("<#list it?chunk(2) as row><#list row as x>${x}<#sep>,</#list><#sep>|</#list>", "a,b|c,d|e");
+        
+        addToDataModel("it", Arrays.asList("a", "b", "c").iterator());
+        assertOutput("<#list it?chunk(2, '-') as row>${row?join(',')};</#list>", "a,b;c,-;");
+
+        addToDataModel("it", Collections.emptyIterator());
+        assertOutput("<#list it?chunk(2) as row>${row?join(',')}<#else>empty</#list>", "empty");
+        
+        addToDataModel("it", Arrays.asList("a", "b", "c").iterator());
+        assertErrorContains("<#list it?chunk(2) as row></#list><#list it?chunk(2) as row></#list>",
+                "listed only once");
+    }
+
+    @Test
+    public void testChunkOnInfiniteStream() throws Exception {
+        addToDataModel("s", Stream.iterate(1, i -> i + 1));
+        assertOutput(
+                "<#list s?chunk(2) as row>${row?join(',')}<#if row?index == 2><#break></#if>;</#list>",
+                "1,2;3,4;5,6");
+    }
+
+    @Test
+    public void testListItemsAndSepOnStream() throws Exception {
+        addToDataModel("s", Stream.of("a", "b", "c"));
+        assertOutput("<#list s>[<#items as x>${x}<#sep>, </#items>]<#else>empty</#list>", "[a, b, c]");
+        
+        addToDataModel("s", Stream.empty());
+        assertOutput("<#list s>[<#items as x>${x}<#sep>, </#items>]<#else>empty</#list>", "empty");
+    }
+
+    @Test
+    public void testSizeCheckOnIterator() throws Exception {
+        addToDataModel("it", Arrays.asList("a", "b", "c").iterator());
+        assertOutput("<#if it?size != 0><#list it as x>${x}</#list></#if>", "abc");
+        
+        addToDataModel("it", Collections.emptyIterator());
+        assertOutput("<#if it?size == 0>empty<#else><#list it as x>${x}</#list></#if>", "empty");
+        
+        addToDataModel("s", Stream.of("a", "b", "c"));
+        assertOutput("<#if s?size gt 0><#list s as x>${x}</#list></#if>", "abc");
+        
+        // The exact size can't be known without consuming the elements:
+        addToDataModel("it", Arrays.asList("a", "b", "c").iterator());
+        assertErrorContains("${it?size}", "extended collection");
+    }
+
+    @Test
+    public void testNoStreamSupport() throws Exception {
+        DefaultObjectWrapper ow = new DefaultObjectWrapperBuilder(Configuration.VERSION_2_3_33).build();
+        addToDataModel("s", ow.wrap(Stream.of("a", "b", "c")));
+        assertOutput("${s?isEnumerable?c}", "false");
+    }
+
+}
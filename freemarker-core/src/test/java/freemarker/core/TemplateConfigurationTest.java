@@ -163,6 +163,8 @@ public class TemplateConfigurationTest {
         SETTING_ASSIGNMENTS.put("classicCompatibleAsInt", 2);
         SETTING_ASSIGNMENTS.put("dateFormat", "yyyy-#DDD");
         SETTING_ASSIGNMENTS.put("dateTimeFormat", "yyyy-#DDD-@HH:mm");
+        SETTING_ASSIGNMENTS.put("javaTimeDateFormats", true);
+        SETTING_ASSIGNMENTS.put("sharedNumberFormats", true);
         SETTING_ASSIGNMENTS.put("locale", NON_DEFAULT_LOCALE);
         SETTING_ASSIGNMENTS.put("CFormat", JavaScriptCFormat.INSTANCE);
         SETTING_ASSIGNMENTS.put("logTemplateExceptions", false);
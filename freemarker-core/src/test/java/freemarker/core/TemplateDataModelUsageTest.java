@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package freemarker.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import freemarker.template.Configuration;
+import freemarker.test.TemplateTest;
+
+public class TemplateDataModelUsageTest extends TemplateTest {
+
+    @Override
+    protected Configuration createConfiguration() throws Exception {
+        return new Configuration(Configuration.VERSION_2_3_33);
+    }
+
+    @Test
+    public void testPaths() throws Exception {
+        addTemplate("t.ftl", ""
+                + "${user.name} ${user['age']} ${x.y.z} ${x.y?size} ${m[k]} ${f(a.b)} ${n!'-'} "
+                + "<#if c??>${(p.q)}</#if>");
+        TemplateDataModelUsage usage = getUsage("t.ftl");
+        assertEquals(Arrays.asList("user", "x", "m", "k", "f", "a", "n", "c", "p"),
+                new ArrayList<>(usage.getTopLevelNames()));
+        assertPaths(usage, "user.name", "user.age", "x.y", "m", "k", "f", "a.b", "n", "c", "p.q");
+        assertTrue(usage.isComplete());
+    }
+
+    @Test
+    public void testLocallyDefinedNamesAreExcluded() throws Exception {
+        addTemplate("t.ftl", ""
+                + "${a}<#assign a = 1>${a}"
+                + "<#if cond><#assign b = 1></#if>${b}"
+                + "<#list xs as x>${x.name} ${x?index} ${y}</#list>"
+                + "<#list hs as k, v>${k}${v}</#list>"
+                + "<#list ys><#items as y>${y}</#items></#list>"
+                + "${zs?filter(z -> z.ok && z.limit < max)?size}"
+                + "<#macro m p1 p2=p1 p3=dflt><#local l = 1>${p1}${p2}${p3}${l}${g}<@m2 /></#macro>"
+                + "<#macro m2></#macro>"
+                + "<@m p1=arg; np>${np}</@m>");
+        TemplateDataModelUsage usage = getUsage("t.ftl");
+        assertPaths(usage, "a", "cond", "b", "xs", "y", "hs", "ys", "zs", "max", "dflt", "g", "arg");
+        assertTrue(usage.isComplete());
+    }
+
+    @Test
+    public void testStringLiteralInterpolations() throws Exception {
+        addTemplate("t.ftl", ""
+                + "<#macro layout title>${title}</#macro>"
+                + "<#assign t = \"Hi ${user.name}!\">"
+                + "<@layout title=\"Order ${order.id} of ${'${customer.name}'}\" />"
+                + "<#list xs as x>${'${x.a} ${y}'}</#list>");
+        TemplateDataModelUsage usage = getUsage("t.ftl");
+        assertPaths(usage, "user.name", "order.id", "customer.name", "xs", "y");
+        assertTrue(usage.isComplete());
+    }
+
+    @Test
+    public void testSpecialVariables() throws Exception {
+        addTemplate("t.ftl", ""
+                + "${.vars['a'].b} ${.data_model.c} ${.globals['d']} ${.now}"
+                + "<#list xs as x>${.vars.x}</#list>");
+        TemplateDataModelUsage usage = getUsage("t.ftl");
+        assertPaths(usage, "a.b", "c", "d", "xs");
+        assertTrue(usage.isComplete());
+
+        addTemplate("t2.ftl", "${.vars[name]}");
+        usage = getUsage("t2.ftl");
+        assertPaths(usage, "name");
+        assertFalse(usage.isComplete());
+    }
+
+    @Test
+    public void testEvalIsIncomplete() throws Exception {
+        addTemplate("t.ftl", "${'a'?eval}");
+        assertFalse(getUsage("t.ftl").isComplete());
+
+        addTemplate("t2.ftl", "<@src?interpret />");
+        TemplateDataModelUsage usage = getUsage("t2.ftl");
+        assertPaths(usage, "src");
+        assertFalse(usage.isComplete());
+    }
+
+    @Test
+    public void testIncludesAndImports() throws Exception {
+        addTemplate("main.ftl", ""
+                + "<#import 'lib/lib.ftl' as lib>"
+                + "<#include 'inc.ftl'>"
+                + "<@lib.m />${lib.x} ${a}");
+        addTemplate("inc.ftl", "${b}<#include 'main.ftl'>");
+        addTemplate("lib/lib.ftl", "<#assign x = c><#macro m>${d}<#include 'inc2.ftl'></#macro>");
+        addTemplate("lib/inc2.ftl", "${e}");
+        TemplateDataModelUsage usage = getUsage("main.ftl");
+        assertPaths(usage, "c", "d", "e", "b", "a");
+        assertTrue(usage.isComplete());
+
+        addTemplate("dynamic.ftl", "<#include name + '.ftl'>");
+        usage = getUsage("dynamic.ftl");
+        assertPaths(usage, "name");
+        assertFalse(usage.isComplete());
+
+        addTemplate("missing.ftl", "<#include 'noSuchTemplate.ftl' ignore_missing=true>${a}");
+        usage = getUsage("missing.ftl");
+        assertPaths(usage, "a");
+        assertTrue(usage.isComplete());
+    }
+
+    @Test
+    public void testAutoImports() throws Exception {
+        addTemplate("lib.ftl", "<#macro m>${a}</#macro>");
+        addTemplate("t.ftl", "<@lib.m />${b}");
+        getConfiguration().addAutoImport("lib", "lib.ftl");
+        assertPaths(getUsage("t.ftl"), "a", "b");
+    }
+
+    private TemplateDataModelUsage getUsage(String templateName) throws IOException {
+        return getConfiguration().getTemplate(templateName).getDataModelUsage();
+    }
+
+    private static void assertPaths(TemplateDataModelUsage usage, String... expectedPaths) {
+        List<String> actualPaths = new ArrayList<>();
+        for (List<String> path : usage.getPaths()) {
+            actualPaths.add(String.join(".", path));
+        }
+        assertEquals(Arrays.asList(expectedPaths), actualPaths);
+    }
+
+}
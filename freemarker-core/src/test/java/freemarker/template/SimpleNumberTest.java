@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package freemarker.template;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SimpleNumberTest {
+
+    @Test
+    public void testValueOf() {
+        for (int i : new int[] { Integer.MIN_VALUE, -129, -128, -1, 0, 1, 127, 128, 1000, 16383, 16384,
+                Integer.MAX_VALUE }) {
+            SimpleNumber n = SimpleNumber.valueOf(i);
+            assertEquals(Integer.valueOf(i), n.getAsNumber());
+            assertEquals(String.valueOf(i), n.toString());
+        }
+    }
+
+    @Test
+    public void testValueOfCaching() {
+        assertSame(SimpleNumber.valueOf(-128), SimpleNumber.valueOf(-128));
+        assertSame(SimpleNumber.valueOf(0), SimpleNumber.valueOf(0));
+        assertSame(SimpleNumber.valueOf(16383), SimpleNumber.valueOf(16383));
+        assertNotSame(SimpleNumber.valueOf(16384), SimpleNumber.valueOf(16384));
+        assertNotSame(SimpleNumber.valueOf(-129), SimpleNumber.valueOf(-129));
+    }
+
+}
@@ -24,6 +24,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Random;
 import java.util.TimeZone;
 
 import javax.xml.datatype.DatatypeConfigurationException;
@@ -921,6 +922,47 @@ public class DateUtilTest extends TestCase {
         assertJavaxAndFTLXSDateTimesSame("2014-01-01T23:59:59.1235");
     }
     
+    public void testFarDates() throws DateParseException {
+        // These are beyond the range where the calendar fields are calculated without GregorianCalendar
+        assertEquals("292278994-08-17T07:12:55.807Z", DateUtil.dateToISO8601String(new Date(Long.MAX_VALUE),
+                true, true, true, DateUtil.ACCURACY_MILLISECONDS, DateUtil.UTC, calendarFactory));
+        assertEquals("-292275056-05-16T16:47:04.192Z", DateUtil.dateToXSString(new Date(Long.MIN_VALUE),
+                true, true, true, DateUtil.ACCURACY_MILLISECONDS, DateUtil.UTC, calendarFactory));
+        assertEquals("97036-03-20T05:20:00.001Z", DateUtil.dateToISO8601String(new Date(3000000000000001L),
+                true, true, true, DateUtil.ACCURACY_MILLISECONDS, DateUtil.UTC, null));
+        assertEquals(3093527980800000L,
+                DateUtil.parseXSDateTime("100000-01-01T00:00:00Z", DateUtil.UTC, cf2dc).getTime());
+        assertEquals(-3217862422800000L,
+                DateUtil.parseISO8601DateTime("-100000-01-01T00:00:00+01:00", DateUtil.UTC, cf2dc).getTime());
+
+        // Around year 0:
+        assertEquals("0001-01-01T00:00:00Z", DateUtil.dateToISO8601String(new Date(-62135596800000L),
+                true, true, true, DateUtil.ACCURACY_MILLISECONDS, DateUtil.UTC, calendarFactory));
+        assertEquals("0000-12-31T23:59:59.999Z", DateUtil.dateToISO8601String(new Date(-62135596800001L),
+                true, true, true, DateUtil.ACCURACY_MILLISECONDS, DateUtil.UTC, calendarFactory));
+        assertEquals("-1-12-31T23:59:59.999Z", DateUtil.dateToXSString(new Date(-62135596800001L),
+                true, true, true, DateUtil.ACCURACY_MILLISECONDS, DateUtil.UTC, calendarFactory));
+    }
+
+    public void testFormatParseRoundTrip() throws DateParseException {
+        TimeZone[] timeZones = new TimeZone[] {
+                DateUtil.UTC, TimeZone.getTimeZone("Europe/Prague"), TimeZone.getTimeZone("GMT+05:30"),
+                TimeZone.getTimeZone("America/New_York") };
+        Random random = new Random(1234);
+        for (int i = 0; i < 10000; i++) {
+            // Roughly between year 1901 and 5000 (before that, some zones have offsets with seconds)
+            Date date = new Date((long) (random.nextDouble() * 9.7e13) - 2200000000000L);
+            for (TimeZone tz : timeZones) {
+                String xs = DateUtil.dateToXSString(
+                        date, true, true, true, DateUtil.ACCURACY_MILLISECONDS, tz, calendarFactory);
+                assertEquals(xs, date, DateUtil.parseXSDateTime(xs, DateUtil.UTC, cf2dc));
+                String iso = DateUtil.dateToISO8601String(
+                        date, true, true, true, DateUtil.ACCURACY_MILLISECONDS, tz, calendarFactory);
+                assertEquals(iso, date, DateUtil.parseISO8601DateTime(iso, DateUtil.UTC, cf2dc));
+            }
+        }
+    }
+    
     private boolean isAtLeastJava6() {
         try {
             Class.forName("java.lang.management.LockInfo");